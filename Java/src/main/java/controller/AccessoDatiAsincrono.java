@@ -0,0 +1,60 @@
+package controller;
+
+import service.Esecutori;
+
+import javax.swing.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Esecuzione asincrona delle operazioni dell'interfaccia grafica.
+ * <p>
+ * Ogni operazione, tipicamente una chiamata al servizio applicativo, viene eseguita fuori
+ * dall'Event Dispatch Thread di Swing e restituisce un {@link CompletableFuture}; il risultato va poi pubblicato sull'interfaccia con
+ * {@link #suEdt(CompletableFuture, Consumer, Consumer)}, che usa {@link SwingUtilities#invokeLater(Runnable)}.
+ * In questo modo l'interfaccia resta reattiva per tutta la durata del round trip verso il database.
+ */
+public final class AccessoDatiAsincrono {
+
+    /** Executor condiviso per tutte le operazioni sul database. */
+    private static final ExecutorService ESECUTORE = Esecutori.perAttivita("dao");
+
+    private AccessoDatiAsincrono() {
+    }
+
+    /**
+     * Esegue in background un'operazione, ad esempio una chiamata al servizio applicativo.
+     *
+     * @param operazione operazione da eseguire
+     * @param <T> tipo del risultato
+     * @return future completato con il risultato dell'operazione
+     */
+    public static <T> CompletableFuture<T> esegui(Supplier<T> operazione) {
+        return CompletableFuture.supplyAsync(operazione, ESECUTORE);
+    }
+
+    /**
+     * Pubblica sull'Event Dispatch Thread l'esito di un'operazione asincrona.
+     *
+     * @param futuro operazione in corso
+     * @param successo azione eseguita sull'EDT con il risultato
+     * @param errore azione eseguita sull'EDT se l'operazione termina con un'eccezione
+     * @param <T> tipo del risultato
+     */
+    public static <T> void suEdt(CompletableFuture<T> futuro, Consumer<T> successo, Consumer<Throwable> errore) {
+        futuro.whenComplete((risultato, eccezione) -> SwingUtilities.invokeLater(() -> {
+            if (eccezione == null) {
+                successo.accept(risultato);
+            } else {
+                Throwable causa = eccezione instanceof CompletionException && eccezione.getCause() != null
+                        ? eccezione.getCause()
+                        : eccezione;
+                causa.printStackTrace();
+                errore.accept(causa);
+            }
+        }));
+    }
+}
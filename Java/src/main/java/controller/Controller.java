@@ -2,21 +2,51 @@ package controller;
 
 import gui.*;
 import model.*;
-import dao.*;
-import interfaccedao.*;
+import service.ErroreServizio;
+import service.GeneratoreMiniature;
+import service.Risultato;
+import service.Sessione;
+import service.ToDoService;
+import service.UtenteCaricato;
 
 import javax.swing.*;
 
+import java.awt.*;
+import java.awt.image.BufferedImage;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+import static controller.AccessoDatiAsincrono.esegui;
+import static controller.AccessoDatiAsincrono.suEdt;
 
 /**
- * Controller principale che gestisce la logica dell'applicazione ToDo.
- * Si occupa delle operazioni CRUD sui ToDo, del caricamento utente e della gestione delle bacheche.
+ * Controller principale dell'interfaccia grafica: collega i pannelli Swing al {@link ToDoService}.
+ * <p>
+ * La logica applicativa, i permessi e l'accesso al database sono nel servizio; il controller tiene
+ * la {@link Sessione} dell'utente collegato, mostra dialoghi e messaggi e aggiorna le bacheche in
+ * memoria e le card. Le operazioni del servizio vengono eseguite fuori dall'Event Dispatch Thread
+ * tramite {@link AccessoDatiAsincrono} e i risultati tornano all'interfaccia con
+ * {@code SwingUtilities.invokeLater}. I metodi chiamati dall'interfaccia vanno quindi invocati
+ * sull'EDT e non attendono la fine delle operazioni.
  */
 public class Controller {
 
+    /** Messaggio mostrato quando un'operazione termina con un'eccezione imprevista. */
+    private static final String ERRORE_IMPREVISTO = "Errore di comunicazione con il database.";
+
+    /** Ordine dei ToDo in una bacheca, lo stesso della lettura dal database. */
+    private static final Comparator<ToDo> ORDINE_BACHECA = Comparator.comparingInt(ToDo::getPosizione)
+            .thenComparing(Comparator.comparingInt(ToDo::getId).reversed());
+
     /** Pannello per la bacheca "Università". */
     private final BoardPanel universitaBoard;
 
@@ -26,25 +56,37 @@ public class Controller {
     /** Pannello per la bacheca "Tempo Libero". */
     private final BoardPanel tempoLiberoBoard;
 
-    /** DAO per la gestione degli utenti. */
-    private final IUtenteDAO utenteDAO;
-
-    /** DAO per la gestione delle bacheche. */
-    private final IBachecaDAO bachecaDAO;
+    /** Logica applicativa, condivisa da tutte le operazioni dell'interfaccia. */
+    private final ToDoService servizio;
 
-    /** DAO per la gestione dei ToDo. */
-    private final IToDoDAO toDoDAO;
+    /** Ultimo esito di scrittura seguito per ogni ToDo, per non mostrare più volte l'errore di clic ravvicinati. */
+    private final Map<Integer, CompletableFuture<Boolean>> esitiSeguiti = new HashMap<>();
 
-    /** DAO per la gestione delle condivisioni. */
-    private final ICondivisioneDAO condivisioneDAO = new CondivisioneDAO();
+    /** Sessione dell'utente collegato, null prima del login e dopo il logout. */
+    private Sessione sessione;
 
     /** Utente attualmente autenticato nel sistema. */
     private Utente utenteCorrente;
 
+    /** ToDo scaduti dell'utente appena caricato, da segnalare quando viene mostrato. */
+    private List<ToDo> scadutiDaSegnalare = List.of();
+
+    /** Cursore da cui chiedere le modifiche ai ToDo non ancora applicate alle bacheche in memoria. */
+    private long cursore;
+
+    /** Annulla l'iscrizione alle notifiche delle modifiche, null se nessun utente è collegato. */
+    private Runnable annullaNotifiche;
+
+    /** True mentre una lettura delle modifiche è in corso. */
+    private boolean sincronizzazioneInCorso;
+
+    /** True se durante la lettura in corso è stata chiesta un'altra sincronizzazione. */
+    private boolean sincronizzaDiNuovo;
+
 
     /**
      * Costruttore del Controller.
-     * Inizializza i pannelli bacheca e i DAO per l'accesso ai dati.
+     * Inizializza i pannelli bacheca e il servizio per l'accesso ai dati.
      *
      * @param universitaBoard pannello per la bacheca Università
      * @param lavoroBoard pannello per la bacheca LAVORO
@@ -54,21 +96,19 @@ public class Controller {
         this.universitaBoard = universitaBoard;
         this.lavoroBoard = lavoroBoard;
         this.tempoLiberoBoard = tempoLiberoBoard;
-
-        this.utenteDAO = new UtenteDAO();
-        this.bachecaDAO = new BachecaDAO();
-        this.toDoDAO = new ToDoDAO();
+        this.servizio = new ToDoService();
     }
 
     /**
      * Aggiunge un nuovo ToDo alla bacheca selezionata.
+     * La card compare quando il salvataggio è stato confermato dal database.
      *
      * @param board pannello della bacheca dove aggiungere il ToDo
      */
     public void addNewToDo(BoardPanel board) {
         Bacheca bacheca = board.getBacheca();
 
-        ToDo nuovoToDo = new ToDo("", "", "", null, "", "FFFFFF");
+        ToDo nuovoToDo = new ToDo("", null, "", null, "", "FFFFFF");
 
         ToDoFormDialog dialog = new ToDoFormDialog(nuovoToDo, true, this, getUtenteCorrente(), bacheca.getTipo());
         dialog.setModal(true);
@@ -77,155 +117,279 @@ public class Controller {
         dialog.setVisible(true);
 
         if (dialog.isConfirmed()) {
-            if (!nuovoToDo.getTitolo().isEmpty()) {
-                toDoDAO.salva(nuovoToDo, utenteCorrente.getUsername(), bacheca.getTipo());
-                board.clearToDos();
-                List<ToDo> todos = toDoDAO.trovaPerBacheca(utenteCorrente.getUsername(), bacheca.getTipo());
-                bacheca.setToDoList(todos);
-                todos.forEach(board::addToDo);
-                board.aggiornaBoard();
-            } else {
-                JOptionPane.showMessageDialog(board, "Il titolo non può essere vuoto.");
-            }
+            Sessione s = sessione;
+            TipoBacheca tipo = bacheca.getTipo();
+
+            board.setSalvataggioInCorso(true);
+            conEsito(esegui(() -> servizio.creaToDo(s, nuovoToDo, tipo)), salvato -> {
+                board.setSalvataggioInCorso(false);
+                bacheca.aggiungiToDoInTesta(salvato);
+                board.addToDoInTesta(salvato);
+            }, errore -> {
+                board.setSalvataggioInCorso(false);
+                mostra(board, errore);
+            });
         }
     }
 
     /**
      * Rimuove un ToDo dalla bacheca. Se l'utente è il proprietario viene eliminato completamente,
-     * altrimenti viene rimossa solo la condivisione.
+     * altrimenti viene rimossa solo la condivisione; se il ToDo è visibile perché è condivisa
+     * l'intera bacheca del proprietario, viene proposto di lasciare la bacheca. La card resta
+     * visibile, ma disabilitata, finché il database non conferma l'operazione.
      *
      * @param board pannello della bacheca
      * @param todo ToDo da rimuovere
      */
     public void removeToDo(BoardPanel board, ToDo todo) {
+        Sessione s = sessione;
+        String prop = todo.getProprietario();
+        if (prop == null) {
+            return;
+        }
+        if (s.getUsername().equals(prop)) {
+            confermaERimuovi(board, todo, true);
+            return;
+        }
+
+        board.setToDoInCorso(todo, true);
+        conEsito(esegui(() -> servizio.isInBachecaCondivisa(s, todo)), condivisaBacheca -> {
+            board.setToDoInCorso(todo, false);
+            if (condivisaBacheca) {
+                lasciaBachecaCondivisa(board, prop, todo.getTipoBacheca());
+            } else {
+                confermaERimuovi(board, todo, false);
+            }
+        }, errore -> {
+            board.setToDoInCorso(todo, false);
+            mostra(board, errore);
+        });
+    }
+
+    /**
+     * Chiede conferma ed elimina il ToDo, se l'utente ne è il proprietario, oppure la sua condivisione.
+     *
+     * @param board pannello della bacheca
+     * @param todo ToDo da rimuovere
+     * @param isProprietario true se l'utente corrente è il proprietario del ToDo
+     */
+    private void confermaERimuovi(BoardPanel board, ToDo todo, boolean isProprietario) {
         Bacheca bacheca = board.getBacheca();
+        Sessione s = sessione;
 
         int option = JOptionPane.showConfirmDialog(board,
-                "Sei sicuro di voler rimuovere questo ToDo?",
+                isProprietario
+                        ? "Sei sicuro di voler rimuovere questo ToDo?"
+                        : "Sei sicuro di voler rimuovere questa condivisione?",
                 "Conferma Rimozione",
                 JOptionPane.YES_NO_OPTION,
                 JOptionPane.WARNING_MESSAGE);
 
-        if (option == JOptionPane.YES_OPTION && bacheca != null) {
-            boolean success = false;
-            String prop = todo.getProprietario();
-
-            if (prop != null && prop.equals(utenteCorrente.getUsername())) {
-                boolean condivisioniEliminate = condivisioneDAO.eliminaCondivisioniCollegate(todo.getId());
-                success = toDoDAO.elimina(todo.getId());
-            } else if (prop != null) {
-                success = condivisioneDAO.rimuoviCondivisione(
-                        utenteCorrente.getUsername(),
-                        prop,
-                        bacheca.getTipo().name(),
-                        todo.getTitolo()
-                );
-
-                if (success) {
-                    utenteCorrente.rimuoviToDoCondiviso(todo);
-                }
-            }
-            if (success) {
-                List<ToDo> todos = toDoDAO.trovaPerBacheca(utenteCorrente.getUsername(), bacheca.getTipo());
-                bacheca.setToDoList(todos);
-                board.clearToDos();
-                board.refresh();
+        if (option != JOptionPane.YES_OPTION || bacheca == null) {
+            return;
+        }
+
+        int id = todo.getId();
+        CompletableFuture<Risultato<Void>> rimozione = isProprietario
+                ? esegui(() -> servizio.eliminaToDo(s, todo))
+                : esegui(() -> servizio.lasciaToDoCondiviso(s, id));
+
+        board.setToDoInCorso(todo, true);
+        conEsito(rimozione, fatto -> {
+            if (isProprietario) {
+                bacheca.rimuoviToDo(todo.getId());
             } else {
-                JOptionPane.showMessageDialog(board, "Errore durante l'eliminazione dal database.");
+                utenteCorrente.rimuoviToDoCondiviso(todo);
             }
-        }
+            board.rimuoviCard(todo);
+        }, errore -> {
+            board.setToDoInCorso(todo, false);
+            mostra(board, errore);
+        });
     }
 
     /**
-     * Carica l'utente corrente e tutte le sue bacheche e ToDo.
-     * Mostra avvisi per eventuali ToDo scaduti non completati.
+     * Propone all'utente di lasciare una bacheca condivisa con lui per intero e, se accetta,
+     * rimuove la condivisione e sincronizza le bacheche.
      *
-     * @param username nome utente da caricare
+     * @param board pannello della bacheca in cui sono mostrati i ToDo condivisi
+     * @param proprietario proprietario della bacheca condivisa
+     * @param tipo tipo della bacheca condivisa
      */
-    public void loadUser(String username) {
-        utenteCorrente = utenteDAO.findByUsername(username);
-        if (utenteCorrente == null) {
-            JOptionPane.showMessageDialog(null, "Utente non trovato.");
+    private void lasciaBachecaCondivisa(BoardPanel board, String proprietario, TipoBacheca tipo) {
+        int option = JOptionPane.showConfirmDialog(board,
+                "Questo ToDo fa parte della bacheca " + board.getBoardName() + " di " + proprietario +
+                        ", condivisa con te per intero.\nVuoi lasciare l'intera bacheca?",
+                "Conferma Rimozione",
+                JOptionPane.YES_NO_OPTION,
+                JOptionPane.WARNING_MESSAGE);
+        if (option != JOptionPane.YES_OPTION) {
             return;
         }
 
-        universitaBoard.setBacheca(null);
-        lavoroBoard.setBacheca(null);
-        tempoLiberoBoard.setBacheca(null);
+        Sessione s = sessione;
+        conEsito(esegui(() -> servizio.lasciaBachecaCondivisa(s, proprietario, tipo)),
+                fatto -> sincronizza(), errore -> mostra(board, errore));
+    }
 
-        LocalDate oggi = LocalDate.now();
+    /**
+     * Gestisce la condivisione dell'intera bacheca mostrata nel pannello: mostra tutti gli utenti,
+     * con selezionati quelli che hanno già la condivisione, e applica in un'unica operazione
+     * le nuove condivisioni e le revoche. I ToDo della bacheca, anche quelli creati in seguito,
+     * diventano visibili ai destinatari che accettano la richiesta.
+     *
+     * @param board pannello della bacheca da condividere
+     */
+    public void condividiBacheca(BoardPanel board) {
+        Bacheca bacheca = board.getBacheca();
+        Sessione s = sessione;
+        if (s == null || bacheca == null) return;
+
+        TipoBacheca tipo = bacheca.getTipo();
+        conEsito(esegui(() -> servizio.destinatariBacheca(s, tipo)), destinatari -> {
+            List<String> tutti = destinatari.utenti();
+            List<String> condivisi = destinatari.condivisi();
+            if (tutti.isEmpty()) {
+                JOptionPane.showMessageDialog(board, "Non ci sono altri utenti con cui condividere la bacheca.");
+                return;
+            }
 
-        for (TipoBacheca tipo : TipoBacheca.values()) {
-            Bacheca b = bachecaDAO.findByTipo(username, tipo);
-            if (b == null) continue;
-
-            List<ToDo> todos = toDoDAO.trovaPerBacheca(username, tipo);
-
-            StringBuilder avvisi = new StringBuilder();
-
-            for (ToDo todo : todos) {
-                if (todo.getDataDiScadenza() != null && !todo.getDataDiScadenza().isEmpty()) {
-                    try {
-                        LocalDate dataScadenza = LocalDate.parse(todo.getDataDiScadenza());
-                        if (!dataScadenza.isAfter(oggi)) {
-                            if (todo.getStato() == StatoToDo.COMPLETATO) {
-                                todo.setStato(StatoToDo.NON_COMPLETATO);
-                                toDoDAO.aggiorna(todo, username, tipo);
-                            }
-                            if (todo.getStato() == StatoToDo.NON_COMPLETATO) {
-                                avvisi.append("- ").append(todo.getTitolo()).append("\n");
-                            }
-                        }
-                    } catch (Exception e) {
-                        System.err.println("Errore parsing data: " + todo.getDataDiScadenza());
-                    }
-                }
+            JFrame frame = (JFrame) SwingUtilities.getWindowAncestor(board);
+            SelezioneDestinatariDialog dialog = new SelezioneDestinatariDialog(
+                    frame, "Condividi bacheca " + board.getBoardName(), tutti, condivisi);
+            dialog.setVisible(true);
+            if (!dialog.isConfermato()) {
+                return;
             }
 
-            b.setToDoList(todos);
+            List<String> nuovi = new ArrayList<>(dialog.getSelezionati());
+            nuovi.removeAll(condivisi);
+            List<String> revocati = new ArrayList<>(condivisi);
+            revocati.removeAll(dialog.getSelezionati());
+            if (nuovi.isEmpty() && revocati.isEmpty()) {
+                return;
+            }
 
-            BoardPanel target = switch (tipo) {
-                case UNIVERSITA -> universitaBoard;
-                case LAVORO -> lavoroBoard;
-                case TEMPO_LIBERO -> tempoLiberoBoard;
-            };
+            conEsito(esegui(() -> servizio.aggiornaCondivisioneBacheca(s, tipo, nuovi, revocati)),
+                    risultati -> JOptionPane.showMessageDialog(board, nuovi.isEmpty()
+                            ? "Condivisione della bacheca aggiornata."
+                            : messaggioCondivisioni(risultati)),
+                    errore -> mostra(board, errore));
+        }, errore -> mostra(board, errore));
+    }
 
-            target.setBacheca(b);
+    /**
+     * Ricarica in background l'utente corrente con tutte le sue bacheche e i ToDo, poi aggiorna
+     * i pannelli sull'EDT. Mostra avvisi per eventuali ToDo scaduti non completati.
+     *
+     * @param username nome dell'utente corrente
+     * @param alTermine azione eseguita sull'EDT a caricamento concluso, anche se l'utente non è stato trovato
+     */
+    public void loadUser(String username, Runnable alTermine) {
+        Sessione s = sessione;
+        if (s == null || !s.getUsername().equals(username)) {
+            JOptionPane.showMessageDialog(null, "Utente non trovato.");
+            alTermine.run();
+            return;
+        }
 
-            if (!avvisi.isEmpty()) {
-                JOptionPane.showMessageDialog(null,
-                        "Attenzione! I seguenti ToDo nella bacheca \"" + tipo.name() + "\" sono scaduti e non completati:\n\n" + avvisi,
-                        "ToDo Scaduti",
-                        JOptionPane.WARNING_MESSAGE);
+        LocalDate oggi = LocalDate.now();
+        conEsito(esegui(() -> servizio.caricaUtente(s, oggi)), caricato -> {
+            scadutiDaSegnalare = caricato.scaduti();
+            cursore = caricato.cursore();
+            mostraUtente(caricato.utente(), alTermine);
+        }, errore -> {
+            if (errore.getErrore() == ErroreServizio.NON_TROVATO) {
+                sessione = null;
+                utenteCorrente = null;
+                fermaNotifiche();
+            }
+            mostra(null, errore);
+            alTermine.run();
+        });
+    }
+
+    /**
+     * Imposta come utente corrente un utente già caricato con bacheche e ToDo, ad esempio
+     * dal login, e lo mostra nei pannelli senza ulteriori accessi al database.
+     * Va chiamato sull'EDT. Dopo aver aggiornato la vista mostra gli avvisi per i ToDo scaduti.
+     *
+     * @param utente utente completo di bacheche e ToDo condivisi
+     * @param aggiornaVista azione eseguita dopo aver associato le bacheche ai pannelli
+     */
+    public void mostraUtente(Utente utente, Runnable aggiornaVista) {
+        utenteCorrente = utente;
+
+        universitaBoard.setBacheca(null);
+        lavoroBoard.setBacheca(null);
+        tempoLiberoBoard.setBacheca(null);
+
+        for (Bacheca b : utente.getBacheche()) {
+            getBoardPerTipo(b.getTipo()).setBacheca(b);
+        }
+        aggiornaVista.run();
+
+        // Gli avvisi usano i ToDo scaduti già letti con l'indice, senza scorrere le bacheche
+        Map<TipoBacheca, StringBuilder> avvisi = new EnumMap<>(TipoBacheca.class);
+        for (ToDo todo : scadutiDaSegnalare) {
+            if (todo.getStato() == StatoToDo.NON_COMPLETATO) {
+                avvisi.computeIfAbsent(todo.getTipoBacheca(), t -> new StringBuilder())
+                        .append("- ").append(todo.getTitolo()).append("\n");
             }
         }
+        scadutiDaSegnalare = List.of();
+
+        for (Map.Entry<TipoBacheca, StringBuilder> voce : avvisi.entrySet()) {
+            JOptionPane.showMessageDialog(null,
+                    "Attenzione! I seguenti ToDo nella bacheca \"" + voce.getKey().name() + "\" sono scaduti e non completati:\n\n" + voce.getValue(),
+                    "ToDo Scaduti",
+                    JOptionPane.WARNING_MESSAGE);
+        }
+    }
 
-        List<ToDo> condivisi = toDoDAO.getToDoCondivisiCon(username);
-        utenteCorrente.setToDoCondivisi(condivisi);
+    /**
+     * Restituisce il pannello che visualizza la bacheca del tipo indicato.
+     *
+     * @param tipo tipo di bacheca
+     * @return il pannello corrispondente
+     */
+    private BoardPanel getBoardPerTipo(TipoBacheca tipo) {
+        return switch (tipo) {
+            case UNIVERSITA -> universitaBoard;
+            case LAVORO -> lavoroBoard;
+            case TEMPO_LIBERO -> tempoLiberoBoard;
+        };
     }
 
     /**
      * Effettua il login dell'utente verificando username e password.
+     * La stessa query carica anche bacheche e ToDo, così la dashboard viene mostrata
+     * senza ulteriori accessi al database; da quel momento le bacheche vengono sincronizzate
+     * a ogni modifica notificata dal database. In caso di errore mostra un messaggio.
      *
      * @param username nome utente
      * @param password password utente
      * @param parent riferimento alla finestra principale
-     * @return true se il login ha successo, false altrimenti
-     */
-    public boolean login(String username, String password, MainFrame parent) {
-        Utente utente = utenteDAO.findByUsernameAndPassword(username, password);
-        if (utente != null) {
-            utenteCorrente = utente;
-            parent.showDashboard(username);
-            return true;
-        } else {
-            JOptionPane.showMessageDialog(null, "Credenziali errate");
-            return false;
-        }
+     * @return future completato con true se il login ha successo, false altrimenti
+     */
+    public CompletableFuture<Boolean> login(String username, String password, MainFrame parent) {
+        LocalDate oggi = LocalDate.now();
+        CompletableFuture<Risultato<UtenteCaricato>> accesso = esegui(() -> servizio.accedi(username, password, oggi));
+        conEsito(accesso, caricato -> {
+            sessione = caricato.sessione();
+            utenteCorrente = caricato.utente();
+            scadutiDaSegnalare = caricato.scaduti();
+            cursore = caricato.cursore();
+            parent.showDashboard(caricato.utente());
+            avviaNotifiche();
+        }, errore -> mostra(null, errore));
+        return accesso.thenApply(Risultato::isOk);
     }
 
     /**
-     * Modifica un ToDo già esistente.
+     * Modifica un ToDo già esistente. Durante il salvataggio la card resta disabilitata.
+     * Se nel frattempo il ToDo è stato modificato da un altro utente, chiede se applicare le
+     * modifiche alla versione più recente o scartarle; in ogni caso viene aggiornato solo quel ToDo.
      *
      * @param board pannello della bacheca
      * @param todo ToDo da modificare
@@ -241,103 +405,230 @@ public class Controller {
 
         if (dialog.isConfirmed()) {
             Bacheca bacheca = board.getBacheca();
-            toDoDAO.aggiorna(todo, utenteCorrente.getUsername(), bacheca.getTipo());
-            List<ToDo> todos = toDoDAO.trovaPerBacheca(utenteCorrente.getUsername(), bacheca.getTipo());
-            bacheca.setToDoList(todos);
-            board.setBacheca(bacheca);
-            updateView.run();
+            Sessione s = sessione;
+
+            board.setToDoInCorso(todo, true);
+            conEsito(esegui(() -> servizio.aggiornaToDo(s, todo)), salvato -> {
+                board.setToDoInCorso(todo, false);
+                bacheca.sostituisciToDo(todo);
+                updateView.run();
+            }, errore -> {
+                board.setToDoInCorso(todo, false);
+                if (errore.getErrore() == ErroreServizio.CONFLITTO) {
+                    risolviConflitto(board, todo, errore.getMessaggio());
+                    return;
+                }
+                mostra(board, errore);
+                if (errore.getErrore() == ErroreServizio.NON_TROVATO) {
+                    rimuoviDallaVista(board, todo);
+                } else {
+                    ricaricaToDo(board, todo);
+                }
+            });
         }
     }
+
     /**
-     * Condivide un ToDo con un altro utente.
+     * Gestisce un conflitto di versione nel salvataggio di un ToDo: rilegge la versione più recente
+     * e chiede all'utente se applicarvi le proprie modifiche, riprovando una volta il salvataggio,
+     * oppure scartarle e mostrare la versione del database.
      *
-     * @param destinatario username del destinatario
-     * @param todo ToDo da condividere
-     * @param prop proprietario del ToDo
-     * @param tipo tipo della bacheca
-     * @return true se la condivisione è andata a buon fine, false altrimenti
+     * @param board pannello della bacheca
+     * @param todo copia locale del ToDo, con i campi modificati dall'utente
+     * @param messaggio descrizione del conflitto
      */
-    public boolean condividiToDo(String destinatario, ToDo todo, String prop, TipoBacheca tipo) {
-        String usernameMittente = utenteCorrente.getUsername();
-        String tipoString = tipo.name();
-        String titolo = todo.getTitolo();
+    private void risolviConflitto(BoardPanel board, ToDo todo, String messaggio) {
+        Sessione s = sessione;
+        int id = todo.getId();
+        conEsito(esegui(() -> servizio.leggiToDo(s, id)), recente -> {
+            int scelta = JOptionPane.showConfirmDialog(board,
+                    messaggio + "\nVuoi applicare le tue modifiche alla versione più recente?\n" +
+                            "Scegliendo No le tue modifiche verranno scartate.",
+                    "Conflitto di modifica",
+                    JOptionPane.YES_NO_OPTION,
+                    JOptionPane.WARNING_MESSAGE);
+            if (scelta != JOptionPane.YES_OPTION) {
+                sostituisciNellaVista(board, recente);
+                return;
+            }
 
-        if (destinatario.equalsIgnoreCase(usernameMittente)) {
-            JOptionPane.showMessageDialog(null, "Non puoi condividere un ToDo con te stesso.");
-            return false;
-        }
+            board.setToDoInCorso(todo, true);
+            conEsito(esegui(() -> servizio.applicaModifiche(s, todo, recente)), salvato -> {
+                board.setToDoInCorso(todo, false);
+                sostituisciNellaVista(board, salvato);
+            }, errore -> {
+                board.setToDoInCorso(todo, false);
+                mostra(board, errore);
+                ricaricaToDo(board, todo);
+            });
+        }, errore -> {
+            mostra(board, errore);
+            if (errore.getErrore() == ErroreServizio.NON_TROVATO) {
+                rimuoviDallaVista(board, todo);
+            }
+        });
+    }
 
-        UtenteDAO utenteDAO = new UtenteDAO();
-        if (!utenteDAO.esisteUtente(destinatario)) {
-            JOptionPane.showMessageDialog(null, "L'utente destinatario non esiste.");
-            return false;
-        }
+    /**
+     * Rilegge dal database un solo ToDo e ne sostituisce la copia locale e la card, oppure la
+     * rimuove se il ToDo non esiste più.
+     *
+     * @param board pannello della bacheca che mostra il ToDo
+     * @param todo copia locale del ToDo da rileggere
+     */
+    private void ricaricaToDo(BoardPanel board, ToDo todo) {
+        Sessione s = sessione;
+        int id = todo.getId();
+        conEsito(esegui(() -> servizio.leggiToDo(s, id)), letto -> sostituisciNellaVista(board, letto), errore -> {
+            if (errore.getErrore() == ErroreServizio.NON_TROVATO) {
+                rimuoviDallaVista(board, todo);
+            } else {
+                mostra(board, errore);
+            }
+        });
+    }
 
-        if (condivisioneDAO.esisteCondivisione(destinatario, prop, tipoString, titolo)) {
-            JOptionPane.showMessageDialog(null, "Hai già condiviso questo ToDo con questo utente.");
-            return false;
+    /**
+     * Sostituisce la copia locale di un ToDo, nella bacheca o tra quelli condivisi, e ne ridisegna la card.
+     *
+     * @param board pannello della bacheca che mostra il ToDo
+     * @param recente la copia aggiornata del ToDo
+     */
+    private void sostituisciNellaVista(BoardPanel board, ToDo recente) {
+        Bacheca bacheca = board.getBacheca();
+        if (bacheca != null && bacheca.contieneToDo(recente.getId())) {
+            bacheca.sostituisciToDo(recente);
+        } else if (utenteCorrente != null) {
+            utenteCorrente.sostituisciToDoCondiviso(recente);
         }
+        board.aggiornaToDo(recente);
+    }
 
-        boolean success = condivisioneDAO.condividi(destinatario, prop, tipoString, titolo);
-        if (success) {
-            JOptionPane.showMessageDialog(null, "ToDo condiviso con successo.");
-        } else {
-            JOptionPane.showMessageDialog(null, "Errore durante la condivisione.");
+    /**
+     * Toglie dalla bacheca, o dai ToDo condivisi, e dalla vista un ToDo che non esiste più.
+     *
+     * @param board pannello della bacheca che mostra il ToDo
+     * @param todo il ToDo da togliere
+     */
+    private void rimuoviDallaVista(BoardPanel board, ToDo todo) {
+        Bacheca bacheca = board.getBacheca();
+        if (bacheca != null) {
+            bacheca.rimuoviToDo(todo.getId());
         }
+        if (utenteCorrente != null) {
+            utenteCorrente.rimuoviToDoCondiviso(todo);
+        }
+        board.rimuoviCard(todo);
+    }
 
-        return success;
+    /**
+     * Legge e decodifica in background l'immagine completa di un ToDo, per la visualizzazione
+     * a dimensione piena. I byte letti non vengono conservati nel ToDo.
+     *
+     * @param todo ToDo di cui leggere l'immagine
+     * @return future completato con l'immagine decodificata, oppure null se assente
+     */
+    public CompletableFuture<BufferedImage> caricaImmagineCompleta(ToDo todo) {
+        Sessione s = sessione;
+        return valore(esegui(() -> servizio.caricaImmagine(s, todo))).thenApply(GeneratoreMiniature::decodifica);
     }
 
     /**
-     * Verifica se un ToDo è stato condiviso con un utente.
+     * Restituisce la miniatura dell'immagine di un ToDo. Per i ToDo salvati prima
+     * dell'introduzione delle miniature, la genera in background dall'originale e la salva.
      *
-     * @param utente destinatario
-     * @param todo ToDo in questione
-     * @param prop proprietario
-     * @param tipo tipo di bacheca
-     * @return true se esiste la condivisione
+     * @param todo ToDo di cui ottenere la miniatura
+     * @return future completato con i byte della miniatura, oppure null se il ToDo non ha immagine
      */
-    public boolean isToDoCondiviso(String utente, ToDo todo, String prop, TipoBacheca tipo) {
-        return condivisioneDAO.esisteCondivisione(utente, prop, tipo.name(), todo.getTitolo());
+    public CompletableFuture<byte[]> caricaMiniatura(ToDo todo) {
+        if (todo.getMiniatura() != null || !todo.haImmagine()) {
+            return CompletableFuture.completedFuture(todo.getMiniatura());
+        }
+        Sessione s = sessione;
+        return valore(esegui(() -> servizio.caricaMiniatura(s, todo)));
     }
 
     /**
-     * Rimuove una condivisione esistente per un utente.
+     * Condivide un ToDo con uno o più utenti in un'unica operazione. L'esito viene comunicato
+     * con un messaggio sull'EDT, con il dettaglio dei destinatari per cui la condivisione non è riuscita.
      *
-     * @param utente destinatario
-     * @param todo ToDo condiviso
-     * @param prop proprietario
-     * @param tipo tipo di bacheca
-     * @return true se la rimozione è andata a buon fine
+     * @param destinatari username dei destinatari
+     * @param todo ToDo da condividere
+     * @return future completato con true se la condivisione è riuscita per tutti i destinatari, false altrimenti
      */
-    public boolean rimuoviCondivisione(String utente, ToDo todo, String prop, TipoBacheca tipo) {
-        return condivisioneDAO.rimuoviCondivisione(utente, prop, tipo.name(), todo.getTitolo());
+    public CompletableFuture<Boolean> condividiToDo(List<String> destinatari, ToDo todo) {
+        Sessione s = sessione;
+        int id = todo.getId();
+
+        CompletableFuture<Risultato<Map<String, EsitoCondivisione>>> esiti =
+                esegui(() -> servizio.condividiToDo(s, id, destinatari));
+        conEsito(esiti,
+                risultati -> JOptionPane.showMessageDialog(null, messaggioCondivisioni(risultati)),
+                errore -> mostra(null, errore));
+        return esiti.thenApply(r -> r.isOk()
+                && r.getValore().values().stream().allMatch(esito -> esito == EsitoCondivisione.OK));
     }
 
     /**
-     * Registra un nuovo utente nel sistema.
+     * Restituisce gli utenti con cui un ToDo può ancora essere condiviso: tutti gli utenti
+     * registrati tranne quello corrente e quelli che hanno già ricevuto la condivisione.
      *
-     * @param username nome utente
-     * @param password password
-     * @return true se la registrazione ha successo, false se l'utente esiste già
+     * @param todo ToDo da condividere
+     * @return future completato con la lista ordinata degli username
      */
-    public boolean register(String username, String password) {
-        username = username.trim();
+    public CompletableFuture<List<String>> getPossibiliDestinatari(ToDo todo) {
+        Sessione s = sessione;
+        int id = todo.getId();
+        return valore(esegui(() -> servizio.possibiliDestinatari(s, id)));
+    }
 
-        if (utenteDAO.findByUsername(username) != null) {
-            return false;
-        } else {
-            Utente nuovoUtente = new Utente(username, password);
-            boolean result = utenteDAO.salvaUtente(nuovoUtente);
+    /**
+     * Compone il messaggio riepilogativo di una condivisione con più destinatari.
+     *
+     * @param esiti esito per ciascun destinatario
+     * @return il messaggio da mostrare
+     */
+    private static String messaggioCondivisioni(Map<String, EsitoCondivisione> esiti) {
+        if (esiti.size() == 1) {
+            return messaggioCondivisione(esiti.values().iterator().next());
+        }
 
-            if (result) {
-                bachecaDAO.salvaBacheca(new Bacheca(TipoBacheca.UNIVERSITA, "Bacheca Università"), username);
-                bachecaDAO.salvaBacheca(new Bacheca(TipoBacheca.LAVORO, "Bacheca LAVORO"), username);
-                bachecaDAO.salvaBacheca(new Bacheca(TipoBacheca.TEMPO_LIBERO, "Bacheca Tempo Libero"), username);
+        StringBuilder falliti = new StringBuilder();
+        esiti.forEach((destinatario, esito) -> {
+            if (esito != EsitoCondivisione.OK) {
+                falliti.append("\n").append(destinatario).append(": ").append(messaggioCondivisione(esito));
             }
+        });
+        return falliti.isEmpty()
+                ? "ToDo condiviso con successo con " + esiti.size() + " utenti."
+                : "Condivisione non riuscita per alcuni utenti:" + falliti;
+    }
 
-            return result;
-        }
+    /**
+     * Restituisce il messaggio da mostrare all'utente per l'esito di una condivisione.
+     *
+     * @param esito esito restituito dal servizio
+     * @return il messaggio corrispondente
+     */
+    private static String messaggioCondivisione(EsitoCondivisione esito) {
+        return switch (esito) {
+            case OK -> "ToDo condiviso con successo.";
+            case UTENTE_INESISTENTE -> "L'utente destinatario non esiste.";
+            case GIA_CONDIVISO -> "Hai già condiviso questo ToDo con questo utente.";
+            case CONDIVISIONE_CON_SE_STESSO -> "Non puoi condividere un ToDo con te stesso.";
+            case TODO_NON_TROVATO -> "Il ToDo non esiste più o non ti appartiene.";
+        };
+    }
+
+    /**
+     * Registra un nuovo utente nel sistema.
+     *
+     * @param username nome utente
+     * @param password password
+     * @return future completato con l'esito della registrazione
+     */
+    public CompletableFuture<Risultato<Void>> register(String username, String password) {
+        return esegui(() -> servizio.registra(username, password));
     }
 
     /**
@@ -351,9 +642,15 @@ public class Controller {
 
     /**
      * Esegue il logout dell'utente corrente e resetta le bacheche.
+     * Le modifiche ancora in coda vengono scritte subito, in background.
      */
     public void logout() {
+        if (sessione != null) {
+            servizio.chiudiSessione(sessione);
+        }
+        sessione = null;
         utenteCorrente = null;
+        fermaNotifiche();
 
         universitaBoard.setBacheca(null);
         universitaBoard.clearToDos();
@@ -366,149 +663,360 @@ public class Controller {
     }
 
     /**
-     * Inverte lo stato di completamento di un ToDo e aggiorna il database e la GUI.
+     * Inverte lo stato di completamento di un ToDo. La card mostra subito il nuovo stato
+     * (aggiornamento ottimistico) e la scrittura viene accodata dal servizio: più clic
+     * ravvicinati, anche su ToDo diversi, diventano un'unica transazione. Se la scrittura fallisce,
+     * ad esempio perché il ToDo è stato modificato o eliminato da un altro utente, viene riletto
+     * dal database solo quel ToDo. Di più clic ravvicinati sullo stesso ToDo viene seguito solo
+     * l'esito dell'ultimo.
      *
      * @param board pannello contenente il ToDo
      * @param todo ToDo da modificare
      */
     public void toggleCompletamento(BoardPanel board, ToDo todo) {
-        if (todo.getStato() == StatoToDo.COMPLETATO) {
-            todo.setStato(StatoToDo.NON_COMPLETATO);
-        } else {
-            todo.setStato(StatoToDo.COMPLETATO);
+        // Il servizio calcola il nuovo stato da quello attuale: va chiamato prima di mostrarlo
+        StatoToDo nuovo = todo.getStato() == StatoToDo.COMPLETATO ? StatoToDo.NON_COMPLETATO : StatoToDo.COMPLETATO;
+        CompletableFuture<Boolean> esito = servizio.invertiCompletamento(sessione, todo);
+        todo.setStato(nuovo);
+        board.aggiornaToDo(todo);
+
+        int id = todo.getId();
+        esitiSeguiti.put(id, esito);
+        suEdt(esito, salvato -> {
+            if (!esitiSeguiti.remove(id, esito)) {
+                return;
+            }
+            if (!salvato) {
+                JOptionPane.showMessageDialog(board,
+                        "Impossibile aggiornare il ToDo: potrebbe essere stato modificato o eliminato da un altro utente. Il ToDo verrà ricaricato.");
+                ricaricaToDo(board, todo);
+            }
+        }, errore -> {
+            if (!esitiSeguiti.remove(id, esito)) {
+                return;
+            }
+            JOptionPane.showMessageDialog(board, "Impossibile aggiornare il ToDo: il ToDo verrà ricaricato.");
+            ricaricaToDo(board, todo);
+        });
+    }
+
+    /**
+     * Legge in background solo le modifiche ai ToDo avvenute dopo l'ultimo caricamento o la
+     * sincronizzazione precedente e le applica alle bacheche in memoria e alle card: il costo
+     * dipende dal numero di modifiche, non dalla dimensione delle bacheche. Viene eseguita quando
+     * il database notifica una modifica a un ToDo visibile all'utente, anche da parte di altri
+     * utenti, e dopo le operazioni che cambiano l'insieme dei ToDo visibili, ad esempio accettando
+     * una condivisione. Se una lettura è già in corso ne viene eseguita un'altra al suo termine.
+     * Un errore non viene mostrato: le stesse modifiche vengono lette alla sincronizzazione successiva.
+     * Se il cursore è più vecchio delle rimozioni conservate dal database l'utente viene ricaricato per intero.
+     */
+    public void sincronizza() {
+        Sessione s = sessione;
+        Utente utente = utenteCorrente;
+        if (s == null || utente == null) return;
+        if (sincronizzazioneInCorso) {
+            sincronizzaDiNuovo = true;
+            return;
         }
 
-        Bacheca bacheca = board.getBacheca();
-        toDoDAO.aggiorna(todo, utenteCorrente.getUsername(), bacheca.getTipo());
+        sincronizzazioneInCorso = true;
+        long da = cursore;
+        conEsito(esegui(() -> servizio.modificheDa(s, da)), modifiche -> {
+            // Nel frattempo l'utente può essere stato ricaricato per intero o essere uscito
+            if (utente == utenteCorrente && modifiche.ricaricaNecessaria()) {
+                loadUser(utente.getUsername(), () -> {
+                    ricostruisciPannelli();
+                    fineSincronizzazione();
+                });
+                return;
+            }
+            if (utente == utenteCorrente) {
+                applicaModifiche(utente, modifiche);
+                cursore = modifiche.cursore();
+            }
+            fineSincronizzazione();
+        }, errore -> fineSincronizzazione());
+    }
+
+    /**
+     * Iscrive il controller alle notifiche delle modifiche per l'utente collegato e sincronizza
+     * una prima volta, per le modifiche avvenute tra il caricamento e l'iscrizione. Le notifiche
+     * arrivano su un thread di ascolto e vengono riportate sull'EDT.
+     */
+    private void avviaNotifiche() {
+        fermaNotifiche();
+        annullaNotifiche = servizio.osservaModifiche(sessione, ids -> SwingUtilities.invokeLater(this::sincronizza));
+        // Accodata dopo la visualizzazione dell'utente, che associa le bacheche ai pannelli
+        SwingUtilities.invokeLater(this::sincronizza);
+    }
 
-        List<ToDo> todos = toDoDAO.trovaPerBacheca(utenteCorrente.getUsername(), bacheca.getTipo());
-        bacheca.setToDoList(todos);
-        board.setBacheca(bacheca);
+    /**
+     * Annulla l'iscrizione alle notifiche delle modifiche, se attiva.
+     */
+    private void fermaNotifiche() {
+        if (annullaNotifiche != null) {
+            annullaNotifiche.run();
+            annullaNotifiche = null;
+        }
     }
 
     /**
-     * Restituisce l'elenco delle richieste pendenti per l'utente corrente.
-     *
-     * @return lista di array contenenti i dati delle richieste
+     * Ricostruisce i tre pannelli dalle bacheche dell'utente corrente, dopo un ricaricamento completo.
      */
-    public List<String[]> getRichiestePendenti() {
-        if (utenteCorrente == null) return new ArrayList<>();
-        return ((CondivisioneDAO) condivisioneDAO).getRichiestePendentiPerUtente(utenteCorrente.getUsername());
+    private void ricostruisciPannelli() {
+        Utente utente = utenteCorrente;
+        if (utente == null) return;
+        for (BoardPanel board : List.of(universitaBoard, lavoroBoard, tempoLiberoBoard)) {
+            board.setUtenteCorrente(utente);
+            board.aggiornaBoard();
+        }
     }
 
     /**
-     * Accetta una richiesta di condivisione, aggiornando il suo stato a "ACCEPTED".
-     *
-     * @param destinatario destinatario della condivisione
-     * @param proprietario proprietario del ToDo
-     * @param tipoBacheca tipo della bacheca
-     * @param titoloToDo titolo del ToDo condiviso
-     * @return true se l'aggiornamento ha avuto successo
+     * Conclude una sincronizzazione, avviando quella chiesta nel frattempo.
      */
-    public boolean accettaRichiesta(String destinatario, String proprietario, String tipoBacheca, String titoloToDo) {
-        return ((CondivisioneDAO) condivisioneDAO).aggiornaStatoRichiesta(destinatario, proprietario, tipoBacheca, titoloToDo, "ACCEPTED");
+    private void fineSincronizzazione() {
+        sincronizzazioneInCorso = false;
+        if (sincronizzaDiNuovo) {
+            sincronizzaDiNuovo = false;
+            sincronizza();
+        }
     }
 
     /**
-     * Rifiuta una richiesta di condivisione, aggiornando il suo stato a "REJECTED".
+     * Applica alle bacheche in memoria e alle card le modifiche lette dal database. Le card dei
+     * ToDo modificati vengono ridisegnate singolarmente; una bacheca viene ricostruita solo se
+     * cambia l'insieme dei suoi ToDo o il loro ordine.
      *
-     * @param destinatario destinatario della condivisione
-     * @param proprietario proprietario del ToDo
-     * @param tipoBacheca tipo della bacheca
-     * @param titoloToDo titolo del ToDo condiviso
-     * @return true se l'aggiornamento ha avuto successo
+     * @param utente utente corrente
+     * @param modifiche modifiche successive al cursore
      */
-    public boolean rifiutaRichiesta(String destinatario, String proprietario, String tipoBacheca, String titoloToDo) {
-        return ((CondivisioneDAO) condivisioneDAO).aggiornaStatoRichiesta(destinatario, proprietario, tipoBacheca, titoloToDo, "REJECTED");
+    private void applicaModifiche(Utente utente, ModificheToDo modifiche) {
+        Set<BoardPanel> daRicostruire = new HashSet<>();
+
+        for (int id : modifiche.eliminati()) {
+            for (Bacheca bacheca : utente.getBacheche()) {
+                ToDo locale = bacheca.getToDo(id);
+                if (locale != null) {
+                    bacheca.rimuoviToDo(id);
+                    getBoardPerTipo(bacheca.getTipo()).rimuoviCard(locale);
+                }
+            }
+            ToDo condiviso = utente.getToDoCondiviso(id);
+            if (condiviso != null) {
+                utente.rimuoviToDoCondiviso(condiviso);
+                getBoardPerTipo(condiviso.getTipoBacheca()).rimuoviCard(condiviso);
+            }
+        }
+        for (ToDo todo : modifiche.inseriti()) {
+            applicaModifica(utente, todo, daRicostruire);
+        }
+        for (ToDo todo : modifiche.aggiornati()) {
+            applicaModifica(utente, todo, daRicostruire);
+        }
+
+        for (BoardPanel board : daRicostruire) {
+            Bacheca bacheca = board.getBacheca();
+            if (bacheca != null) {
+                List<ToDo> ordinati = new ArrayList<>(bacheca.getToDoList());
+                ordinati.sort(ORDINE_BACHECA);
+                bacheca.setToDoList(ordinati);
+            }
+            board.refresh();
+        }
     }
 
     /**
-     * Carica la bacheca di un dato tipo per l'utente corrente, inclusi i ToDo.
+     * Sostituisce, o aggiunge, la copia locale di un ToDo nuovo o modificato: nella bacheca del suo
+     * tipo se l'utente ne è il proprietario, altrimenti tra i ToDo condivisi.
      *
-     * @param tipo tipo di bacheca
-     * @return bacheca caricata, oppure null se non trovata
+     * @param utente utente corrente
+     * @param recente la copia letta dal database
+     * @param daRicostruire pannelli da ricostruire perché cambia l'insieme o l'ordine dei ToDo
      */
-    public Bacheca getBachecaPerTipo(TipoBacheca tipo) {
-        if (utenteCorrente == null) return null;
+    private void applicaModifica(Utente utente, ToDo recente, Set<BoardPanel> daRicostruire) {
+        BoardPanel board = getBoardPerTipo(recente.getTipoBacheca());
+
+        if (!utente.getUsername().equals(recente.getProprietario())) {
+            ToDo locale = utente.getToDoCondiviso(recente.getId());
+            if (locale == null) {
+                utente.aggiungiToDoCondiviso(recente);
+                daRicostruire.add(board);
+            } else {
+                utente.sostituisciToDoCondiviso(recente);
+                if (locale.getTipoBacheca() == recente.getTipoBacheca()) {
+                    board.aggiornaToDo(recente);
+                } else {
+                    daRicostruire.add(board);
+                    daRicostruire.add(getBoardPerTipo(locale.getTipoBacheca()));
+                }
+            }
+            return;
+        }
+
+        Bacheca bacheca = board.getBacheca();
+        ToDo locale = null;
+        for (Bacheca altra : utente.getBacheche()) {
+            ToDo trovato = altra.getToDo(recente.getId());
+            if (trovato == null) {
+                continue;
+            }
+            if (altra == bacheca) {
+                locale = trovato;
+            } else {
+                // Il ToDo è stato spostato in un'altra bacheca
+                altra.rimuoviToDo(recente.getId());
+                getBoardPerTipo(altra.getTipo()).rimuoviCard(trovato);
+            }
+        }
+        if (bacheca == null) {
+            return;
+        }
 
-        Bacheca b = bachecaDAO.findByTipo(utenteCorrente.getUsername(), tipo);
-        if (b != null) {
-            List<ToDo> todos = toDoDAO.trovaPerBacheca(utenteCorrente.getUsername(), tipo);
-            b.setToDoList(todos);
+        bacheca.sostituisciToDo(recente);
+        if (locale != null && locale.getPosizione() == recente.getPosizione()) {
+            board.aggiornaToDo(recente);
+        } else {
+            daRicostruire.add(board);
         }
-        return b;
     }
 
     /**
-     * Restituisce la lista dei ToDo condivisi con l'utente specificato.
+     * Restituisce l'elenco delle richieste pendenti per l'utente corrente: prima quelle di intere
+     * bacheche, poi quelle dei singoli ToDo.
      *
-     * @param username nome dell'utente
-     * @return lista di ToDo condivisi
+     * @return future completato con la lista delle richieste
      */
-    public List<ToDo> getToDoCondivisi(String username) {
-        return ((ToDoDAO) toDoDAO).getToDoCondivisiCon(username);
+    public CompletableFuture<List<RichiestaCondivisione>> getRichiestePendenti() {
+        Sessione s = sessione;
+        if (s == null) return CompletableFuture.completedFuture(new ArrayList<>());
+        return valore(esegui(() -> servizio.richiestePendenti(s)));
     }
 
     /**
-     * Restituisce la lista degli username degli utenti con cui il ToDo è stato condiviso.
+     * Accetta una richiesta di condivisione dell'utente corrente.
      *
-     * @param todo Il ToDo per cui recuperare gli utenti condivisi
-     * @return Lista di username degli utenti destinatari della condivisione
+     * @param idToDo ID del ToDo condiviso
+     * @return future completato con true se l'aggiornamento ha avuto successo
+     */
+    public CompletableFuture<Boolean> accettaRichiesta(int idToDo) {
+        Sessione s = sessione;
+        return esegui(() -> servizio.rispondiRichiesta(s, idToDo, true)).thenApply(Risultato::isOk);
+    }
+
+    /**
+     * Rifiuta una richiesta di condivisione dell'utente corrente.
+     *
+     * @param idToDo ID del ToDo condiviso
+     * @return future completato con true se l'aggiornamento ha avuto successo
      */
-    public List<String> getUtentiCondivisi(ToDo todo) {
-        return condivisioneDAO.getUtentiCondivisi(
-                todo.getProprietario(),
-                todo.getTipoBacheca().name(),
-                todo.getTitolo()
-        );
+    public CompletableFuture<Boolean> rifiutaRichiesta(int idToDo) {
+        Sessione s = sessione;
+        return esegui(() -> servizio.rispondiRichiesta(s, idToDo, false)).thenApply(Risultato::isOk);
     }
 
     /**
-     * Rimuove la condivisione del ToDo per un determinato destinatario.
+     * Accetta o rifiuta la richiesta di condivisione di un'intera bacheca.
      *
-     * @param destinatario Lo username dell’utente da rimuovere dalla condivisione
-     * @param todo Il ToDo da cui rimuovere la condivisione
-     * @return true se la rimozione ha avuto successo, false altrimenti
+     * @param proprietario proprietario della bacheca
+     * @param tipo tipo della bacheca
+     * @param accetta true per accettare la richiesta, false per rifiutarla
+     * @return future completato con true se l'aggiornamento ha avuto successo
+     */
+    public CompletableFuture<Boolean> rispondiRichiestaBacheca(String proprietario, TipoBacheca tipo, boolean accetta) {
+        Sessione s = sessione;
+        return esegui(() -> servizio.rispondiRichiestaBacheca(s, proprietario, tipo, accetta)).thenApply(Risultato::isOk);
+    }
+
+    /**
+     * Restituisce la lista degli username degli utenti con cui il ToDo è stato condiviso.
+     *
+     * @param todo Il ToDo per cui recuperare gli utenti condivisi
+     * @return future completato con la lista di username degli utenti destinatari della condivisione
      */
-    public boolean rimuoviCondivisione(String destinatario, ToDo todo) {
-        return condivisioneDAO.rimuoviCondivisione(
-                destinatario,
-                todo.getProprietario(),
-                todo.getTipoBacheca().name(),
-                todo.getTitolo()
-        );
+    public CompletableFuture<List<String>> getUtentiCondivisi(ToDo todo) {
+        Sessione s = sessione;
+        int id = todo.getId();
+        return valore(esegui(() -> servizio.utentiCondivisi(s, id)));
     }
 
     /**
-     * Rimuove la condivisione del ToDo per tutti gli utenti specificati.
+     * Rimuove la condivisione del ToDo per tutti gli utenti specificati, in un'unica operazione.
      *
      * @param todo Il ToDo da cui rimuovere le condivisioni
      * @param utentiDaRimuovere Lista di username degli utenti da rimuovere dalla condivisione
+     * @return future completato con true se le rimozioni sono andate a buon fine, false altrimenti
      */
-    public void rimuoviCondivisioni(ToDo todo, List<String> utentiDaRimuovere) {
-        for (String destinatario : utentiDaRimuovere) {
-            condivisioneDAO.rimuoviCondivisione(
-                    destinatario,
-                    todo.getProprietario(),
-                    todo.getTipoBacheca().name(),
-                    todo.getTitolo()
-            );
-        }
+    public CompletableFuture<Boolean> rimuoviCondivisioni(ToDo todo, List<String> utentiDaRimuovere) {
+        Sessione s = sessione;
+        int id = todo.getId();
+        return esegui(() -> servizio.rimuoviCondivisioni(s, id, utentiDaRimuovere)).thenApply(Risultato::isOk);
     }
-    
+
 
     /**
-    * Elimina l'utente attualmente autenticato dal sistema utilizzando UtenteDAO.
+    * Elimina l'utente attualmente autenticato dal sistema.
     * Questo metodo cancella l'utente dal database e resetta lo stato dell'utente corrente.
+    *
+    * @param alSuccesso azione eseguita sull'EDT dopo l'eliminazione
     */
-    public void eliminaUtente() {
-       if (utenteCorrente != null) {
-           boolean successo = utenteDAO.eliminaUtente(utenteCorrente.getUsername());
-           if (successo) {
-              utenteCorrente = null;
-          } else {
-              JOptionPane.showMessageDialog(null, "Errore durante l'eliminazione dell'utente.");
-         }
-      }
+    public void eliminaUtente(Runnable alSuccesso) {
+       Sessione s = sessione;
+       if (s == null) {
+           return;
+       }
+       conEsito(esegui(() -> servizio.eliminaUtente(s)), fatto -> {
+           sessione = null;
+           utenteCorrente = null;
+           fermaNotifiche();
+           alSuccesso.run();
+       }, errore -> mostra(null, errore));
    }
+
+    /**
+     * Pubblica sull'EDT il risultato di un'operazione del servizio. Un'eccezione imprevista
+     * viene trattata come un errore del database.
+     *
+     * @param futuro operazione in corso
+     * @param successo azione eseguita sull'EDT con il valore prodotto
+     * @param errore azione eseguita sull'EDT con il risultato fallito
+     * @param <T> tipo del valore prodotto
+     */
+    private static <T> void conEsito(CompletableFuture<Risultato<T>> futuro, Consumer<T> successo,
+                                     Consumer<Risultato<T>> errore) {
+        suEdt(futuro, risultato -> {
+            if (risultato.isOk()) {
+                successo.accept(risultato.getValore());
+            } else {
+                errore.accept(risultato);
+            }
+        }, eccezione -> errore.accept(Risultato.errore(ErroreServizio.DATABASE, ERRORE_IMPREVISTO)));
+    }
+
+    /**
+     * Restituisce il valore di un'operazione del servizio, facendo fallire il future se l'operazione
+     * non è riuscita. Serve ai dialoghi che gestiscono il solo caso di errore.
+     *
+     * @param futuro operazione in corso
+     * @param <T> tipo del valore prodotto
+     * @return future completato con il valore prodotto
+     */
+    private static <T> CompletableFuture<T> valore(CompletableFuture<Risultato<T>> futuro) {
+        return futuro.thenApply(risultato -> {
+            if (!risultato.isOk()) {
+                throw new IllegalStateException(risultato.getErrore() + ": " + risultato.getMessaggio());
+            }
+            return risultato.getValore();
+        });
+    }
+
+    /**
+     * Mostra all'utente il messaggio di un'operazione non riuscita.
+     *
+     * @param parent componente su cui centrare il messaggio, oppure null
+     * @param errore il risultato fallito
+     */
+    private static void mostra(Component parent, Risultato<?> errore) {
+        JOptionPane.showMessageDialog(parent, errore.getMessaggio());
+    }
 }
@@ -0,0 +1,86 @@
+package dao;
+
+import interfaccedao.IBachecaDAO;
+import model.Bacheca;
+import model.TipoBacheca;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link IBachecaDAO} che tiene in cache le bacheche di ogni utente, che cambiano quasi solo alla
+ * registrazione, e delega le scritture a un altro DAO.
+ * <p>
+ * Anche la ricerca per tipo viene servita dalle bacheche in cache dell'utente. Il salvataggio di
+ * una bacheca tramite questo DAO invalida le bacheche del proprietario. Le bacheche in cache non
+ * escono mai dal DAO: ogni lettura restituisce copie senza ToDo.
+ */
+public class BachecaDAOConCache implements IBachecaDAO {
+
+    /** Numero massimo di utenti di cui tenere in cache le bacheche. */
+    private static final int CAPACITA = 1_000;
+
+    /** Durata massima delle bacheche di un utente in cache (ms). */
+    private static final long DURATA_MS = 300_000;
+
+    private final IBachecaDAO dao;
+    private final CacheEntita<String, List<Bacheca>> perUtente = new CacheEntita<>("bacheca", CAPACITA, DURATA_MS);
+
+    /**
+     * Crea il DAO con cache sopra quello indicato.
+     *
+     * @param dao DAO che accede al database
+     */
+    public BachecaDAOConCache(IBachecaDAO dao) {
+        this.dao = dao;
+    }
+
+    /**
+     * Restituisce le metriche della cache delle bacheche.
+     *
+     * @return statistiche della cache
+     */
+    public StatisticheCache getStatisticheCache() {
+        return perUtente.getStatistiche();
+    }
+
+    @Override
+    public List<Bacheca> findByUtente(String username) {
+        List<Bacheca> copie = new ArrayList<>();
+        for (Bacheca bacheca : bacheche(username)) {
+            copie.add(new Bacheca(bacheca.getTipo(), bacheca.getDescrizione()));
+        }
+        return copie;
+    }
+
+    @Override
+    public Bacheca findByTipo(String username, TipoBacheca tipo) {
+        for (Bacheca bacheca : bacheche(username)) {
+            if (bacheca.getTipo() == tipo) {
+                return new Bacheca(bacheca.getTipo(), bacheca.getDescrizione());
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public boolean salvaBacheca(Bacheca bacheca, String proprietario) {
+        try {
+            return dao.salvaBacheca(bacheca, proprietario);
+        } finally {
+            perUtente.invalida(proprietario);
+        }
+    }
+
+    /**
+     * Restituisce le bacheche in cache dell'utente, caricandole se necessario.
+     * Una lista vuota può indicare un errore di lettura e non viene memorizzata.
+     */
+    private List<Bacheca> bacheche(String username) {
+        List<Bacheca> bacheche = perUtente.leggi(username, u -> {
+            List<Bacheca> lette = dao.findByUtente(u);
+            return lette.isEmpty() ? null : List.copyOf(lette);
+        });
+        return bacheche != null ? bacheche : List.of();
+    }
+}
@@ -0,0 +1,224 @@
+package dao;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Cache limitata in dimensione e in durata per le entità lette dai DAO, con politica LRU a
+ * due segmenti (segmented LRU).
+ * <p>
+ * Una voce nuova entra nel segmento di prova; se viene letta di nuovo passa al segmento protetto,
+ * che occupa la maggior parte della capacità. Quando il segmento protetto è pieno la sua voce usata
+ * meno di recente torna in prova, e quando è piena la prova viene espulsa la sua voce meno recente.
+ * Così una scansione di molte entità lette una sola volta non scaccia quelle lette spesso.
+ * Ogni voce scade comunque dopo la durata indicata, che limita il ritardo con cui si vedono le
+ * modifiche non passate dal DAO che usa la cache.
+ * <p>
+ * I valori null non vengono memorizzati: per i DAO indicano un'entità inesistente o un errore.
+ * La cache è thread-safe; il caricamento di un valore avviene fuori dal lock e non viene
+ * memorizzato se nel frattempo la cache è stata invalidata, per non riportare un valore superato.
+ *
+ * @param <K> tipo della chiave
+ * @param <V> tipo del valore, da considerare immutabile finché è in cache
+ */
+public final class CacheEntita<K, V> {
+
+    /** Quota della capacità riservata al segmento protetto. */
+    private static final double QUOTA_PROTETTA = 0.8;
+
+    private final String nome;
+    private final int capacita;
+    private final int capacitaProtetta;
+    private final long durataNanos;
+
+    /** Voci lette una sola volta, dalla meno alla più recentemente usata. */
+    private final LinkedHashMap<K, Voce<V>> prova = new LinkedHashMap<>(16, 0.75f, true);
+
+    /** Voci lette più volte, dalla meno alla più recentemente usata. */
+    private final LinkedHashMap<K, Voce<V>> protetta = new LinkedHashMap<>(16, 0.75f, true);
+
+    /** Incrementata a ogni invalidazione, per scartare i caricamenti iniziati prima. */
+    private long generazione;
+
+    private long hit;
+    private long miss;
+    private long espulsioni;
+    private long scadute;
+    private long invalidazioni;
+
+    /**
+     * Crea una cache vuota.
+     *
+     * @param nome nome della cache, riportato nelle statistiche
+     * @param capacita numero massimo di voci, almeno 2
+     * @param durataMs durata massima di una voce dal suo caricamento, in millisecondi
+     */
+    public CacheEntita(String nome, int capacita, long durataMs) {
+        if (capacita < 2) {
+            throw new IllegalArgumentException("Capacità della cache troppo piccola: " + capacita);
+        }
+        this.nome = nome;
+        this.capacita = capacita;
+        this.capacitaProtetta = Math.max(1, (int) (capacita * QUOTA_PROTETTA));
+        this.durataNanos = durataMs * 1_000_000;
+    }
+
+    /**
+     * Restituisce il valore in cache per la chiave oppure lo carica e lo memorizza (read-through).
+     *
+     * @param chiave la chiave
+     * @param caricatore legge il valore dal database; può restituire null
+     * @return il valore, oppure null se il caricatore non lo ha trovato
+     */
+    public V leggi(K chiave, Function<K, V> caricatore) {
+        long generazioneLettura;
+        synchronized (this) {
+            V valore = cerca(chiave);
+            if (valore != null) {
+                return valore;
+            }
+            generazioneLettura = generazione;
+        }
+        V caricato = caricatore.apply(chiave);
+        if (caricato != null) {
+            synchronized (this) {
+                if (generazioneLettura == generazione) {
+                    inserisci(chiave, caricato);
+                }
+            }
+        }
+        return caricato;
+    }
+
+    /**
+     * Rimuove la voce con la chiave indicata, se presente.
+     *
+     * @param chiave la chiave da invalidare
+     */
+    public synchronized void invalida(K chiave) {
+        generazione++;
+        boolean rimossa = prova.remove(chiave) != null;
+        rimossa |= protetta.remove(chiave) != null;
+        if (rimossa) {
+            invalidazioni++;
+        }
+    }
+
+    /**
+     * Rimuove le voci il cui valore soddisfa la condizione.
+     *
+     * @param condizione condizione sui valori da invalidare
+     */
+    public synchronized void invalidaSe(Predicate<V> condizione) {
+        generazione++;
+        invalidazioni += rimuoviSe(prova, condizione) + rimuoviSe(protetta, condizione);
+    }
+
+    /**
+     * Rimuove tutte le voci.
+     */
+    public synchronized void svuota() {
+        generazione++;
+        invalidazioni += prova.size() + protetta.size();
+        prova.clear();
+        protetta.clear();
+    }
+
+    /**
+     * Restituisce le metriche correnti della cache.
+     *
+     * @return istantanea delle statistiche
+     */
+    public synchronized StatisticheCache getStatistiche() {
+        return new StatisticheCache(nome, prova.size() + protetta.size(), capacita,
+                hit, miss, espulsioni, scadute, invalidazioni);
+    }
+
+    /**
+     * Cerca una voce valida, promuovendo al segmento protetto quella letta per la seconda volta.
+     */
+    private V cerca(K chiave) {
+        long adesso = System.nanoTime();
+        Voce<V> voce = protetta.get(chiave);
+        if (voce != null) {
+            if (voce.isScaduta(adesso)) {
+                protetta.remove(chiave);
+                return scaduta();
+            }
+            hit++;
+            return voce.valore;
+        }
+
+        voce = prova.remove(chiave);
+        if (voce == null) {
+            miss++;
+            return null;
+        }
+        if (voce.isScaduta(adesso)) {
+            return scaduta();
+        }
+        protetta.put(chiave, voce);
+        if (protetta.size() > capacitaProtetta) {
+            Iterator<Map.Entry<K, Voce<V>>> meno = protetta.entrySet().iterator();
+            Map.Entry<K, Voce<V>> retrocessa = meno.next();
+            meno.remove();
+            aggiungiInProva(retrocessa.getKey(), retrocessa.getValue());
+        }
+        hit++;
+        return voce.valore;
+    }
+
+    private V scaduta() {
+        scadute++;
+        miss++;
+        return null;
+    }
+
+    /**
+     * Memorizza un valore appena caricato: sostituisce quello presente o entra in prova.
+     */
+    private void inserisci(K chiave, V valore) {
+        Voce<V> voce = new Voce<>(valore, System.nanoTime() + durataNanos);
+        if (protetta.containsKey(chiave)) {
+            protetta.put(chiave, voce);
+        } else {
+            aggiungiInProva(chiave, voce);
+        }
+    }
+
+    private void aggiungiInProva(K chiave, Voce<V> voce) {
+        prova.put(chiave, voce);
+        // La prova occupa la capacità lasciata libera dal segmento protetto
+        while (prova.size() + protetta.size() > capacita && !prova.isEmpty()) {
+            Iterator<K> meno = prova.keySet().iterator();
+            meno.next();
+            meno.remove();
+            espulsioni++;
+        }
+    }
+
+    private static <K, V> int rimuoviSe(Map<K, Voce<V>> segmento, Predicate<V> condizione) {
+        int rimosse = 0;
+        Iterator<Voce<V>> voci = segmento.values().iterator();
+        while (voci.hasNext()) {
+            if (condizione.test(voci.next().valore)) {
+                voci.remove();
+                rimosse++;
+            }
+        }
+        return rimosse;
+    }
+
+    /**
+     * Valore in cache con l'istante, in nanosecondi, in cui scade.
+     */
+    private record Voce<V>(V valore, long scadenza) {
+
+        boolean isScaduta(long adesso) {
+            return adesso - scadenza >= 0;
+        }
+    }
+}
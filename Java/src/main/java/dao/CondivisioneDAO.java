@@ -2,13 +2,17 @@ package dao;
 
 import interfaccedao.ICondivisioneDAO;
 import database.ConnessioneDatabase;
+import model.EsitoCondivisione;
+import model.TipoBacheca;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Implementazione dell'interfaccia ICondivisioneDAO.
@@ -26,6 +30,67 @@ public class CondivisioneDAO implements ICondivisioneDAO {
         // Nessuna inizializzazione specifica
     }
 
+    /**
+     * Condivisione con più destinatari in un solo statement, e quindi in un'unica transazione.
+     * Gli INSERT avvengono solo se il ToDo appartiene a chi condivide e per i destinatari che
+     * esistono e sono altri utenti; il conflitto sulla chiave primaria segnala una condivisione
+     * già presente. Il SELECT finale ricava l'esito di ogni destinatario dalle stesse CTE,
+     * così nessun altro client può agire tra i controlli e l'inserimento.
+     */
+    private static final String RICHIEDI_CONDIVISIONI = """
+            WITH da_condividere AS (
+                SELECT id, proprietario FROM todo WHERE id = ? AND proprietario = ?
+            ), richiesti AS (
+                SELECT DISTINCT unnest(CAST(? AS varchar[])) AS username
+            ), inserite AS (
+                INSERT INTO condivisione (username_utente, id_todo, stato)
+                SELECT u.username, t.id, 'PENDING'
+                FROM richiesti r
+                JOIN utente u ON u.username = r.username
+                CROSS JOIN da_condividere t
+                WHERE u.username <> t.proprietario
+                ON CONFLICT (username_utente, id_todo) DO NOTHING
+                RETURNING username_utente
+            )
+            SELECT r.username, CASE
+                WHEN NOT EXISTS (SELECT 1 FROM da_condividere) THEN 'TODO_NON_TROVATO'
+                WHEN NOT EXISTS (SELECT 1 FROM utente u WHERE u.username = r.username) THEN 'UTENTE_INESISTENTE'
+                WHEN r.username IN (SELECT proprietario FROM da_condividere) THEN 'CONDIVISIONE_CON_SE_STESSO'
+                WHEN r.username IN (SELECT username_utente FROM inserite) THEN 'OK'
+                ELSE 'GIA_CONDIVISO'
+            END AS esito
+            FROM richiesti r
+            """;
+
+    /**
+     * Condivisione di una bacheca con più destinatari in un solo statement, con gli stessi
+     * controlli ed esiti di {@link #RICHIEDI_CONDIVISIONI} applicati alla bacheca invece che al ToDo.
+     */
+    private static final String RICHIEDI_CONDIVISIONI_BACHECA = """
+            WITH da_condividere AS (
+                SELECT proprietario, tipo FROM bacheca WHERE proprietario = ? AND tipo = ?
+            ), richiesti AS (
+                SELECT DISTINCT unnest(CAST(? AS varchar[])) AS username
+            ), inserite AS (
+                INSERT INTO condivisione_bacheca (username_utente, proprietario, tipo_bacheca, stato)
+                SELECT u.username, b.proprietario, b.tipo, 'PENDING'
+                FROM richiesti r
+                JOIN utente u ON u.username = r.username
+                CROSS JOIN da_condividere b
+                WHERE u.username <> b.proprietario
+                ON CONFLICT (username_utente, proprietario, tipo_bacheca) DO NOTHING
+                RETURNING username_utente
+            )
+            SELECT r.username, CASE
+                WHEN NOT EXISTS (SELECT 1 FROM da_condividere) THEN 'TODO_NON_TROVATO'
+                WHEN NOT EXISTS (SELECT 1 FROM utente u WHERE u.username = r.username) THEN 'UTENTE_INESISTENTE'
+                WHEN r.username IN (SELECT proprietario FROM da_condividere) THEN 'CONDIVISIONE_CON_SE_STESSO'
+                WHEN r.username IN (SELECT username_utente FROM inserite) THEN 'OK'
+                ELSE 'GIA_CONDIVISO'
+            END AS esito
+            FROM richiesti r
+            """;
+
     private static final String QUERY_TODO_ID =
             "SELECT id FROM todo WHERE proprietario = ? AND tipo_bacheca = ? AND titolo = ?";
 
@@ -39,8 +104,10 @@ public class CondivisioneDAO implements ICondivisioneDAO {
      * @param tipo Il tipo di bacheca a cui appartiene il ToDo (es. UNIVERSITA, LAVORO, TEMPO_LIBERO)
      * @param titolo Il titolo del ToDo da condividere
      * @return true se la condivisione è stata inserita correttamente, false altrimenti
+     * @deprecated usare la variante che riceve l'ID del ToDo
      */
     @Override
+    @Deprecated
     public boolean condividi(String username, String prop, String tipo, String titolo) {
         String queryId = QUERY_TODO_ID;
         String insertCondivisione = "INSERT INTO condivisione (username_utente, id_todo, stato) VALUES (?, ?, 'PENDING')";
@@ -73,6 +140,73 @@ public class CondivisioneDAO implements ICondivisioneDAO {
         }
     }
 
+    /**
+     * Inserisce una richiesta di condivisione con stato 'PENDING' per il ToDo con l'ID indicato,
+     * con un solo INSERT sulla chiave primaria della condivisione.
+     *
+     * @param username Lo username dell'utente destinatario della condivisione
+     * @param idToDo L'ID del ToDo da condividere
+     * @return true se la condivisione è stata inserita correttamente, false altrimenti
+     */
+    @Override
+    public boolean condividi(String username, int idToDo) {
+        String sql = "INSERT INTO condivisione (username_utente, id_todo, stato) VALUES (?, ?, 'PENDING')";
+        try (Connection conn = ConnessioneDatabase.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, username);
+            stmt.setInt(2, idToDo);
+            return stmt.executeUpdate() > 0;
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Condivide un ToDo con un destinatario con un unico statement atomico.
+     *
+     * @param proprietario Lo username di chi condivide, che deve essere il proprietario del ToDo
+     * @param idToDo L'ID del ToDo da condividere
+     * @param destinatario Lo username dell'utente destinatario
+     * @return l'esito della richiesta, oppure null in caso di errore
+     */
+    @Override
+    public EsitoCondivisione richiediCondivisione(String proprietario, int idToDo, String destinatario) {
+        Map<String, EsitoCondivisione> esiti = richiediCondivisioni(proprietario, idToDo, List.of(destinatario));
+        return esiti != null ? esiti.get(destinatario) : null;
+    }
+
+    /**
+     * Condivide un ToDo con più destinatari con un unico statement atomico.
+     *
+     * @param proprietario Lo username di chi condivide, che deve essere il proprietario del ToDo
+     * @param idToDo L'ID del ToDo da condividere
+     * @param destinatari Gli username degli utenti destinatari
+     * @return l'esito per ciascun destinatario, oppure null in caso di errore
+     */
+    @Override
+    public Map<String, EsitoCondivisione> richiediCondivisioni(String proprietario, int idToDo, List<String> destinatari) {
+        Map<String, EsitoCondivisione> esiti = new LinkedHashMap<>();
+        if (destinatari.isEmpty()) {
+            return esiti;
+        }
+
+        try (Connection conn = ConnessioneDatabase.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(RICHIEDI_CONDIVISIONI)) {
+            stmt.setInt(1, idToDo);
+            stmt.setString(2, proprietario);
+            stmt.setArray(3, conn.createArrayOf("varchar", destinatari.toArray()));
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                esiti.put(rs.getString("username"), EsitoCondivisione.valueOf(rs.getString("esito")));
+            }
+            return esiti;
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
     /**
      * Rimuove la condivisione di un ToDo per un determinato utente destinatario.
      * La condivisione viene identificata tramite il proprietario, tipo di bacheca e titolo del ToDo.
@@ -82,8 +216,10 @@ public class CondivisioneDAO implements ICondivisioneDAO {
      * @param tipo Il tipo di bacheca (es. UNIVERSITA, LAVORO, TEMPO_LIBERO)
      * @param titolo Il titolo del ToDo condiviso
      * @return true se almeno una riga è stata eliminata, false altrimenti
+     * @deprecated usare la variante che riceve l'ID del ToDo
      */
     @Override
+    @Deprecated
     public boolean rimuoviCondivisione(String username, String prop, String tipo, String titolo) {
         String sql = """
             DELETE FROM condivisione 
@@ -105,6 +241,53 @@ public class CondivisioneDAO implements ICondivisioneDAO {
         }
     }
 
+    /**
+     * Rimuove la condivisione del ToDo con l'ID indicato per un determinato destinatario.
+     *
+     * @param username Lo username del destinatario della condivisione
+     * @param idToDo L'ID del ToDo condiviso
+     * @return true se almeno una riga è stata eliminata, false altrimenti
+     */
+    @Override
+    public boolean rimuoviCondivisione(String username, int idToDo) {
+        String sql = "DELETE FROM condivisione WHERE username_utente = ? AND id_todo = ?";
+        try (Connection conn = ConnessioneDatabase.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, username);
+            stmt.setInt(2, idToDo);
+            return stmt.executeUpdate() > 0;
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Rimuove in un solo statement la condivisione del ToDo con l'ID indicato per tutti i destinatari.
+     *
+     * @param idToDo L'ID del ToDo condiviso
+     * @param destinatari Gli username dei destinatari da rimuovere
+     * @return true se l'operazione è andata a buon fine, false in caso di errore
+     */
+    @Override
+    public boolean rimuoviCondivisioni(int idToDo, List<String> destinatari) {
+        if (destinatari.isEmpty()) {
+            return true;
+        }
+
+        String sql = "DELETE FROM condivisione WHERE id_todo = ? AND username_utente = ANY(?)";
+        try (Connection conn = ConnessioneDatabase.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, idToDo);
+            stmt.setArray(2, conn.createArrayOf("varchar", destinatari.toArray()));
+            stmt.executeUpdate();
+            return true;
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
     /**
      * Verifica se esiste già una condivisione tra il proprietario e il destinatario per uno specifico ToDo.
      * Il ToDo è identificato tramite proprietario, tipo di bacheca e titolo.
@@ -114,8 +297,10 @@ public class CondivisioneDAO implements ICondivisioneDAO {
      * @param tipo Il tipo di bacheca del ToDo (es. UNIVERSITA, LAVORO, TEMPO_LIBERO)
      * @param titolo Il titolo del ToDo
      * @return true se la condivisione è già presente nel database, false altrimenti
+     * @deprecated usare la variante che riceve l'ID del ToDo
      */
     @Override
+    @Deprecated
     public boolean esisteCondivisione(String username, String prop, String tipo, String titolo) {
         String sql = """
             SELECT 1 FROM condivisione 
@@ -138,17 +323,40 @@ public class CondivisioneDAO implements ICondivisioneDAO {
         }
     }
 
+    /**
+     * Verifica se il ToDo con l'ID indicato è già condiviso con il destinatario.
+     *
+     * @param username Lo username del destinatario
+     * @param idToDo L'ID del ToDo
+     * @return true se la condivisione è già presente nel database, false altrimenti
+     */
+    @Override
+    public boolean esisteCondivisione(String username, int idToDo) {
+        String sql = "SELECT 1 FROM condivisione WHERE username_utente = ? AND id_todo = ?";
+        try (Connection conn = ConnessioneDatabase.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, username);
+            stmt.setInt(2, idToDo);
+            ResultSet rs = stmt.executeQuery();
+            return rs.next();
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
     /**
      * Restituisce la lista delle richieste di condivisione pendenti (stato 'PENDING') per uno specifico utente.
-     * Ogni richiesta è rappresentata da un array di 3 elementi: richiedente, tipo bacheca e titolo ToDo.
+     * Ogni richiesta è rappresentata da un array di 4 elementi: richiedente, tipo bacheca, titolo e ID del ToDo;
+     * l'ID permette di accettare o rifiutare la richiesta senza cercare di nuovo il ToDo per titolo.
      *
      * @param usernameUtente Lo username dell’utente destinatario delle richieste
-     * @return Una lista di richieste di condivisione pendenti, ciascuna rappresentata come array {richiedente, tipoBacheca, titolo}
+     * @return Una lista di richieste di condivisione pendenti, ciascuna rappresentata come array {richiedente, tipoBacheca, titolo, idToDo}
      */
     public List<String[]> getRichiestePendentiPerUtente(String usernameUtente) {
         List<String[]> richieste = new ArrayList<>();
         String sql = """
-            SELECT t.proprietario AS richiedente, t.tipo_bacheca, t.titolo
+            SELECT t.proprietario AS richiedente, t.tipo_bacheca, t.titolo, t.id
             FROM condivisione c
             JOIN todo t ON c.id_todo = t.id
             WHERE c.username_utente = ? AND c.stato = 'PENDING'
@@ -161,7 +369,8 @@ public class CondivisioneDAO implements ICondivisioneDAO {
                 String richiedente = rs.getString("richiedente");
                 String tipoBacheca = rs.getString("tipo_bacheca");
                 String titolo = rs.getString("titolo");
-                richieste.add(new String[] { richiedente, tipoBacheca, titolo });
+                String idToDo = String.valueOf(rs.getInt("id"));
+                richieste.add(new String[] { richiedente, tipoBacheca, titolo, idToDo });
             }
         } catch (SQLException e) {
             e.printStackTrace();
@@ -180,7 +389,9 @@ public class CondivisioneDAO implements ICondivisioneDAO {
      * @param titolo Il titolo del ToDo condiviso
      * @param nuovoStato Il nuovo stato da assegnare alla richiesta ("ACCEPTED" o "REJECTED")
      * @return true se l’operazione ha avuto successo, false altrimenti
+     * @deprecated usare la variante che riceve l'ID del ToDo
      */
+    @Deprecated
     public boolean aggiornaStatoRichiesta(String username, String proprietario, String tipo, String titolo, String nuovoStato) {
         String queryId = QUERY_TODO_ID;
         String updateSql = "UPDATE condivisione SET stato = ? WHERE username_utente = ? AND id_todo = ?";
@@ -226,6 +437,38 @@ public class CondivisioneDAO implements ICondivisioneDAO {
         }
     }
 
+    /**
+     * Aggiorna lo stato della richiesta di condivisione del ToDo con l'ID indicato.
+     * Se lo stato è "ACCEPTED", la richiesta viene aggiornata a tale stato.
+     * Se lo stato è "REJECTED", la richiesta pendente viene eliminata.
+     *
+     * @param username Lo username del destinatario della richiesta
+     * @param idToDo L'ID del ToDo condiviso
+     * @param nuovoStato Il nuovo stato da assegnare alla richiesta ("ACCEPTED" o "REJECTED")
+     * @return true se l’operazione ha avuto successo, false altrimenti
+     */
+    @Override
+    public boolean aggiornaStatoRichiesta(String username, int idToDo, String nuovoStato) {
+        if (nuovoStato.equalsIgnoreCase("REJECTED")) {
+            return rimuoviRichiesta(username, idToDo);
+        }
+        if (!nuovoStato.equalsIgnoreCase("ACCEPTED")) {
+            System.err.println("[ERRORE] Stato non valido: " + nuovoStato);
+            return false;
+        }
+
+        String sql = "UPDATE condivisione SET stato = 'ACCEPTED' WHERE username_utente = ? AND id_todo = ?";
+        try (Connection conn = ConnessioneDatabase.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, username);
+            stmt.setInt(2, idToDo);
+            return stmt.executeUpdate() > 0;
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
     /**
      * Rimuove una richiesta di condivisione in stato 'PENDING' per uno specifico ToDo.
      * Il ToDo è identificato tramite proprietario, tipo di bacheca e titolo.
@@ -235,7 +478,9 @@ public class CondivisioneDAO implements ICondivisioneDAO {
      * @param tipo Il tipo di bacheca del ToDo (es. UNIVERSITA, LAVORO, TEMPO_LIBERO)
      * @param titolo Il titolo del ToDo
      * @return true se l'eliminazione è avvenuta con successo, false altrimenti
+     * @deprecated usare la variante che riceve l'ID del ToDo
      */
+    @Deprecated
     public boolean rimuoviRichiesta(String username, String proprietario, String tipo, String titolo) {
         String queryId =  QUERY_TODO_ID;
         String deleteSql = "DELETE FROM condivisione WHERE username_utente = ? AND id_todo = ? AND stato = 'PENDING'";
@@ -266,6 +511,27 @@ public class CondivisioneDAO implements ICondivisioneDAO {
         }
     }
 
+    /**
+     * Rimuove la richiesta di condivisione in stato 'PENDING' per il ToDo con l'ID indicato.
+     *
+     * @param username Lo username dell'utente destinatario della richiesta
+     * @param idToDo L'ID del ToDo
+     * @return true se l'eliminazione è avvenuta con successo, false altrimenti
+     */
+    @Override
+    public boolean rimuoviRichiesta(String username, int idToDo) {
+        String sql = "DELETE FROM condivisione WHERE username_utente = ? AND id_todo = ? AND stato = 'PENDING'";
+        try (Connection conn = ConnessioneDatabase.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, username);
+            stmt.setInt(2, idToDo);
+            return stmt.executeUpdate() > 0;
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
     /**
      * Elimina tutte le condivisioni associate a un determinato ToDo.
      * Utilizzato ad esempio quando un ToDo viene eliminato dal proprietario.
@@ -293,8 +559,10 @@ public class CondivisioneDAO implements ICondivisioneDAO {
      * @param tipoBacheca Il tipo di bacheca a cui appartiene il ToDo
      * @param titolo Il titolo del ToDo
      * @return Una lista di username dei destinatari della condivisione
+     * @deprecated usare la variante che riceve l'ID del ToDo
      */
     @Override
+    @Deprecated
     public List<String> getUtentiCondivisi(String proprietario, String tipoBacheca, String titolo) {
         List<String> utenti = new ArrayList<>();
 
@@ -324,5 +592,266 @@ public class CondivisioneDAO implements ICondivisioneDAO {
         return utenti;
     }
 
-}
+    /**
+     * Recupera gli username degli utenti con cui è stato condiviso il ToDo con l'ID indicato.
+     *
+     * @param idToDo L'ID del ToDo
+     * @return Una lista di username dei destinatari della condivisione
+     */
+    @Override
+    public List<String> getUtentiCondivisi(int idToDo) {
+        List<String> utenti = new ArrayList<>();
+        String sql = "SELECT username_utente FROM condivisione WHERE id_todo = ?";
 
+        try (Connection conn = ConnessioneDatabase.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, idToDo);
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                utenti.add(rs.getString("username_utente"));
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+
+        return utenti;
+    }
+
+    /**
+     * Condivide un'intera bacheca con più destinatari con un unico statement atomico.
+     *
+     * @param proprietario Lo username del proprietario della bacheca
+     * @param tipo Il tipo della bacheca da condividere
+     * @param destinatari Gli username degli utenti destinatari
+     * @return l'esito per ciascun destinatario, oppure null in caso di errore
+     */
+    @Override
+    public Map<String, EsitoCondivisione> richiediCondivisioniBacheca(String proprietario, TipoBacheca tipo, List<String> destinatari) {
+        if (destinatari.isEmpty()) {
+            return new LinkedHashMap<>();
+        }
+
+        try (Connection conn = ConnessioneDatabase.getConnection()) {
+            return richiediCondivisioniBacheca(conn, proprietario, tipo, destinatari);
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Rimuove in un solo statement la condivisione di una bacheca per tutti i destinatari indicati.
+     *
+     * @param proprietario Lo username del proprietario della bacheca
+     * @param tipo Il tipo della bacheca
+     * @param destinatari Gli username dei destinatari da rimuovere
+     * @return true se l'operazione è andata a buon fine, false in caso di errore
+     */
+    @Override
+    public boolean rimuoviCondivisioniBacheca(String proprietario, TipoBacheca tipo, List<String> destinatari) {
+        if (destinatari.isEmpty()) {
+            return true;
+        }
+
+        try (Connection conn = ConnessioneDatabase.getConnection()) {
+            rimuoviCondivisioniBacheca(conn, proprietario, tipo, destinatari);
+            return true;
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Revoca la condivisione di una bacheca ad alcuni destinatari e la richiede per altri nella
+     * stessa transazione: se una delle due operazioni fallisce non viene applicata nessuna delle due.
+     *
+     * @param proprietario Lo username del proprietario della bacheca
+     * @param tipo Il tipo della bacheca
+     * @param nuovi Gli username a cui richiedere la condivisione
+     * @param revocati Gli username a cui revocarla
+     * @return l'esito per ciascun nuovo destinatario, oppure null in caso di errore
+     */
+    @Override
+    public Map<String, EsitoCondivisione> aggiornaCondivisioniBacheca(String proprietario, TipoBacheca tipo,
+                                                                      List<String> nuovi, List<String> revocati) {
+        Map<String, EsitoCondivisione> esiti = new LinkedHashMap<>();
+        if (nuovi.isEmpty() && revocati.isEmpty()) {
+            return esiti;
+        }
+
+        try (Connection conn = ConnessioneDatabase.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                if (!revocati.isEmpty()) {
+                    rimuoviCondivisioniBacheca(conn, proprietario, tipo, revocati);
+                }
+                if (!nuovi.isEmpty()) {
+                    esiti = richiediCondivisioniBacheca(conn, proprietario, tipo, nuovi);
+                }
+                conn.commit();
+                return esiti;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    private static Map<String, EsitoCondivisione> richiediCondivisioniBacheca(Connection conn, String proprietario, TipoBacheca tipo,
+                                                                              List<String> destinatari) throws SQLException {
+        Map<String, EsitoCondivisione> esiti = new LinkedHashMap<>();
+        try (PreparedStatement stmt = conn.prepareStatement(RICHIEDI_CONDIVISIONI_BACHECA)) {
+            stmt.setString(1, proprietario);
+            stmt.setString(2, tipo.name());
+            stmt.setArray(3, conn.createArrayOf("varchar", destinatari.toArray()));
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                esiti.put(rs.getString("username"), EsitoCondivisione.valueOf(rs.getString("esito")));
+            }
+        }
+        return esiti;
+    }
+
+    private static void rimuoviCondivisioniBacheca(Connection conn, String proprietario, TipoBacheca tipo,
+                                                   List<String> destinatari) throws SQLException {
+        String sql = """
+            DELETE FROM condivisione_bacheca
+            WHERE proprietario = ? AND tipo_bacheca = ? AND username_utente = ANY(?)
+        """;
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, proprietario);
+            stmt.setString(2, tipo.name());
+            stmt.setArray(3, conn.createArrayOf("varchar", destinatari.toArray()));
+            stmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Recupera gli username degli utenti con cui è condivisa una bacheca, comprese le richieste in attesa.
+     *
+     * @param proprietario Lo username del proprietario della bacheca
+     * @param tipo Il tipo della bacheca
+     * @return Una lista di username dei destinatari, in ordine alfabetico
+     */
+    @Override
+    public List<String> getUtentiCondivisiBacheca(String proprietario, TipoBacheca tipo) {
+        List<String> utenti = new ArrayList<>();
+        String sql = """
+            SELECT username_utente FROM condivisione_bacheca
+            WHERE proprietario = ? AND tipo_bacheca = ?
+            ORDER BY username_utente
+        """;
+
+        try (Connection conn = ConnessioneDatabase.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, proprietario);
+            stmt.setString(2, tipo.name());
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                utenti.add(rs.getString("username_utente"));
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+
+        return utenti;
+    }
+
+    /**
+     * Verifica se una bacheca è condivisa con un utente e la condivisione è stata accettata.
+     *
+     * @param username Lo username del destinatario
+     * @param proprietario Lo username del proprietario della bacheca
+     * @param tipo Il tipo della bacheca
+     * @return true se la condivisione è presente e accettata, false altrimenti
+     */
+    @Override
+    public boolean esisteCondivisioneBacheca(String username, String proprietario, TipoBacheca tipo) {
+        String sql = """
+            SELECT 1 FROM condivisione_bacheca
+            WHERE username_utente = ? AND proprietario = ? AND tipo_bacheca = ? AND stato = 'ACCEPTED'
+        """;
+        try (Connection conn = ConnessioneDatabase.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, username);
+            stmt.setString(2, proprietario);
+            stmt.setString(3, tipo.name());
+            ResultSet rs = stmt.executeQuery();
+            return rs.next();
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Restituisce le richieste di condivisione di bacheche in stato 'PENDING' per un utente.
+     *
+     * @param username Lo username dell’utente destinatario delle richieste
+     * @return Una lista di richieste, ciascuna rappresentata come array {richiedente, tipoBacheca}
+     */
+    @Override
+    public List<String[]> getRichiesteBachechePendentiPerUtente(String username) {
+        List<String[]> richieste = new ArrayList<>();
+        String sql = """
+            SELECT proprietario, tipo_bacheca FROM condivisione_bacheca
+            WHERE username_utente = ? AND stato = 'PENDING'
+        """;
+        try (Connection conn = ConnessioneDatabase.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, username);
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                richieste.add(new String[] { rs.getString("proprietario"), rs.getString("tipo_bacheca") });
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return richieste;
+    }
+
+    /**
+     * Aggiorna lo stato di una richiesta di condivisione di bacheca.
+     * Se lo stato è "ACCEPTED", la richiesta viene aggiornata a tale stato.
+     * Se lo stato è "REJECTED", la richiesta pendente viene eliminata.
+     *
+     * @param username Lo username del destinatario della richiesta
+     * @param proprietario Lo username del proprietario della bacheca
+     * @param tipo Il tipo della bacheca
+     * @param nuovoStato Il nuovo stato da assegnare alla richiesta ("ACCEPTED" o "REJECTED")
+     * @return true se l’operazione ha avuto successo, false altrimenti
+     */
+    @Override
+    public boolean aggiornaStatoRichiestaBacheca(String username, String proprietario, TipoBacheca tipo, String nuovoStato) {
+        String sql;
+        if (nuovoStato.equalsIgnoreCase("ACCEPTED")) {
+            sql = """
+                UPDATE condivisione_bacheca SET stato = 'ACCEPTED'
+                WHERE username_utente = ? AND proprietario = ? AND tipo_bacheca = ?
+            """;
+        } else if (nuovoStato.equalsIgnoreCase("REJECTED")) {
+            sql = """
+                DELETE FROM condivisione_bacheca
+                WHERE username_utente = ? AND proprietario = ? AND tipo_bacheca = ? AND stato = 'PENDING'
+            """;
+        } else {
+            System.err.println("[ERRORE] Stato non valido: " + nuovoStato);
+            return false;
+        }
+
+        try (Connection conn = ConnessioneDatabase.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, username);
+            stmt.setString(2, proprietario);
+            stmt.setString(3, tipo.name());
+            return stmt.executeUpdate() > 0;
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package dao;
+
+/**
+ * Regole dell'ordinamento sparso usato per la colonna {@code posizione} dei ToDo.
+ * <p>
+ * Le posizioni sono interi distanziati di {@link #INTERVALLO}: un inserimento in testa usa
+ * la posizione minima meno l'intervallo, uno in coda la massima più l'intervallo e uno tra
+ * due ToDo il punto medio fra le loro posizioni. In questo modo ogni inserimento scrive una
+ * sola riga. Quando due vicini non lasciano più spazio, o le posizioni si avvicinano ai
+ * limiti di un {@code integer}, la bacheca va ribilanciata riassegnando posizioni equidistanti.
+ */
+public final class OrdinamentoPosizioni {
+
+    /** Distanza tra due posizioni consecutive dopo un ribilanciamento. */
+    public static final int INTERVALLO = 1024;
+
+    /** Oltre questo valore assoluto la bacheca viene ribilanciata per evitare overflow. */
+    public static final int LIMITE = 1 << 30;
+
+    /**
+     * Costruttore privato per impedire l'istanziazione della classe.
+     */
+    private OrdinamentoPosizioni() {
+        // Classe di utility: non istanziabile
+    }
+
+    /**
+     * Calcola la posizione da assegnare a un ToDo inserito tra due vicini.
+     *
+     * @param precedente posizione del ToDo che precede, oppure null se l'inserimento è in testa
+     * @param successivo posizione del ToDo che segue, oppure null se l'inserimento è in coda
+     * @return la nuova posizione, oppure null se tra i due vicini non c'è più spazio
+     */
+    public static Integer posizioneTra(Integer precedente, Integer successivo) {
+        long nuova;
+        if (precedente == null && successivo == null) {
+            nuova = 0;
+        } else if (precedente == null) {
+            nuova = (long) successivo - INTERVALLO;
+        } else if (successivo == null) {
+            nuova = (long) precedente + INTERVALLO;
+        } else {
+            if ((long) successivo - precedente < 2) {
+                return null;
+            }
+            nuova = ((long) precedente + successivo) / 2;
+        }
+        return Math.abs(nuova) > LIMITE ? null : (int) nuova;
+    }
+
+    /**
+     * Indica se una posizione appena assegnata si è avvicinata ai limiti dell'intervallo
+     * ammesso e richiede quindi un ribilanciamento della bacheca in background.
+     *
+     * @param posizione posizione assegnata
+     * @return true se conviene ribilanciare la bacheca
+     */
+    public static boolean richiedeRibilanciamento(int posizione) {
+        return Math.abs((long) posizione) > LIMITE - (long) INTERVALLO * 1024;
+    }
+}
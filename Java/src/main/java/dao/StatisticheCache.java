@@ -0,0 +1,117 @@
+package dao;
+
+/**
+ * Istantanea immutabile delle metriche di una {@link CacheEntita}.
+ */
+public final class StatisticheCache {
+
+    private final String nome;
+    private final int dimensione;
+    private final int capacita;
+    private final long hit;
+    private final long miss;
+    private final long espulsioni;
+    private final long scadute;
+    private final long invalidazioni;
+
+    /**
+     * Costruisce l'istantanea delle metriche.
+     *
+     * @param nome nome della cache
+     * @param dimensione voci attualmente in cache
+     * @param capacita numero massimo di voci
+     * @param hit letture servite dalla cache
+     * @param miss letture che hanno richiesto il database
+     * @param espulsioni voci espulse per fare posto a nuove voci
+     * @param scadute voci scartate perché scadute
+     * @param invalidazioni voci rimosse dopo una modifica
+     */
+    public StatisticheCache(String nome, int dimensione, int capacita, long hit, long miss,
+                            long espulsioni, long scadute, long invalidazioni) {
+        this.nome = nome;
+        this.dimensione = dimensione;
+        this.capacita = capacita;
+        this.hit = hit;
+        this.miss = miss;
+        this.espulsioni = espulsioni;
+        this.scadute = scadute;
+        this.invalidazioni = invalidazioni;
+    }
+
+    /**
+     * Restituisce il nome della cache.
+     *
+     * @return nome della cache
+     */
+    public String getNome() { return nome; }
+
+    /**
+     * Restituisce il numero di voci attualmente in cache.
+     *
+     * @return voci in cache
+     */
+    public int getDimensione() { return dimensione; }
+
+    /**
+     * Restituisce il numero massimo di voci.
+     *
+     * @return capacità della cache
+     */
+    public int getCapacita() { return capacita; }
+
+    /**
+     * Restituisce il numero di letture servite dalla cache.
+     *
+     * @return letture servite dalla cache
+     */
+    public long getHit() { return hit; }
+
+    /**
+     * Restituisce il numero di letture che hanno richiesto il database.
+     *
+     * @return letture non servite dalla cache
+     */
+    public long getMiss() { return miss; }
+
+    /**
+     * Restituisce il numero di voci espulse perché la cache era piena.
+     *
+     * @return voci espulse
+     */
+    public long getEspulsioni() { return espulsioni; }
+
+    /**
+     * Restituisce il numero di voci scartate perché scadute.
+     *
+     * @return voci scadute
+     */
+    public long getScadute() { return scadute; }
+
+    /**
+     * Restituisce il numero di voci rimosse dopo una modifica.
+     *
+     * @return voci invalidate
+     */
+    public long getInvalidazioni() { return invalidazioni; }
+
+    /**
+     * Restituisce la percentuale di letture servite dalla cache.
+     *
+     * @return rapporto tra hit e letture totali, fra 0 e 1
+     */
+    public double getHitRate() {
+        long letture = hit + miss;
+        return letture == 0 ? 0 : (double) hit / letture;
+    }
+
+    @Override
+    public String toString() {
+        return "Cache[nome=" + nome
+                + ", dimensione=" + dimensione + "/" + capacita
+                + ", hit=" + hit
+                + ", miss=" + miss
+                + ", espulsioni=" + espulsioni
+                + ", scadute=" + scadute
+                + ", invalidazioni=" + invalidazioni + "]";
+    }
+}
@@ -1,5 +1,8 @@
 package dao;
 
+import model.CampoToDo;
+import model.EsitoAggiornamento;
+import model.ModificheToDo;
 import model.ToDo;
 import model.StatoToDo;
 import model.TipoBacheca;
@@ -7,8 +10,18 @@ import interfaccedao.IToDoDAO;
 import database.ConnessioneDatabase;
 
 import java.sql.*;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Implementazione di {@link IToDoDAO} per la gestione dei ToDo nel database PostgreSQL.
@@ -24,8 +37,87 @@ public class ToDoDAO implements IToDoDAO {
         // Nessuna inizializzazione specifica richiesta
     }
 
+    /** Colonne comuni a tutti gli inserimenti di ToDo. */
+    private static final String INSERT_TODO =
+            "INSERT INTO todo (titolo, descrizione, data_scadenza, colore, stato, url, immagine, miniatura, posizione, proprietario, tipo_bacheca) ";
+
+    /**
+     * Colonne lette da {@link #leggiToDo(ResultSet)}, con alias {@code t} per la tabella todo.
+     * Dell'immagine viene letta solo la dimensione e la miniatura: i byte originali si caricano
+     * su richiesta con {@link #caricaImmagine(int)}.
+     */
+    static final String COLONNE_TODO =
+            "t.id, t.titolo, t.data_scadenza, t.url, octet_length(t.immagine) AS dimensione_immagine, t.miniatura, " +
+            "t.descrizione, t.colore, t.posizione, t.stato, t.proprietario, t.tipo_bacheca, t.versione";
+
+    /**
+     * ID dei ToDo visibili a un utente perché condivisi con lui e accettati: singolarmente,
+     * tramite {@code condivisione}, o come parte di un'intera bacheca, tramite
+     * {@code condivisione_bacheca}. Le condivisioni di bacheca vengono risolte al momento della
+     * query, quindi i ToDo creati in seguito compaiono senza scrivere righe per ciascuno.
+     * Il segnaposto riceve l'espressione con lo username del destinatario.
+     */
+    static final String ID_TODO_CONDIVISI = """
+            SELECT c.id_todo AS id
+            FROM condivisione c
+            WHERE c.username_utente = %1$s AND c.stato = 'ACCEPTED'
+            UNION
+            SELECT tb.id
+            FROM condivisione_bacheca cb
+            JOIN todo tb ON tb.proprietario = cb.proprietario AND tb.tipo_bacheca = cb.tipo_bacheca
+            WHERE cb.username_utente = %1$s AND cb.stato = 'ACCEPTED'
+            """;
+
+    /** Cursore di sincronizzazione: le transazioni con numero minore sono concluse e visibili. */
+    private static final String CURSORE_MODIFICHE = "SELECT pg_snapshot_xmin(pg_current_snapshot())::text::bigint";
+
+    /** Cursore più alto tra le rimozioni eliminate dalla manutenzione, 0 se non ne è stata eliminata nessuna. */
+    private static final String ORIZZONTE_RIMOSSI = "SELECT COALESCE(MAX(cursore), 0) FROM todo_rimosso_orizzonte";
+
     /**
-     * Salva un nuovo ToDo nel database, aggiornando le posizioni esistenti e assegnando un nuovo ID.
+     * ToDo visibili a un utente scritti dopo un cursore, con il momento da cui sono visibili:
+     * la creazione per i propri, la più recente tra creazione e accettazione della condivisione
+     * per gli altri. Ogni ramo legge solo le righe modificate tramite gli indici sulla colonna
+     * {@code modifica}, tranne le bacheche appena condivise, i cui ToDo sono tutti nuovi.
+     * I segnaposto sono, in ordine: utente e cursore per ciascuno dei cinque rami.
+     */
+    private static final String TODO_MODIFICATI = """
+            SELECT t.id, t.creazione AS visibile_da
+            FROM todo t
+            WHERE t.proprietario = ? AND t.modifica >= ?
+            UNION ALL
+            SELECT t.id, GREATEST(t.creazione, c.modifica)
+            FROM condivisione c
+            JOIN todo t ON t.id = c.id_todo
+            WHERE c.username_utente = ? AND c.stato = 'ACCEPTED' AND t.modifica >= ?
+            UNION ALL
+            SELECT t.id, GREATEST(t.creazione, c.modifica)
+            FROM condivisione c
+            JOIN todo t ON t.id = c.id_todo
+            WHERE c.username_utente = ? AND c.stato = 'ACCEPTED' AND c.modifica >= ?
+            UNION ALL
+            SELECT t.id, GREATEST(t.creazione, cb.modifica)
+            FROM condivisione_bacheca cb
+            JOIN todo t ON t.proprietario = cb.proprietario AND t.tipo_bacheca = cb.tipo_bacheca
+            WHERE cb.username_utente = ? AND cb.stato = 'ACCEPTED' AND t.modifica >= ?
+            UNION ALL
+            SELECT t.id, GREATEST(t.creazione, cb.modifica)
+            FROM condivisione_bacheca cb
+            JOIN todo t ON t.proprietario = cb.proprietario AND t.tipo_bacheca = cb.tipo_bacheca
+            WHERE cb.username_utente = ? AND cb.stato = 'ACCEPTED' AND cb.modifica >= ?
+            """;
+
+    /** Executor a thread singolo per i ribilanciamenti richiesti dopo un inserimento. */
+    private static final ExecutorService RIBILANCIAMENTI = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "ribilanciamento-posizioni");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * Salva un nuovo ToDo in testa alla bacheca e gli assegna il nuovo ID.
+     * La posizione viene calcolata nello stesso statement come la minima della bacheca meno
+     * {@link OrdinamentoPosizioni#INTERVALLO}, quindi gli altri ToDo non vengono riscritti.
      *
      * @param todo L'oggetto {@link ToDo} da salvare
      * @param proprietario Il proprietario del ToDo
@@ -34,38 +126,59 @@ public class ToDoDAO implements IToDoDAO {
      */
     @Override
     public boolean salva(ToDo todo, String proprietario, TipoBacheca tipoBacheca) {
-        String aggiornaPosizioni = "UPDATE todo SET posizione = posizione + 1 WHERE proprietario = ? AND tipo_bacheca = ?";
-        String insert = "INSERT INTO todo (titolo, descrizione, data_scadenza, colore, stato, url, immagine, posizione, proprietario, tipo_bacheca) " +
-                "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?) RETURNING id";
+        return inserisci(todo, proprietario, tipoBacheca,
+                "COALESCE(MIN(posizione) - " + OrdinamentoPosizioni.INTERVALLO + ", 0)");
+    }
+
+    /**
+     * Salva un nuovo ToDo in coda alla bacheca, dopo tutti quelli esistenti.
+     *
+     * @param todo L'oggetto {@link ToDo} da salvare
+     * @param proprietario Il proprietario del ToDo
+     * @param tipoBacheca Il tipo di bacheca associato
+     * @return true se il salvataggio è avvenuto correttamente, false altrimenti
+     */
+    @Override
+    public boolean salvaInCoda(ToDo todo, String proprietario, TipoBacheca tipoBacheca) {
+        return inserisci(todo, proprietario, tipoBacheca,
+                "COALESCE(MAX(posizione) + " + OrdinamentoPosizioni.INTERVALLO + ", 0)");
+    }
+
+    /**
+     * Salva un nuovo ToDo tra due ToDo della stessa bacheca, usando il punto medio delle loro posizioni.
+     * Se i due vicini non lasciano spazio la bacheca viene prima ribilanciata nella stessa transazione.
+     *
+     * @param todo L'oggetto {@link ToDo} da salvare
+     * @param proprietario Il proprietario del ToDo
+     * @param tipoBacheca Il tipo di bacheca associato
+     * @param precedente Il ToDo che dovrà precedere quello nuovo, oppure null per la testa
+     * @param successivo Il ToDo che dovrà seguire quello nuovo, oppure null per la coda
+     * @return true se il salvataggio è avvenuto correttamente, false altrimenti
+     */
+    @Override
+    public boolean salvaTra(ToDo todo, String proprietario, TipoBacheca tipoBacheca, ToDo precedente, ToDo successivo) {
+        if (precedente == null && successivo == null) {
+            return salvaInCoda(todo, proprietario, tipoBacheca);
+        }
 
         try (Connection conn = ConnessioneDatabase.getConnection()) {
             conn.setAutoCommit(false);
 
-            try (PreparedStatement stmtUpdate = conn.prepareStatement(aggiornaPosizioni)) {
-                stmtUpdate.setString(1, proprietario);
-                stmtUpdate.setString(2, tipoBacheca.name());
-                stmtUpdate.executeUpdate();
-            }
-
-            try (PreparedStatement stmtInsert = conn.prepareStatement(insert)) {
-                stmtInsert.setString(1, todo.getTitolo());
-                stmtInsert.setString(2, todo.getDescrizione());
-                stmtInsert.setString(3, todo.getDataDiScadenza());
-                stmtInsert.setString(4, todo.getColore());
-                stmtInsert.setString(5, todo.getStato().name());
-                stmtInsert.setString(6, todo.getUrl());
-                stmtInsert.setBytes(7, todo.getImmagine());
-                stmtInsert.setInt(8, 1); // sempre prima posizione
-                stmtInsert.setString(9, proprietario);
-                stmtInsert.setString(10, tipoBacheca.name());
-
-                ResultSet rs = stmtInsert.executeQuery();
-                if (rs.next()) {
-                    todo.setId(rs.getInt("id"));
-                }
+            Integer posizione = posizioneLibera(conn, proprietario, tipoBacheca, precedente, successivo);
+            String sql = INSERT_TODO + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) RETURNING id, posizione, versione";
+
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                impostaCampiInserimento(stmt, todo);
+                stmt.setInt(9, posizione);
+                stmt.setString(10, proprietario);
+                stmt.setString(11, tipoBacheca.name());
+                leggiIdEPosizione(stmt.executeQuery(), todo);
             }
 
             conn.commit();
+            if (OrdinamentoPosizioni.richiedeRibilanciamento(posizione)) {
+                pianificaRibilanciamento(proprietario, tipoBacheca);
+            }
             return true;
 
         } catch (SQLException e) {
@@ -74,6 +187,62 @@ public class ToDoDAO implements IToDoDAO {
         }
     }
 
+    /**
+     * Sposta un ToDo tra due vicini della stessa bacheca aggiornando solo la sua posizione.
+     * Se tra i vicini non c'è più spazio la bacheca viene ribilanciata nella stessa transazione.
+     *
+     * @param todo Il ToDo da spostare
+     * @param precedente Il ToDo che dovrà precederlo, oppure null per la testa
+     * @param successivo Il ToDo che dovrà seguirlo, oppure null per la coda
+     * @return true se lo spostamento è avvenuto correttamente, false altrimenti
+     */
+    @Override
+    public boolean sposta(ToDo todo, ToDo precedente, ToDo successivo) {
+        String sql = "UPDATE todo SET posizione = ? WHERE id = ?";
+
+        try (Connection conn = ConnessioneDatabase.getConnection()) {
+            conn.setAutoCommit(false);
+
+            Integer posizione = posizioneLibera(conn, todo.getProprietario(), todo.getTipoBacheca(), precedente, successivo);
+
+            boolean aggiornato;
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                stmt.setInt(1, posizione);
+                stmt.setInt(2, todo.getId());
+                aggiornato = stmt.executeUpdate() > 0;
+            }
+
+            conn.commit();
+            if (aggiornato) {
+                todo.setPosizione(posizione);
+                if (OrdinamentoPosizioni.richiedeRibilanciamento(posizione)) {
+                    pianificaRibilanciamento(todo.getProprietario(), todo.getTipoBacheca());
+                }
+            }
+            return aggiornato;
+
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Riassegna a tutti i ToDo della bacheca posizioni equidistanti, mantenendo l'ordine attuale.
+     * Vengono scritte solo le righe la cui posizione cambia. Eseguito in background quando
+     * un inserimento o uno spostamento assegna una posizione vicina ai limiti.
+     *
+     * @param proprietario Il proprietario della bacheca
+     * @param tipoBacheca Il tipo di bacheca
+     */
+    private void ribilancia(String proprietario, TipoBacheca tipoBacheca) {
+        try (Connection conn = ConnessioneDatabase.getConnection()) {
+            ribilancia(conn, proprietario, tipoBacheca);
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
     /**
      * Restituisce tutti i ToDo di una determinata bacheca, ordinati per posizione.
      *
@@ -84,7 +253,8 @@ public class ToDoDAO implements IToDoDAO {
     @Override
     public List<ToDo> trovaPerBacheca(String proprietario, TipoBacheca tipoBacheca) {
         List<ToDo> lista = new ArrayList<>();
-        String sql = "SELECT * FROM todo WHERE proprietario = ? AND tipo_bacheca = ? ORDER BY posizione ASC";
+        String sql = "SELECT " + COLONNE_TODO + " FROM todo t WHERE t.proprietario = ? AND t.tipo_bacheca = ? " +
+                "ORDER BY t.posizione ASC, t.id DESC";
 
         try (Connection conn = ConnessioneDatabase.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
@@ -94,20 +264,7 @@ public class ToDoDAO implements IToDoDAO {
             ResultSet rs = stmt.executeQuery();
 
             while (rs.next()) {
-                ToDo todo = new ToDo(
-                        rs.getString("titolo"),
-                        rs.getString("data_scadenza"),
-                        rs.getString("url"),
-                        rs.getBytes("immagine"),
-                        rs.getString("descrizione"),
-                        rs.getString("colore")
-                );
-                todo.setId(rs.getInt("id"));
-                todo.setStato(StatoToDo.valueOf(rs.getString("stato")));
-                todo.setPosizione(rs.getInt("posizione"));
-                todo.setProprietario(proprietario);
-                todo.setTipoBacheca(tipoBacheca);
-                lista.add(todo);
+                lista.add(leggiToDo(rs));
             }
 
         } catch (SQLException e) {
@@ -118,37 +275,242 @@ public class ToDoDAO implements IToDoDAO {
     }
 
     /**
-     * Aggiorna un ToDo esistente nel database.
+     * Rilegge un singolo ToDo, ad esempio per aggiornarne la copia locale dopo un conflitto.
+     *
+     * @param id L'identificatore del ToDo
+     * @return Il ToDo letto, oppure null se non esiste o in caso di errore
+     */
+    @Override
+    public ToDo trovaPerId(int id) {
+        String sql = "SELECT " + COLONNE_TODO + " FROM todo t WHERE t.id = ?";
+
+        try (Connection conn = ConnessioneDatabase.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setInt(1, id);
+            ResultSet rs = stmt.executeQuery();
+            if (rs.next()) {
+                return leggiToDo(rs);
+            }
+
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Aggiorna un ToDo esistente nel database scrivendo solo i campi modificati
+     * (vedi {@link ToDo#getCampiModificati()}): il cambio di stato invia solo la colonna
+     * {@code stato}, e l'immagine viene riscritta solo se è stata sostituita o rimossa.
+     * La posizione non viene mai scritta da qui: la modificano solo {@link #sposta} e il ribilanciamento.
+     * Se nessun campo è cambiato non viene eseguita alcuna query.
+     * <p>
+     * La scrittura riesce solo se la versione sul database è ancora {@link ToDo#getVersione()}:
+     * in caso contrario qualcun altro ha modificato il ToDo dopo la lettura e nulla viene scritto.
+     * L'UPDATE e la lettura della versione attuale sono un'unica istruzione, quindi conflitto
+     * e ToDo eliminato si distinguono senza un secondo round trip. Se la scrittura non riesce
+     * i campi restano segnati come modificati.
      *
      * @param todo Il ToDo aggiornato
      * @param proprietario Il proprietario del ToDo
      * @param tipoBacheca La bacheca a cui appartiene
-     * @return true se l'aggiornamento ha avuto successo, false altrimenti
+     * @return L'esito dell'aggiornamento; {@link EsitoAggiornamento#AGGIORNATO} anche se non c'era nulla da salvare
      */
     @Override
-    public boolean aggiorna(ToDo todo, String proprietario, TipoBacheca tipoBacheca) {
-        String sql = "UPDATE todo SET titolo = ?, descrizione = ?, data_scadenza = ?, colore = ?, stato = ?, " +
-                "url = ?, immagine = ?, posizione = ? WHERE id = ?";
+    public EsitoAggiornamento aggiorna(ToDo todo, String proprietario, TipoBacheca tipoBacheca) {
+        Set<CampoToDo> campi = todo.prendiCampiModificati();
+        if (campi.isEmpty()) {
+            return EsitoAggiornamento.AGGIORNATO;
+        }
+
+        String sql = "WITH aggiornato AS (" + sqlAggiornamento(campi) + " RETURNING versione) " +
+                "SELECT (SELECT versione FROM aggiornato) AS nuova, (SELECT versione FROM todo WHERE id = ?) AS attuale";
 
+        EsitoAggiornamento esito = EsitoAggiornamento.ERRORE;
         try (Connection conn = ConnessioneDatabase.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
 
-            stmt.setString(1, todo.getTitolo());
-            stmt.setString(2, todo.getDescrizione());
-            stmt.setString(3, todo.getDataDiScadenza());
-            stmt.setString(4, todo.getColore());
-            stmt.setString(5, todo.getStato().name());
-            stmt.setString(6, todo.getUrl());
+            stmt.setInt(impostaCampiAggiornamento(stmt, todo, campi), todo.getId());
+            ResultSet rs = stmt.executeQuery();
+            rs.next();
 
-            if (todo.getImmagine() != null) {
-                stmt.setBytes(7, todo.getImmagine());
+            int nuova = rs.getInt("nuova");
+            if (!rs.wasNull()) {
+                todo.setVersione(nuova);
+                esito = EsitoAggiornamento.AGGIORNATO;
             } else {
-                stmt.setNull(7, java.sql.Types.BINARY);
+                rs.getInt("attuale");
+                esito = rs.wasNull() ? EsitoAggiornamento.NON_TROVATO : EsitoAggiornamento.CONFLITTO;
             }
 
-            stmt.setInt(8, todo.getPosizione());
-            stmt.setInt(9, todo.getId());
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+
+        if (esito != EsitoAggiornamento.AGGIORNATO) {
+            todo.ripristinaCampiModificati(campi);
+        }
+        return esito;
+    }
 
+    /**
+     * Aggiorna più ToDo in un'unica transazione. I ToDo che cambiano gli stessi campi condividono
+     * lo stesso statement e vengono inviati come un solo batch JDBC, quindi una raffica di cambi
+     * di stato su bacheche diverse produce un solo round trip. Come {@link #aggiorna} scrive solo
+     * i campi modificati, salta i ToDo senza modifiche e non sovrascrive un ToDo la cui versione
+     * sul database è cambiata dopo la lettura.
+     *
+     * @param todos I ToDo da aggiornare
+     * @return I ToDo non aggiornati perché non esistono più o sono stati modificati da altri,
+     *         oppure null se la transazione è fallita
+     */
+    @Override
+    public List<ToDo> aggiornaInBlocco(List<ToDo> todos) {
+        // Raggruppa per insieme di campi: ogni gruppo ha lo stesso testo SQL e diventa un batch
+        Map<Set<CampoToDo>, List<ToDo>> perCampi = new LinkedHashMap<>();
+        for (ToDo todo : todos) {
+            Set<CampoToDo> campi = todo.prendiCampiModificati();
+            if (!campi.isEmpty()) {
+                perCampi.computeIfAbsent(campi, c -> new ArrayList<>()).add(todo);
+            }
+        }
+
+        List<ToDo> mancanti = new ArrayList<>();
+        List<ToDo> scritti = new ArrayList<>();
+        try (Connection conn = ConnessioneDatabase.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                for (Map.Entry<Set<CampoToDo>, List<ToDo>> gruppo : perCampi.entrySet()) {
+                    try (PreparedStatement stmt = conn.prepareStatement(sqlAggiornamento(gruppo.getKey()))) {
+                        for (ToDo todo : gruppo.getValue()) {
+                            impostaCampiAggiornamento(stmt, todo, gruppo.getKey());
+                            stmt.addBatch();
+                        }
+                        int[] esiti = stmt.executeBatch();
+                        for (int i = 0; i < esiti.length; i++) {
+                            if (esiti[i] == 0) {
+                                mancanti.add(gruppo.getValue().get(i));
+                            } else {
+                                scritti.add(gruppo.getValue().get(i));
+                            }
+                        }
+                    }
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+
+            // Ogni riga scritta è passata dalla versione attesa alla successiva
+            scritti.forEach(todo -> todo.setVersione(todo.getVersione() + 1));
+            return mancanti;
+
+        } catch (SQLException e) {
+            e.printStackTrace();
+            perCampi.forEach((campi, gruppo) -> gruppo.forEach(todo -> todo.ripristinaCampiModificati(campi)));
+            return null;
+        }
+    }
+
+    /**
+     * Costruisce l'UPDATE che scrive i campi indicati di un ToDo, identificato dagli ultimi due
+     * parametri: l'ID e la versione attesa. Se la versione non corrisponde nessuna riga viene scritta.
+     *
+     * @param campi I campi da scrivere
+     * @return Il testo SQL
+     */
+    private static String sqlAggiornamento(Set<CampoToDo> campi) {
+        StringJoiner assegnazioni = new StringJoiner(", ", "UPDATE todo SET ", " WHERE id = ? AND versione = ?");
+        for (CampoToDo campo : campi) {
+            assegnazioni.add(switch (campo) {
+                case TITOLO -> "titolo = ?";
+                case DESCRIZIONE -> "descrizione = ?";
+                case DATA_SCADENZA -> "data_scadenza = ?";
+                case COLORE -> "colore = ?";
+                case STATO -> "stato = ?";
+                case URL -> "url = ?";
+                case IMMAGINE -> "immagine = ?, miniatura = ?";
+            });
+        }
+        return assegnazioni.toString();
+    }
+
+    /**
+     * Imposta i parametri di uno statement creato con {@link #sqlAggiornamento(Set)}.
+     * I parametri seguono lo stesso ordine dell'EnumSet usato per costruire la query.
+     *
+     * @param stmt Lo statement di aggiornamento
+     * @param todo Il ToDo da scrivere
+     * @param campi I campi da scrivere
+     * @return L'indice del primo parametro successivo a quelli dell'UPDATE
+     * @throws SQLException se un parametro non può essere impostato
+     */
+    private static int impostaCampiAggiornamento(PreparedStatement stmt, ToDo todo, Set<CampoToDo> campi) throws SQLException {
+        int i = 1;
+        for (CampoToDo campo : campi) {
+            switch (campo) {
+                case TITOLO -> stmt.setString(i++, todo.getTitolo());
+                case DESCRIZIONE -> stmt.setString(i++, todo.getDescrizione());
+                case DATA_SCADENZA -> stmt.setObject(i++, todo.getDataDiScadenza(), Types.DATE);
+                case COLORE -> stmt.setString(i++, todo.getColore());
+                case STATO -> stmt.setString(i++, todo.getStato().name());
+                case URL -> stmt.setString(i++, todo.getUrl());
+                case IMMAGINE -> {
+                    stmt.setBytes(i++, todo.getImmagine());
+                    stmt.setBytes(i++, todo.getMiniatura());
+                }
+            }
+        }
+        stmt.setInt(i++, todo.getId());
+        stmt.setInt(i++, todo.getVersione());
+        return i;
+    }
+
+    /**
+     * Legge dal database l'immagine di un ToDo. Le query delle bacheche non la includono,
+     * quindi va richiesta solo quando deve essere mostrata.
+     *
+     * @param id L'identificatore del ToDo
+     * @return i byte dell'immagine, oppure null se il ToDo non ha immagine o non esiste
+     */
+    @Override
+    public byte[] caricaImmagine(int id) {
+        String sql = "SELECT immagine FROM todo WHERE id = ?";
+
+        try (Connection conn = ConnessioneDatabase.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setInt(1, id);
+            ResultSet rs = stmt.executeQuery();
+            if (rs.next()) {
+                return rs.getBytes("immagine");
+            }
+
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Salva la miniatura di un ToDo senza modificarne gli altri campi.
+     * Usato per generare le miniature mancanti dei ToDo salvati prima della loro introduzione.
+     *
+     * @param id L'identificatore del ToDo
+     * @param miniatura I byte della miniatura
+     * @return true se il ToDo è stato aggiornato, false altrimenti
+     */
+    @Override
+    public boolean salvaMiniatura(int id, byte[] miniatura) {
+        String sql = "UPDATE todo SET miniatura = ? WHERE id = ?";
+
+        try (Connection conn = ConnessioneDatabase.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setBytes(1, miniatura);
+            stmt.setInt(2, id);
             return stmt.executeUpdate() > 0;
 
         } catch (SQLException e) {
@@ -180,7 +542,8 @@ public class ToDoDAO implements IToDoDAO {
     }
 
     /**
-     * Restituisce l'elenco dei ToDo condivisi con un utente e accettati.
+     * Restituisce l'elenco dei ToDo condivisi con un utente e accettati, sia singolarmente
+     * sia come parte di una bacheca condivisa.
      *
      * @param username L'username dell'utente a cui sono stati condivisi i ToDo
      * @return Lista di {@link ToDo} condivisi accettati
@@ -189,35 +552,218 @@ public class ToDoDAO implements IToDoDAO {
     public List<ToDo> getToDoCondivisiCon(String username) {
         List<ToDo> lista = new ArrayList<>();
         String sql = """
-            SELECT t.id, t.titolo, t.data_scadenza, t.url, t.immagine, t.descrizione,
-                   t.colore, t.posizione, t.stato AS stato_todo, t.proprietario, t.tipo_bacheca
-            FROM condivisione c
-            JOIN todo t ON c.id_todo = t.id
-            WHERE c.username_utente = ? AND c.stato = 'ACCEPTED'
-            ORDER BY t.tipo_bacheca, t.posizione
+            SELECT %s
+            FROM todo t
+            JOIN (%s) condivisi ON condivisi.id = t.id
+            ORDER BY t.tipo_bacheca, t.posizione, t.id DESC
+        """.formatted(COLONNE_TODO, ID_TODO_CONDIVISI.formatted("?"));
+
+        try (Connection conn = ConnessioneDatabase.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setString(1, username);
+            stmt.setString(2, username);
+            ResultSet rs = stmt.executeQuery();
+
+            while (rs.next()) {
+                lista.add(leggiToDo(rs));
+            }
+
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+
+        return lista;
+    }
+
+    /**
+     * Indica se un ToDo è condiviso con un utente e accettato, singolarmente o tramite la sua bacheca.
+     *
+     * @param id L'identificatore del ToDo
+     * @param username L'username dell'utente
+     * @return true se il ToDo è condiviso con l'utente, false altrimenti o in caso di errore
+     */
+    @Override
+    public boolean isCondivisoCon(int id, String username) {
+        String sql = "SELECT 1 FROM (" + ID_TODO_CONDIVISI.formatted("?") + ") condivisi WHERE condivisi.id = ?";
+
+        try (Connection conn = ConnessioneDatabase.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setString(1, username);
+            stmt.setString(2, username);
+            stmt.setInt(3, id);
+            return stmt.executeQuery().next();
+
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Legge il cursore di sincronizzazione attuale.
+     *
+     * @return il cursore, oppure -1 in caso di errore
+     */
+    @Override
+    public long cursoreModifiche() {
+        try (Connection conn = ConnessioneDatabase.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(CURSORE_MODIFICHE)) {
+
+            ResultSet rs = stmt.executeQuery();
+            rs.next();
+            return rs.getLong(1);
+
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return -1;
+        }
+    }
+
+    /**
+     * Legge le modifiche ai ToDo visibili a un utente successive al cursore. Le tre letture
+     * avvengono in una transazione REPEATABLE READ, quindi sullo stesso snapshot da cui viene
+     * preso il nuovo cursore: una scrittura ancora in corso verrà restituita dalla lettura successiva.
+     * Un ToDo rimosso e poi di nuovo visibile viene restituito solo tra quelli modificati.
+     * Se il cursore non è successivo alle rimozioni già eliminate dalla manutenzione, alcune
+     * rimozioni non sono più leggibili e viene richiesto un ricaricamento completo.
+     *
+     * @param username L'username dell'utente
+     * @param cursore Il cursore della lettura precedente
+     * @return Le modifiche e il nuovo cursore, oppure null in caso di errore
+     */
+    @Override
+    public ModificheToDo modificheDa(String username, long cursore) {
+        String sqlModificati = """
+            SELECT %s, MIN(v.visibile_da) >= ? AS nuovo
+            FROM (%s) v
+            JOIN todo t ON t.id = v.id
+            GROUP BY t.id
+            ORDER BY t.tipo_bacheca, t.posizione, t.id DESC
+        """.formatted(COLONNE_TODO, TODO_MODIFICATI);
+        String sqlRimossi = "SELECT DISTINCT id_todo FROM todo_rimosso WHERE username_utente = ? AND modifica >= ?";
+
+        try (Connection conn = ConnessioneDatabase.getConnection()) {
+            conn.setAutoCommit(false);
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("SET TRANSACTION ISOLATION LEVEL REPEATABLE READ, READ ONLY");
+            }
+
+            long nuovoCursore;
+            try (PreparedStatement stmt = conn.prepareStatement(CURSORE_MODIFICHE)) {
+                ResultSet rs = stmt.executeQuery();
+                rs.next();
+                nuovoCursore = rs.getLong(1);
+            }
+
+            try (PreparedStatement stmt = conn.prepareStatement(ORIZZONTE_RIMOSSI)) {
+                ResultSet rs = stmt.executeQuery();
+                rs.next();
+                if (cursore <= rs.getLong(1)) {
+                    conn.commit();
+                    return ModificheToDo.daRicaricare(nuovoCursore);
+                }
+            }
+
+            List<ToDo> inseriti = new ArrayList<>();
+            List<ToDo> aggiornati = new ArrayList<>();
+            Set<Integer> visibili = new HashSet<>();
+            try (PreparedStatement stmt = conn.prepareStatement(sqlModificati)) {
+                stmt.setLong(1, cursore);
+                for (int ramo = 0; ramo < 5; ramo++) {
+                    stmt.setString(2 + ramo * 2, username);
+                    stmt.setLong(3 + ramo * 2, cursore);
+                }
+                ResultSet rs = stmt.executeQuery();
+                while (rs.next()) {
+                    ToDo todo = leggiToDo(rs);
+                    visibili.add(todo.getId());
+                    (rs.getBoolean("nuovo") ? inseriti : aggiornati).add(todo);
+                }
+            }
+
+            List<Integer> eliminati = new ArrayList<>();
+            try (PreparedStatement stmt = conn.prepareStatement(sqlRimossi)) {
+                stmt.setString(1, username);
+                stmt.setLong(2, cursore);
+                ResultSet rs = stmt.executeQuery();
+                while (rs.next()) {
+                    int id = rs.getInt(1);
+                    if (!visibili.contains(id)) {
+                        eliminati.add(id);
+                    }
+                }
+            }
+
+            conn.commit();
+            return new ModificheToDo(inseriti, aggiornati, eliminati, nuovoCursore);
+
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Elimina le rimozioni registrate prima dell'istante indicato e, nella stessa istruzione,
+     * aggiorna l'orizzonte oltre il quale {@link #modificheDa(String, long)} richiede un
+     * ricaricamento completo.
+     *
+     * @param limite le rimozioni precedenti a questo istante vengono eliminate
+     * @return il numero di rimozioni eliminate, oppure -1 in caso di errore
+     */
+    @Override
+    public int eliminaRimossiPrima(OffsetDateTime limite) {
+        String sql = """
+            WITH eliminati AS (
+                DELETE FROM todo_rimosso WHERE rimosso_il < ? RETURNING modifica
+            ), orizzonte AS (
+                INSERT INTO todo_rimosso_orizzonte (cursore)
+                SELECT MAX(modifica) FROM eliminati HAVING COUNT(*) > 0
+                ON CONFLICT (id) DO UPDATE SET cursore = GREATEST(todo_rimosso_orizzonte.cursore, EXCLUDED.cursore)
+            )
+            SELECT COUNT(*) FROM eliminati
         """;
 
+        try (Connection conn = ConnessioneDatabase.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setObject(1, limite);
+            ResultSet rs = stmt.executeQuery();
+            rs.next();
+            return rs.getInt(1);
+
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return -1;
+        }
+    }
+
+    /**
+     * Restituisce i ToDo di un utente con scadenza uguale o precedente alla data indicata.
+     * La condizione sulla scadenza è un intervallo dell'indice su (proprietario, data_scadenza),
+     * quindi vengono letti solo i ToDo scaduti e non l'intero insieme dei ToDo dell'utente.
+     *
+     * @param username Il proprietario dei ToDo
+     * @param oggi La data di riferimento
+     * @return Lista dei ToDo scaduti, ordinati per bacheca e scadenza
+     */
+    @Override
+    public List<ToDo> trovaScaduti(String username, LocalDate oggi) {
+        List<ToDo> lista = new ArrayList<>();
+        String sql = "SELECT " + COLONNE_TODO + " FROM todo t WHERE t.proprietario = ? AND t.data_scadenza <= ? " +
+                "ORDER BY t.tipo_bacheca, t.data_scadenza, t.posizione";
+
         try (Connection conn = ConnessioneDatabase.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
 
             stmt.setString(1, username);
+            stmt.setObject(2, oggi);
             ResultSet rs = stmt.executeQuery();
 
             while (rs.next()) {
-                ToDo todo = new ToDo(
-                        rs.getString("titolo"),
-                        rs.getString("data_scadenza"),
-                        rs.getString("url"),
-                        rs.getBytes("immagine"),
-                        rs.getString("descrizione"),
-                        rs.getString("colore")
-                );
-                todo.setId(rs.getInt("id"));
-                todo.setPosizione(rs.getInt("posizione"));
-                todo.setStato(StatoToDo.valueOf(rs.getString("stato_todo")));
-                todo.setProprietario(rs.getString("proprietario"));
-                todo.setTipoBacheca(TipoBacheca.valueOf(rs.getString("tipo_bacheca")));
-                lista.add(todo);
+                lista.add(leggiToDo(rs));
             }
 
         } catch (SQLException e) {
@@ -226,7 +772,273 @@ public class ToDoDAO implements IToDoDAO {
 
         return lista;
     }
-}
 
+    /**
+     * Riporta a "non completato" i ToDo scaduti e completati di un utente con un solo UPDATE,
+     * che tocca solo la colonna dello stato e restituisce gli ID modificati con la loro versione.
+     * Il ripristino non incrementa la versione (vedi {@link #segnaRipristinoScadenze}).
+     *
+     * @param username Il proprietario dei ToDo
+     * @param oggi La data di riferimento
+     * @return La versione dei ToDo modificati, per ID
+     */
+    @Override
+    public Map<Integer, Integer> ripristinaScaduti(String username, LocalDate oggi) {
+        Map<Integer, Integer> versioni = new HashMap<>();
+        String sql = "UPDATE todo SET stato = 'NON_COMPLETATO' " +
+                "WHERE proprietario = ? AND data_scadenza <= ? AND stato = 'COMPLETATO' RETURNING id, versione";
 
+        try (Connection conn = ConnessioneDatabase.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                segnaRipristinoScadenze(conn);
+                stmt.setString(1, username);
+                stmt.setObject(2, oggi);
+                ResultSet rs = stmt.executeQuery();
 
+                while (rs.next()) {
+                    versioni.put(rs.getInt("id"), rs.getInt("versione"));
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+
+        } catch (SQLException e) {
+            e.printStackTrace();
+            versioni.clear();
+        }
+
+        return versioni;
+    }
+
+    /**
+     * Riporta a "non completato" i ToDo scaduti e completati di tutti gli utenti con un solo UPDATE.
+     * Come {@link #ripristinaScaduti} non incrementa la versione dei ToDo modificati.
+     *
+     * @param oggi La data di riferimento
+     * @return Il numero di ToDo modificati, oppure -1 in caso di errore
+     */
+    @Override
+    public int ripristinaTuttiScaduti(LocalDate oggi) {
+        String sql = "UPDATE todo SET stato = 'NON_COMPLETATO' WHERE data_scadenza <= ? AND stato = 'COMPLETATO'";
+
+        try (Connection conn = ConnessioneDatabase.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                segnaRipristinoScadenze(conn);
+                stmt.setObject(1, oggi);
+                int ripristinati = stmt.executeUpdate();
+                conn.commit();
+                return ripristinati;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return -1;
+        }
+    }
+
+    /**
+     * Segnala al trigger della versione che la transazione in corso è un ripristino automatico
+     * delle scadenze, da non considerare una modifica dell'utente: così chi ha la bacheca aperta
+     * non riceve un falso conflitto al salvataggio successivo. L'impostazione vale fino al termine
+     * della transazione.
+     *
+     * @param conn Connessione con la transazione in corso
+     * @throws SQLException se l'impostazione fallisce
+     */
+    private static void segnaRipristinoScadenze(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("SET LOCAL todo.ripristino_scadenze = 'on'");
+        }
+    }
+
+    /**
+     * Costruisce un ToDo dalla riga corrente di un result set che contiene le colonne {@link #COLONNE_TODO}.
+     *
+     * @param rs result set posizionato sulla riga da leggere
+     * @return il ToDo letto
+     * @throws SQLException se una colonna non è leggibile
+     */
+    static ToDo leggiToDo(ResultSet rs) throws SQLException {
+        ToDo todo = new ToDo(
+                rs.getString("titolo"),
+                rs.getObject("data_scadenza", LocalDate.class),
+                rs.getString("url"),
+                null,
+                rs.getString("descrizione"),
+                rs.getString("colore")
+        );
+        todo.setId(rs.getInt("id"));
+        todo.setImmagineNonCaricata(rs.getInt("dimensione_immagine"));
+        todo.setMiniatura(rs.getBytes("miniatura"));
+        todo.setStato(StatoToDo.valueOf(rs.getString("stato")));
+        todo.setPosizione(rs.getInt("posizione"));
+        todo.setProprietario(rs.getString("proprietario"));
+        todo.setTipoBacheca(TipoBacheca.valueOf(rs.getString("tipo_bacheca")));
+        todo.setVersione(rs.getInt("versione"));
+        todo.segnaSalvato();
+        return todo;
+    }
+
+    /**
+     * Inserisce un ToDo calcolandone la posizione con un'espressione aggregata sulla bacheca.
+     *
+     * @param todo Il ToDo da inserire
+     * @param proprietario Il proprietario del ToDo
+     * @param tipoBacheca Il tipo di bacheca
+     * @param espressionePosizione Espressione SQL aggregata che produce la posizione
+     * @return true se l'inserimento è avvenuto correttamente, false altrimenti
+     */
+    private boolean inserisci(ToDo todo, String proprietario, TipoBacheca tipoBacheca, String espressionePosizione) {
+        String sql = INSERT_TODO +
+                "SELECT ?, ?, ?, ?, ?, ?, ?, ?, " + espressionePosizione + ", ?, ? " +
+                "FROM todo WHERE proprietario = ? AND tipo_bacheca = ? RETURNING id, posizione, versione";
+
+        try (Connection conn = ConnessioneDatabase.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            impostaCampiInserimento(stmt, todo);
+            stmt.setString(9, proprietario);
+            stmt.setString(10, tipoBacheca.name());
+            stmt.setString(11, proprietario);
+            stmt.setString(12, tipoBacheca.name());
+            leggiIdEPosizione(stmt.executeQuery(), todo);
+
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return false;
+        }
+
+        if (OrdinamentoPosizioni.richiedeRibilanciamento(todo.getPosizione())) {
+            pianificaRibilanciamento(proprietario, tipoBacheca);
+        }
+        return true;
+    }
+
+    /**
+     * Imposta i primi sette parametri di un inserimento con i campi del ToDo.
+     *
+     * @param stmt Lo statement di inserimento
+     * @param todo Il ToDo da inserire
+     * @throws SQLException se un parametro non può essere impostato
+     */
+    private void impostaCampiInserimento(PreparedStatement stmt, ToDo todo) throws SQLException {
+        stmt.setString(1, todo.getTitolo());
+        stmt.setString(2, todo.getDescrizione());
+        stmt.setObject(3, todo.getDataDiScadenza(), Types.DATE);
+        stmt.setString(4, todo.getColore());
+        stmt.setString(5, todo.getStato().name());
+        stmt.setString(6, todo.getUrl());
+        stmt.setBytes(7, todo.getImmagine());
+        stmt.setBytes(8, todo.getMiniatura());
+    }
+
+    /**
+     * Copia nel ToDo l'ID, la posizione e la versione restituiti da un inserimento.
+     *
+     * @param rs Il result set della clausola RETURNING
+     * @param todo Il ToDo appena inserito
+     * @throws SQLException se la lettura fallisce
+     */
+    private void leggiIdEPosizione(ResultSet rs, ToDo todo) throws SQLException {
+        if (rs.next()) {
+            todo.setId(rs.getInt("id"));
+            todo.setPosizione(rs.getInt("posizione"));
+            todo.setVersione(rs.getInt("versione"));
+            todo.segnaSalvato();
+        }
+    }
+
+    /**
+     * Calcola una posizione libera tra due vicini, ribilanciando la bacheca se non c'è spazio.
+     * Le posizioni dei vicini vengono rilette dal database per non dipendere da copie in memoria obsolete.
+     *
+     * @param conn Connessione con la transazione in corso
+     * @param proprietario Il proprietario della bacheca
+     * @param tipoBacheca Il tipo di bacheca
+     * @param precedente Il vicino che precede, oppure null
+     * @param successivo Il vicino che segue, oppure null
+     * @return la posizione da assegnare
+     * @throws SQLException se le letture o il ribilanciamento falliscono
+     */
+    private Integer posizioneLibera(Connection conn, String proprietario, TipoBacheca tipoBacheca,
+                                    ToDo precedente, ToDo successivo) throws SQLException {
+        Integer posizione = OrdinamentoPosizioni.posizioneTra(
+                posizioneCorrente(conn, precedente), posizioneCorrente(conn, successivo));
+        if (posizione == null) {
+            ribilancia(conn, proprietario, tipoBacheca);
+            posizione = OrdinamentoPosizioni.posizioneTra(
+                    posizioneCorrente(conn, precedente), posizioneCorrente(conn, successivo));
+        }
+        if (posizione == null) {
+            throw new SQLException("Nessuna posizione disponibile anche dopo il ribilanciamento");
+        }
+        return posizione;
+    }
+
+    /**
+     * Legge la posizione attuale di un ToDo e la aggiorna anche nell'oggetto in memoria.
+     *
+     * @param conn Connessione da usare
+     * @param todo Il ToDo, oppure null
+     * @return la posizione letta, oppure null se il ToDo è null o non esiste più
+     * @throws SQLException se la lettura fallisce
+     */
+    private Integer posizioneCorrente(Connection conn, ToDo todo) throws SQLException {
+        if (todo == null) {
+            return null;
+        }
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT posizione FROM todo WHERE id = ?")) {
+            stmt.setInt(1, todo.getId());
+            ResultSet rs = stmt.executeQuery();
+            if (rs.next()) {
+                todo.setPosizione(rs.getInt("posizione"));
+                return todo.getPosizione();
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Esegue il ribilanciamento delle posizioni di una bacheca sulla connessione indicata.
+     *
+     * @param conn Connessione da usare
+     * @param proprietario Il proprietario della bacheca
+     * @param tipoBacheca Il tipo di bacheca
+     * @throws SQLException se l'aggiornamento fallisce
+     */
+    private void ribilancia(Connection conn, String proprietario, TipoBacheca tipoBacheca) throws SQLException {
+        String sql = """
+            UPDATE todo t SET posizione = o.nuova
+            FROM (
+                SELECT id, ((ROW_NUMBER() OVER (ORDER BY posizione ASC, id DESC)) - 1) * ? AS nuova
+                FROM todo
+                WHERE proprietario = ? AND tipo_bacheca = ?
+            ) o
+            WHERE t.id = o.id AND t.posizione IS DISTINCT FROM o.nuova
+        """;
+
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, OrdinamentoPosizioni.INTERVALLO);
+            stmt.setString(2, proprietario);
+            stmt.setString(3, tipoBacheca.name());
+            stmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Richiede il ribilanciamento di una bacheca su un thread in background.
+     *
+     * @param proprietario Il proprietario della bacheca
+     * @param tipoBacheca Il tipo di bacheca
+     */
+    private void pianificaRibilanciamento(String proprietario, TipoBacheca tipoBacheca) {
+        RIBILANCIAMENTI.execute(() -> ribilancia(proprietario, tipoBacheca));
+    }
+}
@@ -0,0 +1,214 @@
+package dao;
+
+import interfaccedao.IToDoDAO;
+import model.EsitoAggiornamento;
+import model.ModificheToDo;
+import model.TipoBacheca;
+import model.ToDo;
+
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * {@link IToDoDAO} che tiene in una {@link CacheEntita} i ToDo letti per ID e delega tutto il
+ * resto a un altro DAO.
+ * <p>
+ * Le letture per ID servono soprattutto a controllare proprietario e visibilità prima delle
+ * condivisioni e delle riletture di un singolo ToDo, e si ripetono sugli stessi ToDo. Ogni
+ * scrittura fatta tramite questo DAO invalida direttamente le voci interessate; quelle fatte da
+ * altri processi vanno segnalate con {@link #invalida(Set)}, e in ogni caso una voce scade dopo
+ * {@link #DURATA_MS}. Le bacheche e i ToDo condivisi vengono sempre letti dal database.
+ * <p>
+ * I ToDo in cache non escono mai dal DAO: ogni lettura restituisce una copia, che il chiamante
+ * può modificare liberamente.
+ */
+public class ToDoDAOConCache implements IToDoDAO {
+
+    /** Numero massimo di ToDo in cache. */
+    private static final int CAPACITA = 2_000;
+
+    /** Durata massima di un ToDo in cache (ms). */
+    private static final long DURATA_MS = 60_000;
+
+    private final IToDoDAO dao;
+    private final CacheEntita<Integer, ToDo> perId = new CacheEntita<>("todo", CAPACITA, DURATA_MS);
+
+    /**
+     * Crea il DAO con cache sopra quello indicato.
+     *
+     * @param dao DAO che accede al database
+     */
+    public ToDoDAOConCache(IToDoDAO dao) {
+        this.dao = dao;
+    }
+
+    /**
+     * Invalida i ToDo modificati da altri processi, ad esempio su notifica del database.
+     *
+     * @param ids ID dei ToDo modificati; un insieme vuoto invalida tutta la cache
+     */
+    public void invalida(Set<Integer> ids) {
+        if (ids.isEmpty()) {
+            perId.svuota();
+        } else {
+            ids.forEach(perId::invalida);
+        }
+    }
+
+    /**
+     * Restituisce le metriche della cache dei ToDo.
+     *
+     * @return statistiche della cache
+     */
+    public StatisticheCache getStatisticheCache() {
+        return perId.getStatistiche();
+    }
+
+    @Override
+    public ToDo trovaPerId(int id) {
+        ToDo todo = perId.leggi(id, dao::trovaPerId);
+        return todo != null ? todo.copia() : null;
+    }
+
+    // Gli inserimenti e gli spostamenti possono ribilanciare le posizioni dell'intera bacheca;
+    // i ribilanciamenti in background arrivano con le notifiche del database
+
+    @Override
+    public boolean salva(ToDo todo, String proprietario, TipoBacheca tipoBacheca) {
+        try {
+            return dao.salva(todo, proprietario, tipoBacheca);
+        } finally {
+            invalidaBacheca(proprietario, tipoBacheca);
+        }
+    }
+
+    @Override
+    public boolean salvaInCoda(ToDo todo, String proprietario, TipoBacheca tipoBacheca) {
+        try {
+            return dao.salvaInCoda(todo, proprietario, tipoBacheca);
+        } finally {
+            invalidaBacheca(proprietario, tipoBacheca);
+        }
+    }
+
+    @Override
+    public boolean salvaTra(ToDo todo, String proprietario, TipoBacheca tipoBacheca, ToDo precedente, ToDo successivo) {
+        try {
+            return dao.salvaTra(todo, proprietario, tipoBacheca, precedente, successivo);
+        } finally {
+            invalidaBacheca(proprietario, tipoBacheca);
+        }
+    }
+
+    @Override
+    public boolean sposta(ToDo todo, ToDo precedente, ToDo successivo) {
+        try {
+            return dao.sposta(todo, precedente, successivo);
+        } finally {
+            invalidaBacheca(todo.getProprietario(), todo.getTipoBacheca());
+        }
+    }
+
+    @Override
+    public EsitoAggiornamento aggiorna(ToDo todo, String proprietario, TipoBacheca tipoBacheca) {
+        try {
+            return dao.aggiorna(todo, proprietario, tipoBacheca);
+        } finally {
+            perId.invalida(todo.getId());
+        }
+    }
+
+    @Override
+    public List<ToDo> aggiornaInBlocco(List<ToDo> todos) {
+        try {
+            return dao.aggiornaInBlocco(todos);
+        } finally {
+            for (ToDo todo : todos) {
+                perId.invalida(todo.getId());
+            }
+        }
+    }
+
+    @Override
+    public boolean salvaMiniatura(int id, byte[] miniatura) {
+        try {
+            return dao.salvaMiniatura(id, miniatura);
+        } finally {
+            perId.invalida(id);
+        }
+    }
+
+    @Override
+    public boolean elimina(int id) {
+        try {
+            return dao.elimina(id);
+        } finally {
+            perId.invalida(id);
+        }
+    }
+
+    @Override
+    public Map<Integer, Integer> ripristinaScaduti(String username, LocalDate oggi) {
+        try {
+            return dao.ripristinaScaduti(username, oggi);
+        } finally {
+            perId.invalidaSe(todo -> username.equals(todo.getProprietario()));
+        }
+    }
+
+    @Override
+    public int ripristinaTuttiScaduti(LocalDate oggi) {
+        try {
+            return dao.ripristinaTuttiScaduti(oggi);
+        } finally {
+            perId.svuota();
+        }
+    }
+
+    @Override
+    public List<ToDo> trovaPerBacheca(String proprietario, TipoBacheca tipoBacheca) {
+        return dao.trovaPerBacheca(proprietario, tipoBacheca);
+    }
+
+    @Override
+    public byte[] caricaImmagine(int id) {
+        return dao.caricaImmagine(id);
+    }
+
+    @Override
+    public List<ToDo> getToDoCondivisiCon(String username) {
+        return dao.getToDoCondivisiCon(username);
+    }
+
+    @Override
+    public long cursoreModifiche() {
+        return dao.cursoreModifiche();
+    }
+
+    @Override
+    public ModificheToDo modificheDa(String username, long cursore) {
+        return dao.modificheDa(username, cursore);
+    }
+
+    @Override
+    public int eliminaRimossiPrima(OffsetDateTime limite) {
+        return dao.eliminaRimossiPrima(limite);
+    }
+
+    @Override
+    public boolean isCondivisoCon(int id, String username) {
+        return dao.isCondivisoCon(id, username);
+    }
+
+    @Override
+    public List<ToDo> trovaScaduti(String username, LocalDate oggi) {
+        return dao.trovaScaduti(username, oggi);
+    }
+
+    private void invalidaBacheca(String proprietario, TipoBacheca tipoBacheca) {
+        perId.invalidaSe(todo -> todo.getTipoBacheca() == tipoBacheca && todo.getProprietario().equals(proprietario));
+    }
+}
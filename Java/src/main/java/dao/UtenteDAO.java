@@ -1,12 +1,16 @@
 package dao;
 
+import model.Bacheca;
+import model.TipoBacheca;
 import model.Utente;
 import interfaccedao.IUtenteDAO;
 import database.ConnessioneDatabase;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Implementazione dell'interfaccia {@link IUtenteDAO} per la gestione della tabella "utente".
@@ -22,6 +26,28 @@ public class UtenteDAO implements IUtenteDAO {
         // Nessuna inizializzazione necessaria
     }
 
+    /**
+     * Query che legge utente, bacheche, ToDo propri e ToDo condivisi accettati in un solo round trip.
+     * Ogni riga è un ToDo proprio ('B'), una bacheca vuota ('B' senza ToDo) o un ToDo condiviso ('C'),
+     * singolarmente o come parte di una bacheca condivisa.
+     */
+    private static final String SNAPSHOT = """
+        SELECT u.username, u.password, s.*
+        FROM utente u
+        LEFT JOIN LATERAL (
+            SELECT 'B' AS origine, b.tipo AS bacheca, b.descrizione AS descrizione_bacheca, %1$s
+            FROM bacheca b
+            LEFT JOIN todo t ON t.proprietario = b.proprietario AND t.tipo_bacheca = b.tipo
+            WHERE b.proprietario = u.username
+            UNION ALL
+            SELECT 'C', NULL, NULL, %1$s
+            FROM todo t
+            JOIN (%2$s) condivisi ON condivisi.id = t.id
+        ) s ON TRUE
+        WHERE u.username = ? AND (CAST(? AS varchar) IS NULL OR u.password = ?)
+        ORDER BY s.origine, s.tipo_bacheca, s.posizione, s.id DESC
+        """.formatted(ToDoDAO.COLONNE_TODO, ToDoDAO.ID_TODO_CONDIVISI.formatted("u.username"));
+
     /**
      * Salva un nuovo utente nel database.
      *
@@ -102,6 +128,54 @@ public class UtenteDAO implements IUtenteDAO {
         return null;
     }
 
+    /**
+     * Restituisce gli username di tutti gli utenti registrati, in ordine alfabetico.
+     *
+     * @return lista degli username, vuota in caso di errore
+     */
+    @Override
+    public List<String> elencaUsername() {
+        List<String> usernames = new ArrayList<>();
+        String sql = "SELECT username FROM utente ORDER BY username";
+
+        try (Connection conn = ConnessioneDatabase.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                usernames.add(rs.getString("username"));
+            }
+
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return usernames;
+    }
+
+    /**
+     * Carica con un'unica query l'utente, le sue bacheche con i ToDo e i ToDo condivisi accettati.
+     *
+     * @param username L'username dell'utente
+     * @return L'oggetto {@link Utente} completo o null se non esiste
+     */
+    @Override
+    public Utente loadSnapshot(String username) {
+        return caricaSnapshot(username.trim(), null);
+    }
+
+    /**
+     * Carica con un'unica query l'utente, le sue bacheche con i ToDo e i ToDo condivisi accettati,
+     * verificando la password.
+     *
+     * @param username L'username dell'utente
+     * @param password La password dell'utente
+     * @return L'oggetto {@link Utente} completo o null se le credenziali non sono valide
+     */
+    @Override
+    public Utente loadSnapshot(String username, String password) {
+        return caricaSnapshot(username, password);
+    }
+
     /**
      * Elimina un utente dal database in base allo username.
      *
@@ -197,7 +271,56 @@ public class UtenteDAO implements IUtenteDAO {
             return false;
         }
     }
-}
 
+    /**
+     * Esegue la query {@link #SNAPSHOT} e ricostruisce l'utente con bacheche e ToDo condivisi.
+     *
+     * @param username L'username dell'utente
+     * @param password La password richiesta, oppure null per non verificarla
+     * @return L'utente caricato, oppure null se non esiste o la password non corrisponde
+     */
+    private Utente caricaSnapshot(String username, String password) {
+        try (Connection conn = ConnessioneDatabase.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(SNAPSHOT)) {
+
+            stmt.setString(1, username);
+            stmt.setString(2, password);
+            stmt.setString(3, password);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                Utente utente = null;
+                Map<TipoBacheca, Bacheca> bacheche = new EnumMap<>(TipoBacheca.class);
+
+                while (rs.next()) {
+                    if (utente == null) {
+                        utente = new Utente(rs.getString("username"), rs.getString("password"));
+                    }
+
+                    String origine = rs.getString("origine");
+                    if ("B".equals(origine)) {
+                        TipoBacheca tipo = TipoBacheca.valueOf(rs.getString("bacheca"));
+                        Bacheca bacheca = bacheche.get(tipo);
+                        if (bacheca == null) {
+                            bacheca = new Bacheca(tipo, rs.getString("descrizione_bacheca"));
+                            bacheche.put(tipo, bacheca);
+                        }
+                        if (rs.getObject("id") != null) {
+                            bacheca.aggiungiToDo(ToDoDAO.leggiToDo(rs));
+                        }
+                    } else if ("C".equals(origine)) {
+                        utente.aggiungiToDoCondiviso(ToDoDAO.leggiToDo(rs));
+                    }
+                }
 
+                if (utente != null) {
+                    utente.setBacheche(new ArrayList<>(bacheche.values()));
+                }
+                return utente;
+            }
 
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package dao;
+
+import interfaccedao.IUtenteDAO;
+import model.Utente;
+
+import java.util.List;
+
+/**
+ * {@link IUtenteDAO} che tiene in cache la ricerca per username e l'elenco degli username,
+ * riletti a ogni registrazione e a ogni apertura delle finestre di condivisione, e delega tutto
+ * il resto a un altro DAO.
+ * <p>
+ * Il login e il caricamento completo dell'utente vengono sempre letti dal database: la verifica
+ * delle credenziali non deve dipendere da dati in cache. Le scritture fatte tramite questo DAO
+ * invalidano le voci interessate; quelle fatte da altri processi diventano visibili alla scadenza
+ * delle voci. Gli utenti in cache non escono mai dal DAO: ogni lettura restituisce una copia.
+ */
+public class UtenteDAOConCache implements IUtenteDAO {
+
+    /** Numero massimo di utenti in cache. */
+    private static final int CAPACITA_UTENTI = 1_000;
+
+    /** Durata massima di un utente in cache (ms). */
+    private static final long DURATA_UTENTI_MS = 300_000;
+
+    /** Durata massima dell'elenco degli username in cache (ms). */
+    private static final long DURATA_ELENCO_MS = 60_000;
+
+    /** Unica chiave della cache dell'elenco. */
+    private static final String ELENCO = "*";
+
+    private final IUtenteDAO dao;
+    private final CacheEntita<String, Utente> perUsername =
+            new CacheEntita<>("utente", CAPACITA_UTENTI, DURATA_UTENTI_MS);
+    private final CacheEntita<String, List<String>> elenco =
+            new CacheEntita<>("elenco-utenti", 2, DURATA_ELENCO_MS);
+
+    /**
+     * Crea il DAO con cache sopra quello indicato.
+     *
+     * @param dao DAO che accede al database
+     */
+    public UtenteDAOConCache(IUtenteDAO dao) {
+        this.dao = dao;
+    }
+
+    /**
+     * Restituisce le metriche della cache degli utenti.
+     *
+     * @return statistiche della cache
+     */
+    public StatisticheCache getStatisticheCache() {
+        return perUsername.getStatistiche();
+    }
+
+    /**
+     * Restituisce le metriche della cache dell'elenco degli username.
+     *
+     * @return statistiche della cache
+     */
+    public StatisticheCache getStatisticheElenco() {
+        return elenco.getStatistiche();
+    }
+
+    @Override
+    public Utente findByUsername(String username) {
+        Utente utente = perUsername.leggi(username.trim(), dao::findByUsername);
+        return utente != null ? new Utente(utente.getUsername(), utente.getPassword()) : null;
+    }
+
+    @Override
+    public List<String> elencaUsername() {
+        // Un elenco vuoto indica un errore di lettura e non viene memorizzato
+        List<String> usernames = elenco.leggi(ELENCO, k -> {
+            List<String> letti = dao.elencaUsername();
+            return letti.isEmpty() ? null : List.copyOf(letti);
+        });
+        return usernames != null ? usernames : List.of();
+    }
+
+    @Override
+    public boolean salvaUtente(Utente utente) {
+        try {
+            return dao.salvaUtente(utente);
+        } finally {
+            perUsername.invalida(utente.getUsername().trim());
+            elenco.svuota();
+        }
+    }
+
+    @Override
+    public boolean eliminaUtente(String username) {
+        try {
+            return dao.eliminaUtente(username);
+        } finally {
+            perUsername.invalida(username.trim());
+            elenco.svuota();
+        }
+    }
+
+    @Override
+    public Utente findByUsernameAndPassword(String username, String password) {
+        return dao.findByUsernameAndPassword(username, password);
+    }
+
+    @Override
+    public Utente loadSnapshot(String username) {
+        return dao.loadSnapshot(username);
+    }
+
+    @Override
+    public Utente loadSnapshot(String username, String password) {
+        return dao.loadSnapshot(username, password);
+    }
+}
@@ -0,0 +1,154 @@
+package database;
+
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Ascolta un canale di notifiche PostgreSQL ({@code LISTEN}) su una connessione dedicata,
+ * fuori dal pool, e consegna i messaggi ricevuti in blocchi.
+ * <p>
+ * Un thread daemon attende le notifiche senza interrogare il database: le notifiche arrivano
+ * al commit della transazione che le invia. Se la connessione cade viene riaperta con attese
+ * crescenti; le notifiche inviate nel frattempo sono perse, quindi dopo ogni connessione, compresa
+ * la prima, viene eseguita l'azione di riconnessione, con cui i destinatari ricontrollano lo stato.
+ */
+public final class AscoltatoreNotifiche {
+
+    /** Attesa massima di una notifica prima di verificare che la connessione sia ancora attiva (ms). */
+    private static final int INTERVALLO_CONTROLLO_MS = 30_000;
+
+    /** Tempo massimo per la verifica della connessione (s). */
+    private static final int TIMEOUT_VALIDAZIONE_S = 5;
+
+    /** Prima attesa prima di riaprire la connessione caduta (ms). */
+    private static final long ATTESA_MINIMA_MS = 500;
+
+    /** Attesa massima tra due tentativi di riconnessione (ms). */
+    private static final long ATTESA_MASSIMA_MS = 30_000;
+
+    private final String canale;
+    private final Consumer<List<String>> destinatario;
+    private final Runnable allaConnessione;
+
+    /** False dopo {@link #ferma()}. */
+    private volatile boolean attivo = true;
+
+    /** Connessione in uso, chiusa da {@link #ferma()} per interrompere l'attesa. */
+    private volatile Connection connessione;
+
+    private Thread thread;
+
+    /**
+     * Crea un ascoltatore, che resta fermo fino ad {@link #avvia()}.
+     *
+     * @param canale nome del canale, un identificatore SQL senza virgolette
+     * @param destinatario riceve i messaggi arrivati insieme, nell'ordine di invio
+     * @param allaConnessione eseguita dopo ogni apertura della connessione, quando l'ascolto è attivo
+     */
+    public AscoltatoreNotifiche(String canale, Consumer<List<String>> destinatario, Runnable allaConnessione) {
+        this.canale = canale;
+        this.destinatario = destinatario;
+        this.allaConnessione = allaConnessione;
+    }
+
+    /**
+     * Avvia il thread di ascolto. Le chiamate successive alla prima non hanno effetto.
+     */
+    public synchronized void avvia() {
+        if (thread != null) {
+            return;
+        }
+        thread = new Thread(this::ascolta, "ascolto-" + canale);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Ferma l'ascolto e chiude la connessione dedicata.
+     */
+    public void ferma() {
+        attivo = false;
+        Connection c = connessione;
+        if (c != null) {
+            try {
+                c.close();
+            } catch (SQLException e) {
+                // la connessione viene comunque abbandonata
+            }
+        }
+        Thread t;
+        synchronized (this) {
+            t = thread;
+        }
+        if (t != null) {
+            t.interrupt();
+        }
+    }
+
+    private void ascolta() {
+        long attesa = ATTESA_MINIMA_MS;
+        while (attivo) {
+            try (Connection conn = ConnessioneDatabase.apriConnessioneDedicata()) {
+                connessione = conn;
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.execute("LISTEN " + canale);
+                }
+                attesa = ATTESA_MINIMA_MS;
+                esegui(allaConnessione);
+                ricevi(conn.unwrap(PGConnection.class), conn);
+            } catch (SQLException e) {
+                if (attivo) {
+                    e.printStackTrace();
+                }
+            } finally {
+                connessione = null;
+            }
+
+            if (!attivo) {
+                return;
+            }
+            try {
+                Thread.sleep(attesa);
+            } catch (InterruptedException e) {
+                return;
+            }
+            attesa = Math.min(attesa * 2, ATTESA_MASSIMA_MS);
+        }
+    }
+
+    /**
+     * Attende e consegna le notifiche finché l'ascoltatore è attivo e la connessione funziona.
+     */
+    private void ricevi(PGConnection pg, Connection conn) throws SQLException {
+        while (attivo) {
+            PGNotification[] notifiche = pg.getNotifications(INTERVALLO_CONTROLLO_MS);
+            if (notifiche != null && notifiche.length > 0) {
+                List<String> messaggi = new ArrayList<>(notifiche.length);
+                for (PGNotification notifica : notifiche) {
+                    messaggi.add(notifica.getParameter());
+                }
+                esegui(() -> destinatario.accept(messaggi));
+            } else if (attivo && !conn.isValid(TIMEOUT_VALIDAZIONE_S)) {
+                throw new SQLException("Connessione di ascolto sul canale " + canale + " non più valida.");
+            }
+        }
+    }
+
+    /**
+     * Esegue un'azione dei destinatari: un loro errore non deve fermare l'ascolto.
+     */
+    private static void esegui(Runnable azione) {
+        try {
+            azione.run();
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package database;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache LRU di {@link PreparedStatement} associata a una singola connessione fisica del pool.
+ * <p>
+ * Gli statement sono indicizzati dal testo SQL: i DAO continuano a chiamare
+ * {@code prepareStatement(sql)} e a chiudere lo statement con try-with-resources, ma ricevono
+ * un proxy la cui chiusura rilascia i {@link ResultSet} aperti e rimette lo statement in cache,
+ * con parametri e impostazioni riportati ai valori iniziali. Si risparmia così la creazione e
+ * l'analisi lato client dello statement; il riuso della preparazione lato server è già gestito
+ * dal driver per ogni connessione.
+ * <p>
+ * Se lo stesso SQL è già in uso sulla connessione (statement annidati) viene creato uno
+ * statement non in cache, chiuso normalmente al termine.
+ */
+final class CacheStatement {
+
+    private final Connection reale;
+    private final int capacita;
+    private final AtomicLong hit;
+    private final AtomicLong miss;
+
+    /** Statement in cache, dal meno al più recentemente usato. */
+    private final LinkedHashMap<String, Voce> voci;
+
+    /**
+     * Crea la cache per una connessione fisica.
+     *
+     * @param reale la connessione fisica su cui preparare gli statement
+     * @param capacita numero massimo di statement mantenuti
+     * @param hit contatore condiviso degli statement trovati in cache
+     * @param miss contatore condiviso degli statement preparati ex novo
+     */
+    CacheStatement(Connection reale, int capacita, AtomicLong hit, AtomicLong miss) {
+        this.reale = reale;
+        this.capacita = capacita;
+        this.hit = hit;
+        this.miss = miss;
+        this.voci = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Voce> eldest) {
+                if (size() <= CacheStatement.this.capacita) {
+                    return false;
+                }
+                Voce voce = eldest.getValue();
+                if (voce.inUso) {
+                    voce.scartata = true;
+                } else {
+                    chiudiSilenziosamente(voce.statement);
+                }
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Restituisce uno statement preparato per il testo SQL indicato, riusandolo se già in cache.
+     *
+     * @param sql testo della query
+     * @param connessioneProxy connessione restituita da {@code getConnection()} sullo statement
+     * @return proxy dello statement preparato
+     * @throws SQLException se la preparazione fallisce
+     */
+    synchronized PreparedStatement prepara(String sql, Connection connessioneProxy) throws SQLException {
+        Voce voce = voci.get(sql);
+        if (voce != null && !voce.inUso) {
+            hit.incrementAndGet();
+        } else {
+            miss.incrementAndGet();
+            PreparedStatement nuovo = reale.prepareStatement(sql);
+            Voce nuova;
+            try {
+                nuova = new Voce(nuovo);
+            } catch (SQLException e) {
+                chiudiSilenziosamente(nuovo);
+                throw e;
+            }
+            if (voce == null) {
+                voci.put(sql, nuova);
+            } else {
+                // Lo stesso SQL è già in uso: statement temporaneo fuori dalla cache
+                nuova.scartata = true;
+            }
+            voce = nuova;
+        }
+        voce.inUso = true;
+        return (PreparedStatement) Proxy.newProxyInstance(
+                PreparedStatement.class.getClassLoader(),
+                new Class<?>[] { PreparedStatement.class },
+                new GestoreStatement(voce, connessioneProxy));
+    }
+
+    /**
+     * Rimette in cache uno statement chiuso dal chiamante, oppure lo chiude se è stato scartato.
+     *
+     * @param voce la voce da rilasciare
+     */
+    private synchronized void rilascia(Voce voce) {
+        voce.inUso = false;
+        if (voce.scartata) {
+            chiudiSilenziosamente(voce.statement);
+            return;
+        }
+        try {
+            voce.ripristina();
+        } catch (SQLException e) {
+            voci.values().remove(voce);
+            chiudiSilenziosamente(voce.statement);
+        }
+    }
+
+    /**
+     * Chiude tutti gli statement in cache. Usato quando la connessione fisica viene distrutta.
+     */
+    synchronized void chiudiTutto() {
+        for (Voce voce : voci.values()) {
+            chiudiSilenziosamente(voce.statement);
+        }
+        voci.clear();
+    }
+
+    /**
+     * Restituisce il numero di statement attualmente in cache.
+     *
+     * @return dimensione della cache
+     */
+    synchronized int dimensione() {
+        return voci.size();
+    }
+
+    private static void chiudiSilenziosamente(PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            // Statement già inutilizzabile: nulla da fare
+        }
+    }
+
+    /**
+     * Statement in cache con il suo stato di utilizzo e le impostazioni con cui è stato creato.
+     */
+    private static final class Voce {
+        private final PreparedStatement statement;
+        private final int fetchSize;
+        private final int fetchDirection;
+        private final int maxRows;
+        private final int maxFieldSize;
+        private final int queryTimeout;
+        private boolean inUso;
+        private boolean scartata;
+
+        private Voce(PreparedStatement statement) throws SQLException {
+            this.statement = statement;
+            this.fetchSize = statement.getFetchSize();
+            this.fetchDirection = statement.getFetchDirection();
+            this.maxRows = statement.getMaxRows();
+            this.maxFieldSize = statement.getMaxFieldSize();
+            this.queryTimeout = statement.getQueryTimeout();
+        }
+
+        /**
+         * Cancella parametri, batch e avvisi lasciati dal chiamante precedente e riporta le
+         * impostazioni ai valori iniziali, così il prossimo chiamante riceve uno statement
+         * equivalente a uno appena preparato.
+         */
+        private void ripristina() throws SQLException {
+            statement.clearParameters();
+            statement.clearBatch();
+            statement.clearWarnings();
+            statement.setFetchSize(fetchSize);
+            statement.setFetchDirection(fetchDirection);
+            statement.setMaxRows(maxRows);
+            statement.setMaxFieldSize(maxFieldSize);
+            statement.setQueryTimeout(queryTimeout);
+        }
+    }
+
+    /**
+     * Intercetta le chiamate sul proxy dello statement: {@code close()} chiude i result set
+     * aperti e rilascia lo statement alla cache, le altre vengono inoltrate allo statement reale.
+     */
+    private final class GestoreStatement implements InvocationHandler {
+
+        private final Voce voce;
+        private final Connection connessioneProxy;
+        private final List<ResultSet> resultSetAperti = new ArrayList<>();
+        private boolean chiuso;
+
+        private GestoreStatement(Voce voce, Connection connessioneProxy) {
+            this.voce = voce;
+            this.connessioneProxy = connessioneProxy;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method metodo, Object[] argomenti) throws Throwable {
+            switch (metodo.getName()) {
+                case "close":
+                    if (!chiuso) {
+                        chiuso = true;
+                        for (ResultSet rs : resultSetAperti) {
+                            try {
+                                rs.close();
+                            } catch (SQLException e) {
+                                // Ignorato: lo statement viene comunque rilasciato
+                            }
+                        }
+                        resultSetAperti.clear();
+                        rilascia(voce);
+                    }
+                    return null;
+                case "isClosed":
+                    return chiuso;
+                case "getConnection":
+                    return connessioneProxy;
+                case "equals":
+                    return proxy == argomenti[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Statement in cache [" + voce.statement + "]";
+                default:
+                    break;
+            }
+
+            if (chiuso) {
+                throw new SQLException("Statement già chiuso");
+            }
+            Object risultato;
+            try {
+                risultato = metodo.invoke(voce.statement, argomenti);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+            if (risultato instanceof ResultSet rs) {
+                resultSetAperti.add(rs);
+            }
+            return risultato;
+        }
+    }
+}
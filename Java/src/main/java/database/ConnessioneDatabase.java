@@ -3,10 +3,14 @@ package database;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
- * Classe di utilità per gestire la connessione al database PostgreSQL.
- * Implementa il pattern Singleton per garantire un'unica connessione condivisa.
+ * Classe di utilità per gestire le connessioni al database PostgreSQL.
+ * Mantiene un unico {@link PoolConnessioni} condiviso: ogni chiamata a {@link #getConnection()}
+ * prende in prestito una connessione che, una volta chiusa, torna nel pool invece di essere
+ * scollegata dal server.
  */
 public class ConnessioneDatabase {
 
@@ -19,8 +23,29 @@ public class ConnessioneDatabase {
     /** Password dell'utente del database */
     private static final String PASSWORD = "postgres";
 
-    /** Connessione condivisa */
-    private static Connection connection;
+    /** Numero di connessioni inattive mantenute aperte */
+    private static final int POOL_MINIMO = 2;
+
+    /** Numero massimo di connessioni aperte contemporaneamente */
+    private static final int POOL_MASSIMO = 10;
+
+    /** Attesa massima per ottenere una connessione dal pool (ms) */
+    private static final long TIMEOUT_ATTESA_MS = 10_000;
+
+    /** Tempo dopo il quale una connessione inattiva in eccesso viene chiusa (ms) */
+    private static final long INATTIVITA_MASSIMA_MS = 5 * 60_000;
+
+    /** Tempo di prestito oltre il quale una connessione viene segnalata come persa (ms) */
+    private static final long SOGLIA_PERDITA_MS = 60_000;
+
+    /** Pool condiviso, creato al primo utilizzo e di nuovo dopo una chiusura */
+    private static PoolConnessioni pool;
+
+    /** True dopo la registrazione dell'hook di chiusura, che avviene una sola volta */
+    private static boolean hookRegistrato;
+
+    /** Azioni da eseguire alla chiusura dell'applicazione, prima di chiudere il pool */
+    private static final List<Runnable> AZIONI_PRIMA_DELLA_CHIUSURA = new CopyOnWriteArrayList<>();
 
     /**
      * Costruttore privato per impedire l'istanziazione della classe.
@@ -30,16 +55,104 @@ public class ConnessioneDatabase {
     }
 
     /**
-     * Restituisce la connessione al database. Se la connessione è chiusa o nulla, ne crea una nuova.
+     * Restituisce il pool condiviso, creandolo al primo utilizzo.
+     *
+     * @return il pool di connessioni dell'applicazione
+     */
+    public static synchronized PoolConnessioni getPool() {
+        if (pool == null) {
+            pool = new PoolConnessioni(URL, USER, PASSWORD, POOL_MINIMO, POOL_MASSIMO,
+                    TIMEOUT_ATTESA_MS, INATTIVITA_MASSIMA_MS, SOGLIA_PERDITA_MS);
+        }
+        if (!hookRegistrato) {
+            try {
+                Runtime.getRuntime().addShutdownHook(new Thread(ConnessioneDatabase::chiudiPool, "chiusura-pool"));
+            } catch (IllegalStateException e) {
+                // la JVM si sta già chiudendo: il pool viene abbandonato con lei
+            }
+            hookRegistrato = true;
+        }
+        return pool;
+    }
+
+    /**
+     * Prende in prestito una connessione dal pool. Chiudere la connessione
+     * (ad esempio con try-with-resources) la restituisce al pool.
      *
      * @return oggetto {@link Connection} attivo al database
-     * @throws SQLException se la connessione non può essere stabilita
+     * @throws SQLException se la connessione non può essere ottenuta
      */
     public static Connection getConnection() throws SQLException {
-        if (connection == null || connection.isClosed()) {
-            connection = DriverManager.getConnection(URL, USER, PASSWORD);
+        return getPool().ottieni();
+    }
+
+    /**
+     * Apre una connessione fuori dal pool, riservata a un'attività che la tiene occupata per
+     * tutta la durata dell'applicazione, come l'ascolto delle notifiche. Va chiusa dal chiamante.
+     *
+     * @return una nuova connessione al database
+     * @throws SQLException se la connessione non può essere aperta
+     */
+    public static Connection apriConnessioneDedicata() throws SQLException {
+        return DriverManager.getConnection(URL, USER, PASSWORD);
+    }
+
+    /**
+     * Restituisce le metriche correnti del pool di connessioni.
+     *
+     * @return statistiche del pool
+     */
+    public static StatistichePool getStatistichePool() {
+        return getPool().getStatistiche();
+    }
+
+    /**
+     * Registra un'azione da eseguire alla chiusura dell'applicazione quando il pool è ancora
+     * utilizzabile, ad esempio per scrivere le modifiche ancora in coda. Gli hook di chiusura
+     * della JVM partono in parallelo, quindi un hook separato non avrebbe garanzie sull'ordine.
+     *
+     * @param azione azione da eseguire, nell'ordine di registrazione
+     */
+    public static void primaDellaChiusura(Runnable azione) {
+        AZIONI_PRIMA_DELLA_CHIUSURA.add(azione);
+    }
+
+    /**
+     * Esegue le azioni registrate con {@link #primaDellaChiusura(Runnable)}, poi chiude il pool e le
+     * sue connessioni inattive. Usato alla chiusura dell'applicazione. Le azioni vengono eseguite
+     * una sola volta e fuori dal lock del pool, perché possono ancora prendere connessioni; un'azione
+     * che fallisce non impedisce le successive né la chiusura. Una {@link #getConnection()}
+     * successiva crea un nuovo pool invece di ricevere quello chiuso.
+     */
+    public static void chiudiPool() {
+        eseguiEdElimina(AZIONI_PRIMA_DELLA_CHIUSURA);
+
+        PoolConnessioni daChiudere;
+        synchronized (ConnessioneDatabase.class) {
+            daChiudere = pool;
+            pool = null;
+        }
+        if (daChiudere != null) {
+            daChiudere.chiudi();
         }
-        return connection;
     }
-}
 
+    /**
+     * Esegue nell'ordine le azioni presenti nella lista, togliendole prima di eseguirle: un'azione
+     * aggiunta nel frattempo resta per l'esecuzione successiva. Un'azione che fallisce viene
+     * riportata sullo standard error e non impedisce le successive.
+     *
+     * @param azioni lista modificabile e sicura per l'accesso concorrente
+     */
+    static void eseguiEdElimina(List<Runnable> azioni) {
+        List<Runnable> daEseguire = List.copyOf(azioni);
+        azioni.removeAll(daEseguire);
+        for (Runnable azione : daEseguire) {
+            try {
+                azione.run();
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
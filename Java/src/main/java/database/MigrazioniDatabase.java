@@ -0,0 +1,243 @@
+package database;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Applica all'avvio le migrazioni dello schema che il database non ha ancora ricevuto.
+ * <p>
+ * Le migrazioni sono script SQL nella cartella di risorse {@code migrazioni/}, elencati in ordine
+ * nel file {@code indice.txt} e nominati {@code V<versione>__<descrizione>.sql}. Ogni script
+ * applicato viene registrato nella tabella {@code schema_migrazioni} insieme al proprio
+ * checksum SHA-256: se uno script già applicato viene poi modificato, l'avvio si interrompe
+ * invece di lasciare il database in uno stato diverso da quello descritto dai sorgenti. Fanno
+ * eccezione gli script corretti dopo il rilascio, di cui si accetta il checksum precedente.
+ * <p>
+ * Ogni script viene eseguito nella propria transazione, e un lock consultivo di PostgreSQL
+ * impedisce che due istanze dell'applicazione avviate insieme applichino le stesse migrazioni.
+ */
+public final class MigrazioniDatabase {
+
+    /** Cartella delle risorse che contiene gli script e l'indice. */
+    private static final String CARTELLA = "/migrazioni/";
+
+    /** File che elenca gli script nell'ordine di applicazione. */
+    private static final String INDICE = CARTELLA + "indice.txt";
+
+    /** Formato del nome di uno script: versione e descrizione. */
+    private static final Pattern NOME_SCRIPT = Pattern.compile("V(\\d+)__(\\w+)\\.sql");
+
+    /** Chiave del lock consultivo che serializza le migrazioni tra istanze diverse. */
+    private static final long CHIAVE_LOCK = 20250001L;
+
+    /**
+     * Checksum di versioni precedenti di script corretti dopo il rilascio perché fallivano su
+     * alcuni dati. Un database che ha applicato la versione precedente ha già lo schema corretto:
+     * il suo checksum viene aggiornato invece di interrompere l'avvio.
+     */
+    private static final Map<Integer, Set<String>> CHECKSUM_SOSTITUITI = Map.of(
+            // V004: la conversione delle scadenze falliva sulle date inesistenti
+            4, Set.of("eeb64c5322b9631ee243900342f457f0ae99b89701ee1f9f65e6fe43aea16e47"));
+
+    private static final String CREA_TABELLA = """
+            CREATE TABLE IF NOT EXISTS public.schema_migrazioni (
+                versione integer PRIMARY KEY,
+                descrizione character varying(200) NOT NULL,
+                checksum character(64) NOT NULL,
+                applicata_il timestamp with time zone DEFAULT now() NOT NULL
+            )
+            """;
+
+    /**
+     * Uno script di migrazione letto dalle risorse.
+     *
+     * @param versione numero di versione, crescente nell'indice
+     * @param descrizione descrizione ricavata dal nome del file
+     * @param sql testo dello script
+     * @param checksum SHA-256 del testo, in esadecimale
+     */
+    record Migrazione(int versione, String descrizione, String sql, String checksum) {
+    }
+
+    /**
+     * Costruttore privato per impedire l'istanziazione della classe.
+     */
+    private MigrazioniDatabase() {
+        // Classe di utility: non istanziabile
+    }
+
+    /**
+     * Verifica le migrazioni già applicate e applica, in ordine, quelle mancanti.
+     *
+     * @return il numero di migrazioni applicate da questa chiamata
+     * @throws SQLException se il database non è raggiungibile o uno script fallisce;
+     *         le migrazioni precedenti restano applicate
+     * @throws IllegalStateException se l'indice non è valido o uno script già applicato è stato modificato
+     */
+    public static int applica() throws SQLException {
+        List<Migrazione> migrazioni = leggiMigrazioni();
+
+        try (Connection conn = ConnessioneDatabase.getConnection()) {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute(CREA_TABELLA);
+            }
+
+            bloccaMigrazioni(conn, true);
+            try {
+                Map<Integer, String> applicate = leggiApplicate(conn);
+                int nuove = 0;
+                for (Migrazione m : migrazioni) {
+                    String checksum = applicate.get(m.versione());
+                    if (checksum == null) {
+                        esegui(conn, m);
+                        nuove++;
+                    } else if (CHECKSUM_SOSTITUITI.getOrDefault(m.versione(), Set.of()).contains(checksum)) {
+                        aggiornaChecksum(conn, m);
+                    } else if (!checksum.equals(m.checksum())) {
+                        throw new IllegalStateException("La migrazione V" + m.versione() + " (" + m.descrizione()
+                                + ") è stata modificata dopo essere stata applicata");
+                    }
+                }
+                return nuove;
+            } finally {
+                bloccaMigrazioni(conn, false);
+            }
+        }
+    }
+
+    /**
+     * Acquisisce o rilascia il lock consultivo di sessione sulle migrazioni.
+     */
+    private static void bloccaMigrazioni(Connection conn, boolean blocca) throws SQLException {
+        String sql = blocca ? "SELECT pg_advisory_lock(?)" : "SELECT pg_advisory_unlock(?)";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setLong(1, CHIAVE_LOCK);
+            stmt.execute();
+        }
+    }
+
+    /**
+     * Legge versioni e checksum delle migrazioni già registrate.
+     */
+    private static Map<Integer, String> leggiApplicate(Connection conn) throws SQLException {
+        Map<Integer, String> applicate = new HashMap<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT versione, checksum FROM public.schema_migrazioni")) {
+            while (rs.next()) {
+                applicate.put(rs.getInt("versione"), rs.getString("checksum"));
+            }
+        }
+        return applicate;
+    }
+
+    /**
+     * Esegue uno script e lo registra nella stessa transazione: se lo script fallisce
+     * non resta applicato a metà né risulta registrato.
+     */
+    private static void esegui(Connection conn, Migrazione m) throws SQLException {
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try (Statement stmt = conn.createStatement();
+             PreparedStatement registra = conn.prepareStatement(
+                     "INSERT INTO public.schema_migrazioni (versione, descrizione, checksum) VALUES (?, ?, ?)")) {
+            stmt.execute(m.sql());
+            registra.setInt(1, m.versione());
+            registra.setString(2, m.descrizione());
+            registra.setString(3, m.checksum());
+            registra.executeUpdate();
+            conn.commit();
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    /**
+     * Registra il checksum attuale di uno script corretto dopo essere stato applicato.
+     */
+    private static void aggiornaChecksum(Connection conn, Migrazione m) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "UPDATE public.schema_migrazioni SET checksum = ? WHERE versione = ?")) {
+            stmt.setString(1, m.checksum());
+            stmt.setInt(2, m.versione());
+            stmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Legge l'indice e gli script elencati, controllando che le versioni siano strettamente crescenti.
+     *
+     * @return le migrazioni nell'ordine di applicazione
+     */
+    static List<Migrazione> leggiMigrazioni() {
+        List<Migrazione> migrazioni = new ArrayList<>();
+        int ultimaVersione = 0;
+        for (String riga : leggiRisorsa(INDICE).split("\\R")) {
+            String nome = riga.trim();
+            if (nome.isEmpty() || nome.startsWith("#")) {
+                continue;
+            }
+            Matcher matcher = NOME_SCRIPT.matcher(nome);
+            if (!matcher.matches()) {
+                throw new IllegalStateException("Nome di migrazione non valido: " + nome);
+            }
+            int versione = Integer.parseInt(matcher.group(1));
+            if (versione <= ultimaVersione) {
+                throw new IllegalStateException("Migrazione fuori ordine nell'indice: " + nome);
+            }
+            ultimaVersione = versione;
+
+            String sql = leggiRisorsa(CARTELLA + nome);
+            migrazioni.add(new Migrazione(versione, matcher.group(2).replace('_', ' '), sql, checksum(sql)));
+        }
+        return migrazioni;
+    }
+
+    /**
+     * Legge una risorsa di testo in UTF-8, normalizzando i fine riga perché il checksum
+     * non cambi tra sistemi operativi diversi.
+     */
+    private static String leggiRisorsa(String percorso) {
+        InputStream in = MigrazioniDatabase.class.getResourceAsStream(percorso);
+        if (in == null) {
+            throw new IllegalStateException("Risorsa di migrazione mancante: " + percorso);
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            return String.join("\n", reader.lines().toList());
+        } catch (IOException e) {
+            throw new IllegalStateException("Impossibile leggere " + percorso, e);
+        }
+    }
+
+    /**
+     * Calcola lo SHA-256 di uno script, in esadecimale.
+     */
+    private static String checksum(String sql) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(sql.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
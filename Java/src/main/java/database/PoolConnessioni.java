@@ -0,0 +1,462 @@
+package database;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool limitato di connessioni JDBC verso PostgreSQL.
+ * <p>
+ * Le connessioni fisiche vengono create al bisogno fino a un massimo, riutilizzate
+ * in ordine LIFO e chiuse quando restano inattive troppo a lungo (mantenendo sempre
+ * un numero minimo di connessioni pronte). Al prestito la connessione viene validata
+ * se è rimasta ferma per più di {@link #FINESTRA_VALIDAZIONE_MS} millisecondi; le
+ * connessioni trattenute oltre la soglia di perdita vengono segnalate sullo standard
+ * error insieme allo stack del punto in cui sono state prese in prestito.
+ * <p>
+ * I chiamanti ricevono un proxy di {@link Connection}: il metodo {@code close()}
+ * non chiude la connessione fisica ma la restituisce al pool. Ogni connessione fisica
+ * ha inoltre una {@link CacheStatement} che riusa gli statement preparati con lo stesso SQL.
+ */
+public class PoolConnessioni {
+
+    /** Intervallo sotto il quale una connessione appena restituita non viene rivalidata. */
+    private static final long FINESTRA_VALIDAZIONE_MS = 500;
+
+    /** Secondi concessi a {@link Connection#isValid(int)} per rispondere. */
+    private static final int TIMEOUT_VALIDAZIONE_S = 2;
+
+    /** Periodo del controllo di manutenzione (inattività e perdite). */
+    private static final long PERIODO_MANUTENZIONE_MS = 30_000;
+
+    /** Numero massimo di statement preparati mantenuti per ciascuna connessione. */
+    private static final int CAPACITA_CACHE_STATEMENT = 64;
+
+    private final String url;
+    private final String utente;
+    private final String password;
+    private final int minimo;
+    private final int massimo;
+    private final long timeoutAttesaMs;
+    private final long inattivitaMassimaMs;
+    private final long sogliaPerditaMs;
+
+    /** Permessi disponibili: limita il numero di connessioni contemporaneamente in prestito. */
+    private final Semaphore permessi;
+
+    /** Connessioni fisiche libere, la più recente in testa. */
+    private final Deque<ConnessioneFisica> libere = new ArrayDeque<>();
+
+    /** Connessioni attualmente in prestito, per il rilevamento delle perdite. */
+    private final Map<ConnessioneFisica, Boolean> inPrestito = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService manutenzione;
+
+    private int totali;
+    private volatile boolean chiuso;
+
+    private final AtomicLong prestiti = new AtomicLong();
+    private final AtomicLong create = new AtomicLong();
+    private final AtomicLong distrutte = new AtomicLong();
+    private final AtomicLong timeoutAttesa = new AtomicLong();
+    private final AtomicLong validazioniFallite = new AtomicLong();
+    private final AtomicLong perditeRilevate = new AtomicLong();
+    private final AtomicLong attesaTotaleNs = new AtomicLong();
+    private final AtomicLong statementHit = new AtomicLong();
+    private final AtomicLong statementMiss = new AtomicLong();
+
+    /**
+     * Crea un nuovo pool. Le connessioni non vengono aperte finché non servono.
+     *
+     * @param url URL JDBC del database
+     * @param utente nome utente del database
+     * @param password password dell'utente del database
+     * @param minimo numero di connessioni inattive da mantenere aperte
+     * @param massimo numero massimo di connessioni fisiche
+     * @param timeoutAttesaMs attesa massima per ottenere una connessione
+     * @param inattivitaMassimaMs tempo dopo il quale una connessione inattiva in eccesso viene chiusa
+     * @param sogliaPerditaMs tempo di prestito oltre il quale una connessione è considerata persa
+     */
+    public PoolConnessioni(String url, String utente, String password, int minimo, int massimo,
+                           long timeoutAttesaMs, long inattivitaMassimaMs, long sogliaPerditaMs) {
+        if (minimo < 0 || massimo < 1 || minimo > massimo) {
+            throw new IllegalArgumentException("Dimensioni del pool non valide: minimo=" + minimo + ", massimo=" + massimo);
+        }
+        this.url = url;
+        this.utente = utente;
+        this.password = password;
+        this.minimo = minimo;
+        this.massimo = massimo;
+        this.timeoutAttesaMs = timeoutAttesaMs;
+        this.inattivitaMassimaMs = inattivitaMassimaMs;
+        this.sogliaPerditaMs = sogliaPerditaMs;
+        this.permessi = new Semaphore(massimo, true);
+
+        this.manutenzione = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "pool-connessioni-manutenzione");
+            t.setDaemon(true);
+            return t;
+        });
+        manutenzione.scheduleWithFixedDelay(this::eseguiManutenzione,
+                PERIODO_MANUTENZIONE_MS, PERIODO_MANUTENZIONE_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Prende in prestito una connessione dal pool, creandone una nuova se necessario.
+     * La connessione restituita va chiusa (anche con try-with-resources) per rimetterla nel pool.
+     *
+     * @return connessione pronta all'uso
+     * @throws SQLException se il pool è chiuso, se scade l'attesa o se la connessione non può essere aperta
+     */
+    public Connection ottieni() throws SQLException {
+        if (chiuso) {
+            throw new SQLException("Il pool di connessioni è stato chiuso");
+        }
+
+        long inizio = System.nanoTime();
+        try {
+            if (!permessi.tryAcquire(timeoutAttesaMs, TimeUnit.MILLISECONDS)) {
+                timeoutAttesa.incrementAndGet();
+                throw new SQLException("Nessuna connessione disponibile entro " + timeoutAttesaMs + " ms "
+                        + "(in prestito: " + inPrestito.size() + "/" + massimo + ")", "08001");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Attesa di una connessione interrotta", "08001", e);
+        }
+        attesaTotaleNs.addAndGet(System.nanoTime() - inizio);
+
+        try {
+            ConnessioneFisica fisica = prendiLiberaValida();
+            if (fisica == null) {
+                fisica = creaConnessione();
+            }
+            fisica.prestataIl = System.currentTimeMillis();
+            fisica.puntoPrestito = new Throwable("Connessione presa in prestito qui");
+            inPrestito.put(fisica, Boolean.TRUE);
+            prestiti.incrementAndGet();
+            return fisica.nuovoProxy();
+        } catch (SQLException | RuntimeException e) {
+            permessi.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Estrae la connessione libera più recente che risulti ancora valida.
+     *
+     * @return connessione libera valida, oppure null se non ce ne sono
+     */
+    private ConnessioneFisica prendiLiberaValida() {
+        while (true) {
+            ConnessioneFisica candidata;
+            synchronized (this) {
+                candidata = libere.pollFirst();
+            }
+            if (candidata == null) {
+                return null;
+            }
+            if (System.currentTimeMillis() - candidata.restituitaIl < FINESTRA_VALIDAZIONE_MS
+                    || candidata.valida()) {
+                return candidata;
+            }
+            validazioniFallite.incrementAndGet();
+            distruggi(candidata);
+        }
+    }
+
+    /**
+     * Apre una nuova connessione fisica.
+     *
+     * @return la connessione creata
+     * @throws SQLException se il database non è raggiungibile
+     */
+    private ConnessioneFisica creaConnessione() throws SQLException {
+        Connection reale = DriverManager.getConnection(url, utente, password);
+        synchronized (this) {
+            totali++;
+        }
+        create.incrementAndGet();
+        return new ConnessioneFisica(reale);
+    }
+
+    /**
+     * Rimette nel pool una connessione restituita dal chiamante, ripristinandone lo stato.
+     *
+     * @param fisica la connessione fisica da restituire
+     */
+    private void restituisci(ConnessioneFisica fisica) {
+        inPrestito.remove(fisica);
+        try {
+            boolean riutilizzabile = !chiuso && fisica.ripristina();
+            if (riutilizzabile) {
+                fisica.restituitaIl = System.currentTimeMillis();
+                fisica.puntoPrestito = null;
+                synchronized (this) {
+                    libere.addFirst(fisica);
+                }
+            } else {
+                distruggi(fisica);
+            }
+        } finally {
+            permessi.release();
+        }
+    }
+
+    /**
+     * Chiude definitivamente una connessione fisica.
+     *
+     * @param fisica la connessione da chiudere
+     */
+    private void distruggi(ConnessioneFisica fisica) {
+        synchronized (this) {
+            totali--;
+        }
+        distrutte.incrementAndGet();
+        fisica.cache.chiudiTutto();
+        try {
+            fisica.reale.close();
+        } catch (SQLException e) {
+            // La connessione è già inutilizzabile: non c'è altro da fare
+        }
+    }
+
+    /**
+     * Chiude le connessioni inattive in eccesso, riporta il pool al minimo e segnala le perdite.
+     */
+    private void eseguiManutenzione() {
+        if (chiuso) {
+            return;
+        }
+
+        long adesso = System.currentTimeMillis();
+        List<ConnessioneFisica> daChiudere = new ArrayList<>();
+        synchronized (this) {
+            Iterator<ConnessioneFisica> it = libere.descendingIterator();
+            while (it.hasNext() && totali - daChiudere.size() > minimo) {
+                ConnessioneFisica c = it.next();
+                if (adesso - c.restituitaIl > inattivitaMassimaMs) {
+                    it.remove();
+                    daChiudere.add(c);
+                }
+            }
+        }
+        daChiudere.forEach(this::distruggi);
+
+        for (ConnessioneFisica c : inPrestito.keySet()) {
+            if (!c.perditaSegnalata && adesso - c.prestataIl > sogliaPerditaMs) {
+                c.perditaSegnalata = true;
+                perditeRilevate.incrementAndGet();
+                System.err.println("[POOL] Possibile perdita di connessione: in prestito da "
+                        + (adesso - c.prestataIl) + " ms");
+                Throwable punto = c.puntoPrestito;
+                if (punto != null) {
+                    punto.printStackTrace();
+                }
+            }
+        }
+
+        riempiFinoAlMinimo();
+    }
+
+    /**
+     * Apre connessioni finché il pool non raggiunge il numero minimo configurato.
+     */
+    private void riempiFinoAlMinimo() {
+        while (!chiuso) {
+            synchronized (this) {
+                if (totali >= minimo || totali >= massimo) {
+                    return;
+                }
+            }
+            try {
+                ConnessioneFisica nuova = creaConnessione();
+                nuova.restituitaIl = System.currentTimeMillis();
+                synchronized (this) {
+                    libere.addLast(nuova);
+                }
+            } catch (SQLException e) {
+                // Database non raggiungibile: si riproverà al prossimo ciclo
+                return;
+            }
+        }
+    }
+
+    /**
+     * Restituisce un'istantanea delle metriche del pool.
+     *
+     * @return le statistiche correnti
+     */
+    public StatistichePool getStatistiche() {
+        int totaliAdesso;
+        int libereAdesso;
+        synchronized (this) {
+            totaliAdesso = totali;
+            libereAdesso = libere.size();
+        }
+        long numeroPrestiti = prestiti.get();
+        return new StatistichePool(
+                totaliAdesso,
+                inPrestito.size(),
+                libereAdesso,
+                permessi.getQueueLength(),
+                numeroPrestiti,
+                create.get(),
+                distrutte.get(),
+                timeoutAttesa.get(),
+                validazioniFallite.get(),
+                perditeRilevate.get(),
+                numeroPrestiti == 0 ? 0 : attesaTotaleNs.get() / numeroPrestiti / 1_000,
+                statementHit.get(),
+                statementMiss.get()
+        );
+    }
+
+    /**
+     * Chiude il pool e tutte le connessioni libere. Le connessioni in prestito
+     * vengono chiuse non appena i chiamanti le restituiscono.
+     */
+    public void chiudi() {
+        chiuso = true;
+        manutenzione.shutdownNow();
+        List<ConnessioneFisica> daChiudere;
+        synchronized (this) {
+            daChiudere = new ArrayList<>(libere);
+            libere.clear();
+        }
+        daChiudere.forEach(this::distruggi);
+    }
+
+    /**
+     * Connessione fisica gestita dal pool, con i dati necessari a validazione e rilevamento perdite.
+     */
+    private final class ConnessioneFisica {
+
+        private final Connection reale;
+        private final CacheStatement cache;
+        private volatile long prestataIl;
+        private volatile long restituitaIl;
+        private volatile Throwable puntoPrestito;
+        private volatile boolean perditaSegnalata;
+
+        private ConnessioneFisica(Connection reale) {
+            this.reale = reale;
+            this.cache = new CacheStatement(reale, CAPACITA_CACHE_STATEMENT, statementHit, statementMiss);
+        }
+
+        /**
+         * Verifica che la connessione risponda ancora.
+         *
+         * @return true se la connessione è utilizzabile
+         */
+        private boolean valida() {
+            try {
+                return reale.isValid(TIMEOUT_VALIDAZIONE_S);
+            } catch (SQLException e) {
+                return false;
+            }
+        }
+
+        /**
+         * Annulla eventuali transazioni lasciate aperte e riporta la connessione allo stato iniziale.
+         *
+         * @return true se la connessione può tornare nel pool
+         */
+        private boolean ripristina() {
+            try {
+                if (reale.isClosed()) {
+                    return false;
+                }
+                if (!reale.getAutoCommit()) {
+                    reale.rollback();
+                    reale.setAutoCommit(true);
+                }
+                if (reale.isReadOnly()) {
+                    reale.setReadOnly(false);
+                }
+                reale.clearWarnings();
+                perditaSegnalata = false;
+                return true;
+            } catch (SQLException e) {
+                return false;
+            }
+        }
+
+        /**
+         * Crea il proxy consegnato al chiamante per un singolo prestito.
+         *
+         * @return proxy della connessione
+         */
+        private Connection nuovoProxy() {
+            return (Connection) Proxy.newProxyInstance(
+                    Connection.class.getClassLoader(),
+                    new Class<?>[] { Connection.class },
+                    new GestoreProxy(this));
+        }
+    }
+
+    /**
+     * Intercetta le chiamate sul proxy: {@code close()} restituisce la connessione al pool,
+     * {@code prepareStatement(sql)} passa dalla cache degli statement e tutte le altre
+     * vengono inoltrate alla connessione fisica finché il prestito è attivo.
+     */
+    private final class GestoreProxy implements InvocationHandler {
+
+        private final ConnessioneFisica fisica;
+        private boolean restituita;
+
+        private GestoreProxy(ConnessioneFisica fisica) {
+            this.fisica = fisica;
+        }
+
+        @Override
+        public synchronized Object invoke(Object proxy, Method metodo, Object[] argomenti) throws Throwable {
+            switch (metodo.getName()) {
+                case "close":
+                    if (!restituita) {
+                        restituita = true;
+                        restituisci(fisica);
+                    }
+                    return null;
+                case "isClosed":
+                    return restituita || fisica.reale.isClosed();
+                case "equals":
+                    return proxy == argomenti[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Connessione del pool [" + fisica.reale + "]";
+                default:
+                    break;
+            }
+
+            if (restituita) {
+                throw new SQLException("Connessione già restituita al pool", "08003");
+            }
+            if (metodo.getName().equals("prepareStatement") && argomenti.length == 1) {
+                return fisica.cache.prepara((String) argomenti[0], (Connection) proxy);
+            }
+            try {
+                return metodo.invoke(fisica.reale, argomenti);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
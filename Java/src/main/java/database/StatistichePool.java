@@ -0,0 +1,176 @@
+package database;
+
+/**
+ * Istantanea immutabile delle metriche di un {@link PoolConnessioni}.
+ */
+public final class StatistichePool {
+
+    private final int connessioniTotali;
+    private final int connessioniInPrestito;
+    private final int connessioniLibere;
+    private final int threadInAttesa;
+    private final long prestitiTotali;
+    private final long connessioniCreate;
+    private final long connessioniDistrutte;
+    private final long timeoutAttesa;
+    private final long validazioniFallite;
+    private final long perditeRilevate;
+    private final long attesaMediaMicros;
+    private final long statementHit;
+    private final long statementMiss;
+
+    /**
+     * Costruisce l'istantanea delle metriche.
+     *
+     * @param connessioniTotali connessioni fisiche aperte
+     * @param connessioniInPrestito connessioni attualmente in uso
+     * @param connessioniLibere connessioni pronte nel pool
+     * @param threadInAttesa thread in coda per ottenere una connessione
+     * @param prestitiTotali prestiti effettuati dall'avvio
+     * @param connessioniCreate connessioni fisiche aperte dall'avvio
+     * @param connessioniDistrutte connessioni fisiche chiuse dall'avvio
+     * @param timeoutAttesa richieste fallite per attesa scaduta
+     * @param validazioniFallite connessioni scartate perché non più valide
+     * @param perditeRilevate connessioni trattenute oltre la soglia di perdita
+     * @param attesaMediaMicros attesa media per ottenere una connessione, in microsecondi
+     * @param statementHit statement preparati trovati nella cache delle connessioni
+     * @param statementMiss statement preparati non presenti in cache
+     */
+    public StatistichePool(int connessioniTotali, int connessioniInPrestito, int connessioniLibere,
+                           int threadInAttesa, long prestitiTotali, long connessioniCreate,
+                           long connessioniDistrutte, long timeoutAttesa, long validazioniFallite,
+                           long perditeRilevate, long attesaMediaMicros,
+                           long statementHit, long statementMiss) {
+        this.connessioniTotali = connessioniTotali;
+        this.connessioniInPrestito = connessioniInPrestito;
+        this.connessioniLibere = connessioniLibere;
+        this.threadInAttesa = threadInAttesa;
+        this.prestitiTotali = prestitiTotali;
+        this.connessioniCreate = connessioniCreate;
+        this.connessioniDistrutte = connessioniDistrutte;
+        this.timeoutAttesa = timeoutAttesa;
+        this.validazioniFallite = validazioniFallite;
+        this.perditeRilevate = perditeRilevate;
+        this.attesaMediaMicros = attesaMediaMicros;
+        this.statementHit = statementHit;
+        this.statementMiss = statementMiss;
+    }
+
+    /**
+     * Restituisce il numero di connessioni fisiche aperte.
+     *
+     * @return connessioni fisiche aperte
+     */
+    public int getConnessioniTotali() { return connessioniTotali; }
+
+    /**
+     * Restituisce il numero di connessioni attualmente in uso.
+     *
+     * @return connessioni attualmente in uso
+     */
+    public int getConnessioniInPrestito() { return connessioniInPrestito; }
+
+    /**
+     * Restituisce il numero di connessioni pronte nel pool.
+     *
+     * @return connessioni pronte nel pool
+     */
+    public int getConnessioniLibere() { return connessioniLibere; }
+
+    /**
+     * Restituisce il numero di thread in coda per ottenere una connessione.
+     *
+     * @return thread in coda per ottenere una connessione
+     */
+    public int getThreadInAttesa() { return threadInAttesa; }
+
+    /**
+     * Restituisce il numero di prestiti effettuati dall'avvio.
+     *
+     * @return prestiti effettuati dall'avvio
+     */
+    public long getPrestitiTotali() { return prestitiTotali; }
+
+    /**
+     * Restituisce il numero di connessioni fisiche aperte dall'avvio.
+     *
+     * @return connessioni fisiche aperte dall'avvio
+     */
+    public long getConnessioniCreate() { return connessioniCreate; }
+
+    /**
+     * Restituisce il numero di connessioni fisiche chiuse dall'avvio.
+     *
+     * @return connessioni fisiche chiuse dall'avvio
+     */
+    public long getConnessioniDistrutte() { return connessioniDistrutte; }
+
+    /**
+     * Restituisce il numero di richieste fallite per attesa scaduta.
+     *
+     * @return richieste fallite per attesa scaduta
+     */
+    public long getTimeoutAttesa() { return timeoutAttesa; }
+
+    /**
+     * Restituisce il numero di connessioni scartate perché non più valide.
+     *
+     * @return connessioni scartate perché non più valide
+     */
+    public long getValidazioniFallite() { return validazioniFallite; }
+
+    /**
+     * Restituisce il numero di connessioni trattenute oltre la soglia di perdita.
+     *
+     * @return connessioni trattenute oltre la soglia di perdita
+     */
+    public long getPerditeRilevate() { return perditeRilevate; }
+
+    /**
+     * Restituisce l'attesa media per ottenere una connessione, in microsecondi.
+     *
+     * @return attesa media per ottenere una connessione, in microsecondi
+     */
+    public long getAttesaMediaMicros() { return attesaMediaMicros; }
+
+    /**
+     * Restituisce il numero di statement preparati trovati nella cache delle connessioni.
+     *
+     * @return statement trovati in cache
+     */
+    public long getStatementHit() { return statementHit; }
+
+    /**
+     * Restituisce il numero di statement preparati non presenti in cache.
+     *
+     * @return statement preparati ex novo
+     */
+    public long getStatementMiss() { return statementMiss; }
+
+    /**
+     * Restituisce la percentuale di statement serviti dalla cache.
+     *
+     * @return rapporto tra hit e richieste totali, fra 0 e 1
+     */
+    public double getStatementHitRate() {
+        long richieste = statementHit + statementMiss;
+        return richieste == 0 ? 0 : (double) statementHit / richieste;
+    }
+
+    @Override
+    public String toString() {
+        return "Pool[totali=" + connessioniTotali
+                + ", inPrestito=" + connessioniInPrestito
+                + ", libere=" + connessioniLibere
+                + ", inAttesa=" + threadInAttesa
+                + ", prestiti=" + prestitiTotali
+                + ", create=" + connessioniCreate
+                + ", distrutte=" + connessioniDistrutte
+                + ", timeout=" + timeoutAttesa
+                + ", validazioniFallite=" + validazioniFallite
+                + ", perdite=" + perditeRilevate
+                + ", attesaMedia=" + attesaMediaMicros + "us"
+                + ", statementHit=" + statementHit
+                + ", statementMiss=" + statementMiss + "]";
+    }
+}
@@ -5,6 +5,12 @@ import controller.*;
 
 import javax.swing.*;
 import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 /**
  * Pannello grafico che rappresenta una bacheca (Università, LAVORO, Tempo Libero),
@@ -18,8 +24,17 @@ public class BoardPanel extends JPanel {
     /** Bacheca logica associata al pannello */
     private Bacheca bacheca;
 
-    /** Pannello contenitore dei ToDoCardPanel */
-    private JPanel toDoListPanel;
+    /** ToDo mostrati nella bacheca, nell'ordine di visualizzazione */
+    private final DefaultListModel<ToDo> modello = new DefaultListModel<>();
+
+    /**
+     * Lista virtualizzata delle card: vengono disegnate solo quelle visibili,
+     * tutte con lo stesso {@link ToDoCardPanel} usato come renderer
+     */
+    private final JList<ToDo> lista = new JList<>(modello);
+
+    /** Card condivisa usata per disegnare ogni ToDo e per riconoscere i clic sui suoi pulsanti */
+    private final ToDoCardPanel renderer = new ToDoCardPanel(this);
 
     /** Controller per gestire la logica dell’applicazione */
     private Controller controller;
@@ -27,9 +42,15 @@ public class BoardPanel extends JPanel {
     /** Pulsante per aggiungere un nuovo ToDo */
     private JButton addButton;
 
+    /** Pulsante per condividere l'intera bacheca */
+    private JButton shareButton;
+
     /** Utente attualmente loggato */
     private Utente utenteCorrente;
 
+    /** ID dei ToDo con una scrittura in corso sul database, mostrati come occupati */
+    private final Set<Integer> toDoInCorso = new HashSet<>();
+
     /**
      * Costruttore del pannello della bacheca.
      *
@@ -47,16 +68,36 @@ public class BoardPanel extends JPanel {
         setLayout(new BorderLayout());
         setBorder(BorderFactory.createTitledBorder(boardName));
 
-        toDoListPanel = new JPanel();
-        toDoListPanel.setLayout(new BoxLayout(toDoListPanel, BoxLayout.Y_AXIS));
-        add(new JScrollPane(toDoListPanel), BorderLayout.CENTER);
+        // Dimensioni fisse: la lista calcola il layout senza interrogare il renderer per ogni ToDo
+        lista.setCellRenderer(renderer);
+        lista.setFixedCellWidth(ToDoCardPanel.LARGHEZZA);
+        lista.setFixedCellHeight(ToDoCardPanel.ALTEZZA);
+        lista.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        lista.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                gestisciClic(e);
+            }
+        });
+        lista.addMouseMotionListener(new MouseAdapter() {
+            @Override
+            public void mouseMoved(MouseEvent e) {
+                aggiornaCursore(e);
+            }
+        });
+        add(new JScrollPane(lista), BorderLayout.CENTER);
 
         addButton = new JButton("+ Aggiungi ToDo");
-        add(addButton, BorderLayout.SOUTH);
+        shareButton = new JButton("Condividi bacheca");
+        JPanel bottomPanel = new JPanel(new GridLayout(1, 0));
+        bottomPanel.add(addButton);
+        bottomPanel.add(shareButton);
+        add(bottomPanel, BorderLayout.SOUTH);
 
         // Registra listener solo se il controller è già presente
         if (controller != null) {
             addButton.addActionListener(e -> controller.addNewToDo(this));
+            shareButton.addActionListener(e -> controller.condividiBacheca(this));
         }
     }
 
@@ -81,9 +122,13 @@ public class BoardPanel extends JPanel {
         for (var al : addButton.getActionListeners()) {
             addButton.removeActionListener(al);
         }
+        for (var al : shareButton.getActionListeners()) {
+            shareButton.removeActionListener(al);
+        }
 
         if (controller != null) {
             addButton.addActionListener(e -> controller.addNewToDo(this));
+            shareButton.addActionListener(e -> controller.condividiBacheca(this));
         }
     }
 
@@ -104,15 +149,78 @@ public class BoardPanel extends JPanel {
     }
 
     /**
-     * Aggiunge graficamente un ToDo alla lista.
+     * Aggiunge graficamente un ToDo in fondo alla lista.
      *
      * @param todo oggetto ToDo da aggiungere
      */
     public void addToDo(ToDo todo) {
-        ToDoCardPanel card = new ToDoCardPanel(todo, this, controller, utenteCorrente);
-        toDoListPanel.add(card);
-        revalidate();
-        repaint();
+        modello.addElement(todo);
+    }
+
+    /**
+     * Aggiunge graficamente un ToDo appena creato in cima alla lista, senza ridisegnare le altre card.
+     *
+     * @param todo oggetto ToDo da aggiungere
+     */
+    public void addToDoInTesta(ToDo todo) {
+        modello.add(0, todo);
+    }
+
+    /**
+     * Ridisegna solo la card del ToDo indicato, ad esempio dopo una modifica o un cambio di stato.
+     *
+     * @param todo il ToDo aggiornato
+     */
+    public void aggiornaToDo(ToDo todo) {
+        int indice = modello.indexOf(todo);
+        if (indice >= 0) {
+            // Reimpostare l'elemento notifica la lista, che ridisegna solo quella cella
+            modello.set(indice, todo);
+        }
+    }
+
+    /**
+     * Rimuove graficamente la card del ToDo indicato, lasciando invariate le altre.
+     *
+     * @param todo il ToDo da togliere dalla vista
+     */
+    public void rimuoviCard(ToDo todo) {
+        toDoInCorso.remove(todo.getId());
+        modello.removeElement(todo);
+    }
+
+    /**
+     * Segnala che un'operazione sul ToDo indicato è in corso sul database, disabilitandone la card,
+     * oppure che è terminata.
+     *
+     * @param todo il ToDo interessato
+     * @param inCorso true mentre la scrittura è in corso
+     */
+    public void setToDoInCorso(ToDo todo, boolean inCorso) {
+        boolean cambiato = inCorso ? toDoInCorso.add(todo.getId()) : toDoInCorso.remove(todo.getId());
+        if (cambiato) {
+            aggiornaToDo(todo);
+        }
+    }
+
+    /**
+     * Indica se un'operazione sul ToDo indicato è in corso sul database.
+     *
+     * @param todo il ToDo da verificare
+     * @return true se la card del ToDo va mostrata come occupata
+     */
+    public boolean isToDoInCorso(ToDo todo) {
+        return toDoInCorso.contains(todo.getId());
+    }
+
+    /**
+     * Segnala che il salvataggio di un nuovo ToDo è in corso, disabilitando il pulsante di aggiunta.
+     *
+     * @param inCorso true mentre il salvataggio è in corso
+     */
+    public void setSalvataggioInCorso(boolean inCorso) {
+        addButton.setEnabled(!inCorso);
+        addButton.setText(inCorso ? "Salvataggio in corso..." : "+ Aggiungi ToDo");
     }
 
     /**
@@ -125,36 +233,119 @@ public class BoardPanel extends JPanel {
     }
 
     /**
-     * Rimuove tutti i ToDoCardPanel dalla board (grafica).
+     * Rimuove tutti i ToDo dalla board (grafica).
      */
     public void clearToDos() {
-        toDoListPanel.removeAll();
-        revalidate();
-        repaint();
+        toDoInCorso.clear();
+        modello.clear();
     }
 
     /**
-     * Ricarica i ToDo dalla bacheca e da quelli condivisi.
+     * Ricarica i ToDo dalla bacheca e da quelli condivisi. I ToDo delle bacheche condivise per
+     * intero arrivano tra quelli condivisi e vengono trattati come le condivisioni dei singoli ToDo.
+     * I ToDo vengono raccolti e passati alla lista in un unico blocco, così la vista
+     * ricalcola il layout una sola volta indipendentemente dal numero di card.
      */
     public void refresh() {
-        clearToDos();
+        List<ToDo> daMostrare = new ArrayList<>();
 
         if (bacheca != null) {
-            for (ToDo todo : bacheca.getToDoList()) {
-                addToDo(todo);
-            }
+            daMostrare.addAll(bacheca.getToDoList());
         }
 
         if (utenteCorrente != null && bacheca != null) {
             for (ToDo todo : utenteCorrente.getToDoCondivisi()) {
                 if (todo.getTipoBacheca() == bacheca.getTipo() &&
-                        !bacheca.getToDoList().contains(todo)) {
-                    addToDo(todo);
+                        !bacheca.contieneToDo(todo.getId())) {
+                    daMostrare.add(todo);
+                }
+            }
+        }
+
+        clearToDos();
+        modello.addAll(daMostrare);
+    }
+
+    /**
+     * Gestisce un clic sulla lista: individua la card e il comando disegnato sotto al mouse
+     * e lo esegue come se la card fosse un componente reale. Il doppio clic fuori dai
+     * pulsanti apre i dettagli del ToDo in sola lettura.
+     *
+     * @param e evento del mouse
+     */
+    private void gestisciClic(MouseEvent e) {
+        if (controller == null || !SwingUtilities.isLeftMouseButton(e)) {
+            return;
+        }
+        int indice = indiceSotto(e.getPoint());
+        if (indice < 0) {
+            return;
+        }
+        ToDo todo = modello.get(indice);
+
+        switch (comandoSotto(indice, e.getPoint())) {
+            case COMPLETA -> controller.toggleCompletamento(this, todo);
+            case MODIFICA -> controller.editToDo(this, todo, true, () -> aggiornaToDo(todo));
+            case RIMUOVI -> removeToDo(todo);
+            case NESSUNO -> {
+                if (e.getClickCount() == 2) {
+                    new ToDoFormDialog(todo, false, controller, utenteCorrente, todo.getTipoBacheca())
+                            .setVisible(true);
                 }
             }
         }
     }
 
+    /**
+     * Aggiorna il cursore in base alla card sotto il mouse: attesa se la card è occupata,
+     * mano sopra un comando attivo.
+     *
+     * @param e evento del mouse
+     */
+    private void aggiornaCursore(MouseEvent e) {
+        int indice = indiceSotto(e.getPoint());
+        Cursor cursore = Cursor.getDefaultCursor();
+        if (indice >= 0) {
+            if (isToDoInCorso(modello.get(indice))) {
+                cursore = Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR);
+            } else if (comandoSotto(indice, e.getPoint()) != ToDoCardPanel.Comando.NESSUNO) {
+                cursore = Cursor.getPredefinedCursor(Cursor.HAND_CURSOR);
+            }
+        }
+        lista.setCursor(cursore);
+    }
+
+    /**
+     * Restituisce l'indice della card che contiene il punto, oppure -1 se il punto è
+     * nello spazio vuoto sotto l'ultima card.
+     */
+    private int indiceSotto(Point punto) {
+        int indice = lista.locationToIndex(punto);
+        if (indice < 0 || !lista.getCellBounds(indice, indice).contains(punto)) {
+            return -1;
+        }
+        return indice;
+    }
+
+    /**
+     * Configura il renderer per la card indicata e restituisce il comando disegnato nel punto.
+     */
+    private ToDoCardPanel.Comando comandoSotto(int indice, Point punto) {
+        Rectangle cella = lista.getCellBounds(indice, indice);
+        ToDo todo = modello.get(indice);
+        renderer.aggiorna(todo, isToDoInCorso(todo));
+        return renderer.comandoIn(punto.x - cella.x, punto.y - cella.y, cella.width, cella.height);
+    }
+
+    /**
+     * Restituisce l'utente attualmente loggato, usato dalle card per riconoscere i ToDo condivisi.
+     *
+     * @return utente corrente
+     */
+    public Utente getUtenteCorrente() {
+        return utenteCorrente;
+    }
+
     /**
      * Restituisce l'oggetto {@link Bacheca} associato al pannello.
      *
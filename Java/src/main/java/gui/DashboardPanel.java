@@ -4,7 +4,6 @@ import javax.swing.*;
 import java.awt.*;
 
 import model.Utente;
-import model.TipoBacheca;
 import controller.*;
 
 /**
@@ -64,8 +63,8 @@ public class DashboardPanel extends JPanel {
            );
 
           if (conferma == JOptionPane.YES_OPTION) {
-            controller.eliminaUtente();  // Metodo da implementare nel Controller
-            frame.showLoginPanel();     // Torna alla schermata di login
+            // Torna alla schermata di login quando l'eliminazione è confermata
+            controller.eliminaUtente(frame::showLoginPanel);
           }
         });
 
@@ -73,15 +72,28 @@ public class DashboardPanel extends JPanel {
         topPanel.add(leftPanel, BorderLayout.WEST);
 
         JButton logoutButton = new JButton("Logout");
-        logoutButton.addActionListener(e -> frame.showLoginPanel());
+        logoutButton.addActionListener(e -> {
+            controller.logout();
+            frame.showLoginPanel();
+        });
 
         JButton invitiButton = new JButton("Inviti");
         invitiButton.addActionListener(e -> {
-            JDialog dialog = new InvitationsDialog(frame, controller.getUtenteCorrente(), this);
+            JDialog dialog = new InvitationsDialog(frame, controller);
             dialog.setVisible(true);
         });
 
+        // Ricaricamento completo delle bacheche, solo su richiesta esplicita
+        JButton aggiornaButton = new JButton("Aggiorna");
+        aggiornaButton.addActionListener(e -> {
+            if (controller.getUtenteCorrente() != null) {
+                aggiornaButton.setEnabled(false);
+                loadUser(controller.getUtenteCorrente().getUsername(), () -> aggiornaButton.setEnabled(true));
+            }
+        });
+
         JPanel rightButtonsPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT, 10, 0));
+        rightButtonsPanel.add(aggiornaButton);
         rightButtonsPanel.add(invitiButton);
         rightButtonsPanel.add(logoutButton);
         topPanel.add(rightButtonsPanel, BorderLayout.EAST);
@@ -119,27 +131,56 @@ public class DashboardPanel extends JPanel {
 
     /**
      * Carica l'utente corrente e aggiorna le tre bacheche con i relativi ToDo.
+     * Il caricamento avviene in background: le bacheche vengono aggiornate quando i dati sono pronti.
      *
      * @param username username dell’utente da caricare
      */
     public void loadUser(String username) {
-        controller.loadUser(username);
+        loadUser(username, () -> { });
+    }
+
+    /**
+     * Carica l'utente corrente e aggiorna le tre bacheche con i relativi ToDo.
+     * Il caricamento avviene in background: le bacheche vengono aggiornate quando i dati sono pronti.
+     *
+     * @param username username dell’utente da caricare
+     * @param alTermine azione eseguita sull'EDT al termine del caricamento
+     */
+    public void loadUser(String username, Runnable alTermine) {
+        welcomeLabel.setText("Caricamento di " + username + "...");
 
+        controller.loadUser(username, () -> {
+            aggiornaPannelli();
+            alTermine.run();
+        });
+    }
+
+    /**
+     * Mostra un utente già caricato con bacheche e ToDo, ad esempio subito dopo il login,
+     * senza accedere nuovamente al database.
+     *
+     * @param utente utente da mostrare
+     */
+    public void mostraUtente(Utente utente) {
+        controller.mostraUtente(utente, this::aggiornaPannelli);
+    }
+
+    /**
+     * Aggiorna messaggio di benvenuto e bacheche in base all'utente corrente del controller.
+     */
+    private void aggiornaPannelli() {
         Utente utente = controller.getUtenteCorrente();
 
         if (utente != null) {
             setWelcomeUser(utente.getUsername());
 
             universitaBoard.setUtenteCorrente(utente);
-            universitaBoard.setBacheca(controller.getBachecaPerTipo(TipoBacheca.UNIVERSITA));
             universitaBoard.aggiornaBoard();
 
             lavoroBoard.setUtenteCorrente(utente);
-            lavoroBoard.setBacheca(controller.getBachecaPerTipo(TipoBacheca.LAVORO));
             lavoroBoard.aggiornaBoard();
 
             tempoLiberoBoard.setUtenteCorrente(utente);
-            tempoLiberoBoard.setBacheca(controller.getBachecaPerTipo(TipoBacheca.TEMPO_LIBERO));
             tempoLiberoBoard.aggiornaBoard();
         } else {
             setWelcomeUser("ospite");
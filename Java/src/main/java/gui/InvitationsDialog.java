@@ -2,11 +2,14 @@ package gui;
 
 import javax.swing.*;
 import java.awt.*;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import javax.swing.table.DefaultTableModel;
 
-import dao.CondivisioneDAO;
-import model.Utente;
+import controller.AccessoDatiAsincrono;
+import controller.Controller;
+import model.RichiestaCondivisione;
 
 /**
  * Finestra di dialogo per gestire le richieste di partecipazione
@@ -16,11 +19,8 @@ import model.Utente;
  */
 public class InvitationsDialog extends JDialog {
 
-    /** Utente corrente loggato */
-    private Utente currentUser;
-
-    /** DAO per gestire le condivisioni */
-    private CondivisioneDAO condivisioneDAO;
+    /** Controller che esegue in background le operazioni sulle condivisioni */
+    private Controller controller;
 
     /** Tabella che mostra le richieste */
     private JTable table;
@@ -28,21 +28,18 @@ public class InvitationsDialog extends JDialog {
     /** Modello della tabella */
     private DefaultTableModel tableModel;
 
-    /** Dashboard da aggiornare in caso di modifiche */
-    private DashboardPanel dashboard;
+    /** Richieste mostrate, nello stesso ordine delle righe del modello della tabella */
+    private List<RichiestaCondivisione> richieste = new ArrayList<>();
 
     /**
      * Costruttore della finestra di dialogo.
      *
      * @param parent       finestra principale (JFrame) da cui è invocata
-     * @param currentUser  utente attualmente loggato
-     * @param dashboard    riferimento alla dashboard da aggiornare dopo modifiche
+     * @param controller   controller dell'utente attualmente loggato
      */
-    public InvitationsDialog(JFrame parent, Utente currentUser, DashboardPanel dashboard) {
+    public InvitationsDialog(JFrame parent, Controller controller) {
         super(parent, "Richieste di Partecipazione", true);
-        this.currentUser = currentUser;
-        this.condivisioneDAO = new CondivisioneDAO();
-        this.dashboard = dashboard;
+        this.controller = controller;
 
         setSize(500, 300);
         setLocationRelativeTo(parent);
@@ -82,15 +79,18 @@ public class InvitationsDialog extends JDialog {
     }
 
     /**
-     * Carica tutte le richieste pendenti dell'utente e aggiorna la tabella.
+     * Carica in background tutte le richieste pendenti dell'utente e aggiorna la tabella.
      */
     private void loadRequests() {
         tableModel.setRowCount(0);
-        List<String[]> richieste = condivisioneDAO.getRichiestePendentiPerUtente(currentUser.getUsername());
-
-        for (String[] r : richieste) {
-            tableModel.addRow(r);
-        }
+        AccessoDatiAsincrono.suEdt(controller.getRichiestePendenti(), (List<RichiestaCondivisione> lette) -> {
+            richieste = lette;
+            tableModel.setRowCount(0);
+            for (RichiestaCondivisione r : lette) {
+                String titolo = r.isBacheca() ? "(intera bacheca)" : r.titolo();
+                tableModel.addRow(new Object[] { r.richiedente(), r.tipo().name(), titolo });
+            }
+        }, errore -> JOptionPane.showMessageDialog(this, "Errore nel caricamento delle richieste.", "Errore", JOptionPane.ERROR_MESSAGE));
     }
 
     /**
@@ -105,24 +105,32 @@ public class InvitationsDialog extends JDialog {
             return;
         }
 
-        String proprietario = (String) tableModel.getValueAt(selectedRow, 0);
-        String tipoBacheca = (String) tableModel.getValueAt(selectedRow, 1);
-        String titolo = (String) tableModel.getValueAt(selectedRow, 2);
-
-        boolean success = condivisioneDAO.aggiornaStatoRichiesta(
-                currentUser.getUsername(), proprietario, tipoBacheca, titolo, newStatus);
+        RichiestaCondivisione richiesta = richieste.get(table.convertRowIndexToModel(selectedRow));
 
-        if (success) {
-            JOptionPane.showMessageDialog(this, "Richiesta " +
-                    (newStatus.equals("ACCEPTED") ? "accettata" : "rifiutata") + " con successo.");
+        boolean accetta = newStatus.equals("ACCEPTED");
 
-            if (dashboard != null) {
-                dashboard.loadUser(currentUser.getUsername());
-            }
-
-            loadRequests();
+        CompletableFuture<Boolean> risposta;
+        if (richiesta.isBacheca()) {
+            // Richiesta di condivisione di un'intera bacheca
+            risposta = controller.rispondiRichiestaBacheca(richiesta.richiedente(), richiesta.tipo(), accetta);
         } else {
-            JOptionPane.showMessageDialog(this, "Errore durante l'aggiornamento della richiesta.", "Errore", JOptionPane.ERROR_MESSAGE);
+            risposta = accetta
+                    ? controller.accettaRichiesta(richiesta.idToDo())
+                    : controller.rifiutaRichiesta(richiesta.idToDo());
         }
+
+        AccessoDatiAsincrono.suEdt(risposta, success -> {
+            if (success) {
+                JOptionPane.showMessageDialog(this, "Richiesta " +
+                        (accetta ? "accettata" : "rifiutata") + " con successo.");
+
+                // Le bacheche ricevono solo i ToDo diventati visibili, senza ricaricarle per intero
+                controller.sincronizza();
+
+                loadRequests();
+            } else {
+                JOptionPane.showMessageDialog(this, "Errore durante l'aggiornamento della richiesta.", "Errore", JOptionPane.ERROR_MESSAGE);
+            }
+        }, errore -> JOptionPane.showMessageDialog(this, "Errore durante l'aggiornamento della richiesta.", "Errore", JOptionPane.ERROR_MESSAGE));
     }
 }
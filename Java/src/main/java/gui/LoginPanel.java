@@ -40,7 +40,11 @@ public class LoginPanel extends JPanel {
             String user = userField.getText();
             String pass = new String(passField.getPassword());
 
-            controller.login(user, pass, parent);
+            // Il pulsante resta disabilitato finché la verifica sul database non è conclusa
+            loginButton.setEnabled(false);
+            AccessoDatiAsincrono.suEdt(controller.login(user, pass, parent),
+                    esito -> loginButton.setEnabled(true),
+                    errore -> loginButton.setEnabled(true));
         });
 
         // Posizionamento componenti
@@ -1,5 +1,7 @@
 package gui;
 
+import model.Utente;
+
 import javax.swing.*;
 import java.awt.*;
 
@@ -43,10 +45,10 @@ public class MainFrame extends JFrame {
 
     /**
      * Mostra il pannello della dashboard per l'utente specificato.
-     * @param username Nome utente dell'utente loggato
+     * @param utente Utente loggato, già caricato con bacheche e ToDo
      */
-    public void showDashboard(String username) {
-        SwingUtilities.invokeLater(() -> dashboardPanel.loadUser(username));
+    public void showDashboard(Utente utente) {
+        SwingUtilities.invokeLater(() -> dashboardPanel.mostraUtente(utente));
         cardLayout.show(mainPanel, "Dashboard");
     }
 
@@ -2,6 +2,7 @@ package gui;
 
 import javax.swing.*;
 import java.awt.*;
+import controller.AccessoDatiAsincrono;
 import controller.Controller;
 
 /**
@@ -34,13 +35,19 @@ public class RegistrationDialog extends JDialog {
             String user = userField.getText();
             String pass = new String(passField.getPassword());
 
-            boolean success = controller.register(user, pass);
-            if (success) {
-                JOptionPane.showMessageDialog(this, "Registrazione avvenuta con successo!");
-                dispose(); // Chiudi finestra
-            } else {
-                JOptionPane.showMessageDialog(this, "Errore: Username già esistente.");
-            }
+            registerButton.setEnabled(false);
+            AccessoDatiAsincrono.suEdt(controller.register(user, pass), esito -> {
+                registerButton.setEnabled(true);
+                if (esito.isOk()) {
+                    JOptionPane.showMessageDialog(this, "Registrazione avvenuta con successo!");
+                    dispose(); // Chiudi finestra
+                } else {
+                    JOptionPane.showMessageDialog(this, "Errore: " + esito.getMessaggio());
+                }
+            }, errore -> {
+                registerButton.setEnabled(true);
+                JOptionPane.showMessageDialog(this, "Errore durante la registrazione.");
+            });
         });
 
         // Layout con GridBag
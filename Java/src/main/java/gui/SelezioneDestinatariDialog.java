@@ -0,0 +1,159 @@
+package gui;
+
+import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Finestra di dialogo modale per scegliere uno o più utenti con cui condividere un ToDo o una bacheca.
+ * Mostra una casella per ogni possibile destinatario e un campo per filtrarle per nome;
+ * le caselle nascoste dal filtro mantengono la loro selezione. Le caselle possono partire
+ * già selezionate, per modificare una condivisione esistente.
+ */
+public class SelezioneDestinatariDialog extends JDialog {
+
+    /** Elenco delle checkbox associate ai possibili destinatari. */
+    private final List<JCheckBox> checkBoxes = new ArrayList<>();
+
+    /** Destinatari scelti alla conferma, vuoto se il dialogo è stato annullato. */
+    private final List<String> selezionati = new ArrayList<>();
+
+    /** True se l'utente ha confermato la scelta. */
+    private boolean confermato;
+
+    /**
+     * Costruttore del dialogo.
+     *
+     * @param parent il frame genitore della finestra di dialogo
+     * @param possibiliDestinatari gli username tra cui scegliere
+     */
+    public SelezioneDestinatariDialog(JFrame parent, List<String> possibiliDestinatari) {
+        this(parent, "Condividi con", possibiliDestinatari, List.of());
+    }
+
+    /**
+     * Costruttore del dialogo con alcuni destinatari già selezionati. In questo caso la conferma
+     * è ammessa anche senza selezioni, per revocare tutte le condivisioni esistenti.
+     *
+     * @param parent il frame genitore della finestra di dialogo
+     * @param titolo il titolo della finestra
+     * @param possibiliDestinatari gli username tra cui scegliere
+     * @param preselezionati gli username da mostrare già selezionati
+     */
+    public SelezioneDestinatariDialog(JFrame parent, String titolo, List<String> possibiliDestinatari,
+                                      Collection<String> preselezionati) {
+        super(parent, titolo, true);
+
+        setSize(300, 400);
+        setLayout(new BorderLayout());
+
+        JPanel listaPanel = new JPanel();
+        listaPanel.setLayout(new BoxLayout(listaPanel, BoxLayout.Y_AXIS));
+
+        for (String username : possibiliDestinatari) {
+            JCheckBox checkBox = new JCheckBox(username, preselezionati.contains(username));
+            checkBoxes.add(checkBox);
+            listaPanel.add(checkBox);
+        }
+
+        JTextField filtro = new JTextField();
+        filtro.setToolTipText("Filtra gli utenti per nome");
+        filtro.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                applicaFiltro(filtro.getText(), listaPanel);
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                applicaFiltro(filtro.getText(), listaPanel);
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                applicaFiltro(filtro.getText(), listaPanel);
+            }
+        });
+
+        JPanel topPanel = new JPanel(new BorderLayout());
+        topPanel.add(new JLabel("Cerca: "), BorderLayout.WEST);
+        topPanel.add(filtro, BorderLayout.CENTER);
+        add(topPanel, BorderLayout.NORTH);
+
+        add(new JScrollPane(listaPanel), BorderLayout.CENTER);
+
+        JButton btnTutti = new JButton("Seleziona visibili");
+        btnTutti.addActionListener(e -> {
+            for (JCheckBox cb : checkBoxes) {
+                if (cb.isVisible()) {
+                    cb.setSelected(true);
+                }
+            }
+        });
+
+        JButton btnCondividi = new JButton(preselezionati.isEmpty() ? "Condividi" : "Salva");
+        btnCondividi.addActionListener(e -> {
+            selezionati.clear();
+            for (JCheckBox cb : checkBoxes) {
+                if (cb.isSelected()) {
+                    selezionati.add(cb.getText());
+                }
+            }
+            if (selezionati.isEmpty() && preselezionati.isEmpty()) {
+                JOptionPane.showMessageDialog(this, "Nessun utente selezionato.");
+                return;
+            }
+            confermato = true;
+            dispose();
+        });
+
+        JButton btnAnnulla = new JButton("Annulla");
+        btnAnnulla.addActionListener(e -> dispose());
+
+        JPanel bottomPanel = new JPanel();
+        bottomPanel.add(btnTutti);
+        bottomPanel.add(btnCondividi);
+        bottomPanel.add(btnAnnulla);
+        add(bottomPanel, BorderLayout.SOUTH);
+
+        setLocationRelativeTo(parent);
+    }
+
+    /**
+     * Mostra solo le caselle il cui username contiene il testo indicato, senza distinguere
+     * maiuscole e minuscole.
+     *
+     * @param testo il testo da cercare
+     * @param listaPanel il pannello che contiene le caselle
+     */
+    private void applicaFiltro(String testo, JPanel listaPanel) {
+        String cercato = testo.trim().toLowerCase();
+        for (JCheckBox cb : checkBoxes) {
+            cb.setVisible(cb.getText().toLowerCase().contains(cercato));
+        }
+        listaPanel.revalidate();
+        listaPanel.repaint();
+    }
+
+    /**
+     * Indica se l'utente ha confermato la scelta invece di annullare il dialogo.
+     *
+     * @return true se la scelta è stata confermata
+     */
+    public boolean isConfermato() {
+        return confermato;
+    }
+
+    /**
+     * Restituisce i destinatari scelti dall'utente.
+     *
+     * @return gli username selezionati, oppure una lista vuota se il dialogo è stato annullato
+     */
+    public List<String> getSelezionati() {
+        return selezionati;
+    }
+}
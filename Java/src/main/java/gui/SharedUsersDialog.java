@@ -1,5 +1,6 @@
 package gui;
 
+import controller.AccessoDatiAsincrono;
 import controller.Controller;
 import model.ToDo;
 
@@ -66,9 +67,19 @@ public class SharedUsersDialog extends JDialog {
                         "Vuoi davvero rimuovere la condivisione per: " + selezionati + "?",
                         "Conferma", JOptionPane.YES_NO_OPTION);
                 if (conferma == JOptionPane.YES_OPTION) {
-                    controller.rimuoviCondivisioni(todo, selezionati);
-                    JOptionPane.showMessageDialog(this, "Condivisioni rimosse.");
-                    dispose();
+                    btnElimina.setEnabled(false);
+                    AccessoDatiAsincrono.suEdt(controller.rimuoviCondivisioni(todo, selezionati), fatto -> {
+                        if (fatto) {
+                            JOptionPane.showMessageDialog(this, "Condivisioni rimosse.");
+                            dispose();
+                        } else {
+                            btnElimina.setEnabled(true);
+                            JOptionPane.showMessageDialog(this, "Errore durante la rimozione delle condivisioni.");
+                        }
+                    }, errore -> {
+                        btnElimina.setEnabled(true);
+                        JOptionPane.showMessageDialog(this, "Errore durante la rimozione delle condivisioni.");
+                    });
                 }
             } else {
                 JOptionPane.showMessageDialog(this, "Nessun utente selezionato.");
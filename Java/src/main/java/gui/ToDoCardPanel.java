@@ -3,160 +3,129 @@ package gui;
 import model.ToDo;
 import model.Utente;
 import model.StatoToDo;
-import controller.Controller;
-import dao.CondivisioneDAO;
+import service.GeneratoreMiniature;
 
 import javax.swing.*;
 import java.awt.*;
-import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
+import java.awt.image.BufferedImage;
+import java.util.Map;
+import java.util.WeakHashMap;
 
 /**
- * Componente grafico che rappresenta un singolo ToDo all'interno di una bacheca.
- * Gestisce l'interazione per modificarlo, completarlo, rimuoverlo o condividerlo.
+ * Componente grafico che rappresenta un ToDo all'interno di una bacheca.
+ * <p>
+ * Viene usato come renderer della lista di {@link BoardPanel}: un'unica istanza per bacheca
+ * viene riconfigurata e "timbrata" per ogni card visibile, invece di creare un pannello per
+ * ciascun ToDo. I componenti interni vengono quindi costruiti una sola volta e solo aggiornati;
+ * i clic sui pulsanti disegnati vengono ricondotti al comando corrispondente con
+ * {@link #comandoIn(int, int, int, int)}.
  */
-public class ToDoCardPanel extends JPanel {
+public class ToDoCardPanel extends JPanel implements ListCellRenderer<ToDo> {
 
-    /** Il ToDo visualizzato nel pannello. */
+    /**
+     * Comandi disponibili su una card, individuati dalla posizione di un clic.
+     */
+    public enum Comando {
+        /** Cambio di stato tramite la casella "COMPLETATO". */
+        COMPLETA,
+        /** Apertura del dialogo di modifica. */
+        MODIFICA,
+        /** Rimozione del ToDo o della sua condivisione. */
+        RIMUOVI,
+        /** Nessun comando: il clic è avvenuto fuori dai pulsanti o su un pulsante disabilitato. */
+        NESSUNO
+    }
+
+    /** Larghezza preferita di una card in pixel. */
+    public static final int LARGHEZZA = 300;
+
+    /** Altezza fissa di una card in pixel. */
+    public static final int ALTEZZA = 100;
+
+    /** Lato massimo, in pixel, della miniatura mostrata nella striscia laterale della card. */
+    private static final int LATO_STRISCIA = 60;
+
+    /** Il ToDo attualmente rappresentato. */
     private ToDo todo;
 
-    /** Il pannello bacheca a cui appartiene il ToDo. */
-    private BoardPanel boardPanel;
+    /** Il pannello bacheca a cui appartiene la card. */
+    private final BoardPanel boardPanel;
 
-    /** Il controller utilizzato per gestire le azioni utente. */
-    private Controller controller;
+    private final JLabel titolo = new JLabel();
+    private final JLabel scadenza = new JLabel();
+    private final JLabel proprietario = new JLabel();
+    private final JLabel salvataggio = new JLabel("Salvataggio in corso...");
+    private final JLabel striscia = new JLabel();
+    private final JCheckBox checkCompletato = new JCheckBox("COMPLETATO");
+    private final JButton btnEdit = new JButton("Modifica");
+    private final JButton btnRemove = new JButton("Rimuovi");
 
-    /** L'utente attualmente loggato. */
-    private Utente utenteCorrente;
+    /**
+     * Icone delle miniature già decodificate, indicizzate per identità dell'array di byte:
+     * lo scorrimento ridisegna spesso le stesse card e non deve ripetere la decodifica.
+     */
+    private final Map<byte[], ImageIcon> iconeMiniature = new WeakHashMap<>();
 
     /**
-     * Costruisce un pannello per un ToDo specifico.
+     * Costruisce la card usata come renderer per i ToDo di una bacheca.
      *
-     * @param todo il ToDo da rappresentare
      * @param boardPanel il pannello bacheca genitore
-     * @param controller il controller per gestire le azioni
-     * @param utenteCorrente l'utente attualmente loggato
      */
-    public ToDoCardPanel(ToDo todo, BoardPanel boardPanel, Controller controller, Utente utenteCorrente) {
-        this.todo = todo;
+    public ToDoCardPanel(BoardPanel boardPanel) {
         this.boardPanel = boardPanel;
-        this.controller = controller;
-        this.utenteCorrente = utenteCorrente;
 
         setLayout(new BorderLayout());
         setBorder(BorderFactory.createLineBorder(Color.BLACK));
-
-        try {
-            setBackground(Color.decode("#" + todo.getColore()));
-        } catch (Exception e) {
-            setBackground(Color.WHITE);
+        setPreferredSize(new Dimension(LARGHEZZA, ALTEZZA));
+
+        // Etichette semplici invece di un unico testo HTML: il renderer viene riconfigurato
+        // per ogni card disegnata e l'analisi dell'HTML a ogni ridisegno rallenterebbe lo scorrimento
+        Font font = new Font("SansSerif", Font.PLAIN, 14);
+        JPanel testo = new JPanel();
+        testo.setLayout(new BoxLayout(testo, BoxLayout.Y_AXIS));
+        testo.setOpaque(false);
+        testo.add(Box.createVerticalGlue());
+        for (JLabel etichetta : new JLabel[]{titolo, scadenza, proprietario, salvataggio}) {
+            etichetta.setFont(font);
+            etichetta.setAlignmentX(Component.CENTER_ALIGNMENT);
+            testo.add(etichetta);
         }
-
-        setMaximumSize(new Dimension(300, 100));
-        setPreferredSize(new Dimension(300, 100));
-
-        boolean isCondiviso = utenteCorrente.getToDoCondivisi().contains(todo);
-
-        JLabel titolo = new JLabel("<html><div style='text-align: center;'><b>" + todo.getTitolo() +
-                "</b><br/>Scadenza: " + todo.getDataDiScadenza() +
-                (utenteCorrente.getToDoCondivisi().contains(todo) ? "<br/><i>di " + todo.getProprietario() + "</i>" : "") +
-                "</div></html>");
-        titolo.setHorizontalAlignment(SwingConstants.CENTER);
-        titolo.setFont(new Font("SansSerif", Font.PLAIN, 14));
-        add(titolo, BorderLayout.CENTER);
-
-        JPanel buttonPanel = new JPanel();
-
-        JCheckBox checkCompletato = new JCheckBox("COMPLETATO");
-        checkCompletato.setSelected(todo.getStato() == StatoToDo.COMPLETATO);
-        checkCompletato.setEnabled(!isCondiviso);
-        if (isCondiviso) {
-            checkCompletato.setToolTipText("Non puoi modificare un ToDo condiviso");
-        }
-        checkCompletato.addActionListener(e -> {
-            if (!isCondiviso) {
-                controller.toggleCompletamento(this.boardPanel, todo);
-            }
-        });
-
-        buttonPanel.setLayout(new FlowLayout());
+        testo.add(Box.createVerticalGlue());
+        titolo.setFont(font.deriveFont(Font.BOLD));
+        proprietario.setFont(font.deriveFont(Font.ITALIC));
+        salvataggio.setFont(font.deriveFont(Font.ITALIC));
+        add(testo, BorderLayout.CENTER);
+
+        striscia.setBorder(BorderFactory.createEmptyBorder(2, 4, 2, 0));
+        add(striscia, BorderLayout.WEST);
+
+        JPanel buttonPanel = new JPanel(new FlowLayout());
+        buttonPanel.setOpaque(false);
+        checkCompletato.setOpaque(false);
         buttonPanel.add(checkCompletato);
-
-        if (!isCondiviso) {
-            JButton btnEdit = new JButton("Modifica");
-            btnEdit.addActionListener(e -> openEditDialog(true));
-            buttonPanel.add(btnEdit);
-        }
-
-        JButton btnRemove = new JButton(isCondiviso ? "Rimuovi Condivisione" : "Rimuovi");
-        btnRemove.addActionListener(e -> {
-            if (isCondiviso) {
-                int conferma = JOptionPane.showConfirmDialog(
-                        this,
-                        "Sei sicuro di voler rimuovere questa condivisione?",
-                        "Conferma",
-                        JOptionPane.YES_NO_OPTION
-                );
-
-                if (conferma == JOptionPane.YES_OPTION) {
-                    CondivisioneDAO dao = new CondivisioneDAO();
-                    boolean success = dao.rimuoviCondivisione(
-                            utenteCorrente.getUsername(),
-                            todo.getProprietario(),
-                            todo.getTipoBacheca().name(),
-                            todo.getTitolo()
-                    );
-
-                    if (success) {
-                        utenteCorrente.rimuoviToDoCondiviso(todo);
-                        if (this.boardPanel != null) {
-                            this.boardPanel.refresh();
-                        }
-                    } else {
-                        JOptionPane.showMessageDialog(this, "Errore durante la rimozione della condivisione dal database", "Errore", JOptionPane.ERROR_MESSAGE);
-                    }
-                }
-            } else {
-                removeToDo();
-            }
-
-        });
+        buttonPanel.add(btnEdit);
         buttonPanel.add(btnRemove);
-
         add(buttonPanel, BorderLayout.SOUTH);
-
-        addMouseListener(new MouseAdapter() {
-            @Override
-            public void mouseClicked(MouseEvent e) {
-                if (e.getClickCount() == 2) {
-                    ToDoFormDialog dialog = new ToDoFormDialog(
-                            todo,
-                            false,
-                            controller,
-                            utenteCorrente,
-                            todo.getTipoBacheca()
-                    );
-                    dialog.setVisible(true);
-                }
-            }
-        });
     }
 
-    /**
-     * Apre il dialogo di modifica per il ToDo.
-     *
-     * @param isEditable true se il dialogo deve essere in modalità modifica
-     */
-    private void openEditDialog(boolean isEditable) {
-        controller.editToDo(boardPanel, todo, isEditable, this::updateCardContent);
+    @Override
+    public Component getListCellRendererComponent(JList<? extends ToDo> list, ToDo value, int index,
+                                                  boolean isSelected, boolean cellHasFocus) {
+        aggiorna(value, boardPanel.isToDoInCorso(value));
+        return this;
     }
 
     /**
-     * Aggiorna i contenuti del pannello in base allo stato attuale del ToDo.
-     * Viene chiamato dopo modifiche.
+     * Configura la card per il ToDo indicato, aggiornando testo, stato e pulsanti.
+     *
+     * @param todo il ToDo da rappresentare
+     * @param inCorso true se una scrittura sul ToDo è in corso e i comandi vanno disabilitati
      */
-    private void updateCardContent() {
-        boolean isCondiviso = utenteCorrente.getToDoCondivisi().contains(todo);
+    public void aggiorna(ToDo todo, boolean inCorso) {
+        this.todo = todo;
+        Utente utenteCorrente = boardPanel.getUtenteCorrente();
+        boolean isCondiviso = utenteCorrente != null && utenteCorrente.isToDoCondiviso(todo.getId());
 
         try {
             setBackground(Color.decode("#" + todo.getColore()));
@@ -164,64 +133,106 @@ public class ToDoCardPanel extends JPanel {
             setBackground(Color.WHITE);
         }
 
-        JLabel titolo = new JLabel("<html><div style='text-align: center;'><b>" + todo.getTitolo() +
-                "</b><br/>Scadenza: " + todo.getDataDiScadenza() + "</div></html>");
-        titolo.setHorizontalAlignment(SwingConstants.CENTER);
-        titolo.setFont(new Font("SansSerif", Font.PLAIN, 14));
+        titolo.setText(todo.getTitolo());
+        scadenza.setText(todo.getDataDiScadenza() != null ? "Scadenza: " + todo.getDataDiScadenza() : "Nessuna scadenza");
+        proprietario.setText("di " + todo.getProprietario());
+        proprietario.setVisible(isCondiviso);
+        salvataggio.setVisible(inCorso);
 
-        removeAll();
-        setLayout(new BorderLayout());
-        add(titolo, BorderLayout.CENTER);
+        checkCompletato.setSelected(todo.getStato() == StatoToDo.COMPLETATO);
+        checkCompletato.setEnabled(!isCondiviso && !inCorso);
+        checkCompletato.setToolTipText(isCondiviso ? "Non puoi modificare un ToDo condiviso" : null);
 
-        JPanel buttonPanel = new JPanel();
+        btnEdit.setVisible(!isCondiviso);
+        btnEdit.setEnabled(!inCorso);
 
-        JCheckBox checkCompletato = new JCheckBox("COMPLETATO");
-        checkCompletato.setSelected(todo.getStato() == StatoToDo.COMPLETATO);
-        checkCompletato.setEnabled(!isCondiviso);
-        if (isCondiviso) {
-            checkCompletato.setToolTipText("Non puoi modificare un ToDo condiviso");
-        }
-        checkCompletato.addActionListener(e -> {
-            if (!isCondiviso) {
-                controller.toggleCompletamento(boardPanel, todo);
-            }
-        });
+        btnRemove.setText(isCondiviso ? "Rimuovi Condivisione" : "Rimuovi");
+        btnRemove.setEnabled(!inCorso);
 
-        buttonPanel.setLayout(new FlowLayout());
-        buttonPanel.add(checkCompletato);
+        ImageIcon icona = iconaMiniatura(todo.getMiniatura());
+        striscia.setIcon(icona);
+        striscia.setVisible(icona != null);
+    }
 
-        if (!isCondiviso) {
-            JButton btnEdit = new JButton("Modifica");
-            btnEdit.addActionListener(e -> openEditDialog(true));
-            buttonPanel.add(btnEdit);
+    /**
+     * Individua il comando disegnato in un punto della card, dopo averla configurata con
+     * {@link #aggiorna(ToDo, boolean)}.
+     *
+     * @param x ascissa del punto, relativa alla card
+     * @param y ordinata del punto, relativa alla card
+     * @param larghezza larghezza con cui la card è disegnata
+     * @param altezza altezza con cui la card è disegnata
+     * @return il comando sotto al punto, oppure {@link Comando#NESSUNO}
+     */
+    public Comando comandoIn(int x, int y, int larghezza, int altezza) {
+        Component c = componenteIn(x, y, larghezza, altezza);
+        if (c == null || !c.isEnabled() || !c.isVisible()) {
+            return Comando.NESSUNO;
         }
+        if (c == checkCompletato) {
+            return Comando.COMPLETA;
+        }
+        if (c == btnEdit) {
+            return Comando.MODIFICA;
+        }
+        if (c == btnRemove) {
+            return Comando.RIMUOVI;
+        }
+        return Comando.NESSUNO;
+    }
 
-        JButton btnRemove = new JButton(isCondiviso ? "Rimuovi Condivisione" : "Rimuovi");
-        btnRemove.addActionListener(e -> {
-            if (isCondiviso) {
-                utenteCorrente.rimuoviToDoCondiviso(todo);
-                if (boardPanel != null) {
-                    boardPanel.refresh();
-                }
-            } else {
-                removeToDo();
-            }
-        });
-        buttonPanel.add(btnRemove);
+    /**
+     * Mostra il suggerimento del componente interno sotto al mouse: la lista interroga solo
+     * il renderer, che altrimenti nasconderebbe quelli della casella e dei pulsanti.
+     */
+    @Override
+    public String getToolTipText(MouseEvent event) {
+        Component c = componenteIn(event.getX(), event.getY(), getWidth(), getHeight());
+        if (c instanceof JComponent jc && c != this) {
+            return jc.getToolTipText();
+        }
+        return super.getToolTipText(event);
+    }
 
-        add(buttonPanel, BorderLayout.SOUTH);
+    /**
+     * Dispone la card alle dimensioni indicate e restituisce il componente più interno nel punto.
+     */
+    private Component componenteIn(int x, int y, int larghezza, int altezza) {
+        setBounds(0, 0, larghezza, altezza);
+        disponi(this);
+        return SwingUtilities.getDeepestComponentAt(this, x, y);
+    }
 
-        revalidate();
-        repaint();
+    /**
+     * Esegue il layout di un contenitore e di tutti i suoi figli. Serve perché il renderer
+     * non fa parte di una gerarchia visibile e non viene validato da Swing.
+     */
+    private static void disponi(Container contenitore) {
+        contenitore.doLayout();
+        for (Component figlio : contenitore.getComponents()) {
+            if (figlio instanceof Container c) {
+                disponi(c);
+            }
+        }
     }
 
     /**
-     * Rimuove il ToDo dal pannello genitore.
+     * Restituisce l'icona della striscia laterale per una miniatura, decodificandola solo
+     * la prima volta. Usa solo la miniatura già presente nei dati della bacheca, mai l'immagine originale.
+     *
+     * @param miniatura i byte della miniatura, oppure null
+     * @return l'icona, oppure null se il ToDo non ha una miniatura valida
      */
-    private void removeToDo() {
-        if (boardPanel != null) {
-            boardPanel.removeToDo(todo);
+    private ImageIcon iconaMiniatura(byte[] miniatura) {
+        if (miniatura == null) {
+            return null;
         }
+        if (!iconeMiniature.containsKey(miniatura)) {
+            BufferedImage img = GeneratoreMiniature.decodifica(miniatura);
+            iconeMiniature.put(miniatura, img != null
+                    ? new ImageIcon(GeneratoreMiniature.adatta(img, LATO_STRISCIA, LATO_STRISCIA))
+                    : null);
+        }
+        return iconeMiniature.get(miniatura);
     }
 }
-
@@ -1,18 +1,20 @@
 package gui;
 
 import model.ToDo;
+import controller.AccessoDatiAsincrono;
 import controller.Controller;
 import model.Utente;
 import model.TipoBacheca;
+import service.GeneratoreMiniature;
 
 import javax.swing.*;
 import java.awt.*;
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
-import javax.imageio.ImageIO;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
 
 /**
  * Finestra di dialogo per la visualizzazione o modifica di un ToDo.
@@ -41,6 +43,9 @@ public class ToDoFormDialog extends JDialog {
     /** Byte array che rappresenta l'immagine caricata per il ToDo */
     private byte[] imageBytes;
 
+    /** Flag che indica se l'immagine è stata scelta o rimossa nel form */
+    private boolean immagineModificata = false;
+
     /** Flag che indica se il form è stato confermato (salvato) */
     private boolean confirmed = false;
 
@@ -110,7 +115,7 @@ public class ToDoFormDialog extends JDialog {
         content.add(descrizioneField);
 
         content.add(new JLabel("Scadenza (YYYY-MM-DD):"));
-        scadenzaField = new JTextField(todo.getDataDiScadenza());
+        scadenzaField = new JTextField(todo.getDataDiScadenza() != null ? todo.getDataDiScadenza().toString() : "");
         content.add(scadenzaField);
 
         content.add(new JLabel("URL:"));
@@ -148,25 +153,31 @@ public class ToDoFormDialog extends JDialog {
             imagePreviewLabel.setHorizontalAlignment(SwingConstants.CENTER);
             imagePreviewLabel.setBorder(BorderFactory.createLineBorder(Color.BLACK));
 
-            if (todo.getImmagine() != null && todo.getImmagine().length > 0) {
-                try {
-                    BufferedImage img = ImageIO.read(new ByteArrayInputStream(todo.getImmagine()));
-                    Image scaled = img.getScaledInstance(300, 200, Image.SCALE_SMOOTH);
-                    imagePreviewLabel.setIcon(new ImageIcon(scaled));
-                } catch (IOException e) {
-                    imagePreviewLabel.setText("Errore caricamento immagine");
-                }
-            } else {
-                imagePreviewLabel.setText("Nessuna immagine disponibile");
-            }
-
-            imagePanel.add(imagePreviewLabel, BorderLayout.CENTER);
+            if (todo.haImmagine()) {
+                // Il dialogo mostra solo la miniatura; l'originale si legge solo se richiesto
+                imagePreviewLabel.setText("Caricamento anteprima...");
+                AccessoDatiAsincrono.suEdt(controller.caricaMiniatura(todo), miniatura -> {
+                    todo.setMiniatura(miniatura);
+                    BufferedImage img = GeneratoreMiniature.decodifica(miniatura);
+                    if (img != null) {
+                        imagePreviewLabel.setText(null);
+                        imagePreviewLabel.setIcon(new ImageIcon(img));
+                    } else {
+                        imagePreviewLabel.setText("Anteprima non disponibile");
+                    }
+                }, errore -> imagePreviewLabel.setText("Errore caricamento immagine"));
 
-            if (todo.getImmagine() != null && todo.getImmagine().length > 0) {
                 JButton openImageBtn = new JButton("Apri a dimensione piena");
                 openImageBtn.addActionListener(e -> {
-                    try {
-                        BufferedImage img = ImageIO.read(new ByteArrayInputStream(todo.getImmagine()));
+                    openImageBtn.setEnabled(false);
+                    openImageBtn.setText("Caricamento...");
+                    AccessoDatiAsincrono.suEdt(controller.caricaImmagineCompleta(todo), img -> {
+                        openImageBtn.setEnabled(true);
+                        openImageBtn.setText("Apri a dimensione piena");
+                        if (img == null) {
+                            JOptionPane.showMessageDialog(this, "Errore nel caricamento dell'immagine.");
+                            return;
+                        }
                         JLabel fullImageLabel = new JLabel(new ImageIcon(img));
                         JScrollPane scrollPane = new JScrollPane(fullImageLabel);
                         scrollPane.setPreferredSize(new Dimension(
@@ -178,13 +189,19 @@ public class ToDoFormDialog extends JDialog {
                         dialog.pack();
                         dialog.setLocationRelativeTo(null);
                         dialog.setVisible(true);
-                    } catch (IOException ex) {
+                    }, errore -> {
+                        openImageBtn.setEnabled(true);
+                        openImageBtn.setText("Apri a dimensione piena");
                         JOptionPane.showMessageDialog(this, "Errore nel caricamento dell'immagine.");
-                    }
+                    });
                 });
                 imagePanel.add(openImageBtn, BorderLayout.SOUTH);
+            } else {
+                imagePreviewLabel.setText("Nessuna immagine disponibile");
             }
 
+            imagePanel.add(imagePreviewLabel, BorderLayout.CENTER);
+
             content.add(imagePanel);
         } else {
             JPanel imageButtonPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 10, 0)); // 10px di distanza tra i bottoni
@@ -197,6 +214,7 @@ public class ToDoFormDialog extends JDialog {
                     File file = fileChooser.getSelectedFile();
                     try {
                         imageBytes = Files.readAllBytes(file.toPath());
+                        immagineModificata = true;
                         JOptionPane.showMessageDialog(this, "Immagine caricata con successo.");
                     } catch (IOException ex) {
                         JOptionPane.showMessageDialog(this, "Errore nel caricamento dell'immagine.");
@@ -206,11 +224,12 @@ public class ToDoFormDialog extends JDialog {
             imageButtonPanel.add(imageButton);
 
             // Se l'immagine esiste, mostra anche "Rimuovi Immagine"
-            if (todo.getImmagine() != null && todo.getImmagine().length > 0) {
+            if (todo.haImmagine()) {
                 JButton removeImageButton = new JButton("Rimuovi Immagine");
                 removeImageButton.setPreferredSize(new Dimension(140, 25)); // Stessa dimensione
                 removeImageButton.addActionListener(e -> {
                     imageBytes = null;
+                    immagineModificata = true;
                     JOptionPane.showMessageDialog(this, "Immagine rimossa. Verrà salvata senza immagine.");
                 });
                 imageButtonPanel.add(removeImageButton);
@@ -225,27 +244,32 @@ public class ToDoFormDialog extends JDialog {
 
            JButton btnGestisciCondivisi = new JButton("Gestisci condivisioni");
            btnGestisciCondivisi.addActionListener(e -> {
-               // Recupera gli utenti con cui è condiviso il ToDo
-               java.util.List<String> utentiCondivisi = controller.getUtentiCondivisi(todo);
-
-               if (utentiCondivisi.isEmpty()) {
-                  JOptionPane.showMessageDialog(this, "Nessuna condivisione presente.");
-                  return;
-             }
-
-               // Mostra il dialogo per la gestione
-               JFrame frameParent = findParentJFrame(this);
-               if (frameParent == null) {
-                   frameParent = new JFrame();
-               }
-
-               SharedUsersDialog dialog = new SharedUsersDialog(
-                    frameParent,
-                    utentiCondivisi,
-                    controller,
-                    todo
-               );
-               dialog.setVisible(true);
+               // Recupera in background gli utenti con cui è condiviso il ToDo
+               btnGestisciCondivisi.setEnabled(false);
+               AccessoDatiAsincrono.suEdt(controller.getUtentiCondivisi(todo), utentiCondivisi -> {
+                   btnGestisciCondivisi.setEnabled(true);
+                   if (utentiCondivisi.isEmpty()) {
+                      JOptionPane.showMessageDialog(this, "Nessuna condivisione presente.");
+                      return;
+                   }
+
+                   // Mostra il dialogo per la gestione
+                   JFrame frameParent = findParentJFrame(this);
+                   if (frameParent == null) {
+                       frameParent = new JFrame();
+                   }
+
+                   SharedUsersDialog dialog = new SharedUsersDialog(
+                        frameParent,
+                        utentiCondivisi,
+                        controller,
+                        todo
+                   );
+                   dialog.setVisible(true);
+               }, errore -> {
+                   btnGestisciCondivisi.setEnabled(true);
+                   JOptionPane.showMessageDialog(this, "Errore nel recupero delle condivisioni.");
+               });
            });
 
            content.add(btnGestisciCondivisi);
@@ -282,9 +306,21 @@ public class ToDoFormDialog extends JDialog {
         btnCancel = new JButton(editable ? "Annulla" : "Chiudi");
 
         btnSave.addActionListener(e -> {
+            // La scadenza è facoltativa, ma se indicata deve essere una data valida
+            String testoScadenza = scadenzaField.getText().trim();
+            LocalDate scadenza = null;
+            if (!testoScadenza.isEmpty()) {
+                try {
+                    scadenza = LocalDate.parse(testoScadenza);
+                } catch (DateTimeParseException ex) {
+                    JOptionPane.showMessageDialog(this, "Data di scadenza non valida: usa il formato YYYY-MM-DD.");
+                    return;
+                }
+            }
+
             todo.setTitolo(titoloField.getText().trim());
             todo.setDescrizione(descrizioneField.getText().trim());
-            todo.setDataDiScadenza(scadenzaField.getText().trim());
+            todo.setDataDiScadenza(scadenza);
 
             if (editable) {
                 if (coloreField != null) {
@@ -293,7 +329,10 @@ public class ToDoFormDialog extends JDialog {
                 if (urlField != null) {
                     todo.setUrl(urlField.getText().trim());
                 }
-                todo.setImmagine(imageBytes);
+                // Senza modifiche l'immagine non viene toccata: il ToDo potrebbe non averla in memoria
+                if (immagineModificata) {
+                    todo.setImmagine(imageBytes);
+                }
             }
 
             confirmed = true;
@@ -308,18 +347,30 @@ public class ToDoFormDialog extends JDialog {
         if (!editable && todo.getProprietario() != null && todo.getProprietario().equals(utente.getUsername())) {
             JButton btnCondividi = new JButton("Condividi");
             btnCondividi.addActionListener(e -> {
-                String destinatario = JOptionPane.showInputDialog(this, "Inserisci il nome utente con cui vuoi condividere:");
-                if (destinatario != null && !destinatario.trim().isEmpty()) {
-                    boolean esito = controller.condividiToDo(
-                            destinatario.trim(),
-                            todo,
-                            utente.getUsername(),
-                            tipoBacheca
-                    );
-                    if (esito) {
-                        JOptionPane.showMessageDialog(this, "ToDo condiviso con " + destinatario);
+                // Recupera in background gli utenti con cui il ToDo non è ancora condiviso
+                btnCondividi.setEnabled(false);
+                AccessoDatiAsincrono.suEdt(controller.getPossibiliDestinatari(todo), destinatari -> {
+                    btnCondividi.setEnabled(true);
+                    if (destinatari.isEmpty()) {
+                        JOptionPane.showMessageDialog(this, "Non ci sono altri utenti con cui condividere il ToDo.");
+                        return;
                     }
-                }
+
+                    JFrame frameParent = findParentJFrame(this);
+                    if (frameParent == null) {
+                        frameParent = new JFrame();
+                    }
+
+                    SelezioneDestinatariDialog dialog = new SelezioneDestinatariDialog(frameParent, destinatari);
+                    dialog.setVisible(true);
+                    if (!dialog.getSelezionati().isEmpty()) {
+                        // L'esito viene mostrato dal controller al termine dell'operazione
+                        controller.condividiToDo(dialog.getSelezionati(), todo);
+                    }
+                }, errore -> {
+                    btnCondividi.setEnabled(true);
+                    JOptionPane.showMessageDialog(this, "Errore nel recupero degli utenti.");
+                });
             });
             buttons.add(btnCondividi);
         }
@@ -1,6 +1,10 @@
 package interfaccedao;
 
+import model.EsitoCondivisione;
+import model.TipoBacheca;
+
 import java.util.List;
+import java.util.Map;
 
 /**
  * Interfaccia per la gestione delle condivisioni dei ToDo tra utenti.
@@ -17,9 +21,43 @@ public interface ICondivisioneDAO {
      * @param tipoBacheca Il tipo di bacheca a cui appartiene il ToDo (es. UNIVERSITA, LAVORO, TEMPO_LIBERO)
      * @param titoloToDo Il titolo del ToDo da condividere
      * @return true se la condivisione è stata inserita correttamente, false altrimenti
+     * @deprecated il titolo non identifica univocamente un ToDo e richiede una ricerca in più;
+     *             usare la variante che riceve l'ID del ToDo
      */
+    @Deprecated
     boolean condividi(String username, String proprietario, String tipoBacheca, String titoloToDo);
 
+    /**
+     * Inserisce una richiesta di condivisione, con stato iniziale 'PENDING', per il ToDo con l'ID indicato.
+     *
+     * @param username lo username dell'utente destinatario della condivisione
+     * @param idToDo l'ID del ToDo da condividere
+     * @return true se la condivisione è stata inserita correttamente, false altrimenti
+     */
+    boolean condividi(String username, int idToDo);
+
+    /**
+     * Condivide un ToDo con un destinatario in un'unica operazione atomica: verifica proprietario,
+     * destinatario e condivisioni esistenti e inserisce la richiesta 'PENDING' nello stesso statement.
+     *
+     * @param proprietario lo username di chi condivide, che deve essere il proprietario del ToDo
+     * @param idToDo l'ID del ToDo da condividere
+     * @param destinatario lo username dell'utente destinatario
+     * @return l'esito della richiesta, oppure null in caso di errore di accesso al database
+     */
+    EsitoCondivisione richiediCondivisione(String proprietario, int idToDo, String destinatario);
+
+    /**
+     * Condivide un ToDo con più destinatari in un'unica transazione, con le stesse verifiche
+     * di {@link #richiediCondivisione(String, int, String)} applicate a ciascun destinatario.
+     *
+     * @param proprietario lo username di chi condivide, che deve essere il proprietario del ToDo
+     * @param idToDo l'ID del ToDo da condividere
+     * @param destinatari gli username degli utenti destinatari
+     * @return l'esito per ciascun destinatario, oppure null in caso di errore di accesso al database
+     */
+    Map<String, EsitoCondivisione> richiediCondivisioni(String proprietario, int idToDo, List<String> destinatari);
+
     /**
      * Rimuove una condivisione esistente tra due utenti per un determinato ToDo.
      *
@@ -28,9 +66,30 @@ public interface ICondivisioneDAO {
      * @param tipoBacheca il tipo di bacheca del ToDo
      * @param titoloToDo il titolo del ToDo condiviso
      * @return true se la rimozione è avvenuta correttamente, false altrimenti
+     * @deprecated il titolo non identifica univocamente un ToDo e richiede una ricerca in più;
+     *             usare la variante che riceve l'ID del ToDo
      */
+    @Deprecated
     boolean rimuoviCondivisione(String username, String proprietario, String tipoBacheca, String titoloToDo);
 
+    /**
+     * Rimuove la condivisione del ToDo con l'ID indicato per un destinatario, qualunque sia il suo stato.
+     *
+     * @param username lo username dell'utente destinatario
+     * @param idToDo l'ID del ToDo condiviso
+     * @return true se la rimozione è avvenuta correttamente, false altrimenti
+     */
+    boolean rimuoviCondivisione(String username, int idToDo);
+
+    /**
+     * Rimuove in un'unica operazione la condivisione del ToDo con l'ID indicato per più destinatari.
+     *
+     * @param idToDo l'ID del ToDo condiviso
+     * @param destinatari gli username dei destinatari da rimuovere
+     * @return true se l'operazione è andata a buon fine, false altrimenti
+     */
+    boolean rimuoviCondivisioni(int idToDo, List<String> destinatari);
+
     /**
      * Verifica se esiste già una condivisione per un determinato ToDo tra due utenti.
      *
@@ -39,14 +98,27 @@ public interface ICondivisioneDAO {
      * @param tipoBacheca il tipo di bacheca del ToDo
      * @param titoloToDo il titolo del ToDo condiviso
      * @return true se la condivisione esiste, false altrimenti
+     * @deprecated il titolo non identifica univocamente un ToDo e richiede una ricerca in più;
+     *             usare la variante che riceve l'ID del ToDo
      */
+    @Deprecated
     boolean esisteCondivisione(String username, String proprietario, String tipoBacheca, String titoloToDo);
 
+    /**
+     * Verifica se il ToDo con l'ID indicato è già condiviso con un utente.
+     *
+     * @param username lo username del destinatario
+     * @param idToDo l'ID del ToDo
+     * @return true se la condivisione esiste, false altrimenti
+     */
+    boolean esisteCondivisione(String username, int idToDo);
+
     /**
      * Restituisce le richieste di condivisione pendenti per un determinato utente.
      *
      * @param proprietario lo username del proprietario che ha ricevuto le richieste
-     * @return lista di array contenenti informazioni sulle richieste pendenti
+     * @return lista di array contenenti informazioni sulle richieste pendenti:
+     *         {richiedente, tipoBacheca, titolo, id del ToDo}
      */
     List<String[]> getRichiestePendentiPerUtente(String proprietario);
 
@@ -59,9 +131,23 @@ public interface ICondivisioneDAO {
      * @param titoloToDo il titolo del ToDo
      * @param nuovoStato il nuovo stato della richiesta (es. "accettata", "rifiutata")
      * @return true se l'aggiornamento ha avuto successo, false altrimenti
+     * @deprecated il titolo non identifica univocamente un ToDo e richiede una ricerca in più;
+     *             usare la variante che riceve l'ID del ToDo
      */
+    @Deprecated
     boolean aggiornaStatoRichiesta(String username, String proprietario, String tipoBacheca, String titoloToDo, String nuovoStato);
 
+    /**
+     * Aggiorna lo stato della richiesta di condivisione del ToDo con l'ID indicato:
+     * "ACCEPTED" la accetta, "REJECTED" la elimina se è ancora pendente.
+     *
+     * @param username lo username del destinatario della richiesta
+     * @param idToDo l'ID del ToDo
+     * @param nuovoStato il nuovo stato della richiesta ("ACCEPTED" o "REJECTED")
+     * @return true se l'aggiornamento ha avuto successo, false altrimenti
+     */
+    boolean aggiornaStatoRichiesta(String username, int idToDo, String nuovoStato);
+
     /**
      * Rimuove una richiesta di condivisione, indipendentemente dal suo stato.
      *
@@ -70,9 +156,21 @@ public interface ICondivisioneDAO {
      * @param tipoBacheca il tipo della bacheca
      * @param titoloToDo il titolo del ToDo
      * @return true se la richiesta è stata rimossa, false altrimenti
+     * @deprecated il titolo non identifica univocamente un ToDo e richiede una ricerca in più;
+     *             usare la variante che riceve l'ID del ToDo
      */
+    @Deprecated
     boolean rimuoviRichiesta(String username, String proprietario, String tipoBacheca, String titoloToDo);
 
+    /**
+     * Rimuove la richiesta di condivisione pendente del ToDo con l'ID indicato.
+     *
+     * @param username lo username del destinatario della richiesta
+     * @param idToDo l'ID del ToDo
+     * @return true se la richiesta è stata rimossa, false altrimenti
+     */
+    boolean rimuoviRichiesta(String username, int idToDo);
+
     /**
      * Elimina tutte le condivisioni associate a un ToDo dato il suo ID.
      * Utile quando il proprietario elimina definitivamente il ToDo.
@@ -89,7 +187,92 @@ public interface ICondivisioneDAO {
      * @param tipoBacheca Il tipo di bacheca (es. UNIVERSITA, LAVORO, TEMPO_LIBERO)
      * @param titolo Il titolo del ToDo condiviso
      * @return Lista di username dei destinatari
+     * @deprecated il titolo non identifica univocamente un ToDo e richiede una ricerca in più;
+     *             usare la variante che riceve l'ID del ToDo
      */
+    @Deprecated
     List<String> getUtentiCondivisi(String proprietario, String tipoBacheca, String titolo);
-}
 
+    /**
+     * Restituisce la lista di username con cui è stato condiviso il ToDo con l'ID indicato.
+     *
+     * @param idToDo l'ID del ToDo
+     * @return lista di username dei destinatari
+     */
+    List<String> getUtentiCondivisi(int idToDo);
+
+    /**
+     * Condivide un'intera bacheca con più destinatari in un'unica transazione. La condivisione
+     * riguarda la bacheca e non i singoli ToDo: anche quelli creati in seguito risultano condivisi.
+     *
+     * @param proprietario lo username del proprietario della bacheca
+     * @param tipo il tipo della bacheca da condividere
+     * @param destinatari gli username degli utenti destinatari
+     * @return l'esito per ciascun destinatario, oppure null in caso di errore di accesso al database
+     */
+    Map<String, EsitoCondivisione> richiediCondivisioniBacheca(String proprietario, TipoBacheca tipo, List<String> destinatari);
+
+    /**
+     * Rimuove in un'unica operazione la condivisione di una bacheca per più destinatari,
+     * qualunque sia lo stato della richiesta.
+     *
+     * @param proprietario lo username del proprietario della bacheca
+     * @param tipo il tipo della bacheca
+     * @param destinatari gli username dei destinatari da rimuovere
+     * @return true se l'operazione è andata a buon fine, false altrimenti
+     */
+    boolean rimuoviCondivisioniBacheca(String proprietario, TipoBacheca tipo, List<String> destinatari);
+
+    /**
+     * Revoca la condivisione di una bacheca ad alcuni destinatari e la richiede per altri in
+     * un'unica transazione.
+     *
+     * @param proprietario lo username del proprietario della bacheca
+     * @param tipo il tipo della bacheca
+     * @param nuovi gli username a cui richiedere la condivisione
+     * @param revocati gli username a cui revocarla
+     * @return l'esito per ciascun nuovo destinatario, oppure null in caso di errore di accesso al
+     *         database, nel qual caso nessuna modifica è stata applicata
+     */
+    Map<String, EsitoCondivisione> aggiornaCondivisioniBacheca(String proprietario, TipoBacheca tipo,
+                                                               List<String> nuovi, List<String> revocati);
+
+    /**
+     * Restituisce gli username con cui è condivisa una bacheca, comprese le richieste in attesa.
+     *
+     * @param proprietario lo username del proprietario della bacheca
+     * @param tipo il tipo della bacheca
+     * @return lista di username dei destinatari
+     */
+    List<String> getUtentiCondivisiBacheca(String proprietario, TipoBacheca tipo);
+
+    /**
+     * Verifica se una bacheca è condivisa con un utente e la condivisione è stata accettata.
+     *
+     * @param username lo username del destinatario
+     * @param proprietario lo username del proprietario della bacheca
+     * @param tipo il tipo della bacheca
+     * @return true se la condivisione esiste ed è accettata, false altrimenti
+     */
+    boolean esisteCondivisioneBacheca(String username, String proprietario, TipoBacheca tipo);
+
+    /**
+     * Restituisce le richieste di condivisione di bacheche in attesa per un utente.
+     *
+     * @param username lo username del destinatario delle richieste
+     * @return lista di array {richiedente, tipoBacheca}
+     */
+    List<String[]> getRichiesteBachechePendentiPerUtente(String username);
+
+    /**
+     * Aggiorna lo stato di una richiesta di condivisione di bacheca:
+     * "ACCEPTED" la accetta, "REJECTED" la elimina se è ancora pendente.
+     *
+     * @param username lo username del destinatario della richiesta
+     * @param proprietario lo username del proprietario della bacheca
+     * @param tipo il tipo della bacheca
+     * @param nuovoStato il nuovo stato della richiesta ("ACCEPTED" o "REJECTED")
+     * @return true se l'aggiornamento ha avuto successo, false altrimenti
+     */
+    boolean aggiornaStatoRichiestaBacheca(String username, String proprietario, TipoBacheca tipo, String nuovoStato);
+}
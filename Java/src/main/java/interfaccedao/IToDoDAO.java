@@ -1,9 +1,14 @@
 package interfaccedao;
 
+import model.EsitoAggiornamento;
+import model.ModificheToDo;
 import model.ToDo;
 import model.TipoBacheca;
 
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Interfaccia per la gestione dei ToDo nel database.
@@ -12,7 +17,7 @@ import java.util.List;
 public interface IToDoDAO {
 
     /**
-     * Salva un nuovo ToDo nel database e aggiorna il suo ID generato automaticamente.
+     * Salva un nuovo ToDo in testa alla bacheca e aggiorna il suo ID generato automaticamente.
      *
      * @param todo il ToDo da salvare
      * @param proprietario lo username del proprietario del ToDo
@@ -21,8 +26,41 @@ public interface IToDoDAO {
      */
     boolean salva(ToDo todo, String proprietario, TipoBacheca tipoBacheca);
 
+    /**
+     * Salva un nuovo ToDo in coda alla bacheca.
+     *
+     * @param todo il ToDo da salvare
+     * @param proprietario lo username del proprietario del ToDo
+     * @param tipoBacheca il tipo di bacheca a cui appartiene il ToDo
+     * @return true se l'inserimento ha avuto successo, false altrimenti
+     */
+    boolean salvaInCoda(ToDo todo, String proprietario, TipoBacheca tipoBacheca);
+
+    /**
+     * Salva un nuovo ToDo tra due ToDo esistenti della stessa bacheca.
+     *
+     * @param todo il ToDo da salvare
+     * @param proprietario lo username del proprietario del ToDo
+     * @param tipoBacheca il tipo di bacheca a cui appartiene il ToDo
+     * @param precedente il ToDo che precederà quello nuovo, oppure null per inserirlo in testa
+     * @param successivo il ToDo che seguirà quello nuovo, oppure null per inserirlo in coda
+     * @return true se l'inserimento ha avuto successo, false altrimenti
+     */
+    boolean salvaTra(ToDo todo, String proprietario, TipoBacheca tipoBacheca, ToDo precedente, ToDo successivo);
+
+    /**
+     * Sposta un ToDo tra due vicini della sua bacheca modificando solo la sua posizione.
+     *
+     * @param todo il ToDo da spostare
+     * @param precedente il ToDo che lo precederà, oppure null per portarlo in testa
+     * @param successivo il ToDo che lo seguirà, oppure null per portarlo in coda
+     * @return true se lo spostamento ha avuto successo, false altrimenti
+     */
+    boolean sposta(ToDo todo, ToDo precedente, ToDo successivo);
+
     /**
      * Restituisce tutti i ToDo associati a una determinata bacheca.
+     * Per non trasferire le immagini, i ToDo restituiti ne riportano solo presenza e dimensione.
      *
      * @param proprietario lo username del proprietario della bacheca
      * @param tipoBacheca il tipo di bacheca
@@ -31,14 +69,50 @@ public interface IToDoDAO {
     List<ToDo> trovaPerBacheca(String proprietario, TipoBacheca tipoBacheca);
 
     /**
-     * Aggiorna i dati di un ToDo nel database usando il suo ID.
+     * Restituisce un singolo ToDo tramite il suo ID.
+     *
+     * @param id l'ID del ToDo
+     * @return il ToDo, oppure null se non esiste
+     */
+    ToDo trovaPerId(int id);
+
+    /**
+     * Aggiorna i dati di un ToDo nel database usando il suo ID, solo se la sua versione
+     * sul database è ancora quella letta.
      *
      * @param todo il ToDo aggiornato
      * @param proprietario lo username del proprietario
      * @param tipoBacheca il tipo di bacheca a cui appartiene
+     * @return l'esito dell'aggiornamento
+     */
+    EsitoAggiornamento aggiorna(ToDo todo, String proprietario, TipoBacheca tipoBacheca);
+
+    /**
+     * Aggiorna più ToDo in un'unica transazione, scrivendo per ciascuno solo i campi modificati
+     * e solo se la sua versione sul database è ancora quella letta.
+     *
+     * @param todos i ToDo da aggiornare
+     * @return i ToDo non aggiornati perché non esistono più o sono stati modificati da altri,
+     *         oppure null se la transazione è fallita
+     */
+    List<ToDo> aggiornaInBlocco(List<ToDo> todos);
+
+    /**
+     * Legge su richiesta l'immagine di un ToDo.
+     *
+     * @param id l'ID del ToDo
+     * @return i byte dell'immagine, oppure null se assente
+     */
+    byte[] caricaImmagine(int id);
+
+    /**
+     * Salva la miniatura di un ToDo senza modificarne gli altri campi.
+     *
+     * @param id l'ID del ToDo
+     * @param miniatura i byte della miniatura
      * @return true se l'aggiornamento ha avuto successo, false altrimenti
      */
-    boolean aggiorna(ToDo todo, String proprietario, TipoBacheca tipoBacheca);
+    boolean salvaMiniatura(int id, byte[] miniatura);
 
     /**
      * Elimina un ToDo dal database tramite il suo ID.
@@ -49,10 +123,80 @@ public interface IToDoDAO {
     boolean elimina(int id);
 
     /**
-     * Restituisce la lista dei ToDo condivisi con uno specifico utente.
+     * Restituisce la lista dei ToDo condivisi con uno specifico utente e accettati,
+     * compresi quelli delle bacheche condivise per intero.
      *
      * @param username lo username dell'utente con cui sono condivisi i ToDo
      * @return lista dei ToDo condivisi
      */
     List<ToDo> getToDoCondivisiCon(String username);
+
+    /**
+     * Restituisce il cursore di sincronizzazione attuale. Letto prima di caricare le bacheche,
+     * permette di chiedere in seguito solo le modifiche successive al caricamento.
+     *
+     * @return il cursore, oppure -1 in caso di errore
+     */
+    long cursoreModifiche();
+
+    /**
+     * Restituisce le modifiche ai ToDo visibili a un utente, propri o condivisi con lui,
+     * avvenute dopo il cursore indicato. Il costo dipende dal numero di modifiche e non dalla
+     * dimensione delle bacheche.
+     *
+     * @param username lo username dell'utente
+     * @param cursore il cursore restituito dalla lettura precedente o da {@link #cursoreModifiche()}
+     * @return le modifiche con il nuovo cursore, che richiedono un ricaricamento completo se il
+     *         cursore è precedente alle tracce eliminate, oppure null in caso di errore
+     */
+    ModificheToDo modificheDa(String username, long cursore);
+
+    /**
+     * Elimina le tracce dei ToDo rimossi registrate prima dell'istante indicato. Un cursore
+     * precedente alle tracce eliminate non permette più di leggere le modifiche successive:
+     * {@link #modificheDa(String, long)} richiede allora un ricaricamento completo.
+     *
+     * @param limite le tracce precedenti a questo istante vengono eliminate
+     * @return il numero di tracce eliminate, oppure -1 in caso di errore
+     */
+    int eliminaRimossiPrima(OffsetDateTime limite);
+
+    /**
+     * Indica se un ToDo è visibile a un utente perché condiviso con lui e accettato,
+     * singolarmente o come parte di una bacheca condivisa.
+     *
+     * @param id l'ID del ToDo
+     * @param username lo username dell'utente
+     * @return true se il ToDo è condiviso con l'utente
+     */
+    boolean isCondivisoCon(int id, String username);
+
+    /**
+     * Restituisce i ToDo di proprietà di un utente la cui scadenza è la data indicata o è già passata,
+     * indipendentemente dal loro stato. I ToDo senza scadenza non sono mai scaduti.
+     *
+     * @param username lo username del proprietario
+     * @param oggi la data di riferimento
+     * @return lista dei ToDo scaduti
+     */
+    List<ToDo> trovaScaduti(String username, LocalDate oggi);
+
+    /**
+     * Riporta a "non completato", con un'unica istruzione, i ToDo scaduti di un utente
+     * che risultano completati. Il ripristino non è una modifica dell'utente e non cambia la versione.
+     *
+     * @param username lo username del proprietario
+     * @param oggi la data di riferimento: sono scaduti i ToDo con scadenza uguale o precedente
+     * @return la versione dei ToDo modificati, per ID; vuota se nessuno o in caso di errore
+     */
+    Map<Integer, Integer> ripristinaScaduti(String username, LocalDate oggi);
+
+    /**
+     * Riporta a "non completato" i ToDo scaduti e completati di tutti gli utenti, senza
+     * cambiarne la versione. Pensato per la manutenzione periodica in background.
+     *
+     * @param oggi la data di riferimento
+     * @return il numero di ToDo modificati, oppure -1 in caso di errore
+     */
+    int ripristinaTuttiScaduti(LocalDate oggi);
 }
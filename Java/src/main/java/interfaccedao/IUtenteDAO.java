@@ -2,6 +2,8 @@ package interfaccedao;
 
 import model.Utente;
 
+import java.util.List;
+
 /**
  * Interfaccia per la gestione dei dati persistenti relativi agli utenti.
  * Definisce le operazioni CRUD essenziali per l'entità Utente.
@@ -34,6 +36,33 @@ public interface IUtenteDAO {
      */
     Utente findByUsername(String username);
 
+    /**
+     * Restituisce gli username di tutti gli utenti registrati, in ordine alfabetico.
+     * Usato per scegliere i destinatari di una condivisione.
+     *
+     * @return lista degli username
+     */
+    List<String> elencaUsername();
+
+    /**
+     * Carica con un'unica query l'utente, le sue bacheche con i relativi ToDo ordinati per
+     * posizione e i ToDo condivisi con lui e accettati.
+     *
+     * @param username lo username dell'utente
+     * @return l'utente con bacheche e ToDo condivisi, oppure null se non esiste
+     */
+    Utente loadSnapshot(String username);
+
+    /**
+     * Come {@link #loadSnapshot(String)}, ma restituisce l'utente solo se la password corrisponde.
+     * Usato per il login, in modo da mostrare la dashboard senza ulteriori query.
+     *
+     * @param username lo username dell'utente
+     * @param password la password dell'utente
+     * @return l'utente con bacheche e ToDo condivisi, oppure null se le credenziali non sono valide
+     */
+    Utente loadSnapshot(String username, String password);
+
     /**
      * Elimina un utente in base allo username.
      *
@@ -1,12 +1,16 @@
 package main;
 
+import database.MigrazioniDatabase;
 import gui.MainFrame;
+import service.ManutenzioneRimossi;
+import service.ManutenzioneScadenze;
 
 import javax.swing.*;
+import java.sql.SQLException;
 
 /**
  * Classe principale del progetto.
- * Avvia l'inizializzazione dei dati statici nel database e l'interfaccia grafica Swing.
+ * Aggiorna lo schema del database applicando le migrazioni mancanti e avvia l'interfaccia grafica Swing.
  */
 public class Main {
 
@@ -18,16 +22,45 @@ public class Main {
     /**
      * Metodo principale di avvio dell'applicazione.
      *
-     * Inizializza i tipi di bacheca e gli stati dei ToDo se non sono già presenti nel database,
-     * poi avvia l'interfaccia grafica principale (MainFrame) usando il thread dell'Event Dispatch Thread di Swing.
+     * Applica le migrazioni dello schema non ancora presenti nel database, avvia la manutenzione
+     * periodica delle scadenze e dei ToDo rimossi e poi l'interfaccia grafica principale (MainFrame) usando il
+     * thread dell'Event Dispatch Thread di Swing.
+     * Se il database non è raggiungibile l'interfaccia viene avviata comunque e gli errori
+     * verranno segnalati alle prime operazioni. Uno script di migrazione che fallisce, o una
+     * migrazione modificata dopo essere stata applicata, interrompe invece l'avvio: i DAO non
+     * funzionerebbero su uno schema aggiornato solo in parte.
      *
      * @param args eventuali argomenti da linea di comando (non usati)
+     * @throws SQLException se uno script di migrazione fallisce
      */
-    public static void main(String[] args) {
+    public static void main(String[] args) throws SQLException {
         // InitDAO.inserisciTipiEStati(); non mi serve più
 
+        try {
+            int applicate = MigrazioniDatabase.applica();
+            if (applicate > 0) {
+                System.out.println("Migrazioni dello schema applicate: " + applicate);
+            }
+        } catch (SQLException e) {
+            if (!isDatabaseNonRaggiungibile(e)) {
+                throw e;
+            }
+            e.printStackTrace();
+        }
+
+        ManutenzioneScadenze.avvia();
+        ManutenzioneRimossi.avvia();
+
         // Avvia l'interfaccia grafica sul thread corretto di Swing
         SwingUtilities.invokeLater(MainFrame::new);
     }
+
+    /**
+     * Indica se l'errore riguarda la connessione al database (SQLState di classe 08),
+     * e non l'esecuzione di uno script.
+     */
+    private static boolean isDatabaseNonRaggiungibile(SQLException e) {
+        return e.getSQLState() != null && e.getSQLState().startsWith("08");
+    }
 }
 
@@ -0,0 +1,76 @@
+package main;
+
+import com.sun.net.httpserver.HttpServer;
+import database.ConnessioneDatabase;
+import database.MigrazioniDatabase;
+import server.GestoreApi;
+import service.Esecutori;
+import service.ManutenzioneRimossi;
+import service.ManutenzioneScadenze;
+import service.NotificheModifiche;
+import service.ToDoService;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.sql.SQLException;
+
+/**
+ * Avvio dell'applicazione in modalità server: le bacheche vengono esposte via HTTP/JSON
+ * invece che tramite l'interfaccia Swing, così molti utenti condividono un solo processo
+ * e un solo pool di connessioni verso PostgreSQL.
+ * <p>
+ * Usa il server HTTP incluso nel JDK, con un virtual thread per richiesta, e non richiede
+ * altri servizi oltre al database.
+ */
+public class MainServer {
+
+    /** Porta usata se non ne viene indicata una da linea di comando. */
+    private static final int PORTA_PREDEFINITA = 8080;
+
+    /** Connessioni in attesa di essere accettate oltre le quali il sistema le rifiuta. */
+    private static final int CODA_CONNESSIONI = 128;
+
+    /** Secondi concessi alle richieste in corso per terminare alla chiusura. */
+    private static final int ATTESA_CHIUSURA_S = 5;
+
+    /** Costruttore privato per evitare l'istanziazione della classe utility. */
+    private MainServer() {
+        // Classe non instanziabile
+    }
+
+    /**
+     * Applica le migrazioni mancanti, avvia la manutenzione periodica delle scadenze e dei ToDo
+     * rimossi e poi il server HTTP. Alla chiusura della JVM il server smette di accettare
+     * richieste prima che vengano scritti gli aggiornamenti in coda e chiuso il pool di connessioni.
+     *
+     * @param args la porta su cui ascoltare (facoltativa, predefinita {@value #PORTA_PREDEFINITA})
+     * @throws IOException se la porta non è disponibile
+     * @throws SQLException se le migrazioni dello schema non possono essere applicate
+     */
+    public static void main(String[] args) throws IOException, SQLException {
+        int porta = args.length > 0 ? Integer.parseInt(args[0]) : PORTA_PREDEFINITA;
+
+        int applicate = MigrazioniDatabase.applica();
+        if (applicate > 0) {
+            System.out.println("Migrazioni dello schema applicate: " + applicate);
+        }
+        ManutenzioneScadenze.avvia();
+        ManutenzioneRimossi.avvia();
+
+        // Le risposte sono piccole e la connessione resta aperta: senza Nagle non attendono l'ACK
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+
+        HttpServer server = HttpServer.create(new InetSocketAddress(porta), CODA_CONNESSIONI);
+        // Registrata prima del servizio, così il server si ferma prima che la coda venga svuotata
+        ConnessioneDatabase.primaDellaChiusura(() -> server.stop(ATTESA_CHIUSURA_S));
+        // Le richieste di modifiche in attesa trovano l'ascolto delle notifiche già attivo
+        NotificheModifiche.avvia();
+
+        server.createContext(GestoreApi.PREFISSO, new GestoreApi(new ToDoService()));
+        server.setExecutor(Esecutori.perAttivita("http"));
+        server.start();
+        System.out.println("Server ToDo in ascolto su http://localhost:" + porta + GestoreApi.PREFISSO);
+    }
+}
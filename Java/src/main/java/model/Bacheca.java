@@ -1,7 +1,10 @@
 package model;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Rappresenta una bacheca che contiene una lista di ToDo.
@@ -13,6 +16,9 @@ public class Bacheca {
     private String descrizione;
     private List<ToDo> toDoList;
 
+    /** Indice dei ToDo della bacheca per ID, mantenuto allineato con {@link #toDoList}. */
+    private final Map<Integer, ToDo> indicePerId = new HashMap<>();
+
     /**
      * Costruisce una nuova bacheca con tipo e descrizione specificati.
      * Inizializza la lista dei ToDo come vuota.
@@ -63,12 +69,13 @@ public class Bacheca {
     }
 
     /**
-     * Restituisce la lista dei ToDo contenuti nella bacheca.
+     * Restituisce la lista dei ToDo contenuti nella bacheca, in ordine di visualizzazione.
+     * La lista non è modificabile: per cambiarla usare i metodi della bacheca, che aggiornano anche l'indice per ID.
      *
      * @return la lista dei ToDo
      */
     public List<ToDo> getToDoList() {
-        return toDoList;
+        return Collections.unmodifiableList(toDoList);
     }
 
     /**
@@ -77,8 +84,77 @@ public class Bacheca {
      * @param toDoList la nuova lista di ToDo
      */
     public void setToDoList(List<ToDo> toDoList) {
-        this.toDoList = toDoList;
+        this.toDoList = new ArrayList<>(toDoList);
+        indicePerId.clear();
+        for (ToDo todo : this.toDoList) {
+            indicePerId.put(todo.getId(), todo);
+        }
+    }
+
+    /**
+     * Aggiunge un ToDo in coda alla bacheca, come avviene durante il caricamento dal database.
+     *
+     * @param todo il ToDo da aggiungere
+     */
+    public void aggiungiToDo(ToDo todo) {
+        toDoList.add(todo);
+        indicePerId.put(todo.getId(), todo);
+    }
+
+    /**
+     * Aggiunge un ToDo in testa alla bacheca, come avviene per i ToDo appena creati.
+     *
+     * @param todo il ToDo da aggiungere
+     */
+    public void aggiungiToDoInTesta(ToDo todo) {
+        toDoList.add(0, todo);
+        indicePerId.put(todo.getId(), todo);
     }
-}
 
+    /**
+     * Indica se la bacheca contiene il ToDo con l'ID indicato. Il controllo è in tempo costante
+     * e resta corretto anche per copie dello stesso ToDo lette da un ricaricamento.
+     *
+     * @param id l'ID del ToDo
+     * @return true se il ToDo appartiene alla bacheca
+     */
+    public boolean contieneToDo(int id) {
+        return indicePerId.containsKey(id);
+    }
 
+    /**
+     * Restituisce il ToDo della bacheca con l'ID indicato.
+     *
+     * @param id l'ID del ToDo
+     * @return il ToDo, oppure null se non appartiene alla bacheca
+     */
+    public ToDo getToDo(int id) {
+        return indicePerId.get(id);
+    }
+
+    /**
+     * Sostituisce il ToDo con lo stesso ID con la versione indicata, mantenendone la posizione in lista.
+     * Se nessun ToDo ha quell'ID, il ToDo viene aggiunto in testa.
+     *
+     * @param todo la versione aggiornata del ToDo
+     */
+    public void sostituisciToDo(ToDo todo) {
+        ToDo precedente = indicePerId.put(todo.getId(), todo);
+        if (precedente == null) {
+            toDoList.add(0, todo);
+        } else if (precedente != todo) {
+            toDoList.set(toDoList.indexOf(precedente), todo);
+        }
+    }
+
+    /**
+     * Rimuove dalla bacheca il ToDo con l'ID indicato.
+     *
+     * @param id l'ID del ToDo da rimuovere
+     * @return true se il ToDo era presente nella bacheca
+     */
+    public boolean rimuoviToDo(int id) {
+        ToDo rimosso = indicePerId.remove(id);
+        return rimosso != null && toDoList.remove(rimosso);
+    }
+}
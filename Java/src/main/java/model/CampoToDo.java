@@ -0,0 +1,29 @@
+package model;
+
+/**
+ * Campi di un ToDo che possono essere modificati e salvati singolarmente.
+ * Usati da {@link ToDo} per tenere traccia delle modifiche non ancora scritte sul database,
+ * così l'aggiornamento invia solo le colonne cambiate.
+ */
+public enum CampoToDo {
+    /** Il titolo. */
+    TITOLO,
+
+    /** La descrizione. */
+    DESCRIZIONE,
+
+    /** La data di scadenza. */
+    DATA_SCADENZA,
+
+    /** Il colore della card. */
+    COLORE,
+
+    /** Lo stato di completamento. */
+    STATO,
+
+    /** L'URL collegato. */
+    URL,
+
+    /** L'immagine, sempre salvata insieme alla sua miniatura. */
+    IMMAGINE
+}
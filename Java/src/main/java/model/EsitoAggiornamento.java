@@ -0,0 +1,18 @@
+package model;
+
+/**
+ * Rappresenta l'esito dell'aggiornamento di un ToDo con il controllo della versione.
+ */
+public enum EsitoAggiornamento {
+    /** Le modifiche sono state scritte e il ToDo ha ricevuto la nuova versione. */
+    AGGIORNATO,
+
+    /** Il ToDo è stato modificato da un altro utente dopo essere stato letto: nulla è stato scritto. */
+    CONFLITTO,
+
+    /** Il ToDo non esiste più. */
+    NON_TROVATO,
+
+    /** La scrittura non è riuscita per un errore del database. */
+    ERRORE
+}
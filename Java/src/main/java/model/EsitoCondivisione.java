@@ -0,0 +1,21 @@
+package model;
+
+/**
+ * Rappresenta l'esito di una richiesta di condivisione di un ToDo o di un'intera bacheca.
+ */
+public enum EsitoCondivisione {
+    /** La richiesta di condivisione è stata registrata. */
+    OK,
+
+    /** Il destinatario indicato non è un utente registrato. */
+    UTENTE_INESISTENTE,
+
+    /** Il ToDo o la bacheca è già condiviso con il destinatario, o la richiesta è ancora in attesa. */
+    GIA_CONDIVISO,
+
+    /** Il destinatario coincide con il proprietario del ToDo. */
+    CONDIVISIONE_CON_SE_STESSO,
+
+    /** Il ToDo, o la bacheca, non esiste o non appartiene all'utente che vuole condividerlo. */
+    TODO_NON_TROVATO
+}
@@ -0,0 +1,52 @@
+package model;
+
+import java.util.List;
+
+/**
+ * Le modifiche ai ToDo visibili a un utente avvenute dopo un cursore di sincronizzazione.
+ * <p>
+ * Un ToDo può comparire in più letture consecutive: applicare di nuovo la stessa modifica
+ * non ha effetto, quindi il client può sempre sostituire la copia locale con quella ricevuta.
+ *
+ * @param inseriti ToDo diventati visibili, perché creati o appena condivisi con l'utente
+ * @param aggiornati ToDo già visibili e modificati, anche solo nella posizione
+ * @param eliminati ID dei ToDo eliminati o non più condivisi con l'utente
+ * @param cursore cursore da usare per la lettura successiva
+ * @param ricaricaNecessaria true se il cursore è troppo vecchio: alcune rimozioni non sono più
+ *                           registrate, le liste sono vuote e il client deve ricaricare per intero
+ *                           le bacheche, ottenendo un nuovo cursore
+ */
+public record ModificheToDo(List<ToDo> inseriti, List<ToDo> aggiornati, List<Integer> eliminati, long cursore,
+                            boolean ricaricaNecessaria) {
+
+    /**
+     * Crea le modifiche lette a partire da un cursore ancora valido.
+     *
+     * @param inseriti ToDo diventati visibili
+     * @param aggiornati ToDo già visibili e modificati
+     * @param eliminati ID dei ToDo non più visibili
+     * @param cursore cursore da usare per la lettura successiva
+     */
+    public ModificheToDo(List<ToDo> inseriti, List<ToDo> aggiornati, List<Integer> eliminati, long cursore) {
+        this(inseriti, aggiornati, eliminati, cursore, false);
+    }
+
+    /**
+     * Crea la risposta per un cursore più vecchio delle rimozioni conservate.
+     *
+     * @param cursore cursore attuale
+     * @return modifiche vuote che richiedono un ricaricamento completo
+     */
+    public static ModificheToDo daRicaricare(long cursore) {
+        return new ModificheToDo(List.of(), List.of(), List.of(), cursore, true);
+    }
+
+    /**
+     * Indica se non c'è nessuna modifica da applicare.
+     *
+     * @return true se le tre liste sono vuote e non serve un ricaricamento completo
+     */
+    public boolean isVuota() {
+        return !ricaricaNecessaria && inseriti.isEmpty() && aggiornati.isEmpty() && eliminati.isEmpty();
+    }
+}
@@ -0,0 +1,33 @@
+package model;
+
+/**
+ * Una richiesta di condivisione in attesa di risposta: di un singolo ToDo oppure di un'intera
+ * bacheca del richiedente.
+ *
+ * @param richiedente username del proprietario che ha chiesto la condivisione
+ * @param tipo tipo della bacheca condivisa o contenente il ToDo
+ * @param titolo titolo del ToDo, null per le richieste di bacheca
+ * @param idToDo ID del ToDo, null per le richieste di bacheca
+ */
+public record RichiestaCondivisione(String richiedente, TipoBacheca tipo, String titolo, Integer idToDo) {
+
+    /**
+     * Crea la richiesta di condivisione di un'intera bacheca.
+     *
+     * @param richiedente proprietario della bacheca
+     * @param tipo tipo della bacheca
+     * @return la richiesta, senza titolo né ID del ToDo
+     */
+    public static RichiestaCondivisione diBacheca(String richiedente, TipoBacheca tipo) {
+        return new RichiestaCondivisione(richiedente, tipo, null, null);
+    }
+
+    /**
+     * Indica se la richiesta riguarda un'intera bacheca invece di un singolo ToDo.
+     *
+     * @return true per le richieste di bacheca
+     */
+    public boolean isBacheca() {
+        return idToDo == null;
+    }
+}
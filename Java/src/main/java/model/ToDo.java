@@ -1,19 +1,29 @@
 package model;
 
+import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Objects;
+import java.util.Set;
 
 /**
  * Rappresenta un'attività (ToDo) associata a una bacheca, con informazioni su contenuto,
  * stato, scadenza, immagine, condivisione e proprietà.
+ * <p>
+ * I setter dei campi salvabili registrano quali {@link CampoToDo} sono cambiati rispetto
+ * all'ultima lettura o scrittura sul database, così l'aggiornamento può inviare solo quelli.
  */
 public class ToDo {
 
     private int id;
     private String titolo;
-    private String dataDiScadenza;
+    private LocalDate dataDiScadenza;
     private String url;
     private byte[] immagine;
+    private boolean immagineCaricata;
+    private int dimensioneImmagine;
+    private byte[] miniatura;
     private String descrizione;
     private String colore;
     private int posizione;
@@ -22,22 +32,28 @@ public class ToDo {
     private List<Utente> utentiCondivisi;
     private TipoBacheca tipoBacheca;
 
+    /** Versione della riga letta dal database; scritta dal thread che salva il ToDo. */
+    private volatile int versione;
+
+    /** Campi modificati e non ancora salvati; accesso sincronizzato sul ToDo. */
+    private final EnumSet<CampoToDo> campiModificati = EnumSet.noneOf(CampoToDo.class);
+
     /**
      * Costruttore completo per creare un nuovo ToDo.
      *
      * @param titolo         il titolo del ToDo
-     * @param dataDiScadenza la data di scadenza
+     * @param dataDiScadenza la data di scadenza, oppure null se il ToDo non scade
      * @param url            un eventuale URL collegato
      * @param immagine       l'immagine associata al ToDo (in formato byte array)
      * @param descrizione    la descrizione del contenuto
      * @param colore         il colore scelto per il ToDo (es. "FFFFFF")
      */
-    public ToDo(String titolo, String dataDiScadenza, String url, byte[] immagine,
+    public ToDo(String titolo, LocalDate dataDiScadenza, String url, byte[] immagine,
                 String descrizione, String colore) {
         this.titolo = titolo;
         this.dataDiScadenza = dataDiScadenza;
         this.url = url;
-        this.immagine = immagine;
+        setImmagine(immagine);
         this.descrizione = descrizione;
         this.colore = colore;
         this.stato = StatoToDo.NON_COMPLETATO;
@@ -53,7 +69,7 @@ public class ToDo {
      * @param titolo il titolo del ToDo
      */
     public ToDo(String titolo) {
-        this(titolo, "", "", null, "", "FFFFFF");
+        this(titolo, null, "", null, "", "FFFFFF");
     }
 
     // Getter e setter con Javadoc
@@ -84,21 +100,39 @@ public class ToDo {
      *
      * @param titolo il titolo da assegnare
      */
-    public void setTitolo(String titolo) { this.titolo = titolo; }
+    public void setTitolo(String titolo) {
+        Object precedente = this.titolo;
+        this.titolo = titolo;
+        segnaSeCambiato(CampoToDo.TITOLO, precedente, titolo);
+    }
 
     /**
      * Restituisce la data di scadenza assegnata al ToDo.
      *
-     * @return la data di scadenza
+     * @return la data di scadenza, oppure null se il ToDo non scade
      */
-    public String getDataDiScadenza() { return dataDiScadenza; }
+    public LocalDate getDataDiScadenza() { return dataDiScadenza; }
 
     /**
      * Imposta la data di scadenza per il ToDo.
      *
-     * @param dataDiScadenza la data di scadenza da assegnare
+     * @param dataDiScadenza la data di scadenza da assegnare, oppure null per nessuna scadenza
+     */
+    public void setDataDiScadenza(LocalDate dataDiScadenza) {
+        Object precedente = this.dataDiScadenza;
+        this.dataDiScadenza = dataDiScadenza;
+        segnaSeCambiato(CampoToDo.DATA_SCADENZA, precedente, dataDiScadenza);
+    }
+
+    /**
+     * Indica se la data di scadenza del ToDo è quella indicata o è già passata.
+     *
+     * @param oggi data di riferimento
+     * @return true se il ToDo ha una scadenza e risulta scaduto
      */
-    public void setDataDiScadenza(String dataDiScadenza) { this.dataDiScadenza = dataDiScadenza; }
+    public boolean isScaduto(LocalDate oggi) {
+        return dataDiScadenza != null && !dataDiScadenza.isAfter(oggi);
+    }
 
     /**
      * Restituisce l'URL collegato al ToDo.
@@ -112,21 +146,91 @@ public class ToDo {
      *
      * @param url l'URL da assegnare
      */
-    public void setUrl(String url) { this.url = url; }
+    public void setUrl(String url) {
+        Object precedente = this.url;
+        this.url = url;
+        segnaSeCambiato(CampoToDo.URL, precedente, url);
+    }
 
     /**
      * Restituisce l'immagine associata al ToDo.
+     * Vale null anche se il ToDo ha un'immagine che non è stata ancora caricata:
+     * usare {@link #haImmagine()} e {@link #isImmagineCaricata()} per distinguere i due casi.
      *
-     * @return l'immagine associata al ToDo
+     * @return l'immagine associata al ToDo, se caricata
      */
     public byte[] getImmagine() { return immagine; }
 
     /**
-     * Imposta l'immagine associata al ToDo.
+     * Imposta l'immagine associata al ToDo e la segna come caricata e modificata,
+     * così verrà scritta sul database al prossimo aggiornamento.
+     * La miniatura precedente viene scartata e va rigenerata prima del salvataggio.
+     *
+     * @param immagine l'immagine da assegnare (byte[]), oppure null per rimuoverla
+     */
+    public void setImmagine(byte[] immagine) {
+        this.immagine = immagine;
+        this.miniatura = null;
+        this.immagineCaricata = true;
+        this.dimensioneImmagine = immagine != null ? immagine.length : 0;
+        segnaModificato(CampoToDo.IMMAGINE);
+    }
+
+    /**
+     * Registra che il ToDo ha un'immagine sul database senza tenerne i byte in memoria.
+     * Usato dalle query delle bacheche, che leggono solo la dimensione dell'immagine.
+     *
+     * @param dimensione dimensione in byte dell'immagine, 0 se il ToDo non ne ha
+     */
+    public void setImmagineNonCaricata(int dimensione) {
+        this.immagine = null;
+        this.immagineCaricata = false;
+        this.dimensioneImmagine = dimensione;
+    }
+
+    /**
+     * Libera i byte dell'immagine dopo che sono stati salvati, mantenendo l'informazione
+     * sulla sua presenza e dimensione. L'immagine potrà essere riletta dal database.
+     */
+    public void rilasciaImmagine() {
+        setImmagineNonCaricata(dimensioneImmagine);
+    }
+
+    /**
+     * Indica se i byte dell'immagine sono presenti in memoria. Se è false l'immagine,
+     * quando presente, va letta dal database e non viene riscritta negli aggiornamenti.
+     *
+     * @return true se l'immagine è caricata
+     */
+    public boolean isImmagineCaricata() { return immagineCaricata; }
+
+    /**
+     * Indica se al ToDo è associata un'immagine, caricata o meno.
+     *
+     * @return true se il ToDo ha un'immagine
+     */
+    public boolean haImmagine() { return dimensioneImmagine > 0; }
+
+    /**
+     * Restituisce la dimensione in byte dell'immagine associata al ToDo.
+     *
+     * @return la dimensione dell'immagine, 0 se assente
+     */
+    public int getDimensioneImmagine() { return dimensioneImmagine; }
+
+    /**
+     * Restituisce la miniatura dell'immagine, codificata come JPEG o PNG.
+     *
+     * @return i byte della miniatura, oppure null se non disponibile
+     */
+    public byte[] getMiniatura() { return miniatura; }
+
+    /**
+     * Imposta la miniatura dell'immagine.
      *
-     * @param immagine l'immagine da assegnare (byte[])
+     * @param miniatura i byte della miniatura, oppure null
      */
-    public void setImmagine(byte[] immagine) { this.immagine = immagine; }
+    public void setMiniatura(byte[] miniatura) { this.miniatura = miniatura; }
 
     /**
      * Restituisce la descrizione testuale del ToDo.
@@ -140,7 +244,11 @@ public class ToDo {
      *
      * @param descrizione la descrizione da assegnare
      */
-    public void setDescrizione(String descrizione) { this.descrizione = descrizione; }
+    public void setDescrizione(String descrizione) {
+        Object precedente = this.descrizione;
+        this.descrizione = descrizione;
+        segnaSeCambiato(CampoToDo.DESCRIZIONE, precedente, descrizione);
+    }
 
     /**
      * Restituisce il colore assegnato al ToDo.
@@ -154,7 +262,11 @@ public class ToDo {
      *
      * @param colore il colore da assegnare (es. "FFFFFF")
      */
-    public void setColore(String colore) { this.colore = colore; }
+    public void setColore(String colore) {
+        Object precedente = this.colore;
+        this.colore = colore;
+        segnaSeCambiato(CampoToDo.COLORE, precedente, colore);
+    }
 
     /**
      * Restituisce la posizione ordinata del ToDo nella bacheca.
@@ -182,7 +294,11 @@ public class ToDo {
      *
      * @param stato lo stato da assegnare (COMPLETATO / NON_COMPLETATO)
      */
-    public void setStato(StatoToDo stato) { this.stato = stato; }
+    public void setStato(StatoToDo stato) {
+        Object precedente = this.stato;
+        this.stato = stato;
+        segnaSeCambiato(CampoToDo.STATO, precedente, stato);
+    }
 
     /**
      * Restituisce il nome utente del proprietario del ToDo.
@@ -226,6 +342,131 @@ public class ToDo {
      */
     public void setTipoBacheca(TipoBacheca tipoBacheca) { this.tipoBacheca = tipoBacheca; }
 
+    /**
+     * Restituisce la versione del ToDo sul database al momento dell'ultima lettura o scrittura.
+     * Un aggiornamento riesce solo se sul database c'è ancora questa versione.
+     *
+     * @return la versione del ToDo
+     */
+    public int getVersione() { return versione; }
+
+    /**
+     * Imposta la versione del ToDo letta dal database o assegnata da un aggiornamento.
+     *
+     * @param versione la nuova versione
+     */
+    public void setVersione(int versione) { this.versione = versione; }
+
+    // Tracciamento delle modifiche
+
+    /**
+     * Restituisce i campi modificati dall'ultima lettura o scrittura sul database.
+     *
+     * @return una copia dell'insieme dei campi modificati
+     */
+    public synchronized Set<CampoToDo> getCampiModificati() {
+        return EnumSet.copyOf(campiModificati);
+    }
+
+    /**
+     * Restituisce i campi modificati e li segna come salvati, prima di scriverli sul database.
+     * Una modifica successiva, anche durante la scrittura, segna di nuovo il campo e non va persa;
+     * se la scrittura fallisce i campi vanno restituiti con {@link #ripristinaCampiModificati(Set)}.
+     *
+     * @return i campi da scrivere
+     */
+    public synchronized Set<CampoToDo> prendiCampiModificati() {
+        Set<CampoToDo> campi = EnumSet.copyOf(campiModificati);
+        campiModificati.clear();
+        return campi;
+    }
+
+    /**
+     * Segna di nuovo come modificati dei campi la cui scrittura non è andata a buon fine.
+     *
+     * @param campi i campi presi con {@link #prendiCampiModificati()}
+     */
+    public synchronized void ripristinaCampiModificati(Set<CampoToDo> campi) {
+        campiModificati.addAll(campi);
+    }
+
+    /**
+     * Registra che i campi indicati coincidono con quelli sul database.
+     *
+     * @param salvati i campi già scritti
+     */
+    public synchronized void segnaSalvati(Set<CampoToDo> salvati) {
+        campiModificati.removeAll(salvati);
+    }
+
+    /**
+     * Registra che il ToDo coincide con quello sul database, ad esempio subito dopo averlo letto.
+     */
+    public synchronized void segnaSalvato() {
+        campiModificati.clear();
+    }
+
+    /**
+     * Copia in questo ToDo i valori dei campi indicati presi da un altro ToDo, segnandoli come
+     * modificati. Serve ad applicare le modifiche dell'utente sulla copia più recente letta dal
+     * database dopo un conflitto di versione.
+     *
+     * @param origine il ToDo da cui copiare i valori
+     * @param campi i campi da copiare
+     */
+    public void copiaCampi(ToDo origine, Set<CampoToDo> campi) {
+        for (CampoToDo campo : campi) {
+            switch (campo) {
+                case TITOLO -> setTitolo(origine.getTitolo());
+                case DESCRIZIONE -> setDescrizione(origine.getDescrizione());
+                case DATA_SCADENZA -> setDataDiScadenza(origine.getDataDiScadenza());
+                case COLORE -> setColore(origine.getColore());
+                case STATO -> setStato(origine.getStato());
+                case URL -> setUrl(origine.getUrl());
+                case IMMAGINE -> {
+                    setImmagine(origine.getImmagine());
+                    setMiniatura(origine.getMiniatura());
+                }
+            }
+        }
+    }
+
+    /**
+     * Restituisce una copia indipendente del ToDo letto dal database, con gli stessi valori e la
+     * stessa versione e senza campi modificati. Non copia i byte dell'immagine, che restano da
+     * leggere, né gli utenti con cui è condiviso. Serve a conservare un ToDo in cache senza che
+     * le modifiche fatte da chi lo riceve alterino la copia conservata.
+     *
+     * @return la copia del ToDo
+     */
+    public ToDo copia() {
+        ToDo copia = new ToDo(titolo, dataDiScadenza, url, null, descrizione, colore);
+        copia.setId(id);
+        copia.setImmagineNonCaricata(dimensioneImmagine);
+        copia.setMiniatura(miniatura);
+        copia.setStato(stato);
+        copia.setPosizione(posizione);
+        copia.setProprietario(proprietario);
+        copia.setTipoBacheca(tipoBacheca);
+        copia.setVersione(versione);
+        copia.segnaSalvato();
+        return copia;
+    }
+
+    /**
+     * Segna un campo come modificato. Va chiamato dopo aver assegnato il nuovo valore: la
+     * sincronizzazione rende il valore visibile al thread che salva il ToDo.
+     */
+    private synchronized void segnaModificato(CampoToDo campo) {
+        campiModificati.add(campo);
+    }
+
+    private void segnaSeCambiato(CampoToDo campo, Object precedente, Object nuovo) {
+        if (!Objects.equals(precedente, nuovo)) {
+            segnaModificato(campo);
+        }
+    }
+
     // Metodi funzionali
 
     /**
@@ -237,8 +478,7 @@ public class ToDo {
         if (this.utentiCondivisi == null) this.utentiCondivisi = new ArrayList<>();
         if (!this.utentiCondivisi.contains(utente)) this.utentiCondivisi.add(utente);
 
-        if (utente.getToDoCondivisi() == null) utente.setToDoCondivisi(new ArrayList<>());
-        if (!utente.getToDoCondivisi().contains(this)) utente.getToDoCondivisi().add(this);
+        utente.aggiungiToDoCondiviso(this);
     }
 
     /**
@@ -248,11 +488,30 @@ public class ToDo {
      */
     public void rimuoviCondivisionePer(Utente utente) {
         if (utentiCondivisi != null) utentiCondivisi.remove(utente);
-        if (utente.getToDoCondivisi() != null) utente.getToDoCondivisi().remove(this);
+        utente.rimuoviToDoCondiviso(this);
     }
-}
-
-
-
 
+    /**
+     * Due ToDo salvati sono uguali se hanno lo stesso ID, anche se sono copie diverse lette
+     * dal database. Un ToDo non ancora salvato (ID non positivo) è uguale solo a se stesso.
+     *
+     * @param o l'oggetto da confrontare
+     * @return true se rappresentano lo stesso ToDo
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ToDo altro)) return false;
+        return id > 0 && id == altro.id;
+    }
 
+    /**
+     * Restituisce un hash coerente con {@link #equals(Object)}.
+     *
+     * @return l'hash del ToDo
+     */
+    @Override
+    public int hashCode() {
+        return id > 0 ? Integer.hashCode(id) : System.identityHashCode(this);
+    }
+}
@@ -1,7 +1,9 @@
 package model;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Rappresenta un utente del sistema, con credenziali, bacheche personali e ToDo condivisi.
@@ -11,7 +13,8 @@ public class Utente {
     private String username;
     private String password;
     private List<Bacheca> bacheche;
-    private List<ToDo> toDoCondivisi;
+    /** ToDo condivisi con l'utente, indicizzati per ID nell'ordine in cui sono stati aggiunti. */
+    private final Map<Integer, ToDo> toDoCondivisi;
 
     /**
      * Costruisce un nuovo utente con username e password specificati.
@@ -24,7 +27,7 @@ public class Utente {
         this.username = username;
         this.password = password;
         this.bacheche = new ArrayList<>();
-        this.toDoCondivisi = new ArrayList<>();
+        this.toDoCondivisi = new LinkedHashMap<>();
     }
 
     /**
@@ -83,11 +86,12 @@ public class Utente {
 
     /**
      * Restituisce la lista dei ToDo condivisi con l'utente.
+     * La lista è una copia non modificabile: per cambiarla usare i metodi dell'utente.
      *
      * @return la lista dei ToDo condivisi
      */
     public List<ToDo> getToDoCondivisi() {
-        return toDoCondivisi;
+        return List.copyOf(toDoCondivisi.values());
     }
 
     /**
@@ -96,7 +100,31 @@ public class Utente {
      * @param toDoCondivisi la nuova lista di ToDo condivisi
      */
     public void setToDoCondivisi(List<ToDo> toDoCondivisi) {
-        this.toDoCondivisi = toDoCondivisi;
+        this.toDoCondivisi.clear();
+        for (ToDo toDo : toDoCondivisi) {
+            this.toDoCondivisi.put(toDo.getId(), toDo);
+        }
+    }
+
+    /**
+     * Indica se il ToDo con l'ID indicato è condiviso con l'utente. Il controllo è in tempo
+     * costante e resta corretto anche per copie dello stesso ToDo lette da un ricaricamento.
+     *
+     * @param id l'ID del ToDo
+     * @return true se il ToDo è tra quelli condivisi con l'utente
+     */
+    public boolean isToDoCondiviso(int id) {
+        return toDoCondivisi.containsKey(id);
+    }
+
+    /**
+     * Restituisce il ToDo condiviso con l'utente che ha l'ID indicato.
+     *
+     * @param id l'ID del ToDo
+     * @return il ToDo, oppure null se non è condiviso con l'utente
+     */
+    public ToDo getToDoCondiviso(int id) {
+        return toDoCondivisi.get(id);
     }
 
     /**
@@ -111,8 +139,8 @@ public class Utente {
         sb.append("Username: ").append(username).append("\n");
         sb.append("ToDo Condivisi: ");
 
-        if (toDoCondivisi != null && !toDoCondivisi.isEmpty()) {
-            for (ToDo t : toDoCondivisi) {
+        if (!toDoCondivisi.isEmpty()) {
+            for (ToDo t : toDoCondivisi.values()) {
                 sb.append("\n  - ").append(t.getTitolo());
             }
         } else {
@@ -137,9 +165,17 @@ public class Utente {
      * @param toDo il ToDo condiviso da aggiungere
      */
     public void aggiungiToDoCondiviso(ToDo toDo) {
-        if (!this.toDoCondivisi.contains(toDo)) {
-            this.toDoCondivisi.add(toDo);
-        }
+        this.toDoCondivisi.putIfAbsent(toDo.getId(), toDo);
+    }
+
+    /**
+     * Sostituisce un ToDo condiviso con una sua copia più recente, mantenendone l'ordine.
+     * Non ha effetto se il ToDo non è condiviso con l'utente.
+     *
+     * @param toDo la copia aggiornata del ToDo
+     */
+    public void sostituisciToDoCondiviso(ToDo toDo) {
+        this.toDoCondivisi.replace(toDo.getId(), toDo);
     }
 
     /**
@@ -148,7 +184,7 @@ public class Utente {
      * @param toDo il ToDo da rimuovere
      */
     public void rimuoviToDoCondiviso(ToDo toDo) {
-        if (toDoCondivisi != null && toDoCondivisi.contains(toDo)) {
+        if (toDoCondivisi.remove(toDo.getId()) != null) {
             toDo.rimuoviCondivisionePer(this);
         }
     }
@@ -0,0 +1,795 @@
+package server;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import model.Bacheca;
+import model.EsitoCondivisione;
+import model.ModificheToDo;
+import model.RichiestaCondivisione;
+import model.StatoToDo;
+import model.TipoBacheca;
+import model.ToDo;
+import service.ErroreServizio;
+import service.Risultato;
+import service.Sessione;
+import service.ToDoService;
+import service.UtenteCaricato;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Espone via HTTP/JSON le operazioni del {@link ToDoService}, sotto il prefisso {@value #PREFISSO}.
+ * <p>
+ * Ogni richiesta, tranne la registrazione, si autentica con HTTP Basic; le credenziali vengono
+ * verificate dal servizio, che controlla anche i permessi. Gli errori del servizio diventano
+ * codici HTTP con un corpo {@code {"errore": ..., "messaggio": ...}}.
+ * <p>
+ * Le risposte JSON sono scritte con {@link ScrittoreJson} direttamente sullo stream della
+ * risposta, in modalità chunked e compresse con gzip quando il client lo accetta. Lo scambio
+ * viene sempre chiuso al termine, così la connessione resta disponibile per le richieste
+ * successive dello stesso client (keep-alive).
+ * <p>
+ * Risorse:
+ * <ul>
+ *     <li>{@code POST /api/utenti}: registrazione, con corpo {@code {"username", "password"}}</li>
+ *     <li>{@code DELETE /api/utente}: eliminazione dell'utente autenticato</li>
+ *     <li>{@code GET /api/bacheche}: le tre bacheche con i loro ToDo, i ToDo condivisi e il
+ *         {@code cursore} da cui chiedere le modifiche successive</li>
+ *     <li>{@code GET /api/modifiche?cursore=N}: i ToDo inseriti e aggiornati e gli ID di quelli
+ *         eliminati dopo il cursore, con il nuovo {@code cursore}; con {@code &attesa=S} la
+ *         risposta attende fino a S secondi la prossima modifica, se non ce ne sono; con
+ *         {@code "ricaricaNecessaria": true} il cursore è troppo vecchio e le bacheche vanno
+ *         rilette con {@code GET /api/bacheche}</li>
+ *     <li>{@code GET /api/bacheche/{tipo}}: i ToDo di una bacheca</li>
+ *     <li>{@code POST /api/bacheche/{tipo}/todo}: nuovo ToDo in testa alla bacheca, oppure tra
+ *         i ToDo indicati con {@code "precedente"} e {@code "successivo"} (ID o null)</li>
+ *     <li>{@code GET|PUT /api/bacheche/{tipo}/condivisioni}: destinatari della bacheca;
+ *         il PUT riceve {@code {"aggiungi": [...], "revoca": [...]}}</li>
+ *     <li>{@code GET /api/condivisi}: i ToDo condivisi con l'utente</li>
+ *     <li>{@code DELETE /api/condivisi/{proprietario}/{tipo}}: lascia una bacheca condivisa</li>
+ *     <li>{@code GET|PUT|DELETE /api/todo/{id}}: lettura, modifica dei campi presenti nel corpo
+ *         (con {@code versione} per rilevare modifiche concorrenti) ed eliminazione</li>
+ *     <li>{@code POST /api/todo/{id}/completamento}: inverte lo stato di completamento</li>
+ *     <li>{@code PUT /api/todo/{id}/posizione}: sposta il ToDo tra i ToDo della sua bacheca indicati
+ *         con {@code {"precedente": id|null, "successivo": id|null}}</li>
+ *     <li>{@code GET /api/todo/{id}/immagine}: l'immagine completa</li>
+ *     <li>{@code GET|POST|DELETE /api/todo/{id}/condivisioni}: destinatari del ToDo;
+ *         POST e DELETE ricevono {@code {"destinatari": [...]}}</li>
+ *     <li>{@code GET /api/todo/{id}/destinatari}: utenti con cui il ToDo può essere condiviso</li>
+ *     <li>{@code GET /api/richieste}: richieste di condivisione in attesa</li>
+ *     <li>{@code POST /api/richieste/todo/{id}} e {@code POST /api/richieste/bacheca/{proprietario}/{tipo}}:
+ *         risposta a una richiesta, con corpo {@code {"accetta": true|false}}</li>
+ * </ul>
+ */
+public class GestoreApi implements HttpHandler {
+
+    /** Percorso a cui va registrato il gestore. */
+    public static final String PREFISSO = "/api/";
+
+    /** Dimensione massima del corpo di una richiesta: i documenti JSON accettati sono piccoli. */
+    private static final int CORPO_MASSIMO = 64 * 1024;
+
+    private static final int BUFFER = 8 * 1024;
+
+    /** Attesa massima di una richiesta di modifiche in long polling (s), sotto i timeout dei proxy più comuni. */
+    private static final long ATTESA_MASSIMA_S = 55;
+
+    private final ToDoService servizio;
+
+    /**
+     * Crea il gestore sul servizio indicato, condiviso da tutte le richieste.
+     *
+     * @param servizio servizio applicativo
+     */
+    public GestoreApi(ToDoService servizio) {
+        this.servizio = servizio;
+    }
+
+    @Override
+    public void handle(HttpExchange scambio) throws IOException {
+        try {
+            instrada(scambio);
+        } catch (IllegalArgumentException e) {
+            if (scambio.getResponseCode() == -1) {
+                inviaErrore(scambio, 400, ErroreServizio.DATI_NON_VALIDI.name(), e.getMessage());
+            }
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            if (scambio.getResponseCode() == -1) {
+                inviaErrore(scambio, 500, ErroreServizio.DATABASE.name(), "Errore interno del server.");
+            }
+        } finally {
+            scambio.close();
+        }
+    }
+
+    private void instrada(HttpExchange scambio) throws IOException {
+        String metodo = scambio.getRequestMethod();
+        String[] p = segmenti(scambio);
+
+        if (p.length == 1 && p[0].equals("utenti") && metodo.equals("POST")) {
+            Map<String, Object> corpo = corpo(scambio);
+            Risultato<Void> esito = servizio.registra(testo(corpo, "username"), testo(corpo, "password"));
+            rispondi(scambio, esito, 204, null);
+            return;
+        }
+
+        Sessione sessione = autentica(scambio);
+        if (sessione == null) {
+            scambio.getResponseHeaders().set("WWW-Authenticate", "Basic realm=\"ToDo\", charset=\"UTF-8\"");
+            inviaErrore(scambio, 401, ErroreServizio.CREDENZIALI_ERRATE.name(), "Credenziali mancanti o errate.");
+            return;
+        }
+
+        String risorsa = p.length == 0 ? "" : p[0];
+        switch (risorsa) {
+            case "utente" -> {
+                if (p.length == 1 && metodo.equals("DELETE")) {
+                    rispondi(scambio, servizio.eliminaUtente(sessione), 204, null);
+                    return;
+                }
+            }
+            case "bacheche" -> {
+                if (instradaBacheche(scambio, sessione, metodo, p)) {
+                    return;
+                }
+            }
+            case "condivisi" -> {
+                if (p.length == 1 && metodo.equals("GET")) {
+                    rispondi(scambio, servizio.toDoCondivisi(sessione), 200, GestoreApi::scriviToDo);
+                    return;
+                }
+                if (p.length == 3 && metodo.equals("DELETE")) {
+                    rispondi(scambio, servizio.lasciaBachecaCondivisa(sessione, p[1], tipo(p[2])), 204, null);
+                    return;
+                }
+            }
+            case "todo" -> {
+                if (p.length >= 2 && instradaToDo(scambio, sessione, metodo, intero(p[1]), p)) {
+                    return;
+                }
+            }
+            case "modifiche" -> {
+                if (p.length == 1 && metodo.equals("GET")) {
+                    modifiche(scambio, sessione);
+                    return;
+                }
+            }
+            case "richieste" -> {
+                if (instradaRichieste(scambio, sessione, metodo, p)) {
+                    return;
+                }
+            }
+            default -> {
+                // risorsa sconosciuta
+            }
+        }
+        inviaErrore(scambio, 404, ErroreServizio.NON_TROVATO.name(), "Risorsa non trovata.");
+    }
+
+    private boolean instradaBacheche(HttpExchange scambio, Sessione sessione, String metodo, String[] p) throws IOException {
+        if (p.length == 1 && metodo.equals("GET")) {
+            Risultato<UtenteCaricato> caricato = servizio.caricaUtente(sessione, LocalDate.now());
+            rispondi(scambio, caricato, 200, (json, utente) -> {
+                json.iniziaOggetto().nome("bacheche").iniziaArray();
+                for (Bacheca bacheca : utente.utente().getBacheche()) {
+                    json.iniziaOggetto()
+                            .campo("tipo", bacheca.getTipo().name())
+                            .campo("descrizione", bacheca.getDescrizione())
+                            .nome("todo");
+                    scriviToDo(json, bacheca.getToDoList());
+                    json.chiudiOggetto();
+                }
+                json.chiudiArray().nome("condivisi");
+                scriviToDo(json, utente.utente().getToDoCondivisi());
+                json.campo("cursore", utente.cursore()).chiudiOggetto();
+            });
+            return true;
+        }
+        if (p.length < 2) {
+            return false;
+        }
+
+        TipoBacheca tipo = tipo(p[1]);
+        if (p.length == 2 && metodo.equals("GET")) {
+            rispondi(scambio, servizio.toDoBacheca(sessione, tipo), 200, GestoreApi::scriviToDo);
+            return true;
+        }
+        if (p.length == 3 && p[2].equals("todo") && metodo.equals("POST")) {
+            Map<String, Object> corpo = corpo(scambio);
+            ToDo nuovo = new ToDo("");
+            applicaCampi(nuovo, corpo);
+            Risultato<ToDo> creato = corpo.containsKey("precedente") || corpo.containsKey("successivo")
+                    ? servizio.creaToDoTra(sessione, nuovo, tipo, idFacoltativo(corpo, "precedente"), idFacoltativo(corpo, "successivo"))
+                    : servizio.creaToDo(sessione, nuovo, tipo);
+            if (creato.isOk()) {
+                scambio.getResponseHeaders().set("Location", PREFISSO + "todo/" + creato.getValore().getId());
+            }
+            rispondi(scambio, creato, 201, GestoreApi::scriviToDo);
+            return true;
+        }
+        if (p.length == 3 && p[2].equals("condivisioni")) {
+            if (metodo.equals("GET")) {
+                rispondi(scambio, servizio.destinatariBacheca(sessione, tipo), 200, (json, destinatari) -> json.iniziaOggetto()
+                        .nome("utenti").valori(destinatari.utenti())
+                        .nome("condivisi").valori(destinatari.condivisi())
+                        .chiudiOggetto());
+                return true;
+            }
+            if (metodo.equals("PUT")) {
+                Map<String, Object> corpo = corpo(scambio);
+                rispondi(scambio, servizio.aggiornaCondivisioneBacheca(sessione, tipo,
+                        testi(corpo, "aggiungi"), testi(corpo, "revoca")), 200, GestoreApi::scriviEsiti);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean instradaToDo(HttpExchange scambio, Sessione sessione, String metodo, int id, String[] p) throws IOException {
+        String azione = p.length == 3 ? p[2] : "";
+        if (p.length > 3) {
+            return false;
+        }
+
+        switch (azione) {
+            case "" -> {
+                switch (metodo) {
+                    case "GET" -> rispondi(scambio, servizio.leggiToDo(sessione, id), 200, GestoreApi::scriviToDo);
+                    case "PUT" -> {
+                        Map<String, Object> corpo = corpo(scambio);
+                        Risultato<ToDo> letto = servizio.leggiToDo(sessione, id);
+                        if (!letto.isOk()) {
+                            rispondi(scambio, letto, 200, null);
+                            return true;
+                        }
+                        ToDo todo = letto.getValore();
+                        if (corpo.containsKey("versione")) {
+                            todo.setVersione((int) numero(corpo, "versione"));
+                        }
+                        applicaCampi(todo, corpo);
+                        rispondi(scambio, servizio.aggiornaToDo(sessione, todo), 200, GestoreApi::scriviToDo);
+                    }
+                    case "DELETE" -> elimina(scambio, sessione, id);
+                    default -> {
+                        return false;
+                    }
+                }
+                return true;
+            }
+            case "completamento" -> {
+                if (!metodo.equals("POST")) {
+                    return false;
+                }
+                Risultato<ToDo> letto = servizio.leggiToDo(sessione, id);
+                if (!letto.isOk()) {
+                    rispondi(scambio, letto, 200, null);
+                    return true;
+                }
+                ToDo todo = letto.getValore();
+                if (!sessione.getUsername().equals(todo.getProprietario())) {
+                    inviaErrore(scambio, 403, ErroreServizio.NON_AUTORIZZATO.name(),
+                            "Solo il proprietario può modificare il ToDo.");
+                    return true;
+                }
+                boolean scritto;
+                try {
+                    scritto = servizio.invertiCompletamento(sessione, todo).join();
+                } catch (CompletionException e) {
+                    if (!(e.getCause() instanceof RejectedExecutionException)) {
+                        throw e;
+                    }
+                    scambio.getResponseHeaders().set("Retry-After", "1");
+                    inviaErrore(scambio, 503, ErroreServizio.DATABASE.name(), e.getCause().getMessage());
+                    return true;
+                }
+                if (scritto) {
+                    rispondi(scambio, Risultato.ok(todo), 200, GestoreApi::scriviToDo);
+                } else {
+                    inviaErrore(scambio, 409, ErroreServizio.CONFLITTO.name(),
+                            "Il ToDo è stato modificato o eliminato da un altro utente.");
+                }
+                return true;
+            }
+            case "posizione" -> {
+                if (!metodo.equals("PUT")) {
+                    return false;
+                }
+                Map<String, Object> corpo = corpo(scambio);
+                rispondi(scambio, servizio.spostaToDo(sessione, id, idFacoltativo(corpo, "precedente"),
+                        idFacoltativo(corpo, "successivo")), 200, GestoreApi::scriviToDo);
+                return true;
+            }
+            case "immagine" -> {
+                if (!metodo.equals("GET")) {
+                    return false;
+                }
+                inviaImmagine(scambio, sessione, id);
+                return true;
+            }
+            case "condivisioni" -> {
+                switch (metodo) {
+                    case "GET" -> rispondi(scambio, servizio.utentiCondivisi(sessione, id), 200, ScrittoreJson::valori);
+                    case "POST" -> rispondi(scambio, servizio.condividiToDo(sessione, id,
+                            testi(corpo(scambio), "destinatari")), 200, GestoreApi::scriviEsiti);
+                    case "DELETE" -> rispondi(scambio, servizio.rimuoviCondivisioni(sessione, id,
+                            testi(corpo(scambio), "destinatari")), 204, null);
+                    default -> {
+                        return false;
+                    }
+                }
+                return true;
+            }
+            case "destinatari" -> {
+                if (!metodo.equals("GET")) {
+                    return false;
+                }
+                rispondi(scambio, servizio.possibiliDestinatari(sessione, id), 200, ScrittoreJson::valori);
+                return true;
+            }
+            default -> {
+                return false;
+            }
+        }
+    }
+
+    private boolean instradaRichieste(HttpExchange scambio, Sessione sessione, String metodo, String[] p) throws IOException {
+        if (p.length == 1 && metodo.equals("GET")) {
+            rispondi(scambio, servizio.richiestePendenti(sessione), 200, (json, richieste) -> {
+                json.iniziaArray();
+                for (RichiestaCondivisione r : richieste) {
+                    json.iniziaOggetto()
+                            .campo("richiedente", r.richiedente())
+                            .campo("tipoBacheca", r.tipo().name())
+                            .campo("bacheca", r.isBacheca());
+                    if (r.isBacheca()) {
+                        json.nome("idToDo").valore((String) null);
+                    } else {
+                        json.campo("titolo", r.titolo()).campo("idToDo", r.idToDo());
+                    }
+                    json.chiudiOggetto();
+                }
+                json.chiudiArray();
+            });
+            return true;
+        }
+        if (!metodo.equals("POST")) {
+            return false;
+        }
+        if (p.length == 3 && p[1].equals("todo")) {
+            boolean accetta = booleano(corpo(scambio), "accetta");
+            rispondi(scambio, servizio.rispondiRichiesta(sessione, intero(p[2]), accetta), 204, null);
+            return true;
+        }
+        if (p.length == 4 && p[1].equals("bacheca")) {
+            boolean accetta = booleano(corpo(scambio), "accetta");
+            rispondi(scambio, servizio.rispondiRichiestaBacheca(sessione, p[2], tipo(p[3]), accetta), 204, null);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Restituisce le modifiche successive al cursore. Con il parametro {@code attesa}, in secondi,
+     * una richiesta senza modifiche resta aperta finché il database non ne notifica una per
+     * l'utente o l'attesa scade (long polling).
+     */
+    private void modifiche(HttpExchange scambio, Sessione sessione) throws IOException {
+        long cursore = parametro(scambio, "cursore");
+        if (cursore < 0) {
+            throw new IllegalArgumentException("Parametro \"cursore\" mancante.");
+        }
+        long attesa = Math.min(parametro(scambio, "attesa"), ATTESA_MASSIMA_S);
+        Risultato<ModificheToDo> modifiche = attesa > 0
+                ? servizio.attendiModifiche(sessione, cursore, attesa * 1000)
+                : servizio.modificheDa(sessione, cursore);
+        rispondi(scambio, modifiche, 200, GestoreApi::scriviModifiche);
+    }
+
+    /**
+     * Elimina un ToDo dell'utente oppure, se gli è stato condiviso singolarmente, ne rimuove la
+     * condivisione. Un ToDo visibile perché è condivisa l'intera bacheca non può essere tolto da solo.
+     */
+    private void elimina(HttpExchange scambio, Sessione sessione, int id) throws IOException {
+        Risultato<ToDo> letto = servizio.leggiToDo(sessione, id);
+        if (!letto.isOk()) {
+            rispondi(scambio, letto, 204, null);
+            return;
+        }
+        ToDo todo = letto.getValore();
+        if (sessione.getUsername().equals(todo.getProprietario())) {
+            rispondi(scambio, servizio.eliminaToDo(sessione, todo), 204, null);
+            return;
+        }
+
+        Risultato<Boolean> inBacheca = servizio.isInBachecaCondivisa(sessione, todo);
+        if (inBacheca.isOk() && inBacheca.getValore()) {
+            inviaErrore(scambio, 409, ErroreServizio.NON_AUTORIZZATO.name(),
+                    "Il ToDo fa parte di una bacheca condivisa per intero: va lasciata l'intera bacheca.");
+            return;
+        }
+        if (!inBacheca.isOk()) {
+            rispondi(scambio, inBacheca, 204, null);
+            return;
+        }
+        rispondi(scambio, servizio.lasciaToDoCondiviso(sessione, id), 204, null);
+    }
+
+    private void inviaImmagine(HttpExchange scambio, Sessione sessione, int id) throws IOException {
+        Risultato<ToDo> letto = servizio.leggiToDo(sessione, id);
+        Risultato<byte[]> immagine = letto.isOk()
+                ? servizio.caricaImmagine(sessione, letto.getValore())
+                : Risultato.errore(letto.getErrore(), letto.getMessaggio());
+        if (!immagine.isOk()) {
+            rispondi(scambio, immagine, 200, null);
+            return;
+        }
+        byte[] byteImmagine = immagine.getValore();
+        if (byteImmagine == null) {
+            inviaErrore(scambio, 404, ErroreServizio.NON_TROVATO.name(), "Il ToDo non ha un'immagine.");
+            return;
+        }
+
+        String tipoContenuto = URLConnection.guessContentTypeFromStream(
+                new BufferedInputStream(new ByteArrayInputStream(byteImmagine)));
+        scambio.getResponseHeaders().set("Content-Type",
+                tipoContenuto != null ? tipoContenuto : "application/octet-stream");
+        scambio.sendResponseHeaders(200, byteImmagine.length);
+        try (OutputStream out = scambio.getResponseBody()) {
+            out.write(byteImmagine);
+        }
+    }
+
+    // Risposte
+
+    /**
+     * Serializza il valore di un risultato riuscito nel corpo di una risposta.
+     *
+     * @param <T> tipo del valore
+     */
+    @FunctionalInterface
+    private interface CorpoJson<T> {
+        void scrivi(ScrittoreJson json, T valore) throws IOException;
+    }
+
+    /**
+     * Invia il risultato di un'operazione del servizio: il valore con lo stato indicato, oppure
+     * l'errore con lo stato HTTP corrispondente. Senza corpo il successo diventa 204.
+     */
+    private static <T> void rispondi(HttpExchange scambio, Risultato<T> risultato, int stato,
+                                     CorpoJson<T> corpo) throws IOException {
+        if (!risultato.isOk()) {
+            inviaErrore(scambio, statoPer(risultato.getErrore()), risultato.getErrore().name(), risultato.getMessaggio());
+        } else if (corpo == null) {
+            scambio.sendResponseHeaders(204, -1);
+        } else {
+            inviaJson(scambio, stato, json -> corpo.scrivi(json, risultato.getValore()));
+        }
+    }
+
+    private static void inviaErrore(HttpExchange scambio, int stato, String codice, String messaggio) throws IOException {
+        inviaJson(scambio, stato, json -> json.iniziaOggetto()
+                .campo("errore", codice)
+                .campo("messaggio", messaggio)
+                .chiudiOggetto());
+    }
+
+    @FunctionalInterface
+    private interface Documento {
+        void scrivi(ScrittoreJson json) throws IOException;
+    }
+
+    /**
+     * Invia un documento JSON in modalità chunked, compresso con gzip se il client lo accetta.
+     */
+    private static void inviaJson(HttpExchange scambio, int stato, Documento documento) throws IOException {
+        Headers intestazioni = scambio.getResponseHeaders();
+        intestazioni.set("Content-Type", "application/json; charset=utf-8");
+        intestazioni.add("Vary", "Accept-Encoding");
+        boolean gzip = accettaGzip(scambio);
+        if (gzip) {
+            intestazioni.set("Content-Encoding", "gzip");
+        }
+        scambio.sendResponseHeaders(stato, 0);
+
+        OutputStream out = scambio.getResponseBody();
+        if (gzip) {
+            out = new GZIPOutputStream(out, BUFFER);
+        }
+        try (ScrittoreJson json = new ScrittoreJson(
+                new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER))) {
+            documento.scrivi(json);
+        }
+    }
+
+    private static boolean accettaGzip(HttpExchange scambio) {
+        List<String> codifiche = scambio.getRequestHeaders().get("Accept-Encoding");
+        if (codifiche == null) {
+            return false;
+        }
+        for (String valore : codifiche) {
+            for (String codifica : valore.split(",")) {
+                String[] parti = codifica.trim().split(";");
+                if (parti[0].trim().equalsIgnoreCase("gzip")
+                        && (parti.length == 1 || !parti[1].replace(" ", "").equals("q=0"))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static int statoPer(ErroreServizio errore) {
+        return switch (errore) {
+            case CREDENZIALI_ERRATE -> 401;
+            case DATI_NON_VALIDI -> 400;
+            case NON_AUTORIZZATO -> 403;
+            case NON_TROVATO -> 404;
+            case GIA_ESISTENTE, CONFLITTO -> 409;
+            case DATABASE -> 500;
+        };
+    }
+
+    private static void scriviToDo(ScrittoreJson json, List<ToDo> todos) throws IOException {
+        json.iniziaArray();
+        for (ToDo todo : todos) {
+            scriviToDo(json, todo);
+        }
+        json.chiudiArray();
+    }
+
+    private static void scriviToDo(ScrittoreJson json, ToDo todo) throws IOException {
+        LocalDate scadenza = todo.getDataDiScadenza();
+        json.iniziaOggetto()
+                .campo("id", todo.getId())
+                .campo("titolo", todo.getTitolo())
+                .campo("descrizione", todo.getDescrizione())
+                .campo("dataScadenza", scadenza != null ? scadenza.toString() : null)
+                .campo("url", todo.getUrl())
+                .campo("colore", todo.getColore())
+                .campo("stato", todo.getStato() != null ? todo.getStato().name() : null)
+                .campo("proprietario", todo.getProprietario())
+                .campo("tipoBacheca", todo.getTipoBacheca() != null ? todo.getTipoBacheca().name() : null)
+                .campo("posizione", todo.getPosizione())
+                .campo("versione", todo.getVersione())
+                .campo("immagine", todo.haImmagine())
+                .chiudiOggetto();
+    }
+
+    private static void scriviModifiche(ScrittoreJson json, ModificheToDo modifiche) throws IOException {
+        json.iniziaOggetto()
+                .campo("cursore", modifiche.cursore())
+                .campo("ricaricaNecessaria", modifiche.ricaricaNecessaria())
+                .nome("inseriti");
+        scriviToDo(json, modifiche.inseriti());
+        json.nome("aggiornati");
+        scriviToDo(json, modifiche.aggiornati());
+        json.nome("eliminati").iniziaArray();
+        for (int id : modifiche.eliminati()) {
+            json.valore(id);
+        }
+        json.chiudiArray().chiudiOggetto();
+    }
+
+    private static void scriviEsiti(ScrittoreJson json, Map<String, EsitoCondivisione> esiti) throws IOException {
+        json.iniziaOggetto();
+        for (Map.Entry<String, EsitoCondivisione> esito : esiti.entrySet()) {
+            json.campo(esito.getKey(), esito.getValue().name());
+        }
+        json.chiudiOggetto();
+    }
+
+    // Richieste
+
+    /**
+     * Legge le credenziali HTTP Basic e le verifica con il servizio.
+     *
+     * @return la sessione dell'utente, oppure null se le credenziali mancano o sono errate
+     */
+    private Sessione autentica(HttpExchange scambio) {
+        String intestazione = scambio.getRequestHeaders().getFirst("Authorization");
+        if (intestazione == null || !intestazione.regionMatches(true, 0, "Basic ", 0, 6)) {
+            return null;
+        }
+        String credenziali;
+        try {
+            credenziali = new String(Base64.getDecoder().decode(intestazione.substring(6).trim()), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        int separatore = credenziali.indexOf(':');
+        if (separatore < 0) {
+            return null;
+        }
+        Risultato<Sessione> sessione = servizio.autentica(credenziali.substring(0, separatore), credenziali.substring(separatore + 1));
+        return sessione.isOk() ? sessione.getValore() : null;
+    }
+
+    private static String[] segmenti(HttpExchange scambio) {
+        String percorso = scambio.getRequestURI().getPath().substring(PREFISSO.length());
+        List<String> segmenti = new ArrayList<>();
+        for (String segmento : percorso.split("/")) {
+            if (!segmento.isEmpty()) {
+                segmenti.add(segmento);
+            }
+        }
+        return segmenti.toArray(new String[0]);
+    }
+
+    /**
+     * Legge il corpo della richiesta come oggetto JSON; un corpo vuoto è un oggetto vuoto.
+     */
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> corpo(HttpExchange scambio) throws IOException {
+        byte[] byteCorpo;
+        try (InputStream in = scambio.getRequestBody()) {
+            byteCorpo = in.readNBytes(CORPO_MASSIMO + 1);
+        }
+        if (byteCorpo.length > CORPO_MASSIMO) {
+            throw new IllegalArgumentException("Il corpo della richiesta supera " + CORPO_MASSIMO + " byte.");
+        }
+        String testo = new String(byteCorpo, StandardCharsets.UTF_8);
+        if (testo.isBlank()) {
+            return Map.of();
+        }
+        if (!(LettoreJson.leggi(testo) instanceof Map<?, ?> oggetto)) {
+            throw new IllegalArgumentException("Il corpo della richiesta deve essere un oggetto JSON.");
+        }
+        return (Map<String, Object>) oggetto;
+    }
+
+    /**
+     * Copia su un ToDo i campi presenti nel corpo, lasciando invariati gli altri.
+     */
+    private static void applicaCampi(ToDo todo, Map<String, Object> corpo) {
+        if (corpo.containsKey("titolo")) {
+            todo.setTitolo(testo(corpo, "titolo"));
+        }
+        if (corpo.containsKey("descrizione")) {
+            todo.setDescrizione(testo(corpo, "descrizione"));
+        }
+        if (corpo.containsKey("dataScadenza")) {
+            String scadenza = testo(corpo, "dataScadenza");
+            try {
+                todo.setDataDiScadenza(scadenza != null ? LocalDate.parse(scadenza) : null);
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException("Data di scadenza non valida: " + scadenza);
+            }
+        }
+        if (corpo.containsKey("url")) {
+            todo.setUrl(testo(corpo, "url"));
+        }
+        if (corpo.containsKey("colore")) {
+            todo.setColore(testo(corpo, "colore"));
+        }
+        if (corpo.containsKey("stato")) {
+            todo.setStato(stato(testo(corpo, "stato")));
+        }
+    }
+
+    private static StatoToDo stato(String stato) {
+        for (StatoToDo valore : StatoToDo.values()) {
+            if (valore.name().equals(stato)) {
+                return valore;
+            }
+        }
+        throw new IllegalArgumentException("Stato non valido: " + stato
+                + " (valori ammessi: " + Arrays.toString(StatoToDo.values()) + ")");
+    }
+
+    private static String testo(Map<String, Object> corpo, String campo) {
+        Object valore = corpo.get(campo);
+        if (valore != null && !(valore instanceof String)) {
+            throw new IllegalArgumentException("Il campo \"" + campo + "\" deve essere una stringa.");
+        }
+        return (String) valore;
+    }
+
+    private static long numero(Map<String, Object> corpo, String campo) {
+        if (!(corpo.get(campo) instanceof Long valore)) {
+            throw new IllegalArgumentException("Il campo \"" + campo + "\" deve essere un numero intero.");
+        }
+        return valore;
+    }
+
+    /**
+     * Legge l'ID facoltativo di un ToDo: null se il campo manca o è null.
+     */
+    private static Integer idFacoltativo(Map<String, Object> corpo, String campo) {
+        Object valore = corpo.get(campo);
+        if (valore == null) {
+            return null;
+        }
+        if (!(valore instanceof Long id) || id < 1 || id > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Il campo \"" + campo + "\" deve essere l'ID di un ToDo o null.");
+        }
+        return id.intValue();
+    }
+
+    private static boolean booleano(Map<String, Object> corpo, String campo) {
+        if (!(corpo.get(campo) instanceof Boolean valore)) {
+            throw new IllegalArgumentException("Il campo \"" + campo + "\" deve essere true o false.");
+        }
+        return valore;
+    }
+
+    private static List<String> testi(Map<String, Object> corpo, String campo) {
+        Object valore = corpo.get(campo);
+        if (valore == null) {
+            return List.of();
+        }
+        if (!(valore instanceof List<?> lista)) {
+            throw new IllegalArgumentException("Il campo \"" + campo + "\" deve essere un array di stringhe.");
+        }
+        List<String> testi = new ArrayList<>();
+        for (Object elemento : lista) {
+            if (!(elemento instanceof String s)) {
+                throw new IllegalArgumentException("Il campo \"" + campo + "\" deve essere un array di stringhe.");
+            }
+            testi.add(s);
+        }
+        return testi;
+    }
+
+    /**
+     * Legge un parametro numerico non negativo della query.
+     *
+     * @return il valore, oppure -1 se il parametro manca
+     */
+    private static long parametro(HttpExchange scambio, String nome) {
+        String query = scambio.getRequestURI().getRawQuery();
+        if (query == null) {
+            return -1;
+        }
+        for (String parametro : query.split("&")) {
+            if (parametro.startsWith(nome + "=")) {
+                String valore = parametro.substring(nome.length() + 1);
+                try {
+                    long numero = Long.parseLong(valore);
+                    if (numero >= 0) {
+                        return numero;
+                    }
+                } catch (NumberFormatException e) {
+                    // segnalato sotto
+                }
+                throw new IllegalArgumentException("Valore non valido per \"" + nome + "\": " + valore);
+            }
+        }
+        return -1;
+    }
+
+    private static int intero(String segmento) {
+        try {
+            return Integer.parseInt(segmento);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Identificativo non valido: " + segmento);
+        }
+    }
+
+    private static TipoBacheca tipo(String segmento) {
+        try {
+            return TipoBacheca.valueOf(segmento.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Tipo di bacheca non valido: " + segmento);
+        }
+    }
+}
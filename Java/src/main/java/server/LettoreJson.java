@@ -0,0 +1,195 @@
+package server;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Legge i piccoli documenti JSON inviati nel corpo delle richieste.
+ * <p>
+ * Gli oggetti diventano {@link Map} con i campi nell'ordine originale, gli array {@link List},
+ * i numeri interi {@link Long} e gli altri {@link Double}. Un documento non valido produce una
+ * {@link IllegalArgumentException}, che il server trasforma in una risposta 400.
+ */
+public final class LettoreJson {
+
+    /** Annidamento massimo di oggetti e array, per non esaurire lo stack con documenti ostili. */
+    private static final int PROFONDITA_MASSIMA = 32;
+
+    private final String testo;
+    private int pos;
+    private int profondita;
+
+    private LettoreJson(String testo) {
+        this.testo = testo;
+    }
+
+    /**
+     * Interpreta un documento JSON completo.
+     *
+     * @param testo il documento
+     * @return il valore letto
+     * @throws IllegalArgumentException se il documento non è JSON valido
+     */
+    public static Object leggi(String testo) {
+        LettoreJson lettore = new LettoreJson(testo);
+        Object valore = lettore.valore();
+        lettore.spazi();
+        if (lettore.pos != testo.length()) {
+            throw lettore.errore("contenuto inatteso dopo il documento");
+        }
+        return valore;
+    }
+
+    private Object valore() {
+        spazi();
+        if (pos >= testo.length()) {
+            throw errore("documento incompleto");
+        }
+        char c = testo.charAt(pos);
+        if ((c == '{' || c == '[') && profondita == PROFONDITA_MASSIMA) {
+            throw errore("annidamento eccessivo");
+        }
+        return switch (c) {
+            case '{' -> oggetto();
+            case '[' -> array();
+            case '"' -> stringa();
+            case 't' -> parola("true", Boolean.TRUE);
+            case 'f' -> parola("false", Boolean.FALSE);
+            case 'n' -> parola("null", null);
+            default -> numero();
+        };
+    }
+
+    private Map<String, Object> oggetto() {
+        Map<String, Object> oggetto = new LinkedHashMap<>();
+        pos++;
+        profondita++;
+        spazi();
+        if (consuma('}')) {
+            profondita--;
+            return oggetto;
+        }
+        do {
+            spazi();
+            if (pos >= testo.length() || testo.charAt(pos) != '"') {
+                throw errore("atteso il nome di un campo");
+            }
+            String nome = stringa();
+            spazi();
+            if (!consuma(':')) {
+                throw errore("attesi i due punti");
+            }
+            oggetto.put(nome, valore());
+            spazi();
+        } while (consuma(','));
+        if (!consuma('}')) {
+            throw errore("attesa la chiusura dell'oggetto");
+        }
+        profondita--;
+        return oggetto;
+    }
+
+    private List<Object> array() {
+        List<Object> array = new ArrayList<>();
+        pos++;
+        profondita++;
+        spazi();
+        if (consuma(']')) {
+            profondita--;
+            return array;
+        }
+        do {
+            array.add(valore());
+            spazi();
+        } while (consuma(','));
+        if (!consuma(']')) {
+            throw errore("attesa la chiusura dell'array");
+        }
+        profondita--;
+        return array;
+    }
+
+    private String stringa() {
+        StringBuilder sb = new StringBuilder();
+        pos++;
+        while (pos < testo.length()) {
+            char c = testo.charAt(pos++);
+            if (c == '"') {
+                return sb.toString();
+            }
+            if (c != '\\') {
+                sb.append(c);
+                continue;
+            }
+            if (pos >= testo.length()) {
+                break;
+            }
+            char escape = testo.charAt(pos++);
+            switch (escape) {
+                case '"', '\\', '/' -> sb.append(escape);
+                case 'b' -> sb.append('\b');
+                case 'f' -> sb.append('\f');
+                case 'n' -> sb.append('\n');
+                case 'r' -> sb.append('\r');
+                case 't' -> sb.append('\t');
+                case 'u' -> {
+                    if (pos + 4 > testo.length()) {
+                        throw errore("sequenza unicode incompleta");
+                    }
+                    try {
+                        sb.append((char) Integer.parseInt(testo.substring(pos, pos + 4), 16));
+                    } catch (NumberFormatException e) {
+                        throw errore("sequenza unicode non valida");
+                    }
+                    pos += 4;
+                }
+                default -> throw errore("sequenza di escape non valida");
+            }
+        }
+        throw errore("stringa non terminata");
+    }
+
+    private Object numero() {
+        int inizio = pos;
+        while (pos < testo.length() && "+-0123456789.eE".indexOf(testo.charAt(pos)) >= 0) {
+            pos++;
+        }
+        String numero = testo.substring(inizio, pos);
+        try {
+            if (numero.indexOf('.') < 0 && numero.indexOf('e') < 0 && numero.indexOf('E') < 0) {
+                return Long.parseLong(numero);
+            }
+            return Double.parseDouble(numero);
+        } catch (NumberFormatException e) {
+            throw errore("valore non valido");
+        }
+    }
+
+    private Object parola(String parola, Object valore) {
+        if (!testo.startsWith(parola, pos)) {
+            throw errore("valore non valido");
+        }
+        pos += parola.length();
+        return valore;
+    }
+
+    private boolean consuma(char c) {
+        if (pos < testo.length() && testo.charAt(pos) == c) {
+            pos++;
+            return true;
+        }
+        return false;
+    }
+
+    private void spazi() {
+        while (pos < testo.length() && Character.isWhitespace(testo.charAt(pos))) {
+            pos++;
+        }
+    }
+
+    private IllegalArgumentException errore(String motivo) {
+        return new IllegalArgumentException("JSON non valido alla posizione " + pos + ": " + motivo);
+    }
+}
@@ -0,0 +1,254 @@
+package server;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Scrive un documento JSON direttamente su un {@link Writer}, un valore alla volta.
+ * <p>
+ * Il documento non viene mai costruito in memoria: una bacheca con molti ToDo viene inviata al
+ * client mentre viene serializzata. Lo scrittore inserisce da solo virgole e due punti; è compito
+ * del chiamante aprire e chiudere oggetti e array nell'ordine corretto. Non è thread-safe.
+ */
+public final class ScrittoreJson implements Closeable, Flushable {
+
+    private static final char[] ESADECIMALI = "0123456789abcdef".toCharArray();
+
+    private final Writer out;
+
+    /** Per ogni oggetto o array aperto, true finché non contiene ancora elementi. */
+    private final Deque<Boolean> vuoti = new ArrayDeque<>();
+
+    /** True subito dopo un nome di campo, quando il valore non va preceduto da una virgola. */
+    private boolean dopoNome;
+
+    /**
+     * Crea uno scrittore sul writer indicato, che conviene sia bufferizzato.
+     *
+     * @param out destinazione del documento
+     */
+    public ScrittoreJson(Writer out) {
+        this.out = out;
+    }
+
+    /**
+     * Apre un oggetto.
+     *
+     * @return questo scrittore
+     * @throws IOException se la scrittura fallisce
+     */
+    public ScrittoreJson iniziaOggetto() throws IOException {
+        separa();
+        out.write('{');
+        vuoti.push(true);
+        return this;
+    }
+
+    /**
+     * Chiude l'oggetto aperto per ultimo.
+     *
+     * @return questo scrittore
+     * @throws IOException se la scrittura fallisce
+     */
+    public ScrittoreJson chiudiOggetto() throws IOException {
+        vuoti.pop();
+        out.write('}');
+        return this;
+    }
+
+    /**
+     * Apre un array.
+     *
+     * @return questo scrittore
+     * @throws IOException se la scrittura fallisce
+     */
+    public ScrittoreJson iniziaArray() throws IOException {
+        separa();
+        out.write('[');
+        vuoti.push(true);
+        return this;
+    }
+
+    /**
+     * Chiude l'array aperto per ultimo.
+     *
+     * @return questo scrittore
+     * @throws IOException se la scrittura fallisce
+     */
+    public ScrittoreJson chiudiArray() throws IOException {
+        vuoti.pop();
+        out.write(']');
+        return this;
+    }
+
+    /**
+     * Scrive il nome di un campo dell'oggetto aperto; deve seguire il suo valore.
+     *
+     * @param nome nome del campo
+     * @return questo scrittore
+     * @throws IOException se la scrittura fallisce
+     */
+    public ScrittoreJson nome(String nome) throws IOException {
+        separa();
+        scriviStringa(nome);
+        out.write(':');
+        dopoNome = true;
+        return this;
+    }
+
+    /**
+     * Scrive una stringa, oppure null.
+     *
+     * @param valore il valore
+     * @return questo scrittore
+     * @throws IOException se la scrittura fallisce
+     */
+    public ScrittoreJson valore(String valore) throws IOException {
+        separa();
+        if (valore == null) {
+            out.write("null");
+        } else {
+            scriviStringa(valore);
+        }
+        return this;
+    }
+
+    /**
+     * Scrive un numero intero.
+     *
+     * @param valore il valore
+     * @return questo scrittore
+     * @throws IOException se la scrittura fallisce
+     */
+    public ScrittoreJson valore(long valore) throws IOException {
+        separa();
+        out.write(Long.toString(valore));
+        return this;
+    }
+
+    /**
+     * Scrive un booleano.
+     *
+     * @param valore il valore
+     * @return questo scrittore
+     * @throws IOException se la scrittura fallisce
+     */
+    public ScrittoreJson valore(boolean valore) throws IOException {
+        separa();
+        out.write(valore ? "true" : "false");
+        return this;
+    }
+
+    /**
+     * Scrive un campo stringa dell'oggetto aperto.
+     *
+     * @param nome nome del campo
+     * @param valore valore del campo, anche null
+     * @return questo scrittore
+     * @throws IOException se la scrittura fallisce
+     */
+    public ScrittoreJson campo(String nome, String valore) throws IOException {
+        return nome(nome).valore(valore);
+    }
+
+    /**
+     * Scrive un campo numerico dell'oggetto aperto.
+     *
+     * @param nome nome del campo
+     * @param valore valore del campo
+     * @return questo scrittore
+     * @throws IOException se la scrittura fallisce
+     */
+    public ScrittoreJson campo(String nome, long valore) throws IOException {
+        return nome(nome).valore(valore);
+    }
+
+    /**
+     * Scrive un campo booleano dell'oggetto aperto.
+     *
+     * @param nome nome del campo
+     * @param valore valore del campo
+     * @return questo scrittore
+     * @throws IOException se la scrittura fallisce
+     */
+    public ScrittoreJson campo(String nome, boolean valore) throws IOException {
+        return nome(nome).valore(valore);
+    }
+
+    /**
+     * Scrive un array di stringhe.
+     *
+     * @param valori i valori
+     * @return questo scrittore
+     * @throws IOException se la scrittura fallisce
+     */
+    public ScrittoreJson valori(Iterable<String> valori) throws IOException {
+        iniziaArray();
+        for (String valore : valori) {
+            valore(valore);
+        }
+        return chiudiArray();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    /**
+     * Chiude il writer sottostante, e quindi lo stream di risposta.
+     *
+     * @throws IOException se la chiusura fallisce
+     */
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    /**
+     * Scrive la virgola prima di un elemento che non è il primo del suo contenitore.
+     */
+    private void separa() throws IOException {
+        if (dopoNome) {
+            dopoNome = false;
+            return;
+        }
+        if (!vuoti.isEmpty() && !vuoti.peek()) {
+            out.write(',');
+        } else if (!vuoti.isEmpty()) {
+            vuoti.pop();
+            vuoti.push(false);
+        }
+    }
+
+    private void scriviStringa(String s) throws IOException {
+        out.write('"');
+        int inizio = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c >= 0x20 && c != '"' && c != '\\') {
+                continue;
+            }
+            out.write(s, inizio, i - inizio);
+            switch (c) {
+                case '"' -> out.write("\\\"");
+                case '\\' -> out.write("\\\\");
+                case '\n' -> out.write("\\n");
+                case '\r' -> out.write("\\r");
+                case '\t' -> out.write("\\t");
+                default -> {
+                    out.write("\\u00");
+                    out.write(ESADECIMALI[c >> 4]);
+                    out.write(ESADECIMALI[c & 0xF]);
+                }
+            }
+            inizio = i + 1;
+        }
+        out.write(s, inizio, s.length() - inizio);
+        out.write('"');
+    }
+}
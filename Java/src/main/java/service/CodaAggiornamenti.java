@@ -0,0 +1,224 @@
+package service;
+
+import database.ConnessioneDatabase;
+import interfaccedao.IToDoDAO;
+import model.CampoToDo;
+import model.ToDo;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coda di scrittura differita per gli aggiornamenti dei ToDo.
+ * <p>
+ * Gli aggiornamenti accodati non vengono scritti subito: restano in attesa per
+ * {@link #FINESTRA_MS} millisecondi e vengono poi scritti tutti insieme con
+ * {@link IToDoDAO#aggiornaInBlocco(List)}, in un'unica transazione. Più aggiornamenti dello
+ * stesso ToDo nella stessa finestra diventano una sola scrittura con i valori più recenti,
+ * quindi una raffica di clic produce pochi statement invece di uno per clic.
+ * <p>
+ * La coda ha una capacità limitata: quando è piena, {@link #accoda(ToDo)} avvia subito la
+ * scrittura in background e rifiuta l'aggiornamento con un future fallito, senza mai bloccare
+ * il chiamante, che può essere il thread dell'interfaccia grafica. Le modifiche in attesa
+ * vengono scritte anche al logout, con {@link #svuota()}, e alla chiusura dell'applicazione,
+ * prima che il pool di connessioni venga chiuso.
+ * <p>
+ * Le letture non aspettano la scrittura: con {@link #sovrapponi(ToDo)} i ToDo letti dal database
+ * ricevono i valori ancora in coda o in corso di scrittura, così chi legge vede le proprie
+ * modifiche senza anticipare la scrittura degli aggiornamenti di tutte le sessioni.
+ */
+public class CodaAggiornamenti {
+
+    /** Tempo di attesa prima di scrivere, in cui gli aggiornamenti dello stesso ToDo vengono uniti (ms). */
+    public static final long FINESTRA_MS = 300;
+
+    /** Numero massimo di ToDo in attesa di scrittura. */
+    public static final int CAPACITA = 500;
+
+    /** Attesa massima della scrittura finale alla chiusura dell'applicazione (s). */
+    private static final long ATTESA_CHIUSURA_S = 10;
+
+    /**
+     * Un ToDo in attesa di scrittura.
+     *
+     * @param todo il ToDo, nella copia accodata più di recente
+     * @param esito completato con true se il ToDo è stato scritto, false altrimenti
+     */
+    private record Voce(ToDo todo, CompletableFuture<Boolean> esito) {
+    }
+
+    /**
+     * Un ToDo preso dalla scrittura in corso, con i campi che vengono scritti.
+     *
+     * @param todo il ToDo in scrittura
+     * @param campi i campi modificati al momento in cui è stato preso
+     */
+    private record InScrittura(ToDo todo, Set<CampoToDo> campi) {
+    }
+
+    private final IToDoDAO toDoDAO;
+
+    /** Thread che esegue le scritture, una alla volta. */
+    private final ScheduledExecutorService scrittore = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "scrittura-differita");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /** ToDo in attesa, per ID, nell'ordine di arrivo; protetto dal lock della coda. */
+    private Map<Integer, Voce> inAttesa = new LinkedHashMap<>();
+
+    /** ToDo della scrittura in corso, per ID, finché il database non la conferma; protetto dal lock della coda. */
+    private Map<Integer, InScrittura> inScrittura = Map.of();
+
+    /** True se una scrittura è già pianificata per le voci in attesa. */
+    private boolean scritturaPianificata;
+
+    /** True se una scrittura immediata è già stata richiesta perché la coda è piena. */
+    private boolean scritturaImmediataRichiesta;
+
+    /**
+     * Crea la coda e ne registra lo svuotamento alla chiusura dell'applicazione.
+     *
+     * @param toDoDAO DAO usato per scrivere i ToDo
+     */
+    public CodaAggiornamenti(IToDoDAO toDoDAO) {
+        this.toDoDAO = toDoDAO;
+        ConnessioneDatabase.primaDellaChiusura(() -> svuota().orTimeout(ATTESA_CHIUSURA_S, TimeUnit.SECONDS).join());
+    }
+
+    /**
+     * Accoda la scrittura dei campi modificati di un ToDo. Se il ToDo è già in attesa
+     * non viene aggiunta una nuova scrittura e viene restituito lo stesso esito.
+     * Non blocca mai: se la coda è piena avvia subito la scrittura delle voci in attesa e
+     * restituisce un future fallito con {@link RejectedExecutionException}.
+     *
+     * @param todo il ToDo da scrivere
+     * @return future completato con true quando il ToDo è stato scritto, false se non esiste più,
+     *         se è stato modificato da un altro utente o se la scrittura è fallita
+     */
+    public synchronized CompletableFuture<Boolean> accoda(ToDo todo) {
+        Voce voce = inAttesa.get(todo.getId());
+        if (voce != null) {
+            if (voce.todo() != todo) {
+                // Copia più recente dello stesso ToDo, ad esempio dopo un ricaricamento
+                inAttesa.put(todo.getId(), new Voce(todo, voce.esito()));
+            }
+            return voce.esito();
+        }
+
+        if (inAttesa.size() >= CAPACITA) {
+            if (!scritturaImmediataRichiesta) {
+                scritturaImmediataRichiesta = true;
+                scrittore.execute(this::scrivi);
+            }
+            return CompletableFuture.failedFuture(
+                    new RejectedExecutionException("Troppi aggiornamenti in attesa di scrittura."));
+        }
+
+        voce = new Voce(todo, new CompletableFuture<>());
+        inAttesa.put(todo.getId(), voce);
+        if (!scritturaPianificata) {
+            scritturaPianificata = true;
+            scrittore.schedule(this::scrivi, FINESTRA_MS, TimeUnit.MILLISECONDS);
+        }
+        return voce.esito();
+    }
+
+    /**
+     * Applica a un ToDo appena letto dal database i campi che la coda deve ancora scrivere o sta
+     * scrivendo per lo stesso ToDo. I campi applicati non risultano modificati nel ToDo letto:
+     * verranno scritti dalla coda.
+     *
+     * @param letto il ToDo letto
+     */
+    public synchronized void sovrapponi(ToDo letto) {
+        Voce voce = inAttesa.get(letto.getId());
+        if (voce != null) {
+            applica(letto, voce.todo(), voce.todo().getCampiModificati());
+            return;
+        }
+        InScrittura scrittura = inScrittura.get(letto.getId());
+        if (scrittura != null) {
+            applica(letto, scrittura.todo(), scrittura.campi());
+        }
+    }
+
+    private static void applica(ToDo letto, ToDo origine, Set<CampoToDo> campi) {
+        if (letto != origine && !campi.isEmpty()) {
+            letto.copiaCampi(origine, campi);
+            letto.segnaSalvati(campi);
+        }
+    }
+
+    /**
+     * Toglie dalla coda un ToDo che non va più scritto, ad esempio perché sta per essere eliminato.
+     * Il suo esito viene completato con true.
+     *
+     * @param todo il ToDo da togliere
+     */
+    public synchronized void scarta(ToDo todo) {
+        Voce voce = inAttesa.remove(todo.getId());
+        if (voce != null) {
+            voce.esito().complete(true);
+        }
+    }
+
+    /**
+     * Scrive subito tutti i ToDo in attesa, senza aspettare la fine della finestra.
+     *
+     * @return future completato quando i ToDo in attesa al momento della chiamata sono stati scritti
+     */
+    public CompletableFuture<Void> svuota() {
+        return CompletableFuture.runAsync(this::scrivi, scrittore);
+    }
+
+    /**
+     * Prende tutte le voci in attesa e le scrive con un'unica chiamata al DAO.
+     * Eseguito solo dal thread di scrittura.
+     */
+    private void scrivi() {
+        Map<Integer, Voce> lotto;
+        synchronized (this) {
+            lotto = inAttesa;
+            inAttesa = new LinkedHashMap<>();
+            scritturaPianificata = false;
+            scritturaImmediataRichiesta = false;
+            Map<Integer, InScrittura> presi = new HashMap<>();
+            lotto.forEach((id, voce) -> presi.put(id, new InScrittura(voce.todo(), voce.todo().getCampiModificati())));
+            inScrittura = presi;
+        }
+        if (lotto.isEmpty()) {
+            return;
+        }
+
+        List<ToDo> mancanti;
+        try {
+            mancanti = toDoDAO.aggiornaInBlocco(lotto.values().stream().map(Voce::todo).toList());
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            mancanti = null;
+        } finally {
+            synchronized (this) {
+                inScrittura = Map.of();
+            }
+        }
+
+        Set<Integer> idMancanti = new HashSet<>();
+        if (mancanti != null) {
+            mancanti.forEach(todo -> idMancanti.add(todo.getId()));
+        }
+        for (Voce voce : lotto.values()) {
+            voce.esito().complete(mancanti != null && !idMancanti.contains(voce.todo().getId()));
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package service;
+
+/**
+ * Tipo di errore restituito da un'operazione di {@link ToDoService}.
+ */
+public enum ErroreServizio {
+    /** Username o password non validi. */
+    CREDENZIALI_ERRATE,
+
+    /** I dati ricevuti non sono validi, ad esempio un titolo vuoto. */
+    DATI_NON_VALIDI,
+
+    /** L'utente, il ToDo o la richiesta non esiste. */
+    NON_TROVATO,
+
+    /** L'utente della sessione non può eseguire l'operazione su quel ToDo o quella bacheca. */
+    NON_AUTORIZZATO,
+
+    /** Esiste già un elemento con gli stessi dati, ad esempio un utente con lo stesso username. */
+    GIA_ESISTENTE,
+
+    /** Il ToDo è stato modificato da un altro utente dopo essere stato letto. */
+    CONFLITTO,
+
+    /** Il database non ha completato l'operazione. */
+    DATABASE
+}
@@ -0,0 +1,26 @@
+package service;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Creazione degli executor usati per le attività che accedono al database.
+ */
+public final class Esecutori {
+
+    /** Costruttore privato per evitare l'istanziazione della classe utility. */
+    private Esecutori() {
+    }
+
+    /**
+     * Crea un executor che esegue ogni attività su un nuovo virtual thread, chiamato con il
+     * prefisso indicato seguito da un numero progressivo. Il numero di attività che accedono
+     * insieme al database resta limitato dal pool di connessioni.
+     *
+     * @param nome prefisso del nome dei thread
+     * @return l'executor creato
+     */
+    public static ExecutorService perAttivita(String nome) {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(nome + "-", 0).factory());
+    }
+}
@@ -0,0 +1,132 @@
+package service;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/**
+ * Genera le miniature delle immagini associate ai ToDo.
+ * <p>
+ * La miniatura viene creata una sola volta, al salvataggio dell'immagine, e salvata accanto
+ * all'originale: card e dialoghi mostrano solo questa versione ridotta, mentre l'immagine
+ * completa viene letta e decodificata soltanto quando l'utente la apre a dimensione piena.
+ * I metodi di questa classe sono lenti su immagini grandi e vanno eseguiti fuori dall'EDT.
+ */
+public final class GeneratoreMiniature {
+
+    /** Larghezza massima della miniatura in pixel. */
+    public static final int LARGHEZZA_MASSIMA = 300;
+
+    /** Altezza massima della miniatura in pixel. */
+    public static final int ALTEZZA_MASSIMA = 200;
+
+    /**
+     * Costruttore privato per impedire l'istanziazione della classe.
+     */
+    private GeneratoreMiniature() {
+        // Classe di utility: non istanziabile
+    }
+
+    /**
+     * Crea la miniatura di un'immagine mantenendone le proporzioni.
+     * Le immagini con trasparenza vengono codificate in PNG, le altre in JPEG.
+     *
+     * @param immagine i byte dell'immagine originale
+     * @return i byte della miniatura, oppure null se l'immagine è assente o non decodificabile
+     */
+    public static byte[] genera(byte[] immagine) {
+        BufferedImage originale = decodifica(immagine);
+        if (originale == null) {
+            return null;
+        }
+
+        boolean trasparente = originale.getColorModel().hasAlpha();
+        BufferedImage ridotta = riduci(originale, LARGHEZZA_MASSIMA, ALTEZZA_MASSIMA, trasparente);
+
+        try (ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            ImageIO.write(ridotta, trasparente ? "png" : "jpg", out);
+            return out.toByteArray();
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Decodifica un'immagine dai suoi byte.
+     *
+     * @param immagine i byte dell'immagine
+     * @return l'immagine decodificata, oppure null se assente o in un formato non supportato
+     */
+    public static BufferedImage decodifica(byte[] immagine) {
+        if (immagine == null || immagine.length == 0) {
+            return null;
+        }
+        try {
+            return ImageIO.read(new ByteArrayInputStream(immagine));
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Riduce un'immagine già decodificata per stare nelle dimensioni indicate, mantenendo
+     * le proporzioni. Usato dalle card per adattare la miniatura allo spazio disponibile.
+     *
+     * @param immagine immagine da ridurre
+     * @param larghezzaMassima larghezza massima del risultato
+     * @param altezzaMassima altezza massima del risultato
+     * @return l'immagine ridotta
+     */
+    public static BufferedImage adatta(BufferedImage immagine, int larghezzaMassima, int altezzaMassima) {
+        return riduci(immagine, larghezzaMassima, altezzaMassima, immagine.getColorModel().hasAlpha());
+    }
+
+    /**
+     * Riduce un'immagine per stare nelle dimensioni indicate. Le grandi riduzioni vengono fatte
+     * dimezzando più volte con interpolazione bilineare, che è molto più veloce di
+     * {@link Image#SCALE_SMOOTH} con una qualità simile.
+     *
+     * @param originale immagine da ridurre
+     * @param larghezzaMassima larghezza massima del risultato
+     * @param altezzaMassima altezza massima del risultato
+     * @param trasparente true per mantenere il canale alfa
+     * @return l'immagine ridotta, oppure una copia se è già abbastanza piccola
+     */
+    private static BufferedImage riduci(BufferedImage originale, int larghezzaMassima, int altezzaMassima, boolean trasparente) {
+        double scala = Math.min(1.0, Math.min(
+                (double) larghezzaMassima / originale.getWidth(),
+                (double) altezzaMassima / originale.getHeight()));
+        int larghezzaFinale = Math.max(1, (int) Math.round(originale.getWidth() * scala));
+        int altezzaFinale = Math.max(1, (int) Math.round(originale.getHeight() * scala));
+        int tipo = trasparente ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+
+        BufferedImage corrente = originale;
+        int larghezza = originale.getWidth();
+        int altezza = originale.getHeight();
+        do {
+            larghezza = Math.max(larghezzaFinale, larghezza / 2);
+            altezza = Math.max(altezzaFinale, altezza / 2);
+
+            BufferedImage passo = new BufferedImage(larghezza, altezza, tipo);
+            Graphics2D g = passo.createGraphics();
+            try {
+                if (!trasparente) {
+                    g.setColor(Color.WHITE);
+                    g.fillRect(0, 0, larghezza, altezza);
+                }
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.drawImage(corrente, 0, 0, larghezza, altezza, null);
+            } finally {
+                g.dispose();
+            }
+            corrente = passo;
+        } while (larghezza != larghezzaFinale || altezza != altezzaFinale);
+
+        return corrente;
+    }
+}
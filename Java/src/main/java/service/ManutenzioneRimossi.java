@@ -0,0 +1,84 @@
+package service;
+
+import dao.ToDoDAO;
+import interfaccedao.IToDoDAO;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Manutenzione periodica delle tracce dei ToDo rimossi, usate dalla sincronizzazione incrementale.
+ * <p>
+ * Ogni eliminazione e ogni condivisione revocata lascia una traccia per ciascun utente
+ * interessato. Le tracce più vecchie di {@link #CONSERVAZIONE} vengono eliminate all'avvio
+ * dell'applicazione e poi ogni giorno a {@link #ORA_ESECUZIONE}: un client che non si sincronizza
+ * da più tempo riceve dal servizio la richiesta di ricaricare le bacheche per intero.
+ */
+public final class ManutenzioneRimossi {
+
+    /** Periodo per cui vengono conservate le tracce dei ToDo rimossi. */
+    public static final Duration CONSERVAZIONE = Duration.ofDays(30);
+
+    /** Ora del giorno in cui vengono eliminate le tracce scadute, dopo il ripristino delle scadenze. */
+    public static final LocalTime ORA_ESECUZIONE = LocalTime.of(3, 30);
+
+    /** Thread daemon che elimina le tracce, all'avvio e poi ogni giorno. */
+    private static final ScheduledExecutorService PIANIFICATORE = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "manutenzione-rimossi");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private static final IToDoDAO TODO_DAO = new ToDoDAO();
+
+    /** True dopo la prima chiamata ad {@link #avvia()}. */
+    private static boolean avviata;
+
+    /**
+     * Costruttore privato per impedire l'istanziazione della classe.
+     */
+    private ManutenzioneRimossi() {
+        // Classe di utility: non istanziabile
+    }
+
+    /**
+     * Elimina subito in background le tracce scadute e pianifica l'eliminazione giornaliera.
+     * Le chiamate successive alla prima non hanno effetto.
+     */
+    public static synchronized void avvia() {
+        if (avviata) {
+            return;
+        }
+        avviata = true;
+        PIANIFICATORE.execute(ManutenzioneRimossi::elimina);
+        pianificaProssima();
+    }
+
+    /**
+     * Pianifica la prossima eliminazione alla prossima occorrenza di {@link #ORA_ESECUZIONE}.
+     */
+    private static void pianificaProssima() {
+        LocalDateTime adesso = LocalDateTime.now();
+        LocalDateTime prossima = adesso.toLocalDate().atTime(ORA_ESECUZIONE);
+        if (!prossima.isAfter(adesso)) {
+            prossima = prossima.plusDays(1);
+        }
+        PIANIFICATORE.schedule(() -> {
+            elimina();
+            pianificaProssima();
+        }, Duration.between(adesso, prossima).toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Elimina le tracce più vecchie del periodo di conservazione. Un errore viene già riportato
+     * dal DAO e l'eliminazione viene ritentata il giorno successivo.
+     */
+    private static void elimina() {
+        TODO_DAO.eliminaRimossiPrima(OffsetDateTime.now().minus(CONSERVAZIONE));
+    }
+}
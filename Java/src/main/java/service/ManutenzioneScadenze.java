@@ -0,0 +1,100 @@
+package service;
+
+import dao.ToDoDAO;
+import interfaccedao.IToDoDAO;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Manutenzione periodica delle scadenze: riporta a "non completato" i ToDo scaduti e completati
+ * di tutti gli utenti con un unico UPDATE.
+ * <p>
+ * Il ripristino viene eseguito all'avvio dell'applicazione e poi ogni giorno a
+ * {@link #ORA_ESECUZIONE}, quando l'applicazione è poco usata. Finché è aggiornato alla data
+ * corrente il login non deve ripeterlo per l'utente che accede; se invece non è ancora stato
+ * eseguito, ad esempio subito dopo la mezzanotte o con il database irraggiungibile all'avvio,
+ * il login applica la stessa regola ai soli ToDo dell'utente.
+ */
+public final class ManutenzioneScadenze {
+
+    /** Ora del giorno in cui viene eseguito il ripristino. */
+    public static final LocalTime ORA_ESECUZIONE = LocalTime.of(3, 0);
+
+    /** Thread daemon che esegue il ripristino, all'avvio e poi ogni giorno. */
+    private static final ScheduledExecutorService PIANIFICATORE = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "manutenzione-scadenze");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private static final IToDoDAO TODO_DAO = new ToDoDAO();
+
+    /** Data di riferimento dell'ultimo ripristino completato, null se non ne è riuscito nessuno. */
+    private static volatile LocalDate ultimaEsecuzione;
+
+    /** True dopo la prima chiamata ad {@link #avvia()}. */
+    private static boolean avviata;
+
+    /**
+     * Costruttore privato per impedire l'istanziazione della classe.
+     */
+    private ManutenzioneScadenze() {
+        // Classe di utility: non istanziabile
+    }
+
+    /**
+     * Esegue subito il ripristino in background e pianifica quello giornaliero.
+     * Le chiamate successive alla prima non hanno effetto.
+     */
+    public static synchronized void avvia() {
+        if (avviata) {
+            return;
+        }
+        avviata = true;
+        PIANIFICATORE.execute(ManutenzioneScadenze::ripristina);
+        pianificaProssima();
+    }
+
+    /**
+     * Indica se il ripristino è già stato completato per la data indicata, quindi non va
+     * ripetuto al login.
+     *
+     * @param oggi la data di riferimento del login
+     * @return true se i ToDo scaduti fino a quella data sono già stati ripristinati
+     */
+    public static boolean isEseguitaPer(LocalDate oggi) {
+        return oggi.equals(ultimaEsecuzione);
+    }
+
+    /**
+     * Pianifica il prossimo ripristino alla prossima occorrenza di {@link #ORA_ESECUZIONE}.
+     * Il ritardo viene ricalcolato ogni volta, così i cambi di ora legale non spostano l'esecuzione.
+     */
+    private static void pianificaProssima() {
+        LocalDateTime adesso = LocalDateTime.now();
+        LocalDateTime prossima = adesso.toLocalDate().atTime(ORA_ESECUZIONE);
+        if (!prossima.isAfter(adesso)) {
+            prossima = prossima.plusDays(1);
+        }
+        PIANIFICATORE.schedule(() -> {
+            ripristina();
+            pianificaProssima();
+        }, Duration.between(adesso, prossima).toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Applica la regola delle scadenze a tutti gli utenti e, se riesce, registra la data usata.
+     */
+    private static void ripristina() {
+        LocalDate oggi = LocalDate.now();
+        if (TODO_DAO.ripristinaTuttiScaduti(oggi) >= 0) {
+            ultimaEsecuzione = oggi;
+        }
+    }
+}
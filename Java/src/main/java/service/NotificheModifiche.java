@@ -0,0 +1,144 @@
+package service;
+
+import database.AscoltatoreNotifiche;
+import database.ConnessioneDatabase;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Distribuisce alle sessioni aperte le notifiche delle modifiche ai ToDo inviate dal database.
+ * <p>
+ * I trigger su {@code todo}, {@code condivisione} e {@code condivisione_bacheca} inviano sul canale
+ * {@link #CANALE} un messaggio {@code "<id_todo> <username>"} per ogni utente che vede cambiare
+ * un ToDo. Un unico {@link AscoltatoreNotifiche} per applicazione li riceve e consegna a ogni
+ * iscritto solo gli ID che riguardano il suo utente, uniti per blocco di notifiche. Dopo ogni
+ * connessione dell'ascoltatore gli iscritti ricevono un insieme vuoto: le notifiche perse
+ * nel frattempo non sono note e va ricontrollato tutto, ad esempio con
+ * {@link ToDoService#modificheDa(Sessione, long)}.
+ */
+public final class NotificheModifiche {
+
+    /** Canale su cui i trigger inviano le notifiche. */
+    public static final String CANALE = "modifiche_todo";
+
+    /** Iscritti per username. */
+    private static final Map<String, Set<Consumer<Set<Integer>>>> ISCRITTI = new ConcurrentHashMap<>();
+
+    /** Iscritti alle modifiche di tutti gli utenti. */
+    private static final Set<Consumer<Set<Integer>>> ISCRITTI_TUTTE = ConcurrentHashMap.newKeySet();
+
+    private static AscoltatoreNotifiche ascoltatore;
+
+    /**
+     * Costruttore privato per impedire l'istanziazione della classe.
+     */
+    private NotificheModifiche() {
+        // Classe di utility: non istanziabile
+    }
+
+    /**
+     * Iscrive un destinatario alle modifiche dei ToDo visibili a un utente, avviando l'ascolto
+     * alla prima iscrizione. Il destinatario viene chiamato dal thread di ascolto e non deve
+     * bloccarlo: un'interfaccia grafica deve passare sul proprio thread.
+     *
+     * @param username utente di cui seguire le modifiche
+     * @param destinatario riceve gli ID dei ToDo modificati, oppure un insieme vuoto se vanno
+     *                     ricontrollati tutti
+     * @return azione che annulla l'iscrizione
+     */
+    public static Runnable iscrivi(String username, Consumer<Set<Integer>> destinatario) {
+        avvia();
+        ISCRITTI.compute(username, (u, iscritti) -> {
+            Set<Consumer<Set<Integer>>> insieme = iscritti != null ? iscritti : ConcurrentHashMap.newKeySet();
+            insieme.add(destinatario);
+            return insieme;
+        });
+        return () -> ISCRITTI.computeIfPresent(username, (u, iscritti) -> {
+            iscritti.remove(destinatario);
+            return iscritti.isEmpty() ? null : iscritti;
+        });
+    }
+
+    /**
+     * Iscrive un destinatario alle modifiche di tutti i ToDo, qualunque utente le veda, avviando
+     * l'ascolto. Serve a chi tiene copie dei ToDo condivise fra gli utenti, come una cache.
+     *
+     * @param destinatario riceve gli ID dei ToDo modificati in un blocco di notifiche, oppure un
+     *                     insieme vuoto se vanno ricontrollati tutti
+     * @return azione che annulla l'iscrizione
+     */
+    public static Runnable iscriviTutte(Consumer<Set<Integer>> destinatario) {
+        avvia();
+        ISCRITTI_TUTTE.add(destinatario);
+        return () -> ISCRITTI_TUTTE.remove(destinatario);
+    }
+
+    /**
+     * Avvia l'ascoltatore condiviso, che viene fermato alla chiusura dell'applicazione. Viene
+     * chiamato dalla prima iscrizione; un server può chiamarlo all'avvio, così la connessione
+     * di ascolto è già aperta alla prima richiesta. Le chiamate successive non hanno effetto.
+     */
+    public static synchronized void avvia() {
+        if (ascoltatore != null) {
+            return;
+        }
+        ascoltatore = new AscoltatoreNotifiche(CANALE, NotificheModifiche::distribuisci,
+                NotificheModifiche::ricontrollaTutto);
+        ConnessioneDatabase.primaDellaChiusura(ascoltatore::ferma);
+        ascoltatore.avvia();
+    }
+
+    /**
+     * Raggruppa per utente un blocco di notifiche e consegna a ogni utente i suoi ID.
+     * I messaggi non validi vengono ignorati.
+     */
+    private static void distribuisci(List<String> messaggi) {
+        Map<String, Set<Integer>> perUtente = new HashMap<>();
+        Set<Integer> tutti = new HashSet<>();
+        for (String messaggio : messaggi) {
+            int spazio = messaggio.indexOf(' ');
+            if (spazio <= 0) {
+                continue;
+            }
+            try {
+                int id = Integer.parseInt(messaggio.substring(0, spazio));
+                perUtente.computeIfAbsent(messaggio.substring(spazio + 1), u -> new HashSet<>()).add(id);
+                tutti.add(id);
+            } catch (NumberFormatException e) {
+                // messaggio non inviato dai trigger
+            }
+        }
+        if (!tutti.isEmpty()) {
+            consegna(ISCRITTI_TUTTE, Set.copyOf(tutti));
+        }
+        for (Map.Entry<String, Set<Integer>> voce : perUtente.entrySet()) {
+            Set<Consumer<Set<Integer>>> iscritti = ISCRITTI.get(voce.getKey());
+            if (iscritti != null) {
+                consegna(iscritti, Set.copyOf(voce.getValue()));
+            }
+        }
+    }
+
+    private static void ricontrollaTutto() {
+        consegna(ISCRITTI_TUTTE, Set.of());
+        for (Set<Consumer<Set<Integer>>> iscritti : ISCRITTI.values()) {
+            consegna(iscritti, Set.of());
+        }
+    }
+
+    private static void consegna(Set<Consumer<Set<Integer>>> iscritti, Set<Integer> ids) {
+        for (Consumer<Set<Integer>> iscritto : iscritti) {
+            try {
+                iscritto.accept(ids);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
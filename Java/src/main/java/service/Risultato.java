@@ -0,0 +1,95 @@
+package service;
+
+import java.util.Objects;
+
+/**
+ * Esito di un'operazione di {@link ToDoService}: il valore prodotto oppure un errore tipizzato,
+ * con un messaggio già pronto da mostrare all'utente.
+ *
+ * @param <T> tipo del valore prodotto in caso di successo
+ */
+public final class Risultato<T> {
+
+    private final T valore;
+    private final ErroreServizio errore;
+    private final String messaggio;
+
+    private Risultato(T valore, ErroreServizio errore, String messaggio) {
+        this.valore = valore;
+        this.errore = errore;
+        this.messaggio = messaggio;
+    }
+
+    /**
+     * Crea un risultato riuscito.
+     *
+     * @param valore il valore prodotto, anche null
+     * @param <T> tipo del valore
+     * @return il risultato
+     */
+    public static <T> Risultato<T> ok(T valore) {
+        return new Risultato<>(valore, null, null);
+    }
+
+    /**
+     * Crea un risultato riuscito per un'operazione che non produce valori.
+     *
+     * @return il risultato
+     */
+    public static Risultato<Void> ok() {
+        return new Risultato<>(null, null, null);
+    }
+
+    /**
+     * Crea un risultato fallito.
+     *
+     * @param errore il tipo di errore
+     * @param messaggio il messaggio da mostrare all'utente
+     * @param <T> tipo del valore che l'operazione avrebbe prodotto
+     * @return il risultato
+     */
+    public static <T> Risultato<T> errore(ErroreServizio errore, String messaggio) {
+        return new Risultato<>(null, Objects.requireNonNull(errore), messaggio);
+    }
+
+    /**
+     * Indica se l'operazione è riuscita.
+     *
+     * @return true se non c'è errore
+     */
+    public boolean isOk() {
+        return errore == null;
+    }
+
+    /**
+     * Restituisce il valore prodotto dall'operazione.
+     *
+     * @return il valore, null se l'operazione è fallita o non produce valori
+     */
+    public T getValore() {
+        return valore;
+    }
+
+    /**
+     * Restituisce il tipo di errore.
+     *
+     * @return l'errore, oppure null se l'operazione è riuscita
+     */
+    public ErroreServizio getErrore() {
+        return errore;
+    }
+
+    /**
+     * Restituisce il messaggio dell'errore, da mostrare all'utente.
+     *
+     * @return il messaggio, oppure null se l'operazione è riuscita
+     */
+    public String getMessaggio() {
+        return messaggio;
+    }
+
+    @Override
+    public String toString() {
+        return isOk() ? "Risultato[ok: " + valore + "]" : "Risultato[" + errore + ": " + messaggio + "]";
+    }
+}
@@ -0,0 +1,34 @@
+package service;
+
+/**
+ * Sessione di un utente autenticato da {@link ToDoService}. Tutte le operazioni del servizio
+ * vengono eseguite per conto dell'utente della sessione, che solo il servizio può creare.
+ * È immutabile e può essere usata da più thread.
+ */
+public final class Sessione {
+
+    private final String username;
+
+    /**
+     * Crea la sessione di un utente già autenticato.
+     *
+     * @param username lo username dell'utente
+     */
+    Sessione(String username) {
+        this.username = username;
+    }
+
+    /**
+     * Restituisce lo username dell'utente della sessione.
+     *
+     * @return lo username
+     */
+    public String getUsername() {
+        return username;
+    }
+
+    @Override
+    public String toString() {
+        return "Sessione[" + username + "]";
+    }
+}
@@ -0,0 +1,944 @@
+package service;
+
+import dao.BachecaDAO;
+import dao.BachecaDAOConCache;
+import dao.CondivisioneDAO;
+import dao.StatisticheCache;
+import dao.ToDoDAO;
+import dao.ToDoDAOConCache;
+import dao.UtenteDAO;
+import dao.UtenteDAOConCache;
+import interfaccedao.IBachecaDAO;
+import interfaccedao.ICondivisioneDAO;
+import interfaccedao.IToDoDAO;
+import interfaccedao.IUtenteDAO;
+import model.Bacheca;
+import model.CampoToDo;
+import model.EsitoAggiornamento;
+import model.EsitoCondivisione;
+import model.ModificheToDo;
+import model.RichiestaCondivisione;
+import model.StatoToDo;
+import model.TipoBacheca;
+import model.ToDo;
+import model.Utente;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Logica applicativa dei ToDo, indipendente dall'interfaccia grafica.
+ * <p>
+ * Ogni operazione viene eseguita per conto dell'utente di una {@link Sessione}, ottenuta con
+ * {@link #accedi(String, String, LocalDate)} o {@link #autentica(String, String)}, e restituisce
+ * un {@link Risultato}: il valore prodotto oppure un {@link ErroreServizio} con il messaggio da
+ * mostrare. I permessi vengono controllati qui, non dal chiamante.
+ * <p>
+ * Il servizio non ha stato legato a un utente: la stessa istanza può servire più sessioni da più
+ * thread insieme. I metodi sono bloccanti e accedono al database, quindi un'interfaccia grafica
+ * deve chiamarli fuori dal suo thread; fanno eccezione quelli che restituiscono un
+ * {@link CompletableFuture}, che accodano la scrittura e ritornano subito.
+ */
+public class ToDoService {
+
+    private static final String NON_PROPRIETARIO = "Solo il proprietario può gestire le condivisioni del ToDo.";
+
+    private final IToDoDAO toDoDAO;
+    private final ICondivisioneDAO condivisioneDAO;
+    private final IUtenteDAO utenteDAO;
+    private final IBachecaDAO bachecaDAO;
+
+    /** Coda di scrittura differita per i cambi di stato, condivisa da tutte le sessioni. */
+    private final CodaAggiornamenti codaAggiornamenti;
+
+    /** Esegue i controlli dei permessi che non devono bloccare il chiamante. */
+    private final ExecutorService verifiche = Esecutori.perAttivita("verifica-permessi");
+
+    /**
+     * Crea il servizio sui DAO che accedono a PostgreSQL, con le cache condivise da tutti i
+     * servizi dell'applicazione.
+     */
+    public ToDoService() {
+        this(DaoConCache.TODO, new CondivisioneDAO(), DaoConCache.UTENTE, DaoConCache.BACHECA);
+    }
+
+    /**
+     * Restituisce le metriche delle cache dei DAO usate dal costruttore predefinito.
+     *
+     * @return statistiche delle cache dei ToDo, degli utenti, dell'elenco utenti e delle bacheche
+     */
+    public static List<StatisticheCache> getStatisticheCache() {
+        return List.of(DaoConCache.TODO.getStatisticheCache(),
+                DaoConCache.UTENTE.getStatisticheCache(),
+                DaoConCache.UTENTE.getStatisticheElenco(),
+                DaoConCache.BACHECA.getStatisticheCache());
+    }
+
+    /**
+     * Crea il servizio sui DAO indicati.
+     *
+     * @param toDoDAO DAO dei ToDo
+     * @param condivisioneDAO DAO delle condivisioni
+     * @param utenteDAO DAO degli utenti
+     * @param bachecaDAO DAO delle bacheche
+     */
+    public ToDoService(IToDoDAO toDoDAO, ICondivisioneDAO condivisioneDAO, IUtenteDAO utenteDAO, IBachecaDAO bachecaDAO) {
+        this.toDoDAO = toDoDAO;
+        this.condivisioneDAO = condivisioneDAO;
+        this.utenteDAO = utenteDAO;
+        this.bachecaDAO = bachecaDAO;
+        this.codaAggiornamenti = new CodaAggiornamenti(toDoDAO);
+    }
+
+    // Accesso e utenti
+
+    /**
+     * Verifica le credenziali e carica con un'unica query l'utente con bacheche e ToDo.
+     * I ToDo letti riportano gli aggiornamenti ancora in coda.
+     *
+     * @param username lo username
+     * @param password la password
+     * @param oggi data di riferimento per le scadenze
+     * @return l'utente caricato con la sua sessione, oppure {@link ErroreServizio#CREDENZIALI_ERRATE}
+     */
+    public Risultato<UtenteCaricato> accedi(String username, String password, LocalDate oggi) {
+        return protetto("Impossibile contattare il database.", () -> {
+            long cursore = toDoDAO.cursoreModifiche();
+            Utente utente = utenteDAO.loadSnapshot(username, password);
+            if (utente == null) {
+                return Risultato.errore(ErroreServizio.CREDENZIALI_ERRATE, "Credenziali errate");
+            }
+            return Risultato.ok(prepara(utente, oggi, cursore));
+        });
+    }
+
+    /**
+     * Verifica le credenziali senza caricare bacheche e ToDo, ad esempio per autenticare una
+     * singola richiesta.
+     *
+     * @param username lo username
+     * @param password la password
+     * @return la sessione dell'utente, oppure {@link ErroreServizio#CREDENZIALI_ERRATE}
+     */
+    public Risultato<Sessione> autentica(String username, String password) {
+        return protetto("Impossibile contattare il database.", () -> {
+            Utente utente = utenteDAO.findByUsernameAndPassword(username, password);
+            return utente != null
+                    ? Risultato.ok(new Sessione(utente.getUsername()))
+                    : Risultato.errore(ErroreServizio.CREDENZIALI_ERRATE, "Credenziali errate");
+        });
+    }
+
+    /**
+     * Ricarica l'utente della sessione con bacheche e ToDo.
+     * I ToDo letti riportano gli aggiornamenti ancora in coda.
+     *
+     * @param sessione sessione dell'utente
+     * @param oggi data di riferimento per le scadenze
+     * @return l'utente caricato, oppure {@link ErroreServizio#NON_TROVATO} se non esiste più
+     */
+    public Risultato<UtenteCaricato> caricaUtente(Sessione sessione, LocalDate oggi) {
+        return protetto("Errore durante il caricamento dei dati dell'utente.", () -> {
+            long cursore = toDoDAO.cursoreModifiche();
+            Utente utente = utenteDAO.loadSnapshot(sessione.getUsername());
+            if (utente == null) {
+                return Risultato.errore(ErroreServizio.NON_TROVATO, "Utente non trovato.");
+            }
+            return Risultato.ok(prepara(utente, oggi, cursore));
+        });
+    }
+
+    /**
+     * Registra un nuovo utente e crea le sue tre bacheche.
+     *
+     * @param username lo username, senza spazi iniziali e finali
+     * @param password la password
+     * @return risultato vuoto, oppure {@link ErroreServizio#GIA_ESISTENTE} se lo username è già usato
+     */
+    public Risultato<Void> registra(String username, String password) {
+        String nome = username == null ? "" : username.trim();
+        if (nome.isEmpty() || password == null || password.isEmpty()) {
+            return Risultato.errore(ErroreServizio.DATI_NON_VALIDI, "Inserisci username e password.");
+        }
+        return protetto("Errore durante la registrazione.", () -> {
+            if (utenteDAO.findByUsername(nome) != null) {
+                return Risultato.errore(ErroreServizio.GIA_ESISTENTE, "Username già esistente.");
+            }
+            if (!utenteDAO.salvaUtente(new Utente(nome, password))) {
+                return Risultato.errore(ErroreServizio.DATABASE, "Errore durante la registrazione.");
+            }
+            bachecaDAO.salvaBacheca(new Bacheca(TipoBacheca.UNIVERSITA, "Bacheca Università"), nome);
+            bachecaDAO.salvaBacheca(new Bacheca(TipoBacheca.LAVORO, "Bacheca LAVORO"), nome);
+            bachecaDAO.salvaBacheca(new Bacheca(TipoBacheca.TEMPO_LIBERO, "Bacheca Tempo Libero"), nome);
+            return Risultato.ok();
+        });
+    }
+
+    /**
+     * Elimina l'utente della sessione; la sessione non va più usata.
+     *
+     * @param sessione sessione dell'utente da eliminare
+     * @return risultato vuoto, oppure un errore se l'eliminazione non è riuscita
+     */
+    public Risultato<Void> eliminaUtente(Sessione sessione) {
+        return protetto("Errore durante l'eliminazione dell'utente.", () -> utenteDAO.eliminaUtente(sessione.getUsername())
+                ? Risultato.ok()
+                : Risultato.errore(ErroreServizio.DATABASE, "Errore durante l'eliminazione dell'utente."));
+    }
+
+    /**
+     * Chiude la sessione, avviando subito la scrittura degli aggiornamenti ancora in coda.
+     *
+     * @param sessione sessione da chiudere
+     * @return future completato quando gli aggiornamenti in coda sono stati scritti
+     */
+    public CompletableFuture<Void> chiudiSessione(Sessione sessione) {
+        return codaAggiornamenti.svuota();
+    }
+
+    // ToDo
+
+    /**
+     * Restituisce i ToDo di una bacheca dell'utente, ordinati per posizione.
+     * I ToDo letti riportano gli aggiornamenti ancora in coda.
+     *
+     * @param sessione sessione del proprietario
+     * @param tipo tipo di bacheca
+     * @return i ToDo della bacheca
+     */
+    public Risultato<List<ToDo>> toDoBacheca(Sessione sessione, TipoBacheca tipo) {
+        return protetto("Errore durante il ricaricamento della bacheca.",
+                () -> Risultato.ok(conAggiornamentiInCoda(toDoDAO.trovaPerBacheca(sessione.getUsername(), tipo))));
+    }
+
+    /**
+     * Restituisce i ToDo condivisi con l'utente e accettati, compresi quelli delle bacheche condivise.
+     *
+     * @param sessione sessione del destinatario
+     * @return i ToDo condivisi
+     */
+    public Risultato<List<ToDo>> toDoCondivisi(Sessione sessione) {
+        return protetto("Errore durante il ricaricamento della bacheca.",
+                () -> Risultato.ok(conAggiornamentiInCoda(toDoDAO.getToDoCondivisiCon(sessione.getUsername()))));
+    }
+
+    /**
+     * Restituisce le modifiche ai ToDo visibili all'utente avvenute dopo il cursore: quelli nuovi,
+     * quelli modificati e gli ID di quelli eliminati o non più condivisi. I ToDo letti riportano
+     * gli aggiornamenti ancora in coda, che arriveranno con la loro nuova versione in una
+     * sincronizzazione successiva, una volta scritti.
+     *
+     * @param sessione sessione dell'utente
+     * @param cursore cursore del caricamento o della sincronizzazione precedente
+     * @return le modifiche, con il cursore per la sincronizzazione successiva
+     */
+    public Risultato<ModificheToDo> modificheDa(Sessione sessione, long cursore) {
+        return protetto("Errore durante la sincronizzazione.", () -> {
+            ModificheToDo modifiche = toDoDAO.modificheDa(sessione.getUsername(), cursore);
+            if (modifiche != null) {
+                conAggiornamentiInCoda(modifiche.inseriti());
+                conAggiornamentiInCoda(modifiche.aggiornati());
+            }
+            return modifiche != null
+                    ? Risultato.ok(modifiche)
+                    : Risultato.errore(ErroreServizio.DATABASE, "Errore durante la sincronizzazione.");
+        });
+    }
+
+    /**
+     * Come {@link #modificheDa(Sessione, long)}, ma se non ci sono modifiche attende fino al
+     * tempo indicato che il database ne notifichi una per l'utente, e solo allora rilegge.
+     * Permette a un client remoto di ricevere le modifiche appena avvengono senza interrogare
+     * ripetutamente il server. Il thread chiamante resta bloccato durante l'attesa.
+     *
+     * @param sessione sessione dell'utente
+     * @param cursore cursore del caricamento o della sincronizzazione precedente
+     * @param attesaMs attesa massima di una modifica, in millisecondi
+     * @return le modifiche, eventualmente nessuna, con il cursore per la sincronizzazione successiva
+     */
+    public Risultato<ModificheToDo> attendiModifiche(Sessione sessione, long cursore, long attesaMs) {
+        long scadenza = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(attesaMs);
+        AtomicReference<CompletableFuture<Set<Integer>>> notifica = new AtomicReference<>(new CompletableFuture<>());
+        // L'iscrizione precede la lettura: una modifica successiva alla lettura viene notificata
+        Runnable annulla = NotificheModifiche.iscrivi(sessione.getUsername(), ids -> notifica.get().complete(ids));
+        try {
+            Risultato<ModificheToDo> modifiche = modificheDa(sessione, cursore);
+            // Una notifica può non portare modifiche, ad esempio se riguarda scritture già lette
+            while (modifiche.isOk() && modifiche.getValore().isVuota()) {
+                long restante = scadenza - System.nanoTime();
+                if (restante <= 0) {
+                    break;
+                }
+                try {
+                    notifica.get().get(restante, TimeUnit.NANOSECONDS);
+                } catch (TimeoutException | ExecutionException e) {
+                    break;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                notifica.set(new CompletableFuture<>());
+                modifiche = modificheDa(sessione, cursore);
+            }
+            return modifiche;
+        } finally {
+            annulla.run();
+        }
+    }
+
+    /**
+     * Iscrive un destinatario alle notifiche delle modifiche ai ToDo visibili all'utente, inviate
+     * dal database al commit di ogni scrittura. Il destinatario viene chiamato da un thread di
+     * ascolto condiviso e non deve bloccarlo.
+     *
+     * @param sessione sessione dell'utente
+     * @param destinatario riceve gli ID dei ToDo modificati, oppure un insieme vuoto se vanno
+     *                     ricontrollati tutti
+     * @return azione che annulla l'iscrizione, da eseguire alla chiusura della sessione
+     * @see NotificheModifiche
+     */
+    public Runnable osservaModifiche(Sessione sessione, Consumer<Set<Integer>> destinatario) {
+        return NotificheModifiche.iscrivi(sessione.getUsername(), destinatario);
+    }
+
+    /**
+     * Rilegge un ToDo visibile all'utente, ad esempio per aggiornarne la copia locale.
+     * Il ToDo letto riporta gli aggiornamenti ancora in coda.
+     *
+     * @param sessione sessione dell'utente
+     * @param id ID del ToDo
+     * @return il ToDo, oppure {@link ErroreServizio#NON_TROVATO} se non esiste o non è più visibile
+     */
+    public Risultato<ToDo> leggiToDo(Sessione sessione, int id) {
+        return protetto("Errore durante il ricaricamento del ToDo.", () -> {
+            ToDo todo = toDoDAO.trovaPerId(id);
+            if (todo == null || !puoVedere(sessione, todo)) {
+                return Risultato.errore(ErroreServizio.NON_TROVATO, "Il ToDo è stato eliminato.");
+            }
+            codaAggiornamenti.sovrapponi(todo);
+            return Risultato.ok(todo);
+        });
+    }
+
+    /**
+     * Crea un nuovo ToDo in testa a una bacheca dell'utente, generando la miniatura dell'immagine.
+     * Al termine il ToDo ha ID, posizione e versione assegnati dal database.
+     *
+     * @param sessione sessione del proprietario
+     * @param todo il ToDo da creare
+     * @param tipo tipo della bacheca
+     * @return il ToDo salvato, oppure {@link ErroreServizio#DATI_NON_VALIDI} se il titolo è vuoto
+     */
+    public Risultato<ToDo> creaToDo(Sessione sessione, ToDo todo, TipoBacheca tipo) {
+        if (todo.getTitolo() == null || todo.getTitolo().isEmpty()) {
+            return Risultato.errore(ErroreServizio.DATI_NON_VALIDI, "Il titolo non può essere vuoto.");
+        }
+        return protetto("Errore durante il salvataggio del ToDo.", () -> {
+            preparaMiniatura(todo);
+            if (!toDoDAO.salva(todo, sessione.getUsername(), tipo)) {
+                return Risultato.errore(ErroreServizio.DATABASE, "Errore durante il salvataggio del ToDo.");
+            }
+            todo.rilasciaImmagine();
+            todo.setProprietario(sessione.getUsername());
+            todo.setTipoBacheca(tipo);
+            return Risultato.ok(todo);
+        });
+    }
+
+    /**
+     * Crea un nuovo ToDo in una bacheca dell'utente tra due suoi ToDo, generando la miniatura
+     * dell'immagine. Viene scritta solo la riga del nuovo ToDo, salvo quando tra i due vicini
+     * non c'è più spazio e la bacheca va ribilanciata.
+     *
+     * @param sessione sessione del proprietario
+     * @param todo il ToDo da creare
+     * @param tipo tipo della bacheca
+     * @param idPrecedente ID del ToDo che lo precederà, oppure null per inserirlo in testa
+     * @param idSuccessivo ID del ToDo che lo seguirà, oppure null per inserirlo in coda
+     * @return il ToDo salvato, oppure un errore se il titolo è vuoto o un vicino non è nella bacheca
+     */
+    public Risultato<ToDo> creaToDoTra(Sessione sessione, ToDo todo, TipoBacheca tipo,
+                                       Integer idPrecedente, Integer idSuccessivo) {
+        if (todo.getTitolo() == null || todo.getTitolo().isEmpty()) {
+            return Risultato.errore(ErroreServizio.DATI_NON_VALIDI, "Il titolo non può essere vuoto.");
+        }
+        return protetto("Errore durante il salvataggio del ToDo.", () -> {
+            Risultato<ToDo> precedente = vicino(sessione, tipo, idPrecedente);
+            Risultato<ToDo> successivo = vicino(sessione, tipo, idSuccessivo);
+            if (!precedente.isOk() || !successivo.isOk()) {
+                return !precedente.isOk() ? precedente : successivo;
+            }
+            preparaMiniatura(todo);
+            if (!toDoDAO.salvaTra(todo, sessione.getUsername(), tipo, precedente.getValore(), successivo.getValore())) {
+                return Risultato.errore(ErroreServizio.DATABASE, "Errore durante il salvataggio del ToDo.");
+            }
+            todo.rilasciaImmagine();
+            todo.setProprietario(sessione.getUsername());
+            todo.setTipoBacheca(tipo);
+            return Risultato.ok(todo);
+        });
+    }
+
+    /**
+     * Sposta un ToDo dell'utente tra due ToDo della stessa bacheca. Viene scritta solo la
+     * posizione del ToDo spostato, salvo quando tra i due vicini non c'è più spazio e la
+     * bacheca va ribilanciata; la versione non cambia.
+     *
+     * @param sessione sessione del proprietario
+     * @param id ID del ToDo da spostare
+     * @param idPrecedente ID del ToDo che lo precederà, oppure null per portarlo in testa
+     * @param idSuccessivo ID del ToDo che lo seguirà, oppure null per portarlo in coda;
+     *                     almeno uno dei due va indicato
+     * @return il ToDo con la nuova posizione, oppure un errore se l'utente non ne è il proprietario
+     *         o un vicino non è nella stessa bacheca
+     */
+    public Risultato<ToDo> spostaToDo(Sessione sessione, int id, Integer idPrecedente, Integer idSuccessivo) {
+        if (idPrecedente == null && idSuccessivo == null) {
+            return Risultato.errore(ErroreServizio.DATI_NON_VALIDI, "Indica almeno un ToDo vicino.");
+        }
+        if (Integer.valueOf(id).equals(idPrecedente) || Integer.valueOf(id).equals(idSuccessivo)) {
+            return Risultato.errore(ErroreServizio.DATI_NON_VALIDI, "Un ToDo non può essere vicino di se stesso.");
+        }
+        return protetto("Errore durante lo spostamento del ToDo.", () -> {
+            ToDo todo = toDoDAO.trovaPerId(id);
+            if (todo == null) {
+                return Risultato.errore(ErroreServizio.NON_TROVATO, "Il ToDo è stato eliminato.");
+            }
+            if (!sessione.getUsername().equals(todo.getProprietario())) {
+                return Risultato.errore(ErroreServizio.NON_AUTORIZZATO, "Solo il proprietario può spostare il ToDo.");
+            }
+            Risultato<ToDo> precedente = vicino(sessione, todo.getTipoBacheca(), idPrecedente);
+            Risultato<ToDo> successivo = vicino(sessione, todo.getTipoBacheca(), idSuccessivo);
+            if (!precedente.isOk() || !successivo.isOk()) {
+                return !precedente.isOk() ? precedente : successivo;
+            }
+            return toDoDAO.sposta(todo, precedente.getValore(), successivo.getValore())
+                    ? Risultato.ok(todo)
+                    : Risultato.errore(ErroreServizio.NON_TROVATO, "Impossibile spostare il ToDo: potrebbe essere stato eliminato.");
+        });
+    }
+
+    /**
+     * Salva i campi modificati di un ToDo letto dal database, se l'utente ne è il proprietario:
+     * chi lo ha ricevuto in condivisione può solo leggerlo. Proprietario e bacheca vengono riletti
+     * dal database, non presi dal ToDo ricevuto. La scrittura riesce solo se nessun altro ha
+     * modificato il ToDo dopo la lettura; in caso contrario i campi restano segnati come modificati
+     * e possono essere applicati alla versione più recente con
+     * {@link #applicaModifiche(Sessione, ToDo, ToDo)}.
+     *
+     * @param sessione sessione del proprietario
+     * @param todo il ToDo modificato
+     * @return il ToDo salvato, oppure {@link ErroreServizio#CONFLITTO}, {@link ErroreServizio#NON_TROVATO}
+     *         o {@link ErroreServizio#NON_AUTORIZZATO}
+     */
+    public Risultato<ToDo> aggiornaToDo(Sessione sessione, ToDo todo) {
+        return protetto("Impossibile salvare le modifiche: il ToDo verrà ricaricato.", () -> {
+            ToDo salvato = toDoDAO.trovaPerId(todo.getId());
+            if (salvato == null) {
+                return Risultato.errore(ErroreServizio.NON_TROVATO,
+                        "Impossibile salvare le modifiche: il ToDo è stato eliminato.");
+            }
+            if (!sessione.getUsername().equals(salvato.getProprietario())) {
+                return Risultato.errore(ErroreServizio.NON_AUTORIZZATO, "Solo il proprietario può modificare il ToDo.");
+            }
+            preparaMiniatura(todo);
+            EsitoAggiornamento esito = toDoDAO.aggiorna(todo, salvato.getProprietario(), salvato.getTipoBacheca());
+            return switch (esito) {
+                case AGGIORNATO -> {
+                    todo.rilasciaImmagine();
+                    yield Risultato.ok(todo);
+                }
+                case CONFLITTO -> Risultato.errore(ErroreServizio.CONFLITTO,
+                        "Il ToDo \"" + todo.getTitolo() + "\" è stato modificato da un altro utente.");
+                case NON_TROVATO -> Risultato.errore(ErroreServizio.NON_TROVATO,
+                        "Impossibile salvare le modifiche: il ToDo è stato eliminato.");
+                case ERRORE -> Risultato.errore(ErroreServizio.DATABASE,
+                        "Impossibile salvare le modifiche: il ToDo verrà ricaricato.");
+            };
+        });
+    }
+
+    /**
+     * Risolve un conflitto di versione applicando alla copia più recente di un ToDo i campi
+     * modificati dall'utente nella sua copia locale, e salva il risultato.
+     *
+     * @param sessione sessione dell'utente
+     * @param locale la copia locale, con i campi modificati non salvati
+     * @param recente la copia letta dal database dopo il conflitto
+     * @return la copia recente salvata con le modifiche, oppure l'errore del nuovo salvataggio
+     */
+    public Risultato<ToDo> applicaModifiche(Sessione sessione, ToDo locale, ToDo recente) {
+        recente.copiaCampi(locale, locale.getCampiModificati());
+        return aggiornaToDo(sessione, recente);
+    }
+
+    /**
+     * Inverte lo stato di completamento di un ToDo e ne accoda la scrittura: più cambi ravvicinati,
+     * anche di sessioni diverse, vengono scritti insieme in un'unica transazione.
+     * <p>
+     * Il nuovo stato è l'opposto di quello che il ToDo ha al momento della chiamata, ma viene
+     * assegnato alla copia ricevuta solo dopo il controllo che l'utente sia il proprietario, che
+     * rilegge il ToDo dal database su un altro thread: il metodo non blocca mai il chiamante, che
+     * può essere il thread dell'interfaccia grafica e che può mostrare subito il nuovo stato per
+     * conto suo. Se la scrittura non riesce lo stato precedente viene ripristinato, a meno che nel
+     * frattempo il ToDo sia stato modificato di nuovo.
+     *
+     * @param sessione sessione del proprietario
+     * @param todo il ToDo da modificare
+     * @return future completato con true quando il ToDo è stato scritto, false se non esiste più,
+     *         l'utente non ne è il proprietario, è stato modificato da un altro utente o la
+     *         scrittura è fallita
+     */
+    public CompletableFuture<Boolean> invertiCompletamento(Sessione sessione, ToDo todo) {
+        StatoToDo precedente = todo.getStato();
+        StatoToDo nuovo = precedente == StatoToDo.COMPLETATO ? StatoToDo.NON_COMPLETATO : StatoToDo.COMPLETATO;
+        boolean giaModificato = todo.getCampiModificati().contains(CampoToDo.STATO);
+        int id = todo.getId();
+        return CompletableFuture.supplyAsync(() -> isProprietario(sessione, id), verifiche)
+                .thenCompose(proprietario -> {
+                    if (!proprietario) {
+                        return CompletableFuture.completedFuture(false);
+                    }
+                    todo.setStato(nuovo);
+                    return codaAggiornamenti.accoda(todo).whenComplete((scritto, errore) -> {
+                        if ((errore != null || !scritto) && todo.getStato() == nuovo) {
+                            todo.setStato(precedente);
+                            if (!giaModificato) {
+                                todo.segnaSalvati(EnumSet.of(CampoToDo.STATO));
+                            }
+                        }
+                    });
+                });
+    }
+
+    /**
+     * Elimina un ToDo dell'utente insieme alle sue condivisioni. Il proprietario viene riletto
+     * dal database, non preso dal ToDo ricevuto.
+     *
+     * @param sessione sessione del proprietario
+     * @param todo il ToDo da eliminare
+     * @return risultato vuoto, oppure {@link ErroreServizio#NON_AUTORIZZATO} se l'utente non ne è il proprietario
+     */
+    public Risultato<Void> eliminaToDo(Sessione sessione, ToDo todo) {
+        int id = todo.getId();
+        return protetto("Errore durante l'eliminazione dal database.", () -> {
+            if (!isProprietario(sessione, id)) {
+                return Risultato.errore(ErroreServizio.NON_AUTORIZZATO, "Solo il proprietario può eliminare il ToDo.");
+            }
+            codaAggiornamenti.scarta(todo);
+            condivisioneDAO.eliminaCondivisioniCollegate(id);
+            return toDoDAO.elimina(id)
+                    ? Risultato.ok()
+                    : Risultato.errore(ErroreServizio.DATABASE, "Errore durante l'eliminazione dal database.");
+        });
+    }
+
+    /**
+     * Indica se un ToDo di un altro utente è visibile perché è condivisa l'intera bacheca del proprietario.
+     *
+     * @param sessione sessione del destinatario
+     * @param todo il ToDo condiviso
+     * @return true se la bacheca del ToDo è condivisa con l'utente
+     */
+    public Risultato<Boolean> isInBachecaCondivisa(Sessione sessione, ToDo todo) {
+        String proprietario = todo.getProprietario();
+        TipoBacheca tipo = todo.getTipoBacheca();
+        return protetto("Errore durante il controllo della condivisione della bacheca.", () -> Risultato.ok(
+                condivisioneDAO.esisteCondivisioneBacheca(sessione.getUsername(), proprietario, tipo)));
+    }
+
+    /**
+     * Legge l'immagine completa di un ToDo visibile all'utente. La visibilità viene controllata
+     * sul ToDo riletto dal database.
+     *
+     * @param sessione sessione dell'utente
+     * @param todo il ToDo
+     * @return i byte dell'immagine, null se il ToDo non ne ha, oppure {@link ErroreServizio#NON_TROVATO}
+     *         se il ToDo non esiste o non è visibile all'utente
+     */
+    public Risultato<byte[]> caricaImmagine(Sessione sessione, ToDo todo) {
+        if (todo.isImmagineCaricata()) {
+            return Risultato.ok(todo.getImmagine());
+        }
+        int id = todo.getId();
+        return protetto("Errore durante il caricamento dell'immagine.", () -> {
+            if (!puoVedere(sessione, id)) {
+                return Risultato.errore(ErroreServizio.NON_TROVATO, "Il ToDo è stato eliminato.");
+            }
+            return Risultato.ok(toDoDAO.caricaImmagine(id));
+        });
+    }
+
+    /**
+     * Restituisce la miniatura dell'immagine di un ToDo. Per i ToDo salvati prima
+     * dell'introduzione delle miniature, la genera dall'originale e la salva.
+     *
+     * @param sessione sessione dell'utente
+     * @param todo il ToDo
+     * @return i byte della miniatura, null se il ToDo non ha immagine
+     */
+    public Risultato<byte[]> caricaMiniatura(Sessione sessione, ToDo todo) {
+        if (todo.getMiniatura() != null || !todo.haImmagine()) {
+            return Risultato.ok(todo.getMiniatura());
+        }
+        int id = todo.getId();
+        return protetto("Errore durante il caricamento dell'immagine.", () -> {
+            if (!puoVedere(sessione, id)) {
+                return Risultato.errore(ErroreServizio.NON_TROVATO, "Il ToDo è stato eliminato.");
+            }
+            byte[] miniatura = GeneratoreMiniature.genera(toDoDAO.caricaImmagine(id));
+            if (miniatura != null) {
+                toDoDAO.salvaMiniatura(id, miniatura);
+            }
+            return Risultato.ok(miniatura);
+        });
+    }
+
+    // Condivisioni
+
+    /**
+     * Condivide un ToDo dell'utente con uno o più destinatari in un'unica operazione.
+     *
+     * @param sessione sessione del proprietario
+     * @param idToDo ID del ToDo
+     * @param destinatari username dei destinatari
+     * @return l'esito per ciascun destinatario
+     */
+    public Risultato<Map<String, EsitoCondivisione>> condividiToDo(Sessione sessione, int idToDo, List<String> destinatari) {
+        List<String> richiesti = List.copyOf(destinatari);
+        return protetto("Errore durante la condivisione.", () -> {
+            Map<String, EsitoCondivisione> esiti =
+                    condivisioneDAO.richiediCondivisioni(sessione.getUsername(), idToDo, richiesti);
+            return esiti != null ? Risultato.ok(esiti) : Risultato.errore(ErroreServizio.DATABASE, "Errore durante la condivisione.");
+        });
+    }
+
+    /**
+     * Restituisce gli utenti con cui un ToDo può ancora essere condiviso: tutti gli utenti
+     * registrati tranne quello della sessione e quelli che hanno già ricevuto la condivisione.
+     *
+     * @param sessione sessione del proprietario
+     * @param idToDo ID del ToDo
+     * @return gli username, in ordine, oppure {@link ErroreServizio#NON_AUTORIZZATO} se l'utente non è il proprietario
+     */
+    public Risultato<List<String>> possibiliDestinatari(Sessione sessione, int idToDo) {
+        return protetto("Errore nel recupero degli utenti.", () -> {
+            if (!isProprietario(sessione, idToDo)) {
+                return Risultato.errore(ErroreServizio.NON_AUTORIZZATO, NON_PROPRIETARIO);
+            }
+            List<String> giaCondivisi = condivisioneDAO.getUtentiCondivisi(idToDo);
+            List<String> destinatari = new ArrayList<>(utenteDAO.elencaUsername());
+            destinatari.removeIf(u -> u.equals(sessione.getUsername()) || giaCondivisi.contains(u));
+            return Risultato.ok(destinatari);
+        });
+    }
+
+    /**
+     * Restituisce gli utenti con cui è condiviso un ToDo visibile all'utente.
+     *
+     * @param sessione sessione dell'utente
+     * @param idToDo ID del ToDo
+     * @return gli username dei destinatari, oppure {@link ErroreServizio#NON_TROVATO} se il ToDo non è visibile
+     */
+    public Risultato<List<String>> utentiCondivisi(Sessione sessione, int idToDo) {
+        return protetto("Errore nel recupero degli utenti.", () -> {
+            ToDo todo = toDoDAO.trovaPerId(idToDo);
+            if (todo == null || !puoVedere(sessione, todo)) {
+                return Risultato.errore(ErroreServizio.NON_TROVATO, "Il ToDo è stato eliminato.");
+            }
+            return Risultato.ok(condivisioneDAO.getUtentiCondivisi(idToDo));
+        });
+    }
+
+    /**
+     * Revoca la condivisione di un ToDo dell'utente per i destinatari indicati, in un'unica operazione.
+     *
+     * @param sessione sessione del proprietario
+     * @param idToDo ID del ToDo
+     * @param destinatari username dei destinatari da rimuovere
+     * @return risultato vuoto, oppure un errore se l'utente non è il proprietario o la revoca non è riuscita
+     */
+    public Risultato<Void> rimuoviCondivisioni(Sessione sessione, int idToDo, List<String> destinatari) {
+        List<String> daRimuovere = List.copyOf(destinatari);
+        return protetto("Errore durante la rimozione della condivisione.", () -> {
+            if (!isProprietario(sessione, idToDo)) {
+                return Risultato.errore(ErroreServizio.NON_AUTORIZZATO, NON_PROPRIETARIO);
+            }
+            return condivisioneDAO.rimuoviCondivisioni(idToDo, daRimuovere)
+                    ? Risultato.ok()
+                    : Risultato.errore(ErroreServizio.DATABASE, "Errore durante la rimozione della condivisione.");
+        });
+    }
+
+    /**
+     * Rimuove dall'utente della sessione un ToDo condiviso con lui singolarmente.
+     *
+     * @param sessione sessione del destinatario
+     * @param idToDo ID del ToDo
+     * @return risultato vuoto, oppure un errore se la rimozione non è riuscita
+     */
+    public Risultato<Void> lasciaToDoCondiviso(Sessione sessione, int idToDo) {
+        return protetto("Errore durante l'eliminazione dal database.", () -> condivisioneDAO.rimuoviCondivisione(sessione.getUsername(), idToDo)
+                ? Risultato.ok()
+                : Risultato.errore(ErroreServizio.DATABASE, "Errore durante l'eliminazione dal database."));
+    }
+
+    /**
+     * Rimuove dall'utente della sessione un'intera bacheca condivisa con lui.
+     *
+     * @param sessione sessione del destinatario
+     * @param proprietario proprietario della bacheca
+     * @param tipo tipo della bacheca
+     * @return risultato vuoto, oppure un errore se la rimozione non è riuscita
+     */
+    public Risultato<Void> lasciaBachecaCondivisa(Sessione sessione, String proprietario, TipoBacheca tipo) {
+        List<String> destinatario = List.of(sessione.getUsername());
+        return protetto("Errore durante la rimozione della condivisione.",
+                () -> condivisioneDAO.rimuoviCondivisioniBacheca(proprietario, tipo, destinatario)
+                        ? Risultato.ok()
+                        : Risultato.errore(ErroreServizio.DATABASE, "Errore durante la rimozione della condivisione."));
+    }
+
+    /**
+     * Restituisce gli altri utenti registrati e quelli che hanno già la condivisione di una
+     * bacheca dell'utente, per scegliere a chi condividerla.
+     *
+     * @param sessione sessione del proprietario
+     * @param tipo tipo della bacheca
+     * @return gli altri utenti, in ordine, e i destinatari attuali
+     */
+    public Risultato<DestinatariBacheca> destinatariBacheca(Sessione sessione, TipoBacheca tipo) {
+        return protetto("Errore nel recupero degli utenti.", () -> {
+            List<String> utenti = new ArrayList<>(utenteDAO.elencaUsername());
+            utenti.remove(sessione.getUsername());
+            List<String> condivisi = condivisioneDAO.getUtentiCondivisiBacheca(sessione.getUsername(), tipo);
+            return Risultato.ok(new DestinatariBacheca(utenti, condivisi));
+        });
+    }
+
+    /**
+     * Aggiorna la condivisione di una bacheca dell'utente: revoca quella dei destinatari
+     * indicati e la richiede per i nuovi, in un'unica transazione.
+     *
+     * @param sessione sessione del proprietario
+     * @param tipo tipo della bacheca
+     * @param nuovi destinatari a cui richiedere la condivisione
+     * @param revocati destinatari a cui revocarla
+     * @return l'esito per ciascun nuovo destinatario
+     */
+    public Risultato<Map<String, EsitoCondivisione>> aggiornaCondivisioneBacheca(Sessione sessione, TipoBacheca tipo,
+                                                                                 List<String> nuovi, List<String> revocati) {
+        List<String> daAggiungere = List.copyOf(nuovi);
+        List<String> daRevocare = List.copyOf(revocati);
+        String proprietario = sessione.getUsername();
+        return protetto("Errore durante l'aggiornamento della condivisione.", () -> {
+            Map<String, EsitoCondivisione> esiti = condivisioneDAO.aggiornaCondivisioniBacheca(proprietario, tipo,
+                    daAggiungere, daRevocare);
+            return esiti != null
+                    ? Risultato.ok(esiti)
+                    : Risultato.errore(ErroreServizio.DATABASE, "Errore durante l'aggiornamento della condivisione.");
+        });
+    }
+
+    /**
+     * Gli utenti tra cui scegliere i destinatari di una bacheca.
+     *
+     * @param utenti gli altri utenti registrati
+     * @param condivisi gli utenti che hanno già la condivisione della bacheca
+     */
+    public record DestinatariBacheca(List<String> utenti, List<String> condivisi) {
+    }
+
+    // Richieste di condivisione
+
+    /**
+     * Restituisce le richieste di condivisione in attesa per l'utente: prima quelle di intere
+     * bacheche, poi quelle dei singoli ToDo.
+     *
+     * @param sessione sessione del destinatario
+     * @return le richieste pendenti
+     */
+    public Risultato<List<RichiestaCondivisione>> richiestePendenti(Sessione sessione) {
+        String username = sessione.getUsername();
+        return protetto("Errore nel recupero delle richieste.", () -> {
+            List<RichiestaCondivisione> richieste = new ArrayList<>();
+            for (String[] r : condivisioneDAO.getRichiesteBachechePendentiPerUtente(username)) {
+                richieste.add(RichiestaCondivisione.diBacheca(r[0], TipoBacheca.valueOf(r[1])));
+            }
+            for (String[] r : condivisioneDAO.getRichiestePendentiPerUtente(username)) {
+                richieste.add(new RichiestaCondivisione(r[0], TipoBacheca.valueOf(r[1]), r[2], Integer.valueOf(r[3])));
+            }
+            return Risultato.ok(richieste);
+        });
+    }
+
+    /**
+     * Accetta o rifiuta la richiesta di condivisione di un ToDo.
+     *
+     * @param sessione sessione del destinatario
+     * @param idToDo ID del ToDo condiviso
+     * @param accetta true per accettare, false per rifiutare
+     * @return risultato vuoto, oppure un errore se la risposta non è stata registrata
+     */
+    public Risultato<Void> rispondiRichiesta(Sessione sessione, int idToDo, boolean accetta) {
+        String stato = accetta ? "ACCEPTED" : "REJECTED";
+        return protetto("Errore nell'aggiornamento della richiesta.",
+                () -> condivisioneDAO.aggiornaStatoRichiesta(sessione.getUsername(), idToDo, stato)
+                        ? Risultato.ok()
+                        : Risultato.errore(ErroreServizio.NON_TROVATO, "Errore nell'aggiornamento della richiesta."));
+    }
+
+    /**
+     * Accetta o rifiuta la richiesta di condivisione di un'intera bacheca.
+     *
+     * @param sessione sessione del destinatario
+     * @param proprietario proprietario della bacheca
+     * @param tipo tipo della bacheca
+     * @param accetta true per accettare, false per rifiutare
+     * @return risultato vuoto, oppure un errore se la risposta non è stata registrata
+     */
+    public Risultato<Void> rispondiRichiestaBacheca(Sessione sessione, String proprietario, TipoBacheca tipo, boolean accetta) {
+        String stato = accetta ? "ACCEPTED" : "REJECTED";
+        return protetto("Errore nell'aggiornamento della richiesta.",
+                () -> condivisioneDAO.aggiornaStatoRichiestaBacheca(sessione.getUsername(), proprietario, tipo, stato)
+                        ? Risultato.ok()
+                        : Risultato.errore(ErroreServizio.NON_TROVATO, "Errore nell'aggiornamento della richiesta."));
+    }
+
+    // Supporto
+
+    /**
+     * Riporta a "non completato" i ToDo scaduti e completati di un utente appena caricato, anche
+     * nelle bacheche già in memoria, e ne legge i ToDo scaduti da segnalare. Il ripristino è un
+     * solo UPDATE e viene saltato se {@link ManutenzioneScadenze} lo ha già eseguito per oggi.
+     * Infine applica ai ToDo caricati gli aggiornamenti ancora in coda.
+     *
+     * @param utente utente caricato con bacheche e ToDo
+     * @param oggi data di riferimento per le scadenze
+     * @param cursore cursore di sincronizzazione letto prima del caricamento
+     * @return l'utente con la sua sessione e i suoi ToDo scaduti
+     */
+    private UtenteCaricato prepara(Utente utente, LocalDate oggi, long cursore) {
+        if (!ManutenzioneScadenze.isEseguitaPer(oggi)) {
+            toDoDAO.ripristinaScaduti(utente.getUsername(), oggi).forEach((id, versione) -> {
+                for (Bacheca b : utente.getBacheche()) {
+                    ToDo inMemoria = b.getToDo(id);
+                    if (inMemoria != null) {
+                        inMemoria.setStato(StatoToDo.NON_COMPLETATO);
+                        inMemoria.setVersione(versione);
+                        inMemoria.segnaSalvati(EnumSet.of(CampoToDo.STATO));
+                    }
+                }
+            });
+        }
+        for (Bacheca b : utente.getBacheche()) {
+            conAggiornamentiInCoda(b.getToDoList());
+        }
+        conAggiornamentiInCoda(utente.getToDoCondivisi());
+        return new UtenteCaricato(new Sessione(utente.getUsername()), utente,
+                toDoDAO.trovaScaduti(utente.getUsername(), oggi), cursore);
+    }
+
+    /**
+     * Rilegge un vicino per un inserimento o uno spostamento e controlla che sia un ToDo
+     * dell'utente nella bacheca indicata.
+     *
+     * @return il vicino, null se l'ID è null, oppure un errore se il vicino non è valido
+     */
+    private Risultato<ToDo> vicino(Sessione sessione, TipoBacheca tipo, Integer id) {
+        if (id == null) {
+            return Risultato.ok(null);
+        }
+        ToDo vicino = toDoDAO.trovaPerId(id);
+        if (vicino == null || !sessione.getUsername().equals(vicino.getProprietario()) || vicino.getTipoBacheca() != tipo) {
+            return Risultato.errore(ErroreServizio.DATI_NON_VALIDI, "Il ToDo vicino non appartiene alla stessa bacheca.");
+        }
+        return Risultato.ok(vicino);
+    }
+
+    /**
+     * Indica se l'utente della sessione è il proprietario del ToDo o lo ha ricevuto in condivisione.
+     */
+    private boolean puoVedere(Sessione sessione, ToDo todo) {
+        return sessione.getUsername().equals(todo.getProprietario())
+                || toDoDAO.isCondivisoCon(todo.getId(), sessione.getUsername());
+    }
+
+    /**
+     * Indica se l'utente della sessione può vedere il ToDo con l'ID indicato, riletto dal database.
+     */
+    private boolean puoVedere(Sessione sessione, int idToDo) {
+        ToDo todo = toDoDAO.trovaPerId(idToDo);
+        return todo != null && puoVedere(sessione, todo);
+    }
+
+    /**
+     * Indica se l'utente della sessione è il proprietario del ToDo con l'ID indicato.
+     */
+    private boolean isProprietario(Sessione sessione, int idToDo) {
+        ToDo todo = toDoDAO.trovaPerId(idToDo);
+        return todo != null && sessione.getUsername().equals(todo.getProprietario());
+    }
+
+    /**
+     * Applica ai ToDo appena letti gli aggiornamenti ancora in coda, così chi legge vede le proprie
+     * modifiche senza attendere la scrittura, che resta differita per tutte le sessioni.
+     */
+    private List<ToDo> conAggiornamentiInCoda(List<ToDo> letti) {
+        letti.forEach(codaAggiornamenti::sovrapponi);
+        return letti;
+    }
+
+    /**
+     * Genera la miniatura di un'immagine appena scelta, prima del salvataggio.
+     * Non fa nulla se l'immagine non è stata modificata.
+     */
+    private static void preparaMiniatura(ToDo todo) {
+        if (todo.isImmagineCaricata()) {
+            todo.setMiniatura(todo.haImmagine() ? GeneratoreMiniature.genera(todo.getImmagine()) : null);
+        }
+    }
+
+    /**
+     * DAO con cache dell'applicazione, creati al primo uso. La cache dei ToDo viene invalidata
+     * anche dalle notifiche del database, così vede le modifiche fatte da altri processi.
+     */
+    private static final class DaoConCache {
+
+        static final ToDoDAOConCache TODO = new ToDoDAOConCache(new ToDoDAO());
+        static final UtenteDAOConCache UTENTE = new UtenteDAOConCache(new UtenteDAO());
+        static final BachecaDAOConCache BACHECA = new BachecaDAOConCache(new BachecaDAO());
+
+        static {
+            NotificheModifiche.iscriviTutte(TODO::invalida);
+        }
+
+        private DaoConCache() {
+        }
+    }
+
+    /**
+     * Esegue un'operazione trasformando un'eccezione imprevista in un errore del database,
+     * così il chiamante riceve sempre un {@link Risultato}.
+     */
+    private static <T> Risultato<T> protetto(String messaggio, Supplier<Risultato<T>> operazione) {
+        try {
+            return operazione.get();
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            return Risultato.errore(ErroreServizio.DATABASE, messaggio);
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package service;
+
+import model.ToDo;
+import model.Utente;
+
+import java.util.List;
+
+/**
+ * Utente caricato con bacheche e ToDo, insieme alla sua sessione e ai suoi ToDo scaduti.
+ * Il cursore, letto prima del caricamento, serve a chiedere in seguito solo le modifiche successive.
+ *
+ * @param sessione sessione dell'utente
+ * @param utente utente con bacheche e ToDo condivisi
+ * @param scaduti ToDo di proprietà dell'utente con scadenza oggi o già passata
+ * @param cursore cursore di sincronizzazione per {@link ToDoService#modificheDa(Sessione, long)}
+ */
+public record UtenteCaricato(Sessione sessione, Utente utente, List<ToDo> scaduti, long cursore) {
+}
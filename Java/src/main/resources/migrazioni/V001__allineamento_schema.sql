@@ -0,0 +1,56 @@
+-- Porta i database creati dai dump precedenti allo stato di SQL/schema.sql:
+-- miniature dei ToDo, condivisione di intere bacheche e inserimento in testa senza spostamenti.
+-- Ogni istruzione è idempotente, quindi lo script non cambia nulla su un database appena creato dal dump.
+
+ALTER TABLE public.todo ADD COLUMN IF NOT EXISTS miniatura bytea;
+
+CREATE TABLE IF NOT EXISTS public.condivisione_bacheca (
+    username_utente character varying(100) NOT NULL,
+    proprietario character varying(100) NOT NULL,
+    tipo_bacheca character varying(30) NOT NULL,
+    stato character varying(20) DEFAULT 'PENDING'::character varying NOT NULL,
+    CONSTRAINT condivisione_bacheca_stato_check CHECK (((stato)::text = ANY ((ARRAY['PENDING'::character varying, 'ACCEPTED'::character varying])::text[]))),
+    CONSTRAINT condivisione_bacheca_pkey PRIMARY KEY (username_utente, proprietario, tipo_bacheca),
+    CONSTRAINT condivisione_bacheca_bacheca_fkey FOREIGN KEY (proprietario, tipo_bacheca) REFERENCES public.bacheca(proprietario, tipo) ON DELETE CASCADE,
+    CONSTRAINT condivisione_bacheca_username_utente_fkey FOREIGN KEY (username_utente) REFERENCES public.utente(username) ON DELETE CASCADE
+);
+
+CREATE INDEX IF NOT EXISTS condivisione_bacheca_bacheca_idx ON public.condivisione_bacheca USING btree (proprietario, tipo_bacheca);
+
+CREATE OR REPLACE FUNCTION public.salva_todo(p_titolo text, p_descrizione text, p_data_scadenza text, p_colore text, p_url text, p_immagine bytea, p_proprietario text, p_tipo_bacheca text) RETURNS integer
+    LANGUAGE plpgsql
+    AS $$
+DECLARE
+    new_id INTEGER;
+    colore_finale text;
+BEGIN
+    -- Colore default a 'FFFFFF' (senza cancelletto)
+    colore_finale := COALESCE(p_colore, 'FFFFFF');
+
+    -- Inserimento in testa: posizione minima meno l'intervallo, senza spostare gli altri ToDo
+    INSERT INTO todo (
+        titolo, descrizione, data_scadenza, colore, stato,
+        url, immagine, posizione, proprietario, tipo_bacheca
+    )
+    SELECT
+        p_titolo, p_descrizione, p_data_scadenza, colore_finale, 'NON_COMPLETATO',
+        p_url, p_immagine, COALESCE(MIN(t.posizione) - 1024, 0), p_proprietario, p_tipo_bacheca
+    FROM todo t
+    WHERE t.proprietario = p_proprietario AND t.tipo_bacheca = p_tipo_bacheca
+    RETURNING id INTO new_id;
+
+    RETURN new_id;
+END;
+$$;
+
+CREATE OR REPLACE FUNCTION public.trova_todo_per_bacheca(p_proprietario text, p_tipo_bacheca text) RETURNS TABLE(id integer, titolo text, descrizione text, data_scadenza text, colore text, stato text, url text, immagine bytea, posizione integer)
+    LANGUAGE plpgsql
+    AS $$
+BEGIN
+    RETURN QUERY
+    SELECT id, titolo, descrizione, data_scadenza, colore, stato, url, immagine, posizione
+    FROM todo
+    WHERE proprietario = p_proprietario AND tipo_bacheca = p_tipo_bacheca
+    ORDER BY posizione ASC, id DESC;
+END;
+$$;
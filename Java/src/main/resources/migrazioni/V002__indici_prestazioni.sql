@@ -0,0 +1,10 @@
+-- Indici per le query più frequenti, che finora scorrevano le tabelle per intero.
+
+-- Caricamento di una bacheca in ordine di posizione (trovaPerBacheca, trova_todo_per_bacheca)
+CREATE INDEX IF NOT EXISTS todo_proprietario_tipo_bacheca_posizione_idx ON public.todo USING btree (proprietario, tipo_bacheca, posizione);
+
+-- Condivisioni di un ToDo: eliminazione delle condivisioni collegate, ON DELETE CASCADE, elenco dei destinatari
+CREATE INDEX IF NOT EXISTS condivisione_id_todo_idx ON public.condivisione USING btree (id_todo);
+
+-- Richieste in attesa e ToDo accettati di un utente
+CREATE INDEX IF NOT EXISTS condivisione_username_utente_stato_idx ON public.condivisione USING btree (username_utente, stato);
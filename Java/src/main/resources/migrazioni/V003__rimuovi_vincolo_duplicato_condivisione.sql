@@ -0,0 +1,4 @@
+-- La tabella condivisione ha due CHECK identici sullo stato: check_stato_condivisione e
+-- condivisione_stato_check. Si mantiene il secondo, con il nome generato da PostgreSQL
+-- come per gli altri vincoli, così ogni scrittura viene verificata una sola volta.
+ALTER TABLE public.condivisione DROP CONSTRAINT IF EXISTS check_stato_condivisione;
@@ -0,0 +1,130 @@
+-- Le scadenze diventano di tipo date: il confronto con la data corrente non richiede più
+-- la conversione di ogni riga e può usare un indice. I valori vuoti, non nel formato
+-- AAAA-MM-GG o con una data inesistente (ad esempio 2025-02-30, inseriti come testo libero
+-- dalle versioni precedenti) diventano NULL, cioè ToDo senza scadenza.
+
+-- La vista dipende dalla colonna e impedirebbe il cambio di tipo
+DROP VIEW IF EXISTS public.vista_todo_senza_immagine;
+
+-- Conversione che non interrompe la migrazione: una data non valida diventa NULL
+CREATE FUNCTION pg_temp.data_o_null(p_testo text) RETURNS date
+    LANGUAGE plpgsql
+    AS $$
+BEGIN
+    IF p_testo !~ '^\d{4}-\d{2}-\d{2}$' THEN
+        RETURN NULL;
+    END IF;
+    RETURN p_testo::date;
+EXCEPTION
+    WHEN invalid_datetime_format OR datetime_field_overflow THEN
+        RETURN NULL;
+END;
+$$;
+
+DO $$
+BEGIN
+    IF (SELECT data_type FROM information_schema.columns
+        WHERE table_schema = 'public' AND table_name = 'todo' AND column_name = 'data_scadenza') <> 'date' THEN
+        ALTER TABLE public.todo ALTER COLUMN data_scadenza TYPE date
+            USING pg_temp.data_o_null(data_scadenza);
+    END IF;
+END;
+$$;
+
+DROP FUNCTION pg_temp.data_o_null(text);
+
+CREATE VIEW public.vista_todo_senza_immagine AS
+ SELECT id,
+    titolo,
+    descrizione,
+    data_scadenza,
+    colore,
+    stato,
+    url,
+    posizione,
+    proprietario,
+    tipo_bacheca
+   FROM public.todo;
+
+-- ToDo scaduti di un utente: intervallo sulla scadenza all'interno dei ToDo del proprietario
+CREATE INDEX IF NOT EXISTS todo_proprietario_data_scadenza_idx ON public.todo USING btree (proprietario, data_scadenza);
+
+-- Le funzioni mantengono i parametri testuali e convertono la scadenza esplicitamente
+CREATE OR REPLACE FUNCTION public.aggiorna_todo(p_id integer, p_titolo text, p_descrizione text, p_data_scadenza text, p_colore text, p_stato text, p_url text, p_immagine bytea) RETURNS boolean
+    LANGUAGE plpgsql
+    AS $$
+BEGIN
+  UPDATE todo
+  SET titolo = p_titolo,
+      descrizione = p_descrizione,
+      data_scadenza = NULLIF(p_data_scadenza, '')::date,
+      colore = p_colore,
+      stato = p_stato,
+      url = p_url,
+      immagine = p_immagine
+  WHERE id = p_id;
+
+  RETURN FOUND;
+END;
+$$;
+
+CREATE OR REPLACE FUNCTION public.get_todo_scaduti(p_username text) RETURNS TABLE(id integer, titolo text, descrizione text, data_scadenza text, colore text, stato text, url text, posizione integer, proprietario text, tipo_bacheca text)
+    LANGUAGE plpgsql
+    AS $$
+BEGIN
+  RETURN QUERY
+  SELECT
+    v.id,
+    v.titolo::text,
+    v.descrizione::text,
+    v.data_scadenza::text,
+    v.colore::text,
+    v.stato::text,
+    v.url::text,
+    v.posizione,
+    v.proprietario::text,
+    v.tipo_bacheca::text
+  FROM vista_todo_senza_immagine v
+  WHERE v.data_scadenza < CURRENT_DATE
+    AND v.stato != 'COMPLETATO'
+    AND v.proprietario = p_username;
+END;
+$$;
+
+CREATE OR REPLACE FUNCTION public.salva_todo(p_titolo text, p_descrizione text, p_data_scadenza text, p_colore text, p_url text, p_immagine bytea, p_proprietario text, p_tipo_bacheca text) RETURNS integer
+    LANGUAGE plpgsql
+    AS $$
+DECLARE
+    new_id INTEGER;
+    colore_finale text;
+BEGIN
+    -- Colore default a 'FFFFFF' (senza cancelletto)
+    colore_finale := COALESCE(p_colore, 'FFFFFF');
+
+    -- Inserimento in testa: posizione minima meno l'intervallo, senza spostare gli altri ToDo
+    INSERT INTO todo (
+        titolo, descrizione, data_scadenza, colore, stato,
+        url, immagine, posizione, proprietario, tipo_bacheca
+    )
+    SELECT
+        p_titolo, p_descrizione, NULLIF(p_data_scadenza, '')::date, colore_finale, 'NON_COMPLETATO',
+        p_url, p_immagine, COALESCE(MIN(t.posizione) - 1024, 0), p_proprietario, p_tipo_bacheca
+    FROM todo t
+    WHERE t.proprietario = p_proprietario AND t.tipo_bacheca = p_tipo_bacheca
+    RETURNING id INTO new_id;
+
+    RETURN new_id;
+END;
+$$;
+
+CREATE OR REPLACE FUNCTION public.trova_todo_per_bacheca(p_proprietario text, p_tipo_bacheca text) RETURNS TABLE(id integer, titolo text, descrizione text, data_scadenza text, colore text, stato text, url text, immagine bytea, posizione integer)
+    LANGUAGE plpgsql
+    AS $$
+BEGIN
+    RETURN QUERY
+    SELECT t.id, t.titolo::text, t.descrizione::text, t.data_scadenza::text, t.colore::text, t.stato::text, t.url::text, t.immagine, t.posizione
+    FROM todo t
+    WHERE t.proprietario = p_proprietario AND t.tipo_bacheca = p_tipo_bacheca
+    ORDER BY t.posizione ASC, t.id DESC;
+END;
+$$;
@@ -0,0 +1,19 @@
+-- Versione di riga per il controllo ottimistico della concorrenza: ogni modifica del contenuto
+-- di un ToDo incrementa la versione, e l'applicazione aggiorna solo se la versione letta
+-- è ancora quella attuale. Lo spostamento e la miniatura non sono modifiche del contenuto
+-- e non cambiano la versione, così il riordino non genera falsi conflitti.
+
+ALTER TABLE public.todo ADD COLUMN IF NOT EXISTS versione integer DEFAULT 1 NOT NULL;
+
+CREATE OR REPLACE FUNCTION public.incrementa_versione_todo() RETURNS trigger
+    LANGUAGE plpgsql
+    AS $$
+BEGIN
+    NEW.versione := OLD.versione + 1;
+    RETURN NEW;
+END;
+$$;
+
+DROP TRIGGER IF EXISTS trg_versione_todo ON public.todo;
+
+CREATE TRIGGER trg_versione_todo BEFORE UPDATE OF titolo, descrizione, data_scadenza, colore, stato, url, immagine ON public.todo FOR EACH ROW EXECUTE FUNCTION public.incrementa_versione_todo();
@@ -0,0 +1,129 @@
+-- Sincronizzazione incrementale: ogni riga di todo, condivisione e condivisione_bacheca porta
+-- il numero della transazione che l'ha scritta per ultima, e le righe che un utente non vede
+-- più lasciano una traccia in todo_rimosso. Un client che conosce il proprio cursore legge
+-- solo le righe scritte dopo, invece di ricaricare le bacheche intere.
+--
+-- Il cursore è l'xmin dello snapshot della lettura: tutte le transazioni con numero minore
+-- sono concluse e già visibili. A differenza di una sequenza, assegnata prima del commit,
+-- non si perdono le scritture di transazioni che terminano in ordine diverso da quello in
+-- cui sono iniziate; al più una riga viene restituita due volte.
+
+CREATE OR REPLACE FUNCTION public.transazione_corrente() RETURNS bigint
+    LANGUAGE sql
+    AS $$
+SELECT pg_current_xact_id()::text::bigint;
+$$;
+
+CREATE OR REPLACE FUNCTION public.segna_modifica() RETURNS trigger
+    LANGUAGE plpgsql
+    AS $$
+BEGIN
+    NEW.modifica := public.transazione_corrente();
+    RETURN NEW;
+END;
+$$;
+
+-- ToDo: creazione e ultima modifica. La miniatura e la versione non sono dati mostrati dal client.
+
+ALTER TABLE public.todo ADD COLUMN IF NOT EXISTS creazione bigint DEFAULT public.transazione_corrente() NOT NULL;
+ALTER TABLE public.todo ADD COLUMN IF NOT EXISTS modifica bigint DEFAULT public.transazione_corrente() NOT NULL;
+
+DROP TRIGGER IF EXISTS trg_modifica_todo ON public.todo;
+
+CREATE TRIGGER trg_modifica_todo BEFORE UPDATE OF titolo, descrizione, data_scadenza, colore, stato, url, immagine, posizione, proprietario, tipo_bacheca ON public.todo FOR EACH ROW EXECUTE FUNCTION public.segna_modifica();
+
+-- Letture delle modifiche di un utente e dei ToDo delle bacheche condivise con lui
+CREATE INDEX IF NOT EXISTS todo_proprietario_modifica_idx ON public.todo USING btree (proprietario, modifica);
+
+-- Condivisioni: la modifica rende visibile il ToDo, o la bacheca, quando la richiesta viene accettata
+
+ALTER TABLE public.condivisione ADD COLUMN IF NOT EXISTS modifica bigint DEFAULT public.transazione_corrente() NOT NULL;
+ALTER TABLE public.condivisione_bacheca ADD COLUMN IF NOT EXISTS modifica bigint DEFAULT public.transazione_corrente() NOT NULL;
+
+DROP TRIGGER IF EXISTS trg_modifica_condivisione ON public.condivisione;
+DROP TRIGGER IF EXISTS trg_modifica_condivisione_bacheca ON public.condivisione_bacheca;
+
+CREATE TRIGGER trg_modifica_condivisione BEFORE UPDATE ON public.condivisione FOR EACH ROW EXECUTE FUNCTION public.segna_modifica();
+CREATE TRIGGER trg_modifica_condivisione_bacheca BEFORE UPDATE ON public.condivisione_bacheca FOR EACH ROW EXECUTE FUNCTION public.segna_modifica();
+
+-- ToDo non più visibili a un utente: eliminati, oppure non più condivisi con lui
+
+CREATE TABLE IF NOT EXISTS public.todo_rimosso (
+    username_utente character varying(100) NOT NULL,
+    id_todo integer NOT NULL,
+    modifica bigint DEFAULT public.transazione_corrente() NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS todo_rimosso_username_utente_modifica_idx ON public.todo_rimosso USING btree (username_utente, modifica);
+
+-- Un ToDo eliminato sparisce per il proprietario e per chi ne vede l'intera bacheca;
+-- chi lo ha ricevuto singolarmente perde la condivisione, eliminata in cascata.
+CREATE OR REPLACE FUNCTION public.registra_todo_rimosso() RETURNS trigger
+    LANGUAGE plpgsql
+    AS $$
+BEGIN
+    INSERT INTO public.todo_rimosso (username_utente, id_todo) VALUES (OLD.proprietario, OLD.id);
+    INSERT INTO public.todo_rimosso (username_utente, id_todo)
+    SELECT cb.username_utente, OLD.id
+    FROM public.condivisione_bacheca cb
+    WHERE cb.proprietario = OLD.proprietario AND cb.tipo_bacheca = OLD.tipo_bacheca AND cb.stato = 'ACCEPTED';
+    RETURN OLD;
+END;
+$$;
+
+-- Una condivisione accettata che viene rimossa nasconde il ToDo, a meno che il destinatario
+-- non lo veda ancora tramite l'intera bacheca o non sia stato eliminato anche lui.
+CREATE OR REPLACE FUNCTION public.registra_condivisione_rimossa() RETURNS trigger
+    LANGUAGE plpgsql
+    AS $$
+BEGIN
+    IF OLD.stato = 'ACCEPTED'
+            AND EXISTS (SELECT 1 FROM public.utente u WHERE u.username = OLD.username_utente)
+            AND NOT EXISTS (
+                SELECT 1
+                FROM public.todo t
+                JOIN public.condivisione_bacheca cb ON cb.proprietario = t.proprietario AND cb.tipo_bacheca = t.tipo_bacheca
+                WHERE t.id = OLD.id_todo AND cb.username_utente = OLD.username_utente AND cb.stato = 'ACCEPTED') THEN
+        INSERT INTO public.todo_rimosso (username_utente, id_todo) VALUES (OLD.username_utente, OLD.id_todo);
+    END IF;
+    RETURN OLD;
+END;
+$$;
+
+-- Una bacheca non più condivisa nasconde i suoi ToDo, tranne quelli condivisi anche singolarmente.
+CREATE OR REPLACE FUNCTION public.registra_condivisione_bacheca_rimossa() RETURNS trigger
+    LANGUAGE plpgsql
+    AS $$
+BEGIN
+    IF OLD.stato = 'ACCEPTED' AND EXISTS (SELECT 1 FROM public.utente u WHERE u.username = OLD.username_utente) THEN
+        INSERT INTO public.todo_rimosso (username_utente, id_todo)
+        SELECT OLD.username_utente, t.id
+        FROM public.todo t
+        WHERE t.proprietario = OLD.proprietario AND t.tipo_bacheca = OLD.tipo_bacheca
+          AND NOT EXISTS (
+              SELECT 1 FROM public.condivisione c
+              WHERE c.id_todo = t.id AND c.username_utente = OLD.username_utente AND c.stato = 'ACCEPTED');
+    END IF;
+    RETURN OLD;
+END;
+$$;
+
+-- Le tracce di un utente eliminato non servono più a nessuno
+CREATE OR REPLACE FUNCTION public.elimina_rimossi_utente() RETURNS trigger
+    LANGUAGE plpgsql
+    AS $$
+BEGIN
+    DELETE FROM public.todo_rimosso WHERE username_utente = OLD.username;
+    RETURN OLD;
+END;
+$$;
+
+DROP TRIGGER IF EXISTS trg_todo_rimosso ON public.todo;
+DROP TRIGGER IF EXISTS trg_condivisione_rimossa ON public.condivisione;
+DROP TRIGGER IF EXISTS trg_condivisione_bacheca_rimossa ON public.condivisione_bacheca;
+DROP TRIGGER IF EXISTS trg_rimossi_utente ON public.utente;
+
+CREATE TRIGGER trg_todo_rimosso AFTER DELETE ON public.todo FOR EACH ROW EXECUTE FUNCTION public.registra_todo_rimosso();
+CREATE TRIGGER trg_condivisione_rimossa AFTER DELETE ON public.condivisione FOR EACH ROW EXECUTE FUNCTION public.registra_condivisione_rimossa();
+CREATE TRIGGER trg_condivisione_bacheca_rimossa AFTER DELETE ON public.condivisione_bacheca FOR EACH ROW EXECUTE FUNCTION public.registra_condivisione_bacheca_rimossa();
+CREATE TRIGGER trg_rimossi_utente AFTER DELETE ON public.utente FOR EACH ROW EXECUTE FUNCTION public.elimina_rimossi_utente();
@@ -0,0 +1,78 @@
+-- Notifiche delle modifiche: ogni scrittura che cambia i ToDo visibili a un utente invia sul
+-- canale modifiche_todo una notifica "<id_todo> <username>" per ogni utente interessato.
+-- Le notifiche partono solo al commit e quelle identiche della stessa transazione vengono
+-- unite dal server, quindi un aggiornamento di molti ToDo ne produce una per ToDo e utente.
+
+-- ToDo creato, modificato o eliminato: lo vedono il proprietario, chi lo ha ricevuto
+-- singolarmente e chi vede l'intera bacheca.
+CREATE OR REPLACE FUNCTION public.notifica_modifica_todo() RETURNS trigger
+    LANGUAGE plpgsql
+    AS $$
+DECLARE
+    riga record;
+BEGIN
+    IF TG_OP = 'DELETE' THEN
+        riga := OLD;
+    ELSE
+        riga := NEW;
+    END IF;
+    PERFORM pg_notify('modifiche_todo', riga.id || ' ' || d.username_utente)
+    FROM (
+        SELECT riga.proprietario AS username_utente
+        UNION
+        SELECT c.username_utente
+        FROM public.condivisione c
+        WHERE c.id_todo = riga.id AND c.stato = 'ACCEPTED'
+        UNION
+        SELECT cb.username_utente
+        FROM public.condivisione_bacheca cb
+        WHERE cb.proprietario = riga.proprietario AND cb.tipo_bacheca = riga.tipo_bacheca AND cb.stato = 'ACCEPTED'
+    ) d;
+    RETURN NULL;
+END;
+$$;
+
+-- Condivisione di un ToDo accettata o rimossa dopo essere stata accettata.
+-- Le richieste in attesa o rifiutate non cambiano i ToDo visibili.
+CREATE OR REPLACE FUNCTION public.notifica_modifica_condivisione() RETURNS trigger
+    LANGUAGE plpgsql
+    AS $$
+BEGIN
+    IF TG_OP <> 'DELETE' AND NEW.stato = 'ACCEPTED' THEN
+        PERFORM pg_notify('modifiche_todo', NEW.id_todo || ' ' || NEW.username_utente);
+    ELSIF TG_OP <> 'INSERT' AND OLD.stato = 'ACCEPTED' THEN
+        PERFORM pg_notify('modifiche_todo', OLD.id_todo || ' ' || OLD.username_utente);
+    END IF;
+    RETURN NULL;
+END;
+$$;
+
+-- Condivisione di un'intera bacheca accettata o rimossa: cambiano tutti i suoi ToDo.
+CREATE OR REPLACE FUNCTION public.notifica_modifica_condivisione_bacheca() RETURNS trigger
+    LANGUAGE plpgsql
+    AS $$
+DECLARE
+    riga record;
+BEGIN
+    IF TG_OP <> 'DELETE' AND NEW.stato = 'ACCEPTED' THEN
+        riga := NEW;
+    ELSIF TG_OP <> 'INSERT' AND OLD.stato = 'ACCEPTED' THEN
+        riga := OLD;
+    ELSE
+        RETURN NULL;
+    END IF;
+    PERFORM pg_notify('modifiche_todo', t.id || ' ' || riga.username_utente)
+    FROM public.todo t
+    WHERE t.proprietario = riga.proprietario AND t.tipo_bacheca = riga.tipo_bacheca;
+    RETURN NULL;
+END;
+$$;
+
+DROP TRIGGER IF EXISTS trg_notifica_todo ON public.todo;
+DROP TRIGGER IF EXISTS trg_notifica_condivisione ON public.condivisione;
+DROP TRIGGER IF EXISTS trg_notifica_condivisione_bacheca ON public.condivisione_bacheca;
+
+-- Stesse colonne di trg_modifica_todo: miniatura e versione non sono dati mostrati dal client
+CREATE TRIGGER trg_notifica_todo AFTER INSERT OR DELETE OR UPDATE OF titolo, descrizione, data_scadenza, colore, stato, url, immagine, posizione, proprietario, tipo_bacheca ON public.todo FOR EACH ROW EXECUTE FUNCTION public.notifica_modifica_todo();
+CREATE TRIGGER trg_notifica_condivisione AFTER INSERT OR DELETE OR UPDATE ON public.condivisione FOR EACH ROW EXECUTE FUNCTION public.notifica_modifica_condivisione();
+CREATE TRIGGER trg_notifica_condivisione_bacheca AFTER INSERT OR DELETE OR UPDATE ON public.condivisione_bacheca FOR EACH ROW EXECUTE FUNCTION public.notifica_modifica_condivisione_bacheca();
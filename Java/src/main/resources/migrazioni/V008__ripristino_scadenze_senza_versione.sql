@@ -0,0 +1,17 @@
+-- Il ripristino automatico dei ToDo scaduti non è una modifica dell'utente: se incrementasse la
+-- versione, chi ha la bacheca aperta riceverebbe un falso conflitto al salvataggio successivo.
+-- La transazione del ripristino imposta todo.ripristino_scadenze = 'on' con SET LOCAL, e per
+-- quella transazione la versione resta invariata; la modifica arriva comunque ai client con la
+-- sincronizzazione incrementale e le notifiche.
+
+CREATE OR REPLACE FUNCTION public.incrementa_versione_todo() RETURNS trigger
+    LANGUAGE plpgsql
+    AS $$
+BEGIN
+    IF current_setting('todo.ripristino_scadenze', true) = 'on' THEN
+        RETURN NEW;
+    END IF;
+    NEW.versione := OLD.versione + 1;
+    RETURN NEW;
+END;
+$$;
@@ -0,0 +1,15 @@
+-- Le tracce in todo_rimosso servono solo ai client che devono ancora sincronizzarsi: dopo un
+-- periodo di conservazione vengono eliminate dalla manutenzione giornaliera. La tabella
+-- todo_rimosso_orizzonte ricorda il cursore più alto tra le tracce eliminate; un client con un
+-- cursore non successivo potrebbe averne persa una e deve ricaricare le bacheche per intero.
+
+ALTER TABLE public.todo_rimosso ADD COLUMN IF NOT EXISTS rimosso_il timestamp with time zone DEFAULT now() NOT NULL;
+
+CREATE INDEX IF NOT EXISTS todo_rimosso_rimosso_il_idx ON public.todo_rimosso USING btree (rimosso_il);
+
+-- Una sola riga, creata alla prima eliminazione: senza righe nessuna traccia è stata eliminata
+CREATE TABLE IF NOT EXISTS public.todo_rimosso_orizzonte (
+    id boolean DEFAULT true NOT NULL PRIMARY KEY,
+    cursore bigint NOT NULL,
+    CONSTRAINT todo_rimosso_orizzonte_id_check CHECK (id)
+);
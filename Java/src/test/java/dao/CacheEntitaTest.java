@@ -0,0 +1,111 @@
+package dao;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CacheEntitaTest {
+
+    private static final long DURATA_LUNGA_MS = 60_000;
+
+    @Test
+    void rileggeDallaCacheSenzaRicaricare() {
+        CacheEntita<Integer, String> cache = new CacheEntita<>("prova", 10, DURATA_LUNGA_MS);
+        AtomicInteger caricamenti = new AtomicInteger();
+
+        Function<Integer, String> caricatore = k -> {
+            caricamenti.incrementAndGet();
+            return "v" + k;
+        };
+
+        assertEquals("v1", cache.leggi(1, caricatore));
+        assertEquals("v1", cache.leggi(1, caricatore));
+
+        StatisticheCache statistiche = cache.getStatistiche();
+        assertEquals(1, statistiche.getHit());
+        assertEquals(1, statistiche.getMiss());
+        assertEquals(1, caricamenti.get());
+    }
+
+    @Test
+    void nonMemorizzaIValoriNull() {
+        CacheEntita<Integer, String> cache = new CacheEntita<>("prova", 10, DURATA_LUNGA_MS);
+
+        assertNull(cache.leggi(1, k -> null));
+        assertEquals("trovato", cache.leggi(1, k -> "trovato"));
+    }
+
+    @Test
+    void espelleLaVoceInProvaMenoRecente() {
+        CacheEntita<Integer, String> cache = new CacheEntita<>("prova", 2, DURATA_LUNGA_MS);
+        cache.leggi(1, k -> "uno");
+        cache.leggi(2, k -> "due");
+        cache.leggi(3, k -> "tre");
+
+        assertEquals(1, cache.getStatistiche().getEspulsioni());
+        assertEquals("ricaricato", cache.leggi(1, k -> "ricaricato"));
+        assertEquals("tre", cache.leggi(3, k -> "ricaricato"));
+    }
+
+    @Test
+    void laVocePromossaSopravviveAUnaScansione() {
+        CacheEntita<Integer, String> cache = new CacheEntita<>("prova", 5, DURATA_LUNGA_MS);
+        cache.leggi(1, k -> "frequente");
+        cache.leggi(1, k -> "ricaricato");
+
+        for (int i = 100; i < 120; i++) {
+            cache.leggi(i, k -> "scansione");
+        }
+
+        assertEquals("frequente", cache.leggi(1, k -> "ricaricato"));
+        assertEquals(5, cache.getStatistiche().getDimensione());
+    }
+
+    @Test
+    void laVoceScadutaVieneRicaricata() throws InterruptedException {
+        CacheEntita<Integer, String> cache = new CacheEntita<>("prova", 10, 20);
+        cache.leggi(1, k -> "vecchio");
+
+        Thread.sleep(50);
+
+        assertEquals("nuovo", cache.leggi(1, k -> "nuovo"));
+        assertEquals(1, cache.getStatistiche().getScadute());
+    }
+
+    @Test
+    void scartaIlCaricamentoIniziatoPrimaDiUnInvalidazione() {
+        CacheEntita<Integer, String> cache = new CacheEntita<>("prova", 10, DURATA_LUNGA_MS);
+
+        String letto = cache.leggi(1, k -> {
+            // Il valore letto è già superato: il DAO ha scritto durante il caricamento
+            cache.invalida(1);
+            return "superato";
+        });
+
+        assertEquals("superato", letto);
+        assertEquals("aggiornato", cache.leggi(1, k -> "aggiornato"));
+    }
+
+    @Test
+    void invalidaSeRimuoveSoloLeVociIndicate() {
+        CacheEntita<Integer, String> cache = new CacheEntita<>("prova", 10, DURATA_LUNGA_MS);
+        cache.leggi(1, k -> "pari-no");
+        cache.leggi(2, k -> "pari-si");
+
+        cache.invalidaSe(v -> v.endsWith("si"));
+
+        assertEquals("pari-no", cache.leggi(1, k -> "ricaricato"));
+        assertEquals("ricaricato", cache.leggi(2, k -> "ricaricato"));
+        assertEquals(1, cache.getStatistiche().getInvalidazioni());
+    }
+
+    @Test
+    void rifiutaUnaCapacitaTroppoPiccola() {
+        assertThrows(IllegalArgumentException.class, () -> new CacheEntita<Integer, String>("prova", 1, 1));
+    }
+}
@@ -0,0 +1,54 @@
+package dao;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OrdinamentoPosizioniTest {
+
+    private static final int INTERVALLO = OrdinamentoPosizioni.INTERVALLO;
+
+    @Test
+    void ilPrimoToDoDellaBachecaVaInZero() {
+        assertEquals(0, OrdinamentoPosizioni.posizioneTra(null, null));
+    }
+
+    @Test
+    void inTestaEInCodaSiAllontanaDiUnIntervallo() {
+        assertEquals(-INTERVALLO, OrdinamentoPosizioni.posizioneTra(null, 0));
+        assertEquals(5 * INTERVALLO, OrdinamentoPosizioni.posizioneTra(4 * INTERVALLO, null));
+    }
+
+    @Test
+    void traDueViciniUsaIlPuntoMedio() {
+        assertEquals(512, OrdinamentoPosizioni.posizioneTra(0, INTERVALLO));
+        assertEquals(-3, OrdinamentoPosizioni.posizioneTra(-5, -1));
+    }
+
+    @Test
+    void senzaSpazioTraIViciniRichiedeUnRibilanciamento() {
+        assertNull(OrdinamentoPosizioni.posizioneTra(7, 8));
+        assertNull(OrdinamentoPosizioni.posizioneTra(7, 7));
+        assertEquals(8, OrdinamentoPosizioni.posizioneTra(7, 9));
+    }
+
+    @Test
+    void nonSuperaMaiIlLimite() {
+        assertNull(OrdinamentoPosizioni.posizioneTra(OrdinamentoPosizioni.LIMITE, null));
+        assertNull(OrdinamentoPosizioni.posizioneTra(null, -OrdinamentoPosizioni.LIMITE));
+        assertNull(OrdinamentoPosizioni.posizioneTra(Integer.MAX_VALUE, null));
+        assertEquals(OrdinamentoPosizioni.LIMITE - 1,
+                OrdinamentoPosizioni.posizioneTra(OrdinamentoPosizioni.LIMITE - 2, OrdinamentoPosizioni.LIMITE));
+    }
+
+    @Test
+    void segnalaLePosizioniVicineAlLimite() {
+        assertFalse(OrdinamentoPosizioni.richiedeRibilanciamento(0));
+        assertFalse(OrdinamentoPosizioni.richiedeRibilanciamento(-100 * INTERVALLO));
+        assertTrue(OrdinamentoPosizioni.richiedeRibilanciamento(OrdinamentoPosizioni.LIMITE));
+        assertTrue(OrdinamentoPosizioni.richiedeRibilanciamento(-OrdinamentoPosizioni.LIMITE));
+    }
+}
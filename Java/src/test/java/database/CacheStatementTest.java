@@ -0,0 +1,164 @@
+package database;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CacheStatementTest {
+
+    private static final String SQL = "SELECT 1";
+
+    /** Statement creati dalla connessione finta, nell'ordine di preparazione. */
+    private final List<StatementFinto> preparati = new ArrayList<>();
+
+    private final AtomicLong hit = new AtomicLong();
+    private final AtomicLong miss = new AtomicLong();
+    private final CacheStatement cache = new CacheStatement(connessione(), 2, hit, miss);
+
+    @Test
+    void riusaLoStatementChiusoDalChiamante() throws SQLException {
+        cache.prepara(SQL, null).close();
+        cache.prepara(SQL, null).close();
+
+        assertEquals(1, preparati.size());
+        assertEquals(1, hit.get());
+        assertEquals(1, miss.get());
+        assertFalse(preparati.get(0).chiuso);
+    }
+
+    @Test
+    void alRilascioRipristinaParametriEImpostazioni() throws SQLException {
+        PreparedStatement statement = cache.prepara(SQL, null);
+        statement.setInt(1, 42);
+        statement.setFetchSize(500);
+        statement.setMaxRows(10);
+        statement.setQueryTimeout(30);
+        statement.close();
+
+        StatementFinto reale = preparati.get(0);
+        assertTrue(reale.chiamate.contains("clearParameters"));
+        assertTrue(reale.chiamate.contains("clearBatch"));
+        assertEquals(0, reale.fetchSize);
+        assertEquals(0, reale.maxRows);
+        assertEquals(0, reale.queryTimeout);
+    }
+
+    @Test
+    void loStessoSqlInUsoCreaUnoStatementTemporaneo() throws SQLException {
+        PreparedStatement esterno = cache.prepara(SQL, null);
+        PreparedStatement annidato = cache.prepara(SQL, null);
+        annidato.close();
+        esterno.close();
+
+        assertEquals(2, preparati.size());
+        assertFalse(preparati.get(0).chiuso);
+        assertTrue(preparati.get(1).chiuso);
+        assertEquals(1, cache.dimensione());
+    }
+
+    @Test
+    void espelleEChiudeLoStatementMenoRecente() throws SQLException {
+        cache.prepara("SELECT 1", null).close();
+        cache.prepara("SELECT 2", null).close();
+        cache.prepara("SELECT 3", null).close();
+
+        assertEquals(2, cache.dimensione());
+        assertTrue(preparati.get(0).chiuso);
+        assertFalse(preparati.get(1).chiuso);
+    }
+
+    @Test
+    void laChiusuraChiudeIResultSetEBloccaIlProxy() throws SQLException {
+        Connection connessioneProxy = connessione();
+        PreparedStatement statement = cache.prepara(SQL, connessioneProxy);
+        ResultSet rs = statement.executeQuery();
+
+        assertSame(connessioneProxy, statement.getConnection());
+        statement.close();
+
+        assertTrue(rs.isClosed());
+        assertTrue(statement.isClosed());
+        assertThrows(SQLException.class, statement::executeQuery);
+    }
+
+    /**
+     * Connessione finta che crea un {@link StatementFinto} a ogni preparazione.
+     */
+    private Connection connessione() {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[] { Connection.class },
+                (proxy, metodo, argomenti) -> {
+                    if (!metodo.getName().equals("prepareStatement")) {
+                        throw new UnsupportedOperationException(metodo.getName());
+                    }
+                    StatementFinto statement = new StatementFinto();
+                    preparati.add(statement);
+                    return statement.proxy();
+                });
+    }
+
+    /**
+     * Statement finto che registra le chiamate e conserva le impostazioni ripristinate dalla cache.
+     */
+    private static final class StatementFinto {
+        private final List<String> chiamate = new ArrayList<>();
+        private int fetchSize;
+        private int fetchDirection = ResultSet.FETCH_FORWARD;
+        private int maxRows;
+        private int maxFieldSize;
+        private int queryTimeout;
+        private boolean chiuso;
+
+        private PreparedStatement proxy() {
+            return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                    new Class<?>[] { PreparedStatement.class }, (proxy, metodo, argomenti) -> {
+                        chiamate.add(metodo.getName());
+                        return switch (metodo.getName()) {
+                            case "getFetchSize" -> fetchSize;
+                            case "getFetchDirection" -> fetchDirection;
+                            case "getMaxRows" -> maxRows;
+                            case "getMaxFieldSize" -> maxFieldSize;
+                            case "getQueryTimeout" -> queryTimeout;
+                            case "setFetchSize" -> imposta(() -> fetchSize = (int) argomenti[0]);
+                            case "setFetchDirection" -> imposta(() -> fetchDirection = (int) argomenti[0]);
+                            case "setMaxRows" -> imposta(() -> maxRows = (int) argomenti[0]);
+                            case "setMaxFieldSize" -> imposta(() -> maxFieldSize = (int) argomenti[0]);
+                            case "setQueryTimeout" -> imposta(() -> queryTimeout = (int) argomenti[0]);
+                            case "close" -> imposta(() -> chiuso = true);
+                            case "executeQuery" -> resultSet();
+                            default -> null;
+                        };
+                    });
+        }
+
+        private static Object imposta(Runnable azione) {
+            azione.run();
+            return null;
+        }
+
+        private static ResultSet resultSet() {
+            boolean[] chiuso = new boolean[1];
+            return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[] { ResultSet.class },
+                    (proxy, metodo, argomenti) -> switch (metodo.getName()) {
+                        case "close" -> {
+                            chiuso[0] = true;
+                            yield null;
+                        }
+                        case "isClosed" -> chiuso[0];
+                        default -> throw new UnsupportedOperationException(metodo.getName());
+                    });
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package database;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConnessioneDatabaseTest {
+
+    /** Azioni registrate dal test, separate da quelle globali registrate dagli altri test. */
+    private final List<Runnable> azioni = new CopyOnWriteArrayList<>();
+
+    @Test
+    void laChiusuraEsegueLeAzioniUnaVoltaNellOrdine() {
+        List<String> eseguite = new CopyOnWriteArrayList<>();
+        azioni.add(() -> eseguite.add("prima"));
+        azioni.add(() -> {
+            throw new IllegalStateException("azione fallita di proposito");
+        });
+        azioni.add(() -> eseguite.add("seconda"));
+
+        ConnessioneDatabase.eseguiEdElimina(azioni);
+        ConnessioneDatabase.eseguiEdElimina(azioni);
+
+        assertEquals(List.of("prima", "seconda"), eseguite);
+        assertTrue(azioni.isEmpty());
+    }
+
+    @Test
+    void unAzioneAggiuntaDuranteLaChiusuraRestaPerLaSuccessiva() {
+        List<String> eseguite = new CopyOnWriteArrayList<>();
+        azioni.add(() -> azioni.add(() -> eseguite.add("aggiunta")));
+
+        ConnessioneDatabase.eseguiEdElimina(azioni);
+        assertTrue(eseguite.isEmpty());
+
+        ConnessioneDatabase.eseguiEdElimina(azioni);
+        assertEquals(List.of("aggiunta"), eseguite);
+    }
+}
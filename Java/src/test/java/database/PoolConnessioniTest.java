@@ -0,0 +1,200 @@
+package database;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PoolConnessioniTest {
+
+    private static final String URL = "jdbc:finto:pool";
+
+    private static final long TIMEOUT_ATTESA_MS = 100;
+
+    /** Attesa oltre la quale una connessione libera viene rivalidata al prestito. */
+    private static final long OLTRE_FINESTRA_VALIDAZIONE_MS = 600;
+
+    /** Connessioni fisiche aperte dal driver finto, nell'ordine di creazione. */
+    private static final List<ConnessioneFinta> CREATE = new CopyOnWriteArrayList<>();
+
+    private static final Driver DRIVER = new DriverFinto();
+
+    private final PoolConnessioni pool = new PoolConnessioni(URL, "utente", "password", 0, 2,
+            TIMEOUT_ATTESA_MS, 60_000, 60_000);
+
+    @BeforeAll
+    static void registraDriver() throws SQLException {
+        DriverManager.registerDriver(DRIVER);
+    }
+
+    @AfterAll
+    static void rimuoviDriver() throws SQLException {
+        DriverManager.deregisterDriver(DRIVER);
+    }
+
+    @AfterEach
+    void chiudiPool() {
+        pool.chiudi();
+        CREATE.clear();
+    }
+
+    @Test
+    void nonSuperaIlMassimoEScadeLAttesa() throws SQLException {
+        Connection prima = pool.ottieni();
+        Connection seconda = pool.ottieni();
+
+        SQLException errore = assertThrows(SQLException.class, pool::ottieni);
+        assertEquals("08001", errore.getSQLState());
+        assertEquals(1, pool.getStatistiche().getTimeoutAttesa());
+        assertEquals(2, CREATE.size());
+
+        prima.close();
+        pool.ottieni().close();
+        seconda.close();
+
+        assertEquals(2, CREATE.size());
+        assertEquals(0, pool.getStatistiche().getConnessioniInPrestito());
+    }
+
+    @Test
+    void alRilascioAnnullaLaTransazioneAperta() throws SQLException {
+        Connection connessione = pool.ottieni();
+        connessione.setAutoCommit(false);
+        connessione.setReadOnly(true);
+        connessione.close();
+
+        ConnessioneFinta fisica = CREATE.get(0);
+        assertEquals(1, fisica.rollback);
+        assertTrue(fisica.autoCommit);
+        assertFalse(fisica.readOnly);
+        assertTrue(connessione.isClosed());
+
+        SQLException errore = assertThrows(SQLException.class, () -> connessione.setAutoCommit(false));
+        assertEquals("08003", errore.getSQLState());
+
+        pool.ottieni().close();
+        assertEquals(1, CREATE.size());
+    }
+
+    @Test
+    void distruggeLaConnessioneFisicaChiusaDuranteIlPrestito() throws SQLException {
+        Connection connessione = pool.ottieni();
+        CREATE.get(0).chiusa = true;
+        connessione.close();
+
+        assertEquals(1, pool.getStatistiche().getConnessioniDistrutte());
+        assertEquals(0, pool.getStatistiche().getConnessioniTotali());
+
+        pool.ottieni().close();
+        assertEquals(2, CREATE.size());
+    }
+
+    @Test
+    void sostituisceLaConnessioneLiberaNonPiuValida() throws Exception {
+        pool.ottieni().close();
+        CREATE.get(0).valida = false;
+        Thread.sleep(OLTRE_FINESTRA_VALIDAZIONE_MS);
+
+        pool.ottieni().close();
+
+        assertEquals(2, CREATE.size());
+        assertTrue(CREATE.get(0).chiusa);
+        assertEquals(1, pool.getStatistiche().getValidazioniFallite());
+    }
+
+    /**
+     * Driver che accetta solo {@link #URL} e apre una {@link ConnessioneFinta} a ogni connessione.
+     */
+    private static final class DriverFinto implements Driver {
+
+        @Override
+        public Connection connect(String url, Properties info) {
+            if (!acceptsURL(url)) {
+                return null;
+            }
+            ConnessioneFinta connessione = new ConnessioneFinta();
+            CREATE.add(connessione);
+            return connessione.proxy();
+        }
+
+        @Override
+        public boolean acceptsURL(String url) {
+            return URL.equals(url);
+        }
+
+        @Override
+        public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) {
+            return new DriverPropertyInfo[0];
+        }
+
+        @Override
+        public int getMajorVersion() {
+            return 1;
+        }
+
+        @Override
+        public int getMinorVersion() {
+            return 0;
+        }
+
+        @Override
+        public boolean jdbcCompliant() {
+            return false;
+        }
+
+        @Override
+        public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+            throw new SQLFeatureNotSupportedException();
+        }
+    }
+
+    /**
+     * Connessione fisica finta che conserva lo stato che il pool deve ripristinare.
+     */
+    private static final class ConnessioneFinta {
+        private volatile boolean autoCommit = true;
+        private volatile boolean readOnly;
+        private volatile boolean chiusa;
+        private volatile boolean valida = true;
+        private volatile int rollback;
+
+        private Connection proxy() {
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[] { Connection.class },
+                    (proxy, metodo, argomenti) -> switch (metodo.getName()) {
+                        case "getAutoCommit" -> autoCommit;
+                        case "setAutoCommit" -> imposta(() -> autoCommit = (boolean) argomenti[0]);
+                        case "isReadOnly" -> readOnly;
+                        case "setReadOnly" -> imposta(() -> readOnly = (boolean) argomenti[0]);
+                        case "rollback" -> imposta(() -> rollback++);
+                        case "isClosed" -> chiusa;
+                        case "isValid" -> valida && !chiusa;
+                        case "close" -> imposta(() -> chiusa = true);
+                        case "clearWarnings" -> null;
+                        case "toString" -> "ConnessioneFinta";
+                        default -> throw new UnsupportedOperationException(metodo.getName());
+                    });
+        }
+
+        private static Object imposta(Runnable azione) {
+            azione.run();
+            return null;
+        }
+    }
+}
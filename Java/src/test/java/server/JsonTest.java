@@ -0,0 +1,84 @@
+package server;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class JsonTest {
+
+    @Test
+    void leggeOggettiArrayENumeri() {
+        Object letto = LettoreJson.leggi(" {\"a\": [1, -2.5, true, null], \"b\": {}, \"c\": \"x\"} ");
+
+        assertEquals(Map.of("a", Arrays.asList(1L, -2.5, true, null), "b", Map.of(), "c", "x"), letto);
+    }
+
+    @Test
+    void leggeLeSequenzeDiEscape() {
+        assertEquals("\"\\/\b\f\n\r\tè", LettoreJson.leggi("\"\\\"\\\\\\/\\b\\f\\n\\r\\t\\u00e8\""));
+    }
+
+    @Test
+    void rifiutaIDocumentiNonValidi() {
+        for (String testo : List.of("", "{", "[1,]", "{\"a\" 1}", "\"aperta", "\"\\x\"", "\"\\u12\"", "1 2", "tru")) {
+            assertThrows(IllegalArgumentException.class, () -> LettoreJson.leggi(testo), testo);
+        }
+    }
+
+    @Test
+    void rifiutaUnAnnidamentoEccessivo() {
+        String profondo = "[".repeat(33) + "]".repeat(33);
+
+        assertThrows(IllegalArgumentException.class, () -> LettoreJson.leggi(profondo));
+        assertEquals(List.of(List.of()), LettoreJson.leggi("[[]]"));
+    }
+
+    @Test
+    void scriveVirgoleEDuePunti() throws IOException {
+        assertEquals("{\"n\":1,\"b\":false,\"s\":null,\"l\":[\"x\",\"y\"],\"o\":{}}", scrivi(json -> json
+                .iniziaOggetto()
+                .campo("n", 1)
+                .campo("b", false)
+                .campo("s", null)
+                .nome("l").valori(List.of("x", "y"))
+                .nome("o").iniziaOggetto().chiudiOggetto()
+                .chiudiOggetto()));
+    }
+
+    @Test
+    void scriveGliEscape() throws IOException {
+        assertEquals("\"a\\\"b\\\\c\\nd\\re\\tf\\u0001\"", scrivi(json -> json.valore("a\"b\\c\nd\re\tf\u0001")));
+    }
+
+    @Test
+    void quelloCheScriveSiRilegge() throws IOException {
+        String testo = "virgolette \" barra \\ a capo \n controllo \u001f unicode è €";
+        String scritto = scrivi(json -> json
+                .iniziaArray()
+                .iniziaOggetto().campo(testo, testo).campo("numero", Long.MIN_VALUE).chiudiOggetto()
+                .valore(true)
+                .chiudiArray());
+
+        assertEquals(List.of(Map.of(testo, testo, "numero", Long.MIN_VALUE), true), LettoreJson.leggi(scritto));
+    }
+
+    private static String scrivi(Scrittura scrittura) throws IOException {
+        StringWriter out = new StringWriter();
+        try (ScrittoreJson json = new ScrittoreJson(out)) {
+            scrittura.esegui(json);
+        }
+        return out.toString();
+    }
+
+    @FunctionalInterface
+    private interface Scrittura {
+        void esegui(ScrittoreJson json) throws IOException;
+    }
+}
@@ -0,0 +1,198 @@
+package service;
+
+import interfaccedao.IToDoDAO;
+import model.StatoToDo;
+import model.ToDo;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CodaAggiornamentiTest {
+
+    private static final long ATTESA_S = 5;
+
+    /** Lotti ricevuti dal DAO finto, nell'ordine di scrittura. */
+    private final List<List<ToDo>> lotti = new CopyOnWriteArrayList<>();
+
+    @Test
+    void uniscePiuAggiornamentiDelloStessoToDo() throws Exception {
+        CodaAggiornamenti coda = new CodaAggiornamenti(dao(lotto -> List.of()));
+        ToDo todo = letto(1);
+
+        todo.setStato(StatoToDo.COMPLETATO);
+        CompletableFuture<Boolean> primo = coda.accoda(todo);
+        todo.setStato(StatoToDo.NON_COMPLETATO);
+        todo.setStato(StatoToDo.COMPLETATO);
+        CompletableFuture<Boolean> secondo = coda.accoda(todo);
+
+        assertSame(primo, secondo);
+        assertTrue(primo.get(ATTESA_S, TimeUnit.SECONDS));
+        assertEquals(1, lotti.size());
+        assertEquals(List.of(todo), lotti.get(0));
+    }
+
+    @Test
+    void completaConFalseIToDoNonScritti() throws Exception {
+        ToDo scritto = modificato(1);
+        ToDo mancante = modificato(2);
+        CodaAggiornamenti coda = new CodaAggiornamenti(dao(lotto -> List.of(mancante)));
+
+        CompletableFuture<Boolean> esitoScritto = coda.accoda(scritto);
+        CompletableFuture<Boolean> esitoMancante = coda.accoda(mancante);
+        coda.svuota().get(ATTESA_S, TimeUnit.SECONDS);
+
+        assertTrue(esitoScritto.get(ATTESA_S, TimeUnit.SECONDS));
+        assertFalse(esitoMancante.get(ATTESA_S, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void completaConFalseSeLaTransazioneFallisce() throws Exception {
+        CodaAggiornamenti coda = new CodaAggiornamenti(dao(lotto -> null));
+
+        CompletableFuture<Boolean> esito = coda.accoda(modificato(1));
+        coda.svuota().get(ATTESA_S, TimeUnit.SECONDS);
+
+        assertFalse(esito.get(ATTESA_S, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void laCodaPienaRifiutaSenzaBloccare() throws Exception {
+        CountDownLatch scritturaIniziata = new CountDownLatch(1);
+        CountDownLatch sblocca = new CountDownLatch(1);
+        CodaAggiornamenti coda = new CodaAggiornamenti(dao(lotto -> {
+            scritturaIniziata.countDown();
+            attendi(sblocca);
+            return List.of();
+        }));
+
+        // Tiene occupato il thread di scrittura, così la coda si riempie senza essere svuotata
+        coda.accoda(modificato(0));
+        coda.svuota();
+        assertTrue(scritturaIniziata.await(ATTESA_S, TimeUnit.SECONDS));
+
+        List<CompletableFuture<Boolean>> accettati = new ArrayList<>();
+        for (int id = 1; id <= CodaAggiornamenti.CAPACITA; id++) {
+            accettati.add(coda.accoda(modificato(id)));
+        }
+        CompletableFuture<Boolean> rifiutato = coda.accoda(modificato(CodaAggiornamenti.CAPACITA + 1));
+
+        assertTrue(rifiutato.isCompletedExceptionally());
+        ExecutionException errore = assertThrows(ExecutionException.class, rifiutato::get);
+        assertInstanceOf(RejectedExecutionException.class, errore.getCause());
+
+        sblocca.countDown();
+        for (CompletableFuture<Boolean> esito : accettati) {
+            assertTrue(esito.get(ATTESA_S, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    void sovrapponeIValoriInCodaAUnaLettura() {
+        CodaAggiornamenti coda = new CodaAggiornamenti(dao(lotto -> List.of()));
+        coda.accoda(modificato(1));
+
+        ToDo riletto = letto(1);
+        coda.sovrapponi(riletto);
+
+        assertEquals(StatoToDo.COMPLETATO, riletto.getStato());
+        assertTrue(riletto.getCampiModificati().isEmpty());
+    }
+
+    @Test
+    void sovrapponeIValoriInScritturaFinoAllaConferma() throws Exception {
+        CountDownLatch scritturaIniziata = new CountDownLatch(1);
+        CountDownLatch sblocca = new CountDownLatch(1);
+        CodaAggiornamenti coda = new CodaAggiornamenti(dao(lotto -> {
+            scritturaIniziata.countDown();
+            attendi(sblocca);
+            return List.of();
+        }));
+        CompletableFuture<Boolean> esito = coda.accoda(modificato(1));
+        CompletableFuture<Void> scrittura = coda.svuota();
+        assertTrue(scritturaIniziata.await(ATTESA_S, TimeUnit.SECONDS));
+
+        ToDo durante = letto(1);
+        coda.sovrapponi(durante);
+        assertEquals(StatoToDo.COMPLETATO, durante.getStato());
+
+        sblocca.countDown();
+        scrittura.get(ATTESA_S, TimeUnit.SECONDS);
+        assertTrue(esito.get(ATTESA_S, TimeUnit.SECONDS));
+
+        ToDo dopo = letto(1);
+        coda.sovrapponi(dopo);
+        assertEquals(StatoToDo.NON_COMPLETATO, dopo.getStato());
+    }
+
+    @Test
+    void loScartoCompletaLEsitoSenzaScrivere() throws Exception {
+        CodaAggiornamenti coda = new CodaAggiornamenti(dao(lotto -> List.of()));
+        ToDo todo = modificato(1);
+
+        CompletableFuture<Boolean> esito = coda.accoda(todo);
+        coda.scarta(todo);
+        coda.svuota().get(ATTESA_S, TimeUnit.SECONDS);
+
+        assertTrue(esito.get(ATTESA_S, TimeUnit.SECONDS));
+        assertTrue(lotti.isEmpty());
+    }
+
+    /**
+     * DAO finto che registra i lotti ricevuti e risponde con la funzione indicata.
+     */
+    private IToDoDAO dao(Function<List<ToDo>, List<ToDo>> aggiornaInBlocco) {
+        return (IToDoDAO) Proxy.newProxyInstance(IToDoDAO.class.getClassLoader(), new Class<?>[] { IToDoDAO.class },
+                (proxy, metodo, argomenti) -> {
+                    if (!metodo.getName().equals("aggiornaInBlocco")) {
+                        throw new UnsupportedOperationException(metodo.getName());
+                    }
+                    @SuppressWarnings("unchecked")
+                    List<ToDo> lotto = List.copyOf((List<ToDo>) argomenti[0]);
+                    lotti.add(lotto);
+                    return aggiornaInBlocco.apply(lotto);
+                });
+    }
+
+    /** Un ToDo come appena letto dal database, non completato. */
+    private static ToDo letto(int id) {
+        ToDo todo = new ToDo("ToDo " + id);
+        todo.setId(id);
+        todo.setStato(StatoToDo.NON_COMPLETATO);
+        todo.segnaSalvato();
+        return todo;
+    }
+
+    /** Un ToDo letto e poi segnato come completato. */
+    private static ToDo modificato(int id) {
+        ToDo todo = letto(id);
+        todo.setStato(StatoToDo.COMPLETATO);
+        return todo;
+    }
+
+    private static void attendi(CountDownLatch latch) {
+        try {
+            if (!latch.await(ATTESA_S, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("Test bloccato");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
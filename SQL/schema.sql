@@ -65,7 +65,7 @@ BEGIN
   UPDATE todo
   SET titolo = p_titolo,
       descrizione = p_descrizione,
-      data_scadenza = p_data_scadenza,
+      data_scadenza = NULLIF(p_data_scadenza, '')::date,
       colore = p_colore,
       stato = p_stato,
       url = p_url,
@@ -299,6 +299,25 @@ $$;
 
 ALTER FUNCTION public.default_stato_todo() OWNER TO postgres;
 
+--
+-- Name: incrementa_versione_todo(); Type: FUNCTION; Schema: public; Owner: postgres
+--
+
+CREATE FUNCTION public.incrementa_versione_todo() RETURNS trigger
+    LANGUAGE plpgsql
+    AS $$
+BEGIN
+    IF current_setting('todo.ripristino_scadenze', true) = 'on' THEN
+        RETURN NEW;
+    END IF;
+    NEW.versione := OLD.versione + 1;
+    RETURN NEW;
+END;
+$$;
+
+
+ALTER FUNCTION public.incrementa_versione_todo() OWNER TO postgres;
+
 --
 -- Name: elimina_condivisioni_collegate(integer); Type: FUNCTION; Schema: public; Owner: postgres
 --
@@ -315,6 +334,21 @@ $$;
 
 ALTER FUNCTION public.elimina_condivisioni_collegate(p_id_todo integer) OWNER TO postgres;
 
+--
+-- Name: elimina_rimossi_utente(); Type: FUNCTION; Schema: public; Owner: postgres
+--
+
+CREATE FUNCTION public.elimina_rimossi_utente() RETURNS trigger
+    LANGUAGE plpgsql
+    AS $$
+BEGIN
+    DELETE FROM public.todo_rimosso WHERE username_utente = OLD.username;
+    RETURN OLD;
+END;
+$$;
+
+ALTER FUNCTION public.elimina_rimossi_utente() OWNER TO postgres;
+
 --
 -- Name: elimina_todo(integer); Type: FUNCTION; Schema: public; Owner: postgres
 --
@@ -440,7 +474,7 @@ BEGIN
     v.proprietario::text,
     v.tipo_bacheca::text
   FROM vista_todo_senza_immagine v
-  WHERE v.data_scadenza::date < CURRENT_DATE
+  WHERE v.data_scadenza < CURRENT_DATE
     AND v.stato != 'COMPLETATO'
     AND v.proprietario = p_username;
 END;
@@ -487,6 +521,149 @@ $$;
 
 ALTER FUNCTION public.mostra_view() OWNER TO postgres;
 
+--
+-- Name: notifica_modifica_condivisione(); Type: FUNCTION; Schema: public; Owner: postgres
+--
+
+CREATE FUNCTION public.notifica_modifica_condivisione() RETURNS trigger
+    LANGUAGE plpgsql
+    AS $$
+BEGIN
+    IF TG_OP <> 'DELETE' AND NEW.stato = 'ACCEPTED' THEN
+        PERFORM pg_notify('modifiche_todo', NEW.id_todo || ' ' || NEW.username_utente);
+    ELSIF TG_OP <> 'INSERT' AND OLD.stato = 'ACCEPTED' THEN
+        PERFORM pg_notify('modifiche_todo', OLD.id_todo || ' ' || OLD.username_utente);
+    END IF;
+    RETURN NULL;
+END;
+$$;
+
+ALTER FUNCTION public.notifica_modifica_condivisione() OWNER TO postgres;
+
+--
+-- Name: notifica_modifica_condivisione_bacheca(); Type: FUNCTION; Schema: public; Owner: postgres
+--
+
+CREATE FUNCTION public.notifica_modifica_condivisione_bacheca() RETURNS trigger
+    LANGUAGE plpgsql
+    AS $$
+DECLARE
+    riga record;
+BEGIN
+    IF TG_OP <> 'DELETE' AND NEW.stato = 'ACCEPTED' THEN
+        riga := NEW;
+    ELSIF TG_OP <> 'INSERT' AND OLD.stato = 'ACCEPTED' THEN
+        riga := OLD;
+    ELSE
+        RETURN NULL;
+    END IF;
+    PERFORM pg_notify('modifiche_todo', t.id || ' ' || riga.username_utente)
+    FROM public.todo t
+    WHERE t.proprietario = riga.proprietario AND t.tipo_bacheca = riga.tipo_bacheca;
+    RETURN NULL;
+END;
+$$;
+
+ALTER FUNCTION public.notifica_modifica_condivisione_bacheca() OWNER TO postgres;
+
+--
+-- Name: notifica_modifica_todo(); Type: FUNCTION; Schema: public; Owner: postgres
+--
+
+CREATE FUNCTION public.notifica_modifica_todo() RETURNS trigger
+    LANGUAGE plpgsql
+    AS $$
+DECLARE
+    riga record;
+BEGIN
+    IF TG_OP = 'DELETE' THEN
+        riga := OLD;
+    ELSE
+        riga := NEW;
+    END IF;
+    PERFORM pg_notify('modifiche_todo', riga.id || ' ' || d.username_utente)
+    FROM (
+        SELECT riga.proprietario AS username_utente
+        UNION
+        SELECT c.username_utente
+        FROM public.condivisione c
+        WHERE c.id_todo = riga.id AND c.stato = 'ACCEPTED'
+        UNION
+        SELECT cb.username_utente
+        FROM public.condivisione_bacheca cb
+        WHERE cb.proprietario = riga.proprietario AND cb.tipo_bacheca = riga.tipo_bacheca AND cb.stato = 'ACCEPTED'
+    ) d;
+    RETURN NULL;
+END;
+$$;
+
+ALTER FUNCTION public.notifica_modifica_todo() OWNER TO postgres;
+
+--
+-- Name: registra_condivisione_bacheca_rimossa(); Type: FUNCTION; Schema: public; Owner: postgres
+--
+
+CREATE FUNCTION public.registra_condivisione_bacheca_rimossa() RETURNS trigger
+    LANGUAGE plpgsql
+    AS $$
+BEGIN
+    IF OLD.stato = 'ACCEPTED' AND EXISTS (SELECT 1 FROM public.utente u WHERE u.username = OLD.username_utente) THEN
+        INSERT INTO public.todo_rimosso (username_utente, id_todo)
+        SELECT OLD.username_utente, t.id
+        FROM public.todo t
+        WHERE t.proprietario = OLD.proprietario AND t.tipo_bacheca = OLD.tipo_bacheca
+          AND NOT EXISTS (
+              SELECT 1 FROM public.condivisione c
+              WHERE c.id_todo = t.id AND c.username_utente = OLD.username_utente AND c.stato = 'ACCEPTED');
+    END IF;
+    RETURN OLD;
+END;
+$$;
+
+ALTER FUNCTION public.registra_condivisione_bacheca_rimossa() OWNER TO postgres;
+
+--
+-- Name: registra_condivisione_rimossa(); Type: FUNCTION; Schema: public; Owner: postgres
+--
+
+CREATE FUNCTION public.registra_condivisione_rimossa() RETURNS trigger
+    LANGUAGE plpgsql
+    AS $$
+BEGIN
+    IF OLD.stato = 'ACCEPTED'
+            AND EXISTS (SELECT 1 FROM public.utente u WHERE u.username = OLD.username_utente)
+            AND NOT EXISTS (
+                SELECT 1
+                FROM public.todo t
+                JOIN public.condivisione_bacheca cb ON cb.proprietario = t.proprietario AND cb.tipo_bacheca = t.tipo_bacheca
+                WHERE t.id = OLD.id_todo AND cb.username_utente = OLD.username_utente AND cb.stato = 'ACCEPTED') THEN
+        INSERT INTO public.todo_rimosso (username_utente, id_todo) VALUES (OLD.username_utente, OLD.id_todo);
+    END IF;
+    RETURN OLD;
+END;
+$$;
+
+ALTER FUNCTION public.registra_condivisione_rimossa() OWNER TO postgres;
+
+--
+-- Name: registra_todo_rimosso(); Type: FUNCTION; Schema: public; Owner: postgres
+--
+
+CREATE FUNCTION public.registra_todo_rimosso() RETURNS trigger
+    LANGUAGE plpgsql
+    AS $$
+BEGIN
+    INSERT INTO public.todo_rimosso (username_utente, id_todo) VALUES (OLD.proprietario, OLD.id);
+    INSERT INTO public.todo_rimosso (username_utente, id_todo)
+    SELECT cb.username_utente, OLD.id
+    FROM public.condivisione_bacheca cb
+    WHERE cb.proprietario = OLD.proprietario AND cb.tipo_bacheca = OLD.tipo_bacheca AND cb.stato = 'ACCEPTED';
+    RETURN OLD;
+END;
+$$;
+
+ALTER FUNCTION public.registra_todo_rimosso() OWNER TO postgres;
+
 --
 -- Name: richieste_pendenti_per_utente(text); Type: FUNCTION; Schema: public; Owner: postgres
 --
@@ -540,20 +717,16 @@ BEGIN
     -- Colore default a 'FFFFFF' (senza cancelletto)
     colore_finale := COALESCE(p_colore, 'FFFFFF');
 
-    -- Shift posizioni
-    UPDATE todo
-    SET posizione = posizione + 1
-    WHERE proprietario = p_proprietario AND tipo_bacheca = p_tipo_bacheca;
-
-    -- Inserimento
+    -- Inserimento in testa: posizione minima meno l'intervallo, senza spostare gli altri ToDo
     INSERT INTO todo (
         titolo, descrizione, data_scadenza, colore, stato,
         url, immagine, posizione, proprietario, tipo_bacheca
     )
-    VALUES (
-        p_titolo, p_descrizione, p_data_scadenza, colore_finale, 'NON_COMPLETATO',
-        p_url, p_immagine, 1, p_proprietario, p_tipo_bacheca
-    )
+    SELECT
+        p_titolo, p_descrizione, NULLIF(p_data_scadenza, '')::date, colore_finale, 'NON_COMPLETATO',
+        p_url, p_immagine, COALESCE(MIN(t.posizione) - 1024, 0), p_proprietario, p_tipo_bacheca
+    FROM todo t
+    WHERE t.proprietario = p_proprietario AND t.tipo_bacheca = p_tipo_bacheca
     RETURNING id INTO new_id;
 
     RETURN new_id;
@@ -587,6 +760,21 @@ $$;
 
 ALTER FUNCTION public.salva_utente(p_username text, p_password text) OWNER TO postgres;
 
+--
+-- Name: segna_modifica(); Type: FUNCTION; Schema: public; Owner: postgres
+--
+
+CREATE FUNCTION public.segna_modifica() RETURNS trigger
+    LANGUAGE plpgsql
+    AS $$
+BEGIN
+    NEW.modifica := public.transazione_corrente();
+    RETURN NEW;
+END;
+$$;
+
+ALTER FUNCTION public.segna_modifica() OWNER TO postgres;
+
 --
 -- Name: trova_todo_per_bacheca(text, text); Type: FUNCTION; Schema: public; Owner: postgres
 --
@@ -596,16 +784,28 @@ CREATE FUNCTION public.trova_todo_per_bacheca(p_proprietario text, p_tipo_bachec
     AS $$
 BEGIN
     RETURN QUERY
-    SELECT id, titolo, descrizione, data_scadenza, colore, stato, url, immagine, posizione
-    FROM todo
-    WHERE proprietario = p_proprietario AND tipo_bacheca = p_tipo_bacheca
-    ORDER BY posizione ASC;
+    SELECT t.id, t.titolo::text, t.descrizione::text, t.data_scadenza::text, t.colore::text, t.stato::text, t.url::text, t.immagine, t.posizione
+    FROM todo t
+    WHERE t.proprietario = p_proprietario AND t.tipo_bacheca = p_tipo_bacheca
+    ORDER BY t.posizione ASC, t.id DESC;
 END;
 $$;
 
 
 ALTER FUNCTION public.trova_todo_per_bacheca(p_proprietario text, p_tipo_bacheca text) OWNER TO postgres;
 
+--
+-- Name: transazione_corrente(); Type: FUNCTION; Schema: public; Owner: postgres
+--
+
+CREATE FUNCTION public.transazione_corrente() RETURNS bigint
+    LANGUAGE sql
+    AS $$
+SELECT pg_current_xact_id()::text::bigint;
+$$;
+
+ALTER FUNCTION public.transazione_corrente() OWNER TO postgres;
+
 SET default_tablespace = '';
 
 SET default_table_access_method = heap;
@@ -631,13 +831,29 @@ CREATE TABLE public.condivisione (
     username_utente character varying(100) NOT NULL,
     id_todo integer NOT NULL,
     stato character varying(20) DEFAULT 'PENDING'::character varying NOT NULL,
-    CONSTRAINT check_stato_condivisione CHECK (((stato)::text = ANY ((ARRAY['PENDING'::character varying, 'ACCEPTED'::character varying])::text[]))),
+    modifica bigint DEFAULT public.transazione_corrente() NOT NULL,
     CONSTRAINT condivisione_stato_check CHECK (((stato)::text = ANY ((ARRAY['PENDING'::character varying, 'ACCEPTED'::character varying])::text[])))
 );
 
 
 ALTER TABLE public.condivisione OWNER TO postgres;
 
+--
+-- Name: condivisione_bacheca; Type: TABLE; Schema: public; Owner: postgres
+--
+
+CREATE TABLE public.condivisione_bacheca (
+    username_utente character varying(100) NOT NULL,
+    proprietario character varying(100) NOT NULL,
+    tipo_bacheca character varying(30) NOT NULL,
+    stato character varying(20) DEFAULT 'PENDING'::character varying NOT NULL,
+    modifica bigint DEFAULT public.transazione_corrente() NOT NULL,
+    CONSTRAINT condivisione_bacheca_stato_check CHECK (((stato)::text = ANY ((ARRAY['PENDING'::character varying, 'ACCEPTED'::character varying])::text[])))
+);
+
+
+ALTER TABLE public.condivisione_bacheca OWNER TO postgres;
+
 --
 -- Name: todo; Type: TABLE; Schema: public; Owner: postgres
 --
@@ -645,7 +861,7 @@ ALTER TABLE public.condivisione OWNER TO postgres;
 CREATE TABLE public.todo (
     id integer NOT NULL,
     titolo character varying(100) NOT NULL,
-    data_scadenza character varying(20),
+    data_scadenza date,
     url text,
     immagine bytea,
     descrizione text,
@@ -654,6 +870,10 @@ CREATE TABLE public.todo (
     stato character varying(30) NOT NULL,
     proprietario character varying(100) NOT NULL,
     tipo_bacheca character varying(30) NOT NULL,
+    miniatura bytea,
+    versione integer DEFAULT 1 NOT NULL,
+    creazione bigint DEFAULT public.transazione_corrente() NOT NULL,
+    modifica bigint DEFAULT public.transazione_corrente() NOT NULL,
     CONSTRAINT stato_todo_check CHECK (((stato)::text = ANY ((ARRAY['COMPLETATO'::character varying, 'NON_COMPLETATO'::character varying])::text[])))
 );
 
@@ -682,6 +902,34 @@ ALTER SEQUENCE public.todo_id_seq OWNER TO postgres;
 ALTER SEQUENCE public.todo_id_seq OWNED BY public.todo.id;
 
 
+--
+-- Name: todo_rimosso; Type: TABLE; Schema: public; Owner: postgres
+--
+
+CREATE TABLE public.todo_rimosso (
+    username_utente character varying(100) NOT NULL,
+    id_todo integer NOT NULL,
+    modifica bigint DEFAULT public.transazione_corrente() NOT NULL,
+    rimosso_il timestamp with time zone DEFAULT now() NOT NULL
+);
+
+
+ALTER TABLE public.todo_rimosso OWNER TO postgres;
+
+--
+-- Name: todo_rimosso_orizzonte; Type: TABLE; Schema: public; Owner: postgres
+--
+
+CREATE TABLE public.todo_rimosso_orizzonte (
+    id boolean DEFAULT true NOT NULL,
+    cursore bigint NOT NULL,
+    CONSTRAINT todo_rimosso_orizzonte_id_check CHECK (id)
+);
+
+
+ALTER TABLE public.todo_rimosso_orizzonte OWNER TO postgres;
+
+
 --
 -- Name: utente; Type: TABLE; Schema: public; Owner: postgres
 --
@@ -737,6 +985,14 @@ ALTER TABLE ONLY public.condivisione
     ADD CONSTRAINT condivisione_pkey PRIMARY KEY (username_utente, id_todo);
 
 
+--
+-- Name: condivisione_bacheca condivisione_bacheca_pkey; Type: CONSTRAINT; Schema: public; Owner: postgres
+--
+
+ALTER TABLE ONLY public.condivisione_bacheca
+    ADD CONSTRAINT condivisione_bacheca_pkey PRIMARY KEY (username_utente, proprietario, tipo_bacheca);
+
+
 --
 -- Name: todo todo_pkey; Type: CONSTRAINT; Schema: public; Owner: postgres
 --
@@ -745,6 +1001,14 @@ ALTER TABLE ONLY public.todo
     ADD CONSTRAINT todo_pkey PRIMARY KEY (id);
 
 
+--
+-- Name: todo_rimosso_orizzonte todo_rimosso_orizzonte_pkey; Type: CONSTRAINT; Schema: public; Owner: postgres
+--
+
+ALTER TABLE ONLY public.todo_rimosso_orizzonte
+    ADD CONSTRAINT todo_rimosso_orizzonte_pkey PRIMARY KEY (id);
+
+
 --
 -- Name: utente utente_pkey; Type: CONSTRAINT; Schema: public; Owner: postgres
 --
@@ -753,6 +1017,62 @@ ALTER TABLE ONLY public.utente
     ADD CONSTRAINT utente_pkey PRIMARY KEY (username);
 
 
+--
+-- Name: condivisione_bacheca_bacheca_idx; Type: INDEX; Schema: public; Owner: postgres
+--
+
+CREATE INDEX condivisione_bacheca_bacheca_idx ON public.condivisione_bacheca USING btree (proprietario, tipo_bacheca);
+
+
+--
+-- Name: condivisione_id_todo_idx; Type: INDEX; Schema: public; Owner: postgres
+--
+
+CREATE INDEX condivisione_id_todo_idx ON public.condivisione USING btree (id_todo);
+
+
+--
+-- Name: condivisione_username_utente_stato_idx; Type: INDEX; Schema: public; Owner: postgres
+--
+
+CREATE INDEX condivisione_username_utente_stato_idx ON public.condivisione USING btree (username_utente, stato);
+
+
+--
+-- Name: todo_proprietario_data_scadenza_idx; Type: INDEX; Schema: public; Owner: postgres
+--
+
+CREATE INDEX todo_proprietario_data_scadenza_idx ON public.todo USING btree (proprietario, data_scadenza);
+
+
+--
+-- Name: todo_proprietario_modifica_idx; Type: INDEX; Schema: public; Owner: postgres
+--
+
+CREATE INDEX todo_proprietario_modifica_idx ON public.todo USING btree (proprietario, modifica);
+
+
+--
+-- Name: todo_proprietario_tipo_bacheca_posizione_idx; Type: INDEX; Schema: public; Owner: postgres
+--
+
+CREATE INDEX todo_proprietario_tipo_bacheca_posizione_idx ON public.todo USING btree (proprietario, tipo_bacheca, posizione);
+
+
+--
+-- Name: todo_rimosso_username_utente_modifica_idx; Type: INDEX; Schema: public; Owner: postgres
+--
+
+CREATE INDEX todo_rimosso_username_utente_modifica_idx ON public.todo_rimosso USING btree (username_utente, modifica);
+
+
+--
+-- Name: todo_rimosso_rimosso_il_idx; Type: INDEX; Schema: public; Owner: postgres
+--
+
+CREATE INDEX todo_rimosso_rimosso_il_idx ON public.todo_rimosso USING btree (rimosso_il);
+
+
 --
 -- Name: bacheca trg_check_bacheche; Type: TRIGGER; Schema: public; Owner: postgres
 --
@@ -760,6 +1080,20 @@ ALTER TABLE ONLY public.utente
 CREATE TRIGGER trg_check_bacheche BEFORE INSERT ON public.bacheca FOR EACH ROW EXECUTE FUNCTION public.check_bacheche_standard();
 
 
+--
+-- Name: condivisione_bacheca trg_condivisione_bacheca_rimossa; Type: TRIGGER; Schema: public; Owner: postgres
+--
+
+CREATE TRIGGER trg_condivisione_bacheca_rimossa AFTER DELETE ON public.condivisione_bacheca FOR EACH ROW EXECUTE FUNCTION public.registra_condivisione_bacheca_rimossa();
+
+
+--
+-- Name: condivisione trg_condivisione_rimossa; Type: TRIGGER; Schema: public; Owner: postgres
+--
+
+CREATE TRIGGER trg_condivisione_rimossa AFTER DELETE ON public.condivisione FOR EACH ROW EXECUTE FUNCTION public.registra_condivisione_rimossa();
+
+
 --
 -- Name: utente trg_crea_bacheche; Type: TRIGGER; Schema: public; Owner: postgres
 --
@@ -774,6 +1108,69 @@ CREATE TRIGGER trg_crea_bacheche AFTER INSERT ON public.utente FOR EACH ROW EXEC
 CREATE TRIGGER trg_default_stato BEFORE INSERT ON public.todo FOR EACH ROW EXECUTE FUNCTION public.default_stato_todo();
 
 
+--
+-- Name: condivisione trg_modifica_condivisione; Type: TRIGGER; Schema: public; Owner: postgres
+--
+
+CREATE TRIGGER trg_modifica_condivisione BEFORE UPDATE ON public.condivisione FOR EACH ROW EXECUTE FUNCTION public.segna_modifica();
+
+
+--
+-- Name: condivisione_bacheca trg_modifica_condivisione_bacheca; Type: TRIGGER; Schema: public; Owner: postgres
+--
+
+CREATE TRIGGER trg_modifica_condivisione_bacheca BEFORE UPDATE ON public.condivisione_bacheca FOR EACH ROW EXECUTE FUNCTION public.segna_modifica();
+
+
+--
+-- Name: todo trg_modifica_todo; Type: TRIGGER; Schema: public; Owner: postgres
+--
+
+CREATE TRIGGER trg_modifica_todo BEFORE UPDATE OF titolo, descrizione, data_scadenza, colore, stato, url, immagine, posizione, proprietario, tipo_bacheca ON public.todo FOR EACH ROW EXECUTE FUNCTION public.segna_modifica();
+
+
+--
+-- Name: condivisione trg_notifica_condivisione; Type: TRIGGER; Schema: public; Owner: postgres
+--
+
+CREATE TRIGGER trg_notifica_condivisione AFTER INSERT OR DELETE OR UPDATE ON public.condivisione FOR EACH ROW EXECUTE FUNCTION public.notifica_modifica_condivisione();
+
+
+--
+-- Name: condivisione_bacheca trg_notifica_condivisione_bacheca; Type: TRIGGER; Schema: public; Owner: postgres
+--
+
+CREATE TRIGGER trg_notifica_condivisione_bacheca AFTER INSERT OR DELETE OR UPDATE ON public.condivisione_bacheca FOR EACH ROW EXECUTE FUNCTION public.notifica_modifica_condivisione_bacheca();
+
+
+--
+-- Name: todo trg_notifica_todo; Type: TRIGGER; Schema: public; Owner: postgres
+--
+
+CREATE TRIGGER trg_notifica_todo AFTER INSERT OR DELETE OR UPDATE OF titolo, descrizione, data_scadenza, colore, stato, url, immagine, posizione, proprietario, tipo_bacheca ON public.todo FOR EACH ROW EXECUTE FUNCTION public.notifica_modifica_todo();
+
+
+--
+-- Name: utente trg_rimossi_utente; Type: TRIGGER; Schema: public; Owner: postgres
+--
+
+CREATE TRIGGER trg_rimossi_utente AFTER DELETE ON public.utente FOR EACH ROW EXECUTE FUNCTION public.elimina_rimossi_utente();
+
+
+--
+-- Name: todo trg_todo_rimosso; Type: TRIGGER; Schema: public; Owner: postgres
+--
+
+CREATE TRIGGER trg_todo_rimosso AFTER DELETE ON public.todo FOR EACH ROW EXECUTE FUNCTION public.registra_todo_rimosso();
+
+
+--
+-- Name: todo trg_versione_todo; Type: TRIGGER; Schema: public; Owner: postgres
+--
+
+CREATE TRIGGER trg_versione_todo BEFORE UPDATE OF titolo, descrizione, data_scadenza, colore, stato, url, immagine ON public.todo FOR EACH ROW EXECUTE FUNCTION public.incrementa_versione_todo();
+
+
 --
 -- Name: todo trigger_check_colore_todo; Type: TRIGGER; Schema: public; Owner: postgres
 --
@@ -805,6 +1202,22 @@ ALTER TABLE ONLY public.condivisione
     ADD CONSTRAINT condivisione_username_utente_fkey FOREIGN KEY (username_utente) REFERENCES public.utente(username);
 
 
+--
+-- Name: condivisione_bacheca condivisione_bacheca_bacheca_fkey; Type: FK CONSTRAINT; Schema: public; Owner: postgres
+--
+
+ALTER TABLE ONLY public.condivisione_bacheca
+    ADD CONSTRAINT condivisione_bacheca_bacheca_fkey FOREIGN KEY (proprietario, tipo_bacheca) REFERENCES public.bacheca(proprietario, tipo) ON DELETE CASCADE;
+
+
+--
+-- Name: condivisione_bacheca condivisione_bacheca_username_utente_fkey; Type: FK CONSTRAINT; Schema: public; Owner: postgres
+--
+
+ALTER TABLE ONLY public.condivisione_bacheca
+    ADD CONSTRAINT condivisione_bacheca_username_utente_fkey FOREIGN KEY (username_utente) REFERENCES public.utente(username) ON DELETE CASCADE;
+
+
 --
 -- Name: todo todo_proprietario_tipo_bacheca_fkey; Type: FK CONSTRAINT; Schema: public; Owner: postgres
 --